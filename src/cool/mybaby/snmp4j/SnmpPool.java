@@ -0,0 +1,94 @@
+package cool.mybaby.snmp4j;
+
+import cool.mybaby.snmp4j.ff.snmp4j.Snmp;
+import cool.mybaby.snmp4j.ff.snmp4j.transport.DefaultUdpTransportMapping;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared, lazily started set of {@link Snmp} sessions, each bound to its own
+ * listening UDP transport. {@link Snmp} is thread safe, so callers do not
+ * borrow a session exclusively: {@link #getSnmp()} hands out the sessions
+ * round robin and a request only costs its encoding and datagram.
+ * <p>
+ * Sessions whose transport stopped listening are replaced on the next call.
+ * {@link #close()} closes all sessions; the pool restarts on the next use.
+ * The default pool is closed by a shutdown hook.
+ */
+@SuppressWarnings("unused")
+public class SnmpPool {
+    public static final int defaultSize = Math.min(4, Runtime.getRuntime().availableProcessors());
+
+    private static final SnmpPool defaultPool = new SnmpPool(SnmpPool.defaultSize);
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread("SnmpPool-Shutdown") {
+            @Override
+            public void run() {
+                SnmpPool.defaultPool.close();
+            }
+        });
+    }
+
+    private final Entry[] entries;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public SnmpPool(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Pool size must be positive");
+        }
+        this.entries = new Entry[size];
+        for (int i = 0; i < size; i++) {
+            this.entries[i] = new Entry();
+        }
+    }
+
+    public static SnmpPool getDefault() {
+        return SnmpPool.defaultPool;
+    }
+
+    public int size() {
+        return this.entries.length;
+    }
+
+    public Snmp getSnmp() throws IOException {
+        int index = (this.next.getAndIncrement() & Integer.MAX_VALUE) % this.entries.length;
+        return this.entries[index].get();
+    }
+
+    public void close() {
+        for (Entry entry : this.entries) {
+            entry.close();
+        }
+    }
+
+    private static class Entry {
+        private Snmp snmp;
+        private DefaultUdpTransportMapping transport;
+
+        synchronized Snmp get() throws IOException {
+            if (this.snmp == null || !this.transport.isListening()) {
+                this.close();
+                DefaultUdpTransportMapping transport = new DefaultUdpTransportMapping();
+                Snmp snmp = new Snmp(transport);
+                transport.listen();
+                this.transport = transport;
+                this.snmp = snmp;
+            }
+            return this.snmp;
+        }
+
+        synchronized void close() {
+            if (this.snmp != null) {
+                try {
+                    this.snmp.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                this.snmp = null;
+                this.transport = null;
+            }
+        }
+    }
+}
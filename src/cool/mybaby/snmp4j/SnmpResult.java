@@ -0,0 +1,212 @@
+package cool.mybaby.snmp4j;
+
+import cool.mybaby.snmp4j.ff.snmp4j.smi.*;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+
+/**
+ * Typed result of a get or walk, keyed by {@link OID}. The object identifiers
+ * and values are kept in two arrays in the order they were received. As long
+ * as they are received in ascending order, which is the case for walks,
+ * lookups are binary searches; otherwise the arrays are sorted once on the
+ * first lookup.
+ * <p>
+ * The primitive accessors read {@link Integer32}, {@link UnsignedInteger32}
+ * (Counter32, Gauge32, TimeTicks), {@link Counter64} and {@link OctetString}
+ * values without converting them to text.
+ */
+@SuppressWarnings("unused")
+public class SnmpResult {
+    private OID[] oids;
+    private Variable[] variables;
+    private int size;
+    private boolean sorted = true;
+
+    public SnmpResult() {
+        this(16);
+    }
+
+    public SnmpResult(int initialCapacity) {
+        this.oids = new OID[Math.max(1, initialCapacity)];
+        this.variables = new Variable[this.oids.length];
+    }
+
+    public void add(VariableBinding vb) {
+        this.add(vb.getOid(), vb.getVariable());
+    }
+
+    public void add(VariableBinding[] vbs) {
+        for (VariableBinding vb : vbs) {
+            if (vb != null) {
+                this.add(vb.getOid(), vb.getVariable());
+            }
+        }
+    }
+
+    public void add(OID oid, Variable variable) {
+        if (this.size == this.oids.length) {
+            this.oids = Arrays.copyOf(this.oids, this.size << 1);
+            this.variables = Arrays.copyOf(this.variables, this.size << 1);
+        }
+        if (this.size > 0 && this.sorted && this.oids[this.size - 1].compareTo(oid) >= 0) {
+            this.sorted = false;
+        }
+        this.oids[this.size] = oid;
+        this.variables[this.size] = variable;
+        this.size++;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(this.oids, 0, this.size, null);
+        Arrays.fill(this.variables, 0, this.size, null);
+        this.size = 0;
+        this.sorted = true;
+    }
+
+    public OID getOid(int index) {
+        this.checkIndex(index);
+        return this.oids[index];
+    }
+
+    public Variable getVariable(int index) {
+        this.checkIndex(index);
+        return this.variables[index];
+    }
+
+    /**
+     * @return the position of <code>oid</code> or a negative value if it is
+     * not contained. Positions refer to ascending OID order once a lookup
+     * had to sort the result.
+     */
+    public int indexOf(OID oid) {
+        if (!this.sorted) {
+            this.sort();
+        }
+        int low = 0;
+        int high = this.size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = this.oids[mid].compareTo(oid);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    public boolean contains(OID oid) {
+        return this.indexOf(oid) >= 0;
+    }
+
+    public Variable getVariable(OID oid) {
+        int index = this.indexOf(oid);
+        return index < 0 ? null : this.variables[index];
+    }
+
+    public int getInt(OID oid, int defaultValue) {
+        int index = this.indexOf(oid);
+        return index < 0 ? defaultValue : this.getInt(index, defaultValue);
+    }
+
+    public int getInt(int index, int defaultValue) {
+        Variable var = this.getVariable(index);
+        if (var instanceof Integer32) {
+            return ((Integer32) var).getValue();
+        } else if (var instanceof UnsignedInteger32) {
+            return (int) ((UnsignedInteger32) var).getValue();
+        }
+        return defaultValue;
+    }
+
+    public long getLong(OID oid, long defaultValue) {
+        int index = this.indexOf(oid);
+        return index < 0 ? defaultValue : this.getLong(index, defaultValue);
+    }
+
+    public long getLong(int index, long defaultValue) {
+        Variable var = this.getVariable(index);
+        if (var instanceof Integer32) {
+            return ((Integer32) var).getValue();
+        } else if (var instanceof UnsignedInteger32) {
+            return ((UnsignedInteger32) var).getValue();
+        } else if (var instanceof Counter64) {
+            return ((Counter64) var).getValue();
+        }
+        return defaultValue;
+    }
+
+    /**
+     * @return the raw bytes of an {@link OctetString} value (not a copy) or
+     * <code>null</code>.
+     */
+    public byte[] getBytes(OID oid) {
+        int index = this.indexOf(oid);
+        return index < 0 ? null : this.getBytes(index);
+    }
+
+    public byte[] getBytes(int index) {
+        Variable var = this.getVariable(index);
+        return var instanceof OctetString ? ((OctetString) var).getValue() : null;
+    }
+
+    /**
+     * Converts this result to the textual form returned by
+     * {@link snmp4j#walk(String, String)}.
+     */
+    public LinkedHashMap<String, String> toStringMap() {
+        LinkedHashMap<String, String> map = new LinkedHashMap<String, String>();
+        for (int i = 0; i < this.size; i++) {
+            map.put("." + this.oids[i].toString(), this.variables[i].toString());
+        }
+        return map;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+        }
+    }
+
+    private void sort() {
+        Integer[] order = new Integer[this.size];
+        for (int i = 0; i < this.size; i++) {
+            order[i] = i;
+        }
+        final OID[] keys = this.oids;
+        Arrays.sort(order, (a, b) -> keys[a].compareTo(keys[b]));
+        OID[] sortedOids = new OID[this.oids.length];
+        Variable[] sortedVariables = new Variable[this.variables.length];
+        for (int i = 0; i < this.size; i++) {
+            sortedOids[i] = this.oids[order[i]];
+            sortedVariables[i] = this.variables[order[i]];
+        }
+        this.oids = sortedOids;
+        this.variables = sortedVariables;
+        this.sorted = true;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buf = new StringBuilder("SnmpResult[");
+        for (int i = 0; i < this.size; i++) {
+            if (i > 0) {
+                buf.append("; ");
+            }
+            buf.append(this.oids[i]).append(" = ").append(this.variables[i]);
+        }
+        return buf.append(']').toString();
+    }
+}
@@ -0,0 +1,270 @@
+package cool.mybaby.snmp4j;
+
+import cool.mybaby.snmp4j.MIB.printer;
+import cool.mybaby.snmp4j.component.Supplies;
+import cool.mybaby.snmp4j.ff.snmp4j.Session;
+import cool.mybaby.snmp4j.ff.snmp4j.Target;
+import cool.mybaby.snmp4j.ff.snmp4j.smi.OID;
+import cool.mybaby.snmp4j.ff.snmp4j.smi.VariableBinding;
+import cool.mybaby.snmp4j.ff.snmp4j.util.DefaultPDUFactory;
+import cool.mybaby.snmp4j.ff.snmp4j.util.TableEvent;
+import cool.mybaby.snmp4j.ff.snmp4j.util.TableListener;
+import cool.mybaby.snmp4j.ff.snmp4j.util.TableUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Collects the printer supplies of many printers. Each printer is read by one
+ * {@link TableUtils} GETBULK pass over the level, max capacity and supply
+ * unit columns of the prtMarkerSuppliesTable; the values are decoded straight
+ * into the {@link Supplies} integers. Printers are read concurrently through
+ * one session with at most <code>maxInFlight</code> table passes at a time.
+ */
+@SuppressWarnings("unused")
+public class SuppliesCollector {
+    public static final int defaultMaxInFlight = 64;
+    public static final int defaultRowsPerPDU = 10;
+
+    private static final int LEVEL = 0;
+    private static final int MAX_CAPACITY = 1;
+    private static final int SUPPLY_UNIT = 2;
+
+    private static final OID[] columns = new OID[]{
+            new OID(printer.prtMarkerSuppliesLevel),
+            new OID(printer.prtMarkerSuppliesMaxCapacity),
+            new OID(printer.prtMarkerSuppliesSupplyUnit)
+    };
+
+    private final TableUtils tableUtils;
+    private final int maxInFlight;
+
+    public SuppliesCollector() throws IOException {
+        this(SnmpPool.getDefault().getSnmp(), SuppliesCollector.defaultMaxInFlight);
+    }
+
+    public SuppliesCollector(Session session, int maxInFlight) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("maxInFlight must be positive");
+        }
+        this.maxInFlight = maxInFlight;
+        this.tableUtils = new TableUtils(session, new DefaultPDUFactory());
+        this.tableUtils.setMaxNumRowsPerPDU(SuppliesCollector.defaultRowsPerPDU);
+    }
+
+    public int getMaxInFlight() {
+        return this.maxInFlight;
+    }
+
+    /**
+     * Collects the supplies of the given hosts with the default community
+     * target settings of the {@link snmp4j} facade.
+     *
+     * @return the supplies by host in the order of <code>hosts</code>; the
+     * value is <code>null</code> if the host could not be read.
+     */
+    public Map<String, Supplies> collect(Collection<String> hosts) {
+        List<String> names = new ArrayList<String>(hosts);
+        Target[] targets = new Target[names.size()];
+        for (int i = 0; i < targets.length; i++) {
+            targets[i] = snmp4j.newCommunityTarget(names.get(i));
+        }
+        Supplies[] supplies = this.collect(targets);
+        LinkedHashMap<String, Supplies> result = new LinkedHashMap<String, Supplies>();
+        for (int i = 0; i < supplies.length; i++) {
+            result.put(names.get(i), supplies[i]);
+        }
+        return result;
+    }
+
+    public Supplies collect(Target target) {
+        return this.collect(new Target[]{target})[0];
+    }
+
+    /**
+     * Collects the supplies of the given targets.
+     *
+     * @return the supplies in the order of <code>targets</code>; an element is
+     * <code>null</code> if the target is <code>null</code> or could not be read.
+     */
+    public Supplies[] collect(Target[] targets) {
+        Supplies[] result = new Supplies[targets.length];
+        CountDownLatch done = new CountDownLatch(targets.length);
+        Semaphore window = new Semaphore(this.maxInFlight);
+        try {
+            for (int i = 0; i < targets.length; i++) {
+                if (targets[i] == null) {
+                    done.countDown();
+                    continue;
+                }
+                window.acquire();
+                this.tableUtils.getTable(targets[i], SuppliesCollector.columns,
+                        new Collector(result, i, window, done), null, null, null);
+            }
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return result;
+    }
+
+    private static class Collector implements TableListener {
+        private final Supplies[] result;
+        private final int index;
+        private final Semaphore window;
+        private final CountDownLatch done;
+        private final Supplies supplies = new Supplies();
+        private boolean finished;
+
+        Collector(Supplies[] result, int index, Semaphore window, CountDownLatch done) {
+            this.result = result;
+            this.index = index;
+            this.window = window;
+            this.done = done;
+        }
+
+        @Override
+        public boolean next(TableEvent event) {
+            if (event.getIndex() != null && event.getColumns() != null) {
+                int supply = event.getIndex().last();
+                VariableBinding[] vbs = event.getColumns();
+                for (int column = 0; column < vbs.length; column++) {
+                    if (vbs[column] != null && !vbs[column].isException()) {
+                        try {
+                            SuppliesCollector.set(this.supplies, column, supply,
+                                    vbs[column].getVariable().toInt());
+                        } catch (UnsupportedOperationException ignore) {
+                        }
+                    }
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public synchronized void finished(TableEvent event) {
+            if (this.finished) {
+                return;
+            }
+            this.finished = true;
+            this.result[this.index] = event.isError() ? null : this.supplies;
+            this.window.release();
+            this.done.countDown();
+        }
+    }
+
+    @SuppressWarnings("DuplicatedCode")
+    static void set(Supplies supplies, int column, int supply, int value) {
+        Integer v = value;
+        switch (column) {
+            case SuppliesCollector.LEVEL:
+                switch (supply) {
+                    case 1:
+                        supplies.Key = v;
+                        break;
+                    case 30:
+                        supplies.Key1 = v;
+                        break;
+                    case 31:
+                        supplies.Key2 = v;
+                        break;
+                    case 2:
+                        supplies.Yellow = v;
+                        break;
+                    case 3:
+                        supplies.Magenta = v;
+                        break;
+                    case 4:
+                        supplies.Cyan = v;
+                        break;
+                    case 6:
+                        supplies.DurmKey = v;
+                        break;
+                    case 7:
+                        supplies.DurmYellow = v;
+                        break;
+                    case 8:
+                        supplies.DurmMagenta = v;
+                        break;
+                    case 9:
+                        supplies.DurmCyan = v;
+                        break;
+                }
+                break;
+            case SuppliesCollector.MAX_CAPACITY:
+                switch (supply) {
+                    case 1:
+                        supplies.MaxKey = v;
+                        break;
+                    case 30:
+                        supplies.MaxKey1 = v;
+                        break;
+                    case 31:
+                        supplies.MaxKey2 = v;
+                        break;
+                    case 2:
+                        supplies.MaxYellow = v;
+                        break;
+                    case 3:
+                        supplies.MaxMagenta = v;
+                        break;
+                    case 4:
+                        supplies.MaxCyan = v;
+                        break;
+                    case 6:
+                        supplies.MaxDurmKey = v;
+                        break;
+                    case 7:
+                        supplies.MaxDurmYellow = v;
+                        break;
+                    case 8:
+                        supplies.MaxDurmMagenta = v;
+                        break;
+                    case 9:
+                        supplies.MaxDurmCyan = v;
+                        break;
+                }
+                break;
+            case SuppliesCollector.SUPPLY_UNIT:
+                switch (supply) {
+                    case 1:
+                        supplies.KeyUnit = v;
+                        break;
+                    case 30:
+                        supplies.KeyUnit1 = v;
+                        break;
+                    case 31:
+                        supplies.KeyUnit2 = v;
+                        break;
+                    case 2:
+                        supplies.YellowUnit = v;
+                        break;
+                    case 3:
+                        supplies.MagentaUnit = v;
+                        break;
+                    case 4:
+                        supplies.CyanUnit = v;
+                        break;
+                    case 6:
+                        supplies.DurmKeyUnit = v;
+                        break;
+                    case 7:
+                        supplies.DurmYellowUnit = v;
+                        break;
+                    case 8:
+                        supplies.DurmMagentaUnit = v;
+                        break;
+                    case 9:
+                        supplies.DurmCyanUnit = v;
+                        break;
+                }
+                break;
+        }
+    }
+}
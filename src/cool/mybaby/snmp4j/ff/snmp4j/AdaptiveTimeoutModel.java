@@ -0,0 +1,83 @@
+/*_############################################################################
+  _##
+  _##  SNMP4J - AdaptiveTimeoutModel.java
+  _##
+  _##  Copyright 2003-2007  Frank Fock and Jochen Katz (SNMP4J.org)
+  _##
+  _##  Licensed under the Apache License, Version 2.0 (the "License");
+  _##  you may not use this file except in compliance with the License.
+  _##  You may obtain a copy of the License at
+  _##
+  _##      http://www.apache.org/licenses/LICENSE-2.0
+  _##
+  _##  Unless required by applicable law or agreed to in writing, software
+  _##  distributed under the License is distributed on an "AS IS" BASIS,
+  _##  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  _##  See the License for the specific language governing permissions and
+  _##  limitations under the License.
+  _##
+  _##########################################################################*/
+
+package cool.mybaby.snmp4j.ff.snmp4j;
+
+import cool.mybaby.snmp4j.ff.snmp4j.smi.Address;
+
+/**
+ * An <code>AdaptiveTimeoutModel</code> is a <code>TimeoutModel</code> that
+ * computes the timeouts of a request from the round trip times observed for
+ * the target address. {@link Snmp} reports the round trip time of each
+ * response to a request that has not been retransmitted and each final
+ * timeout to the model.
+ *
+ * @version 1.9
+ * @since 1.9
+ */
+public interface AdaptiveTimeoutModel extends TimeoutModel {
+
+    /**
+     * Gets the timeout for the specified retry of a request to the supplied
+     * address.
+     *
+     * @param address              the target address.
+     * @param retryCount           the number of retries already performed for the target.
+     * @param totalNumberOfRetries the total number of retries configured for the target.
+     * @param targetTimeout        the timeout as specified for the target in milliseconds.
+     * @return the timeout duration in milliseconds for the supplied retry.
+     */
+    long getRetryTimeout(Address address, int retryCount,
+                         int totalNumberOfRetries, long targetTimeout);
+
+    /**
+     * Gets the timeout for all retries of a request to the supplied address,
+     * which is the sum of
+     * {@link #getRetryTimeout(Address address, int retryCount,
+     * int totalNumberOfRetries, long targetTimeout)}
+     * for all <code>retryCount</code> in
+     * <code>0 <= retryCount <= totalNumberOfRetries</code>.
+     *
+     * @param address              the target address.
+     * @param totalNumberOfRetries the total number of retries configured for the target.
+     * @param targetTimeout        the timeout as specified for the target in milliseconds.
+     * @return the time in milliseconds when the request will be timed out finally.
+     */
+    long getRequestTimeout(Address address, int totalNumberOfRetries,
+                           long targetTimeout);
+
+    /**
+     * Reports the round trip time of a request to the supplied address that
+     * has been answered without retransmission.
+     *
+     * @param address       the target address.
+     * @param roundTripTime the time in milliseconds between sending the request and
+     *                      receiving its response.
+     */
+    void responseReceived(Address address, long roundTripTime);
+
+    /**
+     * Reports that a request to the supplied address timed out finally.
+     *
+     * @param address the target address.
+     */
+    void requestTimedOut(Address address);
+
+}
@@ -34,6 +34,8 @@ import cool.mybaby.snmp4j.ff.snmp4j.smi.Address;
 import cool.mybaby.snmp4j.ff.snmp4j.smi.GenericAddress;
 import cool.mybaby.snmp4j.ff.snmp4j.smi.Integer32;
 import cool.mybaby.snmp4j.ff.snmp4j.smi.OctetString;
+import cool.mybaby.snmp4j.ff.snmp4j.transport.ReceiveBuffer;
+import cool.mybaby.snmp4j.ff.snmp4j.transport.ReceiveBufferListener;
 import cool.mybaby.snmp4j.ff.snmp4j.transport.UnsupportedAddressClassException;
 
 import java.io.IOException;
@@ -62,7 +64,8 @@ import java.util.Vector;
  * @see MPv2c
  * @see MPv3
  */
-public class MessageDispatcherImpl implements MessageDispatcher {
+public class MessageDispatcherImpl implements MessageDispatcher,
+        ReceiveBufferListener {
 
     private static final LogAdapter logger =
             LogFactory.getLogger(MessageDispatcherImpl.class);
@@ -288,6 +291,27 @@ public class MessageDispatcherImpl implements MessageDispatcher {
                 new BERInputStream(wholeMessage));
     }
 
+    /**
+     * Processes a message in a pooled receive buffer. Incoming messages are
+     * completely decoded before dispatching returns, thus the buffer is
+     * released when this method returns.
+     *
+     * @param sourceTransport the <code>TransportMapping</code> that received the message.
+     * @param incomingAddress the <code>Address</code> from which the message has been received.
+     * @param wholeMessage    the buffer containing the received message.
+     * @since 1.9
+     */
+    public void processMessage(TransportMapping sourceTransport,
+                               Address incomingAddress,
+                               ReceiveBuffer wholeMessage) {
+        try {
+            processMessage(sourceTransport, incomingAddress,
+                    new BERInputStream(wholeMessage.getByteBuffer()));
+        } finally {
+            wholeMessage.release();
+        }
+    }
+
     public void processMessage(TransportMapping sourceTransport,
                                Address incomingAddress,
                                BERInputStream wholeMessage) {
@@ -22,7 +22,9 @@
 package cool.mybaby.snmp4j.ff.snmp4j;
 
 import cool.mybaby.snmp4j.ff.snmp4j.asn1.BER;
+import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERCursor;
 import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERInputStream;
+import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERReverseEncoder;
 import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERSerializable;
 import cool.mybaby.snmp4j.ff.snmp4j.mp.SnmpConstants;
 import cool.mybaby.snmp4j.ff.snmp4j.smi.Integer32;
@@ -498,6 +500,79 @@ public class PDU implements BERSerializable, Serializable {
         }
     }
 
+    /**
+     * Decodes this PDU from a <code>BERCursor</code>. The request ID, error
+     * status, and error index are decoded in place. Variable bindings already
+     * contained in this PDU are reused in their order and decoded in place,
+     * additional ones are created and surplus ones are removed. Thus, a PDU
+     * that is decoded repeatedly does not allocate new variable bindings once
+     * it has grown to the size of the decoded PDUs.
+     * <p>
+     * Unlike {@link #decodeBER(BERInputStream)}, this method overwrites the
+     * <code>VariableBinding</code> instances of this PDU and the OIDs and
+     * variables they hold. It should therefore only be used with PDUs whose
+     * variable bindings are not referenced elsewhere. The byte and
+     * sub-identifier arrays of decoded values are always newly allocated,
+     * so values returned by <code>getValue()</code> are never changed.
+     *
+     * @param cursor a <code>BERCursor</code> positioned at the PDU.
+     * @throws IOException if the PDU could not be decoded.
+     * @since 1.9
+     */
+    public void decodeBER(BERCursor cursor) throws IOException {
+        int length = cursor.decodeHeader();
+        int pduStartPos = cursor.getPosition();
+        byte pduType = cursor.getType();
+        switch (pduType) {
+            case PDU.SET:
+            case PDU.GET:
+            case PDU.GETNEXT:
+            case PDU.GETBULK:
+            case PDU.INFORM:
+            case PDU.REPORT:
+            case PDU.TRAP:
+            case PDU.RESPONSE:
+                break;
+            default:
+                throw new IOException("Unsupported PDU type: " + pduType);
+        }
+        this.type = pduType;
+        requestID.decodeBER(cursor);
+        errorStatus.decodeBER(cursor);
+        errorIndex.decodeBER(cursor);
+
+        int vbLength = cursor.decodeHeader();
+        if (cursor.getType() != BER.SEQUENCE) {
+            throw new IOException("Encountered invalid tag, SEQUENCE expected: " +
+                    cursor.getType());
+        }
+        // rest read count
+        int startPos = cursor.getPosition();
+        int count = 0;
+        while (cursor.getPosition() - startPos < vbLength) {
+            VariableBinding vb;
+            if (count < variableBindings.size()) {
+                vb = (VariableBinding) variableBindings.get(count);
+            } else {
+                vb = new VariableBinding();
+                variableBindings.add(vb);
+            }
+            vb.decodeBER(cursor);
+            count++;
+        }
+        variableBindings.setSize(count);
+        if (cursor.getPosition() - startPos != vbLength) {
+            throw new IOException("Length of VB sequence (" + vbLength +
+                    ") does not match real length: " +
+                    (cursor.getPosition() - startPos));
+        }
+        if (BER.isCheckSequenceLength()) {
+            BER.checkSequenceLength(length,
+                    cursor.getPosition() - pduStartPos,
+                    this);
+        }
+    }
+
     protected int getBERPayloadLengthPDU() {
         int length = 0;
 
@@ -536,6 +611,33 @@ public class PDU implements BERSerializable, Serializable {
         }
     }
 
+    /**
+     * Encodes this PDU backwards with a <code>BERReverseEncoder</code>. Each
+     * variable binding is visited once and no BER lengths are computed in
+     * advance. The encoding is identical to {@link #encodeBER(OutputStream)}.
+     *
+     * @param encoder a <code>BERReverseEncoder</code>.
+     * @throws IOException if the PDU could not be encoded.
+     * @since 1.9
+     */
+    public void encodeBER(BERReverseEncoder encoder) throws IOException {
+        int end = encoder.length();
+        encodeVariableBindings(encoder);
+        errorIndex.encodeBER(encoder);
+        errorStatus.encodeBER(encoder);
+        requestID.encodeBER(encoder);
+        encoder.encodeHeader(type, encoder.length() - end);
+    }
+
+    protected void encodeVariableBindings(BERReverseEncoder encoder)
+            throws IOException {
+        int end = encoder.length();
+        for (int i = variableBindings.size() - 1; i >= 0; i--) {
+            ((VariableBinding) variableBindings.get(i)).encodeBER(encoder);
+        }
+        encoder.encodeHeader(BER.SEQUENCE, encoder.length() - end);
+    }
+
     /**
      * Removes all variable bindings from the PDU and sets the request ID to zero.
      * This can be used to reuse a PDU for another request.
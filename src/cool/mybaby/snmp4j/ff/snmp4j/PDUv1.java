@@ -22,12 +22,15 @@ package cool.mybaby.snmp4j.ff.snmp4j;
 
 import cool.mybaby.snmp4j.ff.snmp4j.asn1.BER;
 import cool.mybaby.snmp4j.ff.snmp4j.asn1.BER.MutableByte;
+import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERCursor;
 import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERInputStream;
+import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERReverseEncoder;
 import cool.mybaby.snmp4j.ff.snmp4j.mp.SnmpConstants;
 import cool.mybaby.snmp4j.ff.snmp4j.smi.*;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.Vector;
 
 // for JavaDoc
@@ -182,6 +185,20 @@ public class PDUv1 extends PDU {
         }
     }
 
+    /**
+     * Decodes a SNMPv1 PDU from a <code>BERCursor</code> by using
+     * {@link #decodeBER(BERInputStream)} on the remaining bytes of the cursor.
+     *
+     * @param cursor a <code>BERCursor</code> positioned at the PDU.
+     * @throws IOException if the PDU could not be decoded.
+     * @since 1.9
+     */
+    public void decodeBER(BERCursor cursor) throws IOException {
+        ByteBuffer remaining = cursor.getRemaining();
+        decodeBER(new BERInputStream(remaining));
+        cursor.setPosition(remaining.position());
+    }
+
     /**
      * Encodes a <code>Variable</code> to an <code>OutputStream</code>.
      *
@@ -216,6 +233,36 @@ public class PDUv1 extends PDU {
         }
     }
 
+    /**
+     * Encodes this PDU backwards with a <code>BERReverseEncoder</code>.
+     *
+     * @param encoder a <code>BERReverseEncoder</code>.
+     * @throws IOException if the PDU contains a <code>Counter64</code> value.
+     * @since 1.9
+     */
+    public void encodeBER(BERReverseEncoder encoder) throws IOException {
+        for (int i = 0; i < variableBindings.size(); i++) {
+            VariableBinding vb = (VariableBinding) variableBindings.get(i);
+            if (vb.getVariable() instanceof Counter64) {
+                throw new IOException("Cannot encode Counter64 into a SNMPv1 PDU");
+            }
+        }
+        int end = encoder.length();
+        encodeVariableBindings(encoder);
+        if (type == PDU.V1TRAP) {
+            timestamp.encodeBER(encoder);
+            specificTrap.encodeBER(encoder);
+            genericTrap.encodeBER(encoder);
+            agentAddress.encodeBER(encoder);
+            enterprise.encodeBER(encoder);
+        } else {
+            errorIndex.encodeBER(encoder);
+            errorStatus.encodeBER(encoder);
+            requestID.encodeBER(encoder);
+        }
+        encoder.encodeHeader(type, encoder.length() - end);
+    }
+
     protected int getBERPayloadLengthPDU() {
         if (getType() != PDU.V1TRAP) {
             return super.getBERPayloadLengthPDU();
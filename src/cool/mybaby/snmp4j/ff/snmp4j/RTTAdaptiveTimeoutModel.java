@@ -0,0 +1,214 @@
+/*_############################################################################
+  _##
+  _##  SNMP4J - RTTAdaptiveTimeoutModel.java
+  _##
+  _##  Copyright 2003-2007  Frank Fock and Jochen Katz (SNMP4J.org)
+  _##
+  _##  Licensed under the Apache License, Version 2.0 (the "License");
+  _##  you may not use this file except in compliance with the License.
+  _##  You may obtain a copy of the License at
+  _##
+  _##      http://www.apache.org/licenses/LICENSE-2.0
+  _##
+  _##  Unless required by applicable law or agreed to in writing, software
+  _##  distributed under the License is distributed on an "AS IS" BASIS,
+  _##  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  _##  See the License for the specific language governing permissions and
+  _##  limitations under the License.
+  _##
+  _##########################################################################*/
+
+package cool.mybaby.snmp4j.ff.snmp4j;
+
+import cool.mybaby.snmp4j.ff.snmp4j.smi.Address;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The <code>RTTAdaptiveTimeoutModel</code> estimates the retransmission
+ * timeout of each target address from the observed round trip times, as
+ * TCP does (Jacobson/Karels, RFC 6298).
+ * <p>
+ * For every address a smoothed round trip time <code>SRTT</code> and its
+ * mean deviation <code>RTTVAR</code> are maintained. The first sample
+ * <code>R</code> sets <code>SRTT = R</code> and <code>RTTVAR = R/2</code>,
+ * each further sample updates
+ * <code>RTTVAR = 3/4 RTTVAR + 1/4 |SRTT - R|</code> and
+ * <code>SRTT = 7/8 SRTT + 1/8 R</code>. The timeout of the first try is
+ * <code>SRTT + max(minTimeout, 4 RTTVAR)</code> and each retry doubles the
+ * timeout of its predecessor. All timeouts are bounded by
+ * <code>minTimeout</code> and <code>maxTimeout</code>. A final timeout
+ * doubles the timeout of the address until the next response is received.
+ * <p>
+ * Addresses without samples use the timeout of the target. The address
+ * independent methods of <code>TimeoutModel</code> cannot consult an
+ * estimate and thus always use the timeout of the target. The estimates
+ * are kept for at most <code>maxEntries</code> addresses; the least recently
+ * used address is evicted first.
+ *
+ * @version 1.9
+ * @since 1.9
+ */
+public class RTTAdaptiveTimeoutModel implements AdaptiveTimeoutModel {
+
+    public static final long DEFAULT_MIN_TIMEOUT = 100;
+    public static final long DEFAULT_MAX_TIMEOUT = 60000;
+    public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+    private final long minTimeout;
+    private final long maxTimeout;
+    private final int maxEntries;
+
+    private final LinkedHashMap estimates;
+
+    /**
+     * Creates an adaptive timeout model with default bounds.
+     */
+    public RTTAdaptiveTimeoutModel() {
+        this(DEFAULT_MIN_TIMEOUT, DEFAULT_MAX_TIMEOUT, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Creates an adaptive timeout model.
+     *
+     * @param minTimeout the minimum timeout of a (re)try in milliseconds.
+     * @param maxTimeout the maximum timeout of a (re)try in milliseconds.
+     * @param maxEntries the maximum number of addresses whose round trip time estimates are
+     *                   kept.
+     */
+    public RTTAdaptiveTimeoutModel(long minTimeout, long maxTimeout,
+                                   final int maxEntries) {
+        if ((minTimeout <= 0) || (maxTimeout < minTimeout) || (maxEntries <= 0)) {
+            throw new IllegalArgumentException("Invalid timeout bounds or table size");
+        }
+        this.minTimeout = minTimeout;
+        this.maxTimeout = maxTimeout;
+        this.maxEntries = maxEntries;
+        this.estimates = new LinkedHashMap(Math.min(maxEntries, 256), 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public long getMinTimeout() {
+        return minTimeout;
+    }
+
+    public long getMaxTimeout() {
+        return maxTimeout;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public long getRetryTimeout(int retryCount,
+                                int totalNumberOfRetries, long targetTimeout) {
+        return targetTimeout;
+    }
+
+    public long getRequestTimeout(int totalNumberOfRetries, long targetTimeout) {
+        return (totalNumberOfRetries + 1) * targetTimeout;
+    }
+
+    public long getRetryTimeout(Address address, int retryCount,
+                                int totalNumberOfRetries, long targetTimeout) {
+        long timeout;
+        synchronized (estimates) {
+            Estimate estimate = (Estimate) estimates.get(address);
+            if (estimate == null) {
+                return targetTimeout;
+            }
+            timeout = estimate.rto;
+        }
+        for (int i = 0; (i < retryCount) && (timeout < maxTimeout); i++) {
+            timeout <<= 1;
+        }
+        return Math.min(timeout, maxTimeout);
+    }
+
+    public long getRequestTimeout(Address address, int totalNumberOfRetries,
+                                  long targetTimeout) {
+        long timeout = 0;
+        for (int i = 0; i <= totalNumberOfRetries; i++) {
+            timeout += getRetryTimeout(address, i, totalNumberOfRetries,
+                    targetTimeout);
+        }
+        return timeout;
+    }
+
+    public void responseReceived(Address address, long roundTripTime) {
+        if (roundTripTime < 0) {
+            return;
+        }
+        synchronized (estimates) {
+            Estimate estimate = (Estimate) estimates.get(address);
+            if (estimate == null) {
+                estimate = new Estimate();
+                estimate.srtt = roundTripTime;
+                estimate.rttvar = roundTripTime / 2.0d;
+                estimates.put(address, estimate);
+            } else {
+                estimate.rttvar = 0.75d * estimate.rttvar +
+                        0.25d * Math.abs(estimate.srtt - roundTripTime);
+                estimate.srtt = 0.875d * estimate.srtt + 0.125d * roundTripTime;
+            }
+            long rto = (long) Math.ceil(estimate.srtt +
+                    Math.max(minTimeout, 4.0d * estimate.rttvar));
+            estimate.rto = Math.max(minTimeout, Math.min(maxTimeout, rto));
+        }
+    }
+
+    public void requestTimedOut(Address address) {
+        synchronized (estimates) {
+            Estimate estimate = (Estimate) estimates.get(address);
+            if (estimate != null) {
+                estimate.rto = Math.min(maxTimeout, estimate.rto << 1);
+            }
+        }
+    }
+
+    /**
+     * Gets the smoothed round trip time of the supplied address.
+     *
+     * @param address a target address.
+     * @return the smoothed round trip time in milliseconds or <code>-1</code>
+     * if no response has been received from <code>address</code> yet.
+     */
+    public long getSmoothedRoundTripTime(Address address) {
+        synchronized (estimates) {
+            Estimate estimate = (Estimate) estimates.get(address);
+            return (estimate == null) ? -1 : Math.round(estimate.srtt);
+        }
+    }
+
+    /**
+     * Removes the estimate of the supplied address.
+     *
+     * @param address a target address.
+     */
+    public void remove(Address address) {
+        synchronized (estimates) {
+            estimates.remove(address);
+        }
+    }
+
+    /**
+     * Gets the number of addresses with a round trip time estimate.
+     *
+     * @return the size of the estimates table.
+     */
+    public int size() {
+        synchronized (estimates) {
+            return estimates.size();
+        }
+    }
+
+    static class Estimate {
+        double srtt;
+        double rttvar;
+        long rto;
+    }
+}
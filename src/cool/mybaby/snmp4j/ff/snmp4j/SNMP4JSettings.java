@@ -20,6 +20,9 @@
 
 package cool.mybaby.snmp4j.ff.snmp4j;
 
+import cool.mybaby.snmp4j.ff.snmp4j.util.DefaultTimerFactory;
+import cool.mybaby.snmp4j.ff.snmp4j.util.TimerFactory;
+
 /**
  * The <code>SNMP4JSettings</code> class implements a central configuration
  * class of the SNMP4J framework. As a rule of thumb, changes to the default
@@ -27,7 +30,7 @@ package cool.mybaby.snmp4j.ff.snmp4j;
  * instantiated or referenced by the application code.
  *
  * @author Frank Fock
- * @version 1.8.1
+ * @version 1.9
  * @since 1.5
  */
 public final class SNMP4JSettings {
@@ -57,6 +60,15 @@ public final class SNMP4JSettings {
      */
     private static volatile boolean forwardRuntimeExceptions = false;
 
+    /**
+     * The timer factory used to create the timers that schedule request
+     * retries and timeouts in {@link Snmp}. By default a
+     * {@link DefaultTimerFactory} is used, which creates hashed wheel timers.
+     *
+     * @since 1.9
+     */
+    private static TimerFactory timerFactory = new DefaultTimerFactory();
+
     /**
      * Enables (or disables) the extensibility feature of SNMP4J. When enabled,
      * SNMP4J checks certain properties files that describe which transport
@@ -110,4 +122,31 @@ public final class SNMP4JSettings {
     public final static boolean isFowardRuntimeExceptions() {
         return forwardRuntimeExceptions;
     }
+
+    /**
+     * Gets the timer factory used to create the retry timers of new
+     * {@link Snmp} sessions.
+     *
+     * @return a <code>TimerFactory</code> instance (never <code>null</code>).
+     * @since 1.9
+     */
+    public static TimerFactory getTimerFactory() {
+        return timerFactory;
+    }
+
+    /**
+     * Sets the timer factory used to create the retry timers of {@link Snmp}
+     * sessions. Sessions created before this call keep their timer. To restore
+     * the <code>java.util.Timer</code> based scheduling of earlier versions
+     * use a {@link cool.mybaby.snmp4j.ff.snmp4j.util.JavaTimerFactory}.
+     *
+     * @param newTimerFactory a <code>TimerFactory</code> instance (must not be <code>null</code>).
+     * @since 1.9
+     */
+    public static void setTimerFactory(TimerFactory newTimerFactory) {
+        if (newTimerFactory == null) {
+            throw new NullPointerException("Timer factory cannot be null");
+        }
+        timerFactory = newTimerFactory;
+    }
 }
@@ -22,7 +22,9 @@ package cool.mybaby.snmp4j.ff.snmp4j;
 
 import cool.mybaby.snmp4j.ff.snmp4j.asn1.BER;
 import cool.mybaby.snmp4j.ff.snmp4j.asn1.BER.MutableByte;
+import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERCursor;
 import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERInputStream;
+import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERReverseEncoder;
 import cool.mybaby.snmp4j.ff.snmp4j.smi.OctetString;
 
 import java.io.IOException;
@@ -124,6 +126,14 @@ public class ScopedPDU extends PDU {
         super.encodeBER(outputStream);
     }
 
+    public void encodeBER(BERReverseEncoder encoder) throws IOException {
+        int end = encoder.length();
+        super.encodeBER(encoder);
+        contextName.encodeBER(encoder);
+        contextEngineID.encodeBER(encoder);
+        encoder.encodeHeader(BER.SEQUENCE, encoder.length() - end);
+    }
+
 
     public Object clone() {
         return new ScopedPDU(this);
@@ -150,6 +160,17 @@ public class ScopedPDU extends PDU {
         }
     }
 
+    public void decodeBER(BERCursor cursor) throws IOException {
+        int length = cursor.decodeHeader();
+        int startPos = cursor.getPosition();
+        contextEngineID.decodeBER(cursor);
+        contextName.decodeBER(cursor);
+        super.decodeBER(cursor);
+        if (BER.isCheckSequenceLength()) {
+            BER.checkSequenceLength(length, cursor.getPosition() - startPos, this);
+        }
+    }
+
     /**
      * Returns a string representation of the object.
      *
@@ -25,13 +25,15 @@ import cool.mybaby.snmp4j.ff.snmp4j.event.ResponseEvent;
 import cool.mybaby.snmp4j.ff.snmp4j.event.ResponseListener;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 /**
  * <code>Session</code> defines a common interface for all classes that
  * implement SNMP protocol operations based on SNMP4J.
  *
  * @author Frank Fock
- * @version 1.1
+ * @version 1.9
  */
 public interface Session {
 
@@ -131,6 +133,87 @@ public interface Session {
                      Object userHandle,
                      ResponseListener listener) throws IOException;
 
+    /**
+     * Asynchronously sends a <code>PDU</code> to the given target and returns
+     * a <code>CompletionStage</code> that is completed with the response
+     * event. No thread is blocked while the request is outstanding.
+     *
+     * @param pdu    the PDU instance to send.
+     * @param target the Target instance representing the target SNMP engine where to send
+     *               the <code>pdu</code>.
+     * @return a <code>CompletionStage</code> that completes with the received
+     * response encapsulated in a <code>ResponseEvent</code>. If the request
+     * timed out, {@link ResponseEvent#getResponse()} returns <code>null</code>.
+     * If the sent <code>pdu</code> is an unconfirmed PDU, the stage completes
+     * with <code>null</code> as soon as the PDU has been sent.
+     * <p>
+     * Transport errors always complete the stage exceptionally with the
+     * <code>IOException</code>: if the first message, a message deferred by a
+     * request limiter or a retry could not be sent, and if the target has
+     * been reported unreachable. The stage never completes with a
+     * <code>ResponseEvent</code> whose {@link ResponseEvent#getError()} is
+     * an <code>IOException</code>.
+     * @since 1.9
+     */
+    public default CompletionStage<ResponseEvent> sendAsync(PDU pdu, Target target) {
+        return sendAsync(pdu, target, null);
+    }
+
+    /**
+     * Asynchronously sends a <code>PDU</code> to the given target using the
+     * specified transport mapping and returns a <code>CompletionStage</code>
+     * that is completed with the response event.
+     * <p>
+     * The default implementation adapts {@link #send(PDU pdu, Target target,
+     * TransportMapping transport, Object userHandle, ResponseListener listener)}
+     * to a <code>CompletableFuture</code> that cancels the request when it
+     * completes or is cancelled.
+     *
+     * @param pdu       the PDU instance to send.
+     * @param target    the Target instance representing the target SNMP engine where to send
+     *                  the <code>pdu</code>.
+     * @param transport specifies the <code>TransportMapping</code> to be used when sending
+     *                  the PDU. If <code>transport</code> is <code>null</code>, the associated
+     *                  message dispatcher will try to determine the transport mapping by the
+     *                  <code>target</code>'s address.
+     * @return a <code>CompletionStage</code> as described for
+     * {@link #sendAsync(PDU pdu, Target target)}.
+     * @since 1.9
+     */
+    public default CompletionStage<ResponseEvent> sendAsync(final PDU pdu,
+                                                            Target target,
+                                                            TransportMapping transport) {
+        final Session session = this;
+        class ListenerFuture extends CompletableFuture<ResponseEvent>
+                implements ResponseListener {
+
+            public void onResponse(ResponseEvent event) {
+                session.cancel(pdu, this);
+                if (event.getError() instanceof IOException) {
+                    // the request could not be sent, as if send had failed
+                    completeExceptionally(event.getError());
+                } else {
+                    complete(event);
+                }
+            }
+
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                session.cancel(pdu, this);
+                return super.cancel(mayInterruptIfRunning);
+            }
+        }
+        ListenerFuture future = new ListenerFuture();
+        try {
+            send(pdu, target, transport, null, future);
+            if (!pdu.isConfirmedPdu()) {
+                future.complete(null);
+            }
+        } catch (IOException ex) {
+            future.completeExceptionally(ex);
+        }
+        return future;
+    }
+
 
     /**
      * Cancels an asynchronous request. Any asynchronous request must be canceled
@@ -28,10 +28,20 @@ import cool.mybaby.snmp4j.ff.snmp4j.mp.*;
 import cool.mybaby.snmp4j.ff.snmp4j.security.*;
 import cool.mybaby.snmp4j.ff.snmp4j.smi.*;
 import cool.mybaby.snmp4j.ff.snmp4j.transport.ConnectionOrientedTransportMapping;
+import cool.mybaby.snmp4j.ff.snmp4j.transport.SendQueueFullException;
 import cool.mybaby.snmp4j.ff.snmp4j.transport.TransportMappings;
+import cool.mybaby.snmp4j.ff.snmp4j.transport.TransportStateEvent;
+import cool.mybaby.snmp4j.ff.snmp4j.transport.TransportStateListener;
+import cool.mybaby.snmp4j.ff.snmp4j.transport.UdpTransportMapping;
+import cool.mybaby.snmp4j.ff.snmp4j.util.CommonTimer;
+import cool.mybaby.snmp4j.ff.snmp4j.util.RequestLimiter;
+import cool.mybaby.snmp4j.ff.snmp4j.util.StripedIntHashMap;
+import cool.mybaby.snmp4j.ff.snmp4j.util.TimeoutHandle;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 /**
  * The <code>Snmp</code> class is the core of SNMP4J. It provides functions to
@@ -146,18 +156,13 @@ public class Snmp implements Session, CommandResponder {
 
     /**
      * The <code>pendingRequests</code> table contains pending requests
-     * accessed trough the key <code>PduHandle</code>
+     * accessed trough the transaction ID of their <code>PduHandle</code>,
+     * which is also the request ID of the request PDU.
      */
-    private Hashtable pendingRequests = new Hashtable(50);
-
-    /**
-     * The <code>asyncRequests</code> table contains pending requests
-     * accessed trough the key userObject
-     */
-    private Hashtable asyncRequests = new Hashtable(50);
+    private StripedIntHashMap pendingRequests = new StripedIntHashMap(50);
 
     // Timer for retrying pending requests
-    private Timer timer = new Timer(true);
+    private CommonTimer timer = SNMP4JSettings.getTimerFactory().createTimer();
 
     // Listeners for request and trap PDUs
     private transient Vector commandResponderListeners;
@@ -170,6 +175,21 @@ public class Snmp implements Session, CommandResponder {
     // Default ReportHandler
     private ReportHandler reportHandler = new ReportProcessor();
 
+    // Limits outstanding requests - not used by default
+    private volatile RequestLimiter requestLimiter = null;
+    // lists of requests queued by the request limiter by QueueKey
+    private final Map queuedRequests = new HashMap();
+
+    // Single-flight mode: in-flight requests by RequestKey and requests
+    // attached to them by request PDU (identity)
+    private volatile boolean singleFlight = false;
+    private final Map inFlightRequests = new HashMap();
+    private final Map attachedRequests = new IdentityHashMap();
+
+    // Fails the pending requests to peers reported unreachable by a transport
+    private final TransportStateListener unreachablePeerHandler =
+            new UnreachablePeerHandler();
+
     /**
      * Creates a <code>Snmp</code> instance that uses a
      * <code>MessageDispatcherImpl</code> with no message processing
@@ -285,6 +305,10 @@ public class Snmp implements Session, CommandResponder {
         // connect transport mapping with message dispatcher
         messageDispatcher.addTransportMapping(transportMapping);
         transportMapping.addTransportListener(messageDispatcher);
+        if (transportMapping instanceof UdpTransportMapping) {
+            ((UdpTransportMapping) transportMapping).addTransportStateListener(
+                    unreachablePeerHandler);
+        }
     }
 
     /**
@@ -297,6 +321,10 @@ public class Snmp implements Session, CommandResponder {
     public void removeTransportMapping(TransportMapping transportMapping) {
         messageDispatcher.removeTransportMapping(transportMapping);
         transportMapping.removeTransportListener(messageDispatcher);
+        if (transportMapping instanceof UdpTransportMapping) {
+            ((UdpTransportMapping) transportMapping).removeTransportStateListener(
+                    unreachablePeerHandler);
+        }
     }
 
     /**
@@ -416,13 +444,29 @@ public class Snmp implements Session, CommandResponder {
             ((TransportMapping) it.next()).close();
         }
         timer.cancel();
+        RequestLimiter limiter = requestLimiter;
+        if (limiter != null) {
+            List cleared = limiter.clearQueue();
+            synchronized (queuedRequests) {
+                queuedRequests.clear();
+            }
+            for (Iterator it = cleared.iterator(); it.hasNext(); ) {
+                PendingRequest queued = ((DeferredRequest) it.next()).request;
+                queued.setFinished();
+                InterruptedException closed =
+                        new InterruptedException("Snmp session has been closed");
+                List followers = queued.detachFollowers();
+                queued.notifyListener(null, null, closed);
+                queued.notifyFollowers(followers, null, null, closed);
+            }
+        }
         for (Iterator it = pendingRequests.values().iterator(); it.hasNext(); ) {
             PendingRequest pending = (PendingRequest) it.next();
-            ResponseEvent e =
-                    new ResponseEvent(this, null, pending.pdu, null, pending.userObject,
-                            new InterruptedException(
-                                    "Snmp session has been closed"));
-            pending.listener.onResponse(e);
+            InterruptedException closed =
+                    new InterruptedException("Snmp session has been closed");
+            List followers = pending.detachFollowers();
+            pending.notifyListener(null, null, closed);
+            pending.notifyFollowers(followers, null, null, closed);
         }
         // close all notification listeners
         if (notificationDispatcher != null) {
@@ -473,6 +517,23 @@ public class Snmp implements Session, CommandResponder {
         send(pdu, target, userHandle, listener);
     }
 
+    /**
+     * Asynchronously sends a GET request <code>PDU</code> to the given target.
+     * This method sets the PDU's type to {@link PDU#GET} and then calls
+     * {@link #sendAsync(PDU pdu, Target target)}.
+     *
+     * @param pdu    the PDU instance to send.
+     * @param target the Target instance representing the target SNMP engine where to send
+     *               the <code>pdu</code>.
+     * @return a <code>CompletionStage</code> that completes with the received
+     * response encapsulated in a <code>ResponseEvent</code>.
+     * @since 1.9
+     */
+    public CompletionStage<ResponseEvent> getAsync(PDU pdu, Target target) {
+        pdu.setType(PDU.GET);
+        return sendAsync(pdu, target);
+    }
+
     /**
      * Sends a GETNEXT request to a target. This method sets the PDU's type to
      * {@link PDU#GETNEXT} and then sends a synchronous request to the supplied
@@ -517,6 +578,23 @@ public class Snmp implements Session, CommandResponder {
         send(pdu, target, userHandle, listener);
     }
 
+    /**
+     * Asynchronously sends a GETNEXT request <code>PDU</code> to the given target.
+     * This method sets the PDU's type to {@link PDU#GETNEXT} and then calls
+     * {@link #sendAsync(PDU pdu, Target target)}.
+     *
+     * @param pdu    the PDU instance to send.
+     * @param target the Target instance representing the target SNMP engine where to send
+     *               the <code>pdu</code>.
+     * @return a <code>CompletionStage</code> that completes with the received
+     * response encapsulated in a <code>ResponseEvent</code>.
+     * @since 1.9
+     */
+    public CompletionStage<ResponseEvent> getNextAsync(PDU pdu, Target target) {
+        pdu.setType(PDU.GETNEXT);
+        return sendAsync(pdu, target);
+    }
+
     /**
      * Sends a GETBULK request to a target. This method sets the PDU's type to
      * {@link PDU#GETBULK} and then sends a synchronous request to the supplied
@@ -561,6 +639,23 @@ public class Snmp implements Session, CommandResponder {
         send(pdu, target, userHandle, listener);
     }
 
+    /**
+     * Asynchronously sends a GETBULK request <code>PDU</code> to the given target.
+     * This method sets the PDU's type to {@link PDU#GETBULK} and then calls
+     * {@link #sendAsync(PDU pdu, Target target)}.
+     *
+     * @param pdu    the PDU instance to send.
+     * @param target the Target instance representing the target SNMP engine where to send
+     *               the <code>pdu</code>.
+     * @return a <code>CompletionStage</code> that completes with the received
+     * response encapsulated in a <code>ResponseEvent</code>.
+     * @since 1.9
+     */
+    public CompletionStage<ResponseEvent> getBulkAsync(PDU pdu, Target target) {
+        pdu.setType(PDU.GETBULK);
+        return sendAsync(pdu, target);
+    }
+
     /**
      * Sends an INFORM request to a target. This method sets the PDU's type to
      * {@link PDU#INFORM} and then sends a synchronous request to the supplied
@@ -605,6 +700,23 @@ public class Snmp implements Session, CommandResponder {
         send(pdu, target, userHandle, listener);
     }
 
+    /**
+     * Asynchronously sends a INFORM request <code>PDU</code> to the given target.
+     * This method sets the PDU's type to {@link PDU#INFORM} and then calls
+     * {@link #sendAsync(PDU pdu, Target target)}.
+     *
+     * @param pdu    the PDU instance to send.
+     * @param target the Target instance representing the target SNMP engine where to send
+     *               the <code>pdu</code>.
+     * @return a <code>CompletionStage</code> that completes with the received
+     * response encapsulated in a <code>ResponseEvent</code>.
+     * @since 1.9
+     */
+    public CompletionStage<ResponseEvent> informAsync(PDU pdu, Target target) {
+        pdu.setType(PDU.INFORM);
+        return sendAsync(pdu, target);
+    }
+
     /**
      * Sends a SNMPv1 trap to a target. This method sets the PDU's type to
      * {@link PDU#V1TRAP} and then sends it to the supplied target. This method
@@ -697,6 +809,23 @@ public class Snmp implements Session, CommandResponder {
         send(pdu, target, userHandle, listener);
     }
 
+    /**
+     * Asynchronously sends a SET request <code>PDU</code> to the given target.
+     * This method sets the PDU's type to {@link PDU#SET} and then calls
+     * {@link #sendAsync(PDU pdu, Target target)}.
+     *
+     * @param pdu    the PDU instance to send.
+     * @param target the Target instance representing the target SNMP engine where to send
+     *               the <code>pdu</code>.
+     * @return a <code>CompletionStage</code> that completes with the received
+     * response encapsulated in a <code>ResponseEvent</code>.
+     * @since 1.9
+     */
+    public CompletionStage<ResponseEvent> setAsync(PDU pdu, Target target) {
+        pdu.setType(PDU.SET);
+        return sendAsync(pdu, target);
+    }
+
     public ResponseEvent send(PDU pdu, Target target) throws IOException {
         return send(pdu, target, null);
     }
@@ -734,31 +863,36 @@ public class Snmp implements Session, CommandResponder {
             return null;
         }
         SyncResponseListener syncResponse = new SyncResponseListener();
-        PendingRequest retryRequest = null;
+        PendingRequest request =
+                new PendingRequest(syncResponse, target, pdu, target, transport);
         synchronized (syncResponse) {
-            PduHandle handle = null;
-            PendingRequest request =
-                    new PendingRequest(syncResponse, target, pdu, target, transport);
-            handle = sendMessage(pdu, target, transport, request);
+            sendRequest(request);
             try {
                 syncResponse.wait();
-                retryRequest = (PendingRequest) pendingRequests.remove(handle);
-                if (logger.isDebugEnabled()) {
-                    logger.debug("Removed pending request with handle: " + handle);
-                }
-                request.setFinished();
-                request.cancel();
             } catch (InterruptedException iex) {
                 logger.warn(iex);
                 // ignore
             }
         }
-        if (retryRequest != null) {
-            synchronized (retryRequest) {
-                retryRequest.setFinished();
-                retryRequest.cancel();
+        synchronized (request) {
+            if (request.detachListener()) {
+                // other callers wait for the response of this request
+                return syncResponse.response;
             }
+            // retries reuse the request, thus its handle is the current one
+            PduHandle handle = request.key;
+            if (handle != null) {
+                pendingRequests.remove(handle.getTransactionID(), request);
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Removed pending request with handle: " + handle);
+                }
+            }
+            request.setFinished();
+            request.cancel();
         }
+        // requests attached meanwhile are not answered anymore
+        request.notifyFollowers(request.detachFollowers(), null, null, null);
+        request.releaseWindow();
         return syncResponse.response;
     }
 
@@ -777,8 +911,30 @@ public class Snmp implements Session, CommandResponder {
             return;
         }
         PendingRequest request =
-                new AsyncPendingRequest(listener, userHandle, pdu, target, transport);
-        sendMessage(pdu, target, transport, request);
+                new PendingRequest(listener, userHandle, pdu, target, transport);
+        sendRequest(request);
+    }
+
+    public CompletionStage<ResponseEvent> sendAsync(PDU pdu, Target target) {
+        return sendAsync(pdu, target, null);
+    }
+
+    public CompletionStage<ResponseEvent> sendAsync(PDU pdu, Target target,
+                                                    TransportMapping transport) {
+        ResponseFuture future = new ResponseFuture(pdu);
+        try {
+            if (!pdu.isConfirmedPdu()) {
+                sendMessage(pdu, target, transport, null);
+                future.complete(null);
+            } else {
+                PendingRequest request =
+                        new PendingRequest(future, target, pdu, target, transport);
+                sendRequest(request);
+            }
+        } catch (IOException ex) {
+            future.completeExceptionally(ex);
+        }
+        return future;
     }
 
     /**
@@ -888,19 +1044,222 @@ public class Snmp implements Session, CommandResponder {
         return handle;
     }
 
+    /**
+     * Sends the first message of a confirmed request. If a request limiter is
+     * set and the request does not fit into its windows, the request is queued
+     * and sent by the thread that releases the next window slot.
+     *
+     * @param request the pending request to send.
+     * @return the handle of the sent request or <code>null</code> if the
+     * request has been queued.
+     * @throws IOException if the message could not be sent.
+     */
+    private PduHandle sendRequest(PendingRequest request) throws IOException {
+        if (singleFlight && isIdempotentRequest(request.pdu)) {
+            RequestKey flightKey =
+                    new RequestKey(request.pdu, request.target, request.transport);
+            synchronized (inFlightRequests) {
+                PendingRequest leader = (PendingRequest) inFlightRequests.get(flightKey);
+                if (leader != null) {
+                    if (leader.followers == null) {
+                        leader.followers = new LinkedList();
+                    }
+                    leader.followers.add(request);
+                    request.leader = leader;
+                    attachedRequests.put(request.pdu, request);
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("Attached request to in-flight request with handle " +
+                                leader.key);
+                    }
+                    return null;
+                }
+                inFlightRequests.put(flightKey, request);
+                request.flightKey = flightKey;
+            }
+        }
+        RequestLimiter limiter = requestLimiter;
+        if (limiter != null) {
+            request.limiter = limiter;
+            DeferredRequest deferred = new DeferredRequest(request);
+            queue(deferred);
+            if (!limiter.acquire(request.target.getAddress(), deferred)) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Queued request to " + request.target.getAddress() +
+                            ", " + limiter);
+                }
+                return null;
+            }
+            dequeue(deferred);
+        }
+        try {
+            return sendMessage(request.pdu, request.target, request.transport, request);
+        } catch (IOException ex) {
+            // the caller receives the exception, thus the listener is not called
+            request.discard();
+            request.releaseWindow();
+            request.notifyFollowers(request.detachFollowers(), null, null, ex);
+            throw ex;
+        }
+    }
+
+    private static boolean isIdempotentRequest(PDU pdu) {
+        switch (pdu.getType()) {
+            case PDU.GET:
+            case PDU.GETNEXT:
+            case PDU.GETBULK:
+                return true;
+            default:
+                return false;
+        }
+    }
+
     public void cancel(PDU request, ResponseListener listener) {
-        AsyncRequestKey key = new AsyncRequestKey(request, listener);
-        PduHandle pending = (PduHandle) asyncRequests.remove(key);
+        // the request ID assigned while sending is the transaction ID of the
+        // pending request's handle
+        int transactionID = request.getRequestID().getValue();
+        PendingRequest pendingRequest =
+                (PendingRequest) pendingRequests.get(transactionID);
         if (logger.isDebugEnabled()) {
-            logger.debug("Cancelling pending request with handle " + pending);
-        }
-        if (pending != null) {
-            PendingRequest pendingRequest =
-                    (PendingRequest) pendingRequests.remove(pending);
-            if (pendingRequest != null) {
-                synchronized (pendingRequest) {
-                    pendingRequest.setFinished();
-                    pendingRequest.cancel();
+            logger.debug("Cancelling pending request with handle " +
+                    ((pendingRequest == null) ? null : pendingRequest.key));
+        }
+        if (cancelQueued(request, listener)) {
+            return;
+        }
+        if ((pendingRequest != null) &&
+                pendingRequest.isRequestOf(request, listener) &&
+                pendingRequest.detachListener()) {
+            // other callers wait for the response of this request
+            return;
+        }
+        if ((pendingRequest == null) || !pendingRequest.isRequestOf(request, listener)) {
+            cancelAttached(request, listener);
+        } else if (pendingRequests.remove(transactionID, pendingRequest)) {
+            synchronized (pendingRequest) {
+                pendingRequest.setFinished();
+                pendingRequest.cancel();
+            }
+            // requests attached meanwhile are not answered anymore
+            pendingRequest.notifyFollowers(pendingRequest.detachFollowers(),
+                    null, null, null);
+            pendingRequest.releaseWindow();
+        }
+    }
+
+    /**
+     * Fails all pending requests to the specified peer immediately. Their
+     * listeners receive a <code>ResponseEvent</code> with a <code>null</code>
+     * response and the supplied error. Requests to the peer that are queued by
+     * the request limiter or attached in single-flight mode are not affected.
+     * <p>
+     * This method is called when a UDP transport mapping reports a peer as
+     * unreachable, see
+     * {@link cool.mybaby.snmp4j.ff.snmp4j.transport.DefaultUdpTransportMapping#addConnectedTarget}.
+     *
+     * @param peerAddress the address of the peer.
+     * @param error       the error reported to the listeners, for example a
+     *                    <code>PortUnreachableException</code>.
+     * @return the number of failed requests.
+     * @since 1.9
+     */
+    public int failPendingRequests(Address peerAddress, Exception error) {
+        if (peerAddress instanceof GenericAddress) {
+            peerAddress = ((GenericAddress) peerAddress).getAddress();
+        }
+        int failed = 0;
+        for (Iterator it = pendingRequests.values().iterator(); it.hasNext(); ) {
+            PendingRequest pending = (PendingRequest) it.next();
+            Address address = pending.target.getAddress();
+            if (address instanceof GenericAddress) {
+                address = ((GenericAddress) address).getAddress();
+            }
+            if (peerAddress.equals(address) && pending.fail(error)) {
+                failed++;
+            }
+        }
+        if ((failed > 0) && logger.isDebugEnabled()) {
+            logger.debug("Failed " + failed + " pending requests to " +
+                    peerAddress + ": " + error);
+        }
+        return failed;
+    }
+
+    /**
+     * Records a request queued by the request limiter, so that it can be
+     * cancelled before it is sent.
+     */
+    private void queue(DeferredRequest deferred) {
+        synchronized (queuedRequests) {
+            List queued = (List) queuedRequests.get(deferred.key);
+            if (queued == null) {
+                queued = new LinkedList();
+                queuedRequests.put(deferred.key, queued);
+            }
+            queued.add(deferred);
+        }
+    }
+
+    private void dequeue(DeferredRequest deferred) {
+        synchronized (queuedRequests) {
+            List queued = (List) queuedRequests.get(deferred.key);
+            if ((queued != null) && queued.remove(deferred) && queued.isEmpty()) {
+                queuedRequests.remove(deferred.key);
+            }
+        }
+    }
+
+    /**
+     * Removes a request from the queue of the request limiter.
+     *
+     * @return <code>true</code> if the request was queued and has been
+     * cancelled or, if other requests are attached to it, detached from its
+     * listener.
+     */
+    private boolean cancelQueued(PDU request, ResponseListener listener) {
+        DeferredRequest deferred;
+        synchronized (queuedRequests) {
+            List queued = (List) queuedRequests.get(new QueueKey(request, listener));
+            if (queued == null) {
+                return false;
+            }
+            // the same PDU and listener may be queued more than once
+            deferred = (DeferredRequest) queued.get(0);
+            dequeue(deferred);
+            if (deferred.request.detachListener()) {
+                // other callers wait for the response of this request
+                return true;
+            }
+        }
+        PendingRequest queued = deferred.request;
+        RequestLimiter limiter;
+        synchronized (queued) {
+            limiter = queued.limiter;
+        }
+        if ((limiter == null) ||
+                !limiter.remove(queued.target.getAddress(), deferred)) {
+            // already started by a releasing thread
+            return false;
+        }
+        synchronized (queued) {
+            // the request never held a window slot
+            queued.limiter = null;
+            queued.setFinished();
+        }
+        queued.notifyFollowers(queued.detachFollowers(), null, null, null);
+        return true;
+    }
+
+    /**
+     * Detaches a request that has been attached to an in-flight request in
+     * single-flight mode.
+     */
+    private void cancelAttached(PDU request, ResponseListener listener) {
+        synchronized (inFlightRequests) {
+            PendingRequest attached = (PendingRequest) attachedRequests.get(request);
+            if ((attached != null) && attached.listener.equals(listener)) {
+                attachedRequests.remove(request);
+                if (attached.leader.followers != null) {
+                    attached.leader.followers.remove(attached);
                 }
             }
         }
@@ -1038,7 +1397,7 @@ public class Snmp implements Session, CommandResponder {
             if (logger.isDebugEnabled()) {
                 logger.debug("Looking up pending request with handle " + handle);
             }
-            request = (PendingRequest) pendingRequests.get(handle);
+            request = (PendingRequest) pendingRequests.get(handle.getTransactionID());
             if (request == null) {
                 if (logger.isWarnEnabled()) {
                     logger.warn("Received response that cannot be matched to any " +
@@ -1053,11 +1412,19 @@ public class Snmp implements Session, CommandResponder {
                         event.getPeerAddress() +
                         ", requestID=" + pdu.getRequestID());
             } else {
-                request.listener.onResponse(new ResponseEvent(this,
-                        event.getPeerAddress(),
-                        request.pdu,
-                        pdu,
-                        request.userObject));
+                request.releaseWindow();
+                request.responseReceived();
+                List followers = request.detachFollowers();
+                if (followers != null) {
+                    // a shared request is finished by its first response
+                    pendingRequests.remove(handle.getTransactionID(), request);
+                    synchronized (request) {
+                        request.setFinished();
+                        request.cancel();
+                    }
+                }
+                request.notifyListener(event.getPeerAddress(), pdu, null);
+                request.notifyFollowers(followers, event.getPeerAddress(), pdu, null);
             }
         } else if (pdu.getType() == PDU.REPORT) {
             event.setProcessed(true);
@@ -1075,7 +1442,8 @@ public class Snmp implements Session, CommandResponder {
         public void processReport(PduHandle handle, CommandResponderEvent e) {
             PDU pdu = e.getPDU();
             logger.debug("Searching pending request with handle" + handle);
-            PendingRequest request = (PendingRequest) pendingRequests.get(handle);
+            PendingRequest request =
+                    (PendingRequest) pendingRequests.get(handle.getTransactionID());
             if (request == null) {
                 logger.warn("Unmatched report PDU received from " + e.getPeerAddress());
                 return;
@@ -1122,6 +1490,11 @@ public class Snmp implements Session, CommandResponder {
                     // make sure reference to handle is hold until request is finished,
                     // because otherwise cache information may get lost (WeakHashMap)
                     request.key = resentHandle;
+                    // the round trip time of the request is measured from
+                    // the resent message
+                    synchronized (request) {
+                        request.sentAt = System.nanoTime();
+                    }
                 } catch (IOException iox) {
                     logger.error("Failed to send message to " + request.target + ": " +
                             iox.getMessage());
@@ -1134,14 +1507,14 @@ public class Snmp implements Session, CommandResponder {
                 }
                 // remove pending request
                 // (sync is not needed as request is already canceled)
-                pendingRequests.remove(handle);
+                pendingRequests.remove(handle.getTransactionID());
+                request.releaseWindow();
                 if (intime) {
-                    // return report
-                    request.listener.onResponse(new ResponseEvent(this,
-                            e.getPeerAddress(),
-                            request.pdu,
-                            pdu,
-                            request.userObject));
+                    // return report to the request and the requests attached to it
+                    request.setFinished();
+                    List followers = request.detachFollowers();
+                    request.notifyListener(e.getPeerAddress(), pdu, null);
+                    request.notifyFollowers(followers, e.getPeerAddress(), pdu, null);
                 } else {
                     // silently drop late report
                     if (logger.isInfoEnabled()) {
@@ -1245,6 +1618,67 @@ public class Snmp implements Session, CommandResponder {
         this.timeoutModel = timeoutModel;
     }
 
+    /**
+     * Gets the request limiter that limits the number of outstanding requests
+     * of this session.
+     *
+     * @return the <code>RequestLimiter</code> or <code>null</code> if the
+     * number of outstanding requests is not limited (default).
+     * @since 1.9
+     */
+    public RequestLimiter getRequestLimiter() {
+        return requestLimiter;
+    }
+
+    /**
+     * Sets the request limiter that limits the number of outstanding requests
+     * of this session globally and per target address. Confirmed requests
+     * exceeding the limits are queued and sent when an outstanding request is
+     * answered, timed out, or cancelled. Retries of an outstanding request do
+     * not need an additional window slot.
+     * <p>
+     * The limiter should be set before requests are sent, because requests
+     * already sent are not accounted by a newly set limiter.
+     *
+     * @param requestLimiter a <code>RequestLimiter</code> or <code>null</code> to not limit
+     *                       outstanding requests.
+     * @since 1.9
+     */
+    public void setRequestLimiter(RequestLimiter requestLimiter) {
+        this.requestLimiter = requestLimiter;
+    }
+
+    /**
+     * Checks whether identical GET, GETNEXT, and GETBULK requests share a
+     * single request while it is in flight.
+     *
+     * @return <code>true</code> if the single-flight mode is enabled.
+     * @since 1.9
+     */
+    public boolean isSingleFlight() {
+        return singleFlight;
+    }
+
+    /**
+     * Enables or disables the single-flight mode. In single-flight mode a
+     * GET, GETNEXT, or GETBULK request that equals a request which is still
+     * pending (same target address, security parameters, transport mapping,
+     * context, PDU type, and variable binding OIDs) is not sent. Instead it is
+     * attached to the pending request and its listener receives the response
+     * (or timeout) of the pending request together with the listener of the
+     * pending request. The timeout and retries of the pending request apply.
+     * <p>
+     * A request with attached requests is finished by its first response.
+     * If it is cancelled before, it keeps running for the attached requests.
+     *
+     * @param singleFlight <code>true</code> to enable the single-flight mode (default is
+     *                     <code>false</code>).
+     * @since 1.9
+     */
+    public void setSingleFlight(boolean singleFlight) {
+        this.singleFlight = singleFlight;
+    }
+
     /**
      * Sets the report handler and overrides the default report handler.
      *
@@ -1259,7 +1693,36 @@ public class Snmp implements Session, CommandResponder {
         this.reportHandler = reportHandler;
     }
 
-    class PendingRequest extends TimerTask implements PduHandleCallback {
+    /**
+     * Fails the pending requests to peers that a transport mapping reports
+     * as unreachable.
+     */
+    class UnreachablePeerHandler implements TransportStateListener {
+
+        public void connectionStateChanged(TransportStateEvent change) {
+            if ((change.getNewState() == TransportStateEvent.STATE_UNREACHABLE) &&
+                    (change.getPeerAddress() != null)) {
+                // the event may be fired by a thread that holds the monitor of
+                // another pending request, thus the requests are failed by the
+                // timer thread
+                final Address peerAddress = change.getPeerAddress();
+                final Exception error = change.getCausingException();
+                try {
+                    timer.schedule(new Runnable() {
+                        public void run() {
+                            failPendingRequests(peerAddress, error);
+                        }
+                    }, 0);
+                } catch (IllegalStateException isex) {
+                    // timer has been cancelled by close()
+                    logger.debug("Pending requests to " + peerAddress +
+                            " not failed: " + isex.getMessage());
+                }
+            }
+        }
+    }
+
+    class PendingRequest implements Runnable, PduHandleCallback {
 
         private PduHandle key;
         protected int retryCount;
@@ -1277,6 +1740,21 @@ public class Snmp implements Session, CommandResponder {
 
         private volatile boolean finished = false;
 
+        // handle of the currently scheduled (re)try timeout
+        private TimeoutHandle timeout;
+
+        // the limiter whose window slot is held by this request (if any)
+        private RequestLimiter limiter;
+
+        // time of the last (re)transmission in nanoseconds
+        private long sentAt;
+
+        // single-flight mode: key of this in-flight request, the requests
+        // attached to it, and the request this request is attached to
+        private RequestKey flightKey;
+        private List followers;
+        private PendingRequest leader;
+        private volatile boolean listenerDetached;
 
         public PendingRequest(ResponseListener listener,
                               Object userObject,
@@ -1291,38 +1769,33 @@ public class Snmp implements Session, CommandResponder {
             this.transport = transport;
         }
 
-        private PendingRequest(PendingRequest other) {
-            this.userObject = other.userObject;
-            this.listener = other.listener;
-            this.retryCount = other.retryCount - 1;
-            this.pdu = other.pdu;
-            this.target = other.target;
-            this.requestStatus = other.requestStatus;
-        }
-
-        protected void registerRequest(PduHandle handle) {
-
-        }
-
         public synchronized void pduHandleAssigned(PduHandle handle, Object pdu) {
-            if (key == null) {
+            // retries reuse this pending request and (normally) its handle
+            if (!handle.equals(key)) {
                 key = handle;
-                pendingRequests.put(handle, this);
-                registerRequest(handle);
-                if (logger.isDebugEnabled()) {
-                    logger.debug("Running pending " +
-                            ((listener instanceof SyncResponseListener) ?
-                                    "sync" : "async") +
-                            " request with handle " + handle +
-                            " and retry count left " + retryCount);
-                }
-                long delay = timeoutModel.getRetryTimeout(target.getRetries() -
+                pendingRequests.put(handle.getTransactionID(), this);
+            }
+            if (logger.isDebugEnabled()) {
+                logger.debug("Running pending " +
+                        ((listener instanceof SyncResponseListener) ?
+                                "sync" : "async") +
+                        " request with handle " + handle +
+                        " and retry count left " + retryCount);
+            }
+            long delay;
+            if (timeoutModel instanceof AdaptiveTimeoutModel) {
+                delay = ((AdaptiveTimeoutModel) timeoutModel).getRetryTimeout(
+                        target.getAddress(), target.getRetries() - retryCount,
+                        target.getRetries(), target.getTimeout());
+            } else {
+                delay = timeoutModel.getRetryTimeout(target.getRetries() -
                                 retryCount,
                         target.getRetries(),
                         target.getTimeout());
-                if (!finished) {
-                    timer.schedule(this, delay);
-                }
+            }
+            sentAt = System.nanoTime();
+            if (!finished) {
+                timeout = timer.schedule(this, delay);
             }
         }
 
@@ -1332,30 +1805,42 @@ public class Snmp implements Session, CommandResponder {
         public synchronized void run() {
             try {
                 if ((!finished) && (retryCount > 0)) {
+                    retryCount--;
                     try {
-                        PendingRequest nextRetry = new PendingRequest(this);
-                        sendMessage(pdu, target, transport, nextRetry);
+                        sendMessage(pdu, target, transport, this);
+                    } catch (SendQueueFullException sqfex) {
+                        // the timeout of this retry has been scheduled when the
+                        // handle was assigned, thus the dropped message is
+                        // handled like a lost one
+                        logger.warn("Dropped retry of SNMP message to " + target +
+                                ": " + sqfex.getMessage());
                     } catch (IOException ex) {
-                        finished = true;
                         logger.error("Failed to send SNMP message to " + target.toString() +
                                 ": " +
                                 ex.getMessage());
-                        messageDispatcher.releaseStateReference(target.getVersion(), key);
-                        listener.onResponse(new ResponseEvent(Snmp.this, null,
-                                pdu, null, userObject,
-                                ex));
+                        discard();
+                        releaseWindow();
+                        List followers = detachFollowers();
+                        notifyListener(null, null, ex);
+                        notifyFollowers(followers, null, null, ex);
                     }
                 } else if (!finished) {
                     finished = true;
-                    pendingRequests.remove(key);
+                    pendingRequests.remove(key.getTransactionID(), this);
 
                     // request timed out
                     if (logger.isDebugEnabled()) {
                         logger.debug("Request timed out: " + key.getTransactionID());
                     }
                     messageDispatcher.releaseStateReference(target.getVersion(), key);
-                    listener.onResponse(new ResponseEvent(Snmp.this, null,
-                            pdu, null, userObject));
+                    releaseWindow();
+                    if (timeoutModel instanceof AdaptiveTimeoutModel) {
+                        ((AdaptiveTimeoutModel) timeoutModel).requestTimedOut(
+                                target.getAddress());
+                    }
+                    List followers = detachFollowers();
+                    notifyListener(null, null, null);
+                    notifyFollowers(followers, null, null, null);
                 }
             } catch (RuntimeException ex) {
                 if (logger.isDebugEnabled()) {
@@ -1374,12 +1859,177 @@ public class Snmp implements Session, CommandResponder {
             }
         }
 
+        /**
+         * Finishes this request with an error before its timeout expires.
+         *
+         * @param error the error reported to the listener.
+         * @return <code>false</code> if the request had already been finished.
+         */
+        boolean fail(Exception error) {
+            List followers;
+            synchronized (this) {
+                if (finished) {
+                    return false;
+                }
+                finished = true;
+                if (timeout != null) {
+                    timeout.cancel();
+                }
+            }
+            if (key != null) {
+                pendingRequests.remove(key.getTransactionID(), this);
+                messageDispatcher.releaseStateReference(target.getVersion(), key);
+            }
+            releaseWindow();
+            followers = detachFollowers();
+            notifyListener(null, null, error);
+            notifyFollowers(followers, null, null, error);
+            return true;
+        }
+
+        /**
+         * Finishes this request after its message could not be sent, without
+         * notifying its listener.
+         */
+        void discard() {
+            synchronized (this) {
+                finished = true;
+                if (timeout != null) {
+                    timeout.cancel();
+                }
+            }
+            if (key != null) {
+                pendingRequests.remove(key.getTransactionID(), this);
+                messageDispatcher.releaseStateReference(target.getVersion(), key);
+            }
+        }
+
         public synchronized boolean setFinished() {
             boolean currentState = finished;
             this.finished = true;
             return currentState;
         }
 
+        /**
+         * Cancels the currently scheduled (re)try timeout of this request.
+         *
+         * @return <code>true</code> if the timeout had not yet expired, thus the
+         * request is still in time.
+         */
+        public synchronized boolean cancel() {
+            return (timeout != null) && timeout.cancel();
+        }
+
+        /**
+         * Keeps this request running without its own listener, if other
+         * requests are attached to it in single-flight mode.
+         *
+         * @return <code>true</code> if the listener has been detached,
+         * <code>false</code> if no other request waits for this request.
+         */
+        boolean detachListener() {
+            synchronized (inFlightRequests) {
+                if ((followers != null) && !followers.isEmpty()) {
+                    listenerDetached = true;
+                    return true;
+                }
+                return false;
+            }
+        }
+
+        /**
+         * Ends the single-flight period of this request, thus no more requests
+         * can be attached to it.
+         *
+         * @return the requests attached to this request or <code>null</code> if
+         * this request was not in-flight in single-flight mode.
+         */
+        List detachFollowers() {
+            synchronized (inFlightRequests) {
+                if (flightKey == null) {
+                    return null;
+                }
+                if (inFlightRequests.get(flightKey) == this) {
+                    inFlightRequests.remove(flightKey);
+                }
+                flightKey = null;
+                List attached = (followers == null) ? new LinkedList() : followers;
+                followers = null;
+                for (Iterator it = attached.iterator(); it.hasNext(); ) {
+                    attachedRequests.remove(((PendingRequest) it.next()).pdu);
+                }
+                return attached;
+            }
+        }
+
+        void notifyListener(Address peerAddress, PDU response, Exception error) {
+            if (!listenerDetached) {
+                listener.onResponse(new ResponseEvent(Snmp.this, peerAddress,
+                        pdu, response, userObject, error));
+            }
+        }
+
+        void notifyFollowers(List followers, Address peerAddress, PDU response,
+                             Exception error) {
+            if (followers == null) {
+                return;
+            }
+            for (Iterator it = followers.iterator(); it.hasNext(); ) {
+                PendingRequest follower = (PendingRequest) it.next();
+                follower.setFinished();
+                follower.notifyListener(peerAddress, response, error);
+            }
+        }
+
+        /**
+         * Reports the round trip time of this request to an adaptive timeout
+         * model. Following Karn's algorithm, responses to retransmitted
+         * requests are not sampled, because they cannot be assigned to a
+         * particular transmission.
+         */
+        void responseReceived() {
+            if (timeoutModel instanceof AdaptiveTimeoutModel) {
+                long roundTripTime;
+                synchronized (this) {
+                    if (retryCount != target.getRetries()) {
+                        return;
+                    }
+                    roundTripTime = (System.nanoTime() - sentAt) / 1000000L;
+                }
+                ((AdaptiveTimeoutModel) timeoutModel).responseReceived(
+                        target.getAddress(), roundTripTime);
+            }
+        }
+
+        /**
+         * Releases the request limiter window slot held by this request. This
+         * method may be called more than once.
+         */
+        void releaseWindow() {
+            RequestLimiter windowLimiter;
+            synchronized (this) {
+                windowLimiter = limiter;
+                limiter = null;
+            }
+            if (windowLimiter != null) {
+                windowLimiter.release(target.getAddress());
+            }
+        }
+
+        /**
+         * Checks whether this pending request has been sent for the supplied
+         * request PDU and response listener.
+         *
+         * @param request  a request PDU.
+         * @param listener a <code>ResponseListener</code>.
+         * @return <code>true</code> if <code>request</code> and <code>listener</code>
+         * equal the PDU and listener of this pending request.
+         */
+        boolean isRequestOf(PDU request, ResponseListener listener) {
+            return ((pdu == request) || pdu.equals(request)) &&
+                    ((this.listener == listener) || this.listener.equals(listener));
+        }
+
         public void setMaxRepuestStatus(int maxRepuestStatus) {
             this.maxRequestStatus = maxRepuestStatus;
         }
@@ -1390,47 +2040,154 @@ public class Snmp implements Session, CommandResponder {
 
     }
 
-    class AsyncPendingRequest extends PendingRequest {
-        public AsyncPendingRequest(ResponseListener listener,
-                                   Object userObject,
-                                   PDU pdu,
-                                   Target target,
-                                   TransportMapping transport) {
-            super(listener, userObject, pdu, target, transport);
+    /**
+     * Identifies requests that are equal with respect to the single-flight
+     * mode.
+     */
+    static class RequestKey {
+
+        private final Address address;
+        private final int version;
+        private final OctetString security;
+        private final int securityModel;
+        private final int securityLevel;
+        private final TransportMapping transport;
+        private final int type;
+        private final int nonRepeaters;
+        private final int maxRepetitions;
+        private final OctetString contextEngineID;
+        private final OctetString contextName;
+        private final OID[] oids;
+        private final int hashCode;
+
+        RequestKey(PDU pdu, Target target, TransportMapping transport) {
+            this.address = target.getAddress();
+            this.version = target.getVersion();
+            if (target instanceof SecureTarget) {
+                SecureTarget secureTarget = (SecureTarget) target;
+                this.security = secureTarget.getSecurityName();
+                this.securityModel = secureTarget.getSecurityModel();
+                this.securityLevel = secureTarget.getSecurityLevel();
+            } else if (target instanceof CommunityTarget) {
+                this.security = ((CommunityTarget) target).getCommunity();
+                this.securityModel = 0;
+                this.securityLevel = 0;
+            } else {
+                this.security = null;
+                this.securityModel = 0;
+                this.securityLevel = 0;
+            }
+            this.transport = transport;
+            this.type = pdu.getType();
+            this.nonRepeaters = (type == PDU.GETBULK) ? pdu.getNonRepeaters() : 0;
+            this.maxRepetitions = (type == PDU.GETBULK) ? pdu.getMaxRepetitions() : 0;
+            if (pdu instanceof ScopedPDU) {
+                this.contextEngineID = ((ScopedPDU) pdu).getContextEngineID();
+                this.contextName = ((ScopedPDU) pdu).getContextName();
+            } else {
+                this.contextEngineID = null;
+                this.contextName = null;
+            }
+            this.oids = new OID[pdu.size()];
+            int hash = type;
+            for (int i = 0; i < oids.length; i++) {
+                oids[i] = (OID) pdu.get(i).getOid().clone();
+                hash = hash * 31 + oids[i].hashCode();
+            }
+            this.hashCode = hash * 31 + ((address == null) ? 0 : address.hashCode());
+        }
+
+        private static boolean equal(Object a, Object b) {
+            return (a == null) ? (b == null) : a.equals(b);
         }
 
-        protected void registerRequest(PduHandle handle) {
-            AsyncRequestKey key = new AsyncRequestKey(super.pdu, super.listener);
-            asyncRequests.put(key, handle);
+        public boolean equals(Object obj) {
+            if (!(obj instanceof RequestKey)) {
+                return false;
+            }
+            RequestKey other = (RequestKey) obj;
+            return (hashCode == other.hashCode) &&
+                    (type == other.type) &&
+                    (version == other.version) &&
+                    (securityModel == other.securityModel) &&
+                    (securityLevel == other.securityLevel) &&
+                    (transport == other.transport) &&
+                    (nonRepeaters == other.nonRepeaters) &&
+                    (maxRepetitions == other.maxRepetitions) &&
+                    Arrays.equals(oids, other.oids) &&
+                    equal(address, other.address) &&
+                    equal(security, other.security) &&
+                    equal(contextEngineID, other.contextEngineID) &&
+                    equal(contextName, other.contextName);
+        }
+
+        public int hashCode() {
+            return hashCode;
         }
     }
 
-    static class AsyncRequestKey {
-        private PDU request;
-        private ResponseListener listener;
+    /**
+     * A request that has been queued by the request limiter and that is sent
+     * when it gets a window slot.
+     */
+    class DeferredRequest implements Runnable {
 
-        public AsyncRequestKey(PDU request, ResponseListener listener) {
+        private PendingRequest request;
+        private QueueKey key;
+
+        DeferredRequest(PendingRequest request) {
             this.request = request;
+            this.key = new QueueKey(request.pdu, request.listener);
+        }
+
+        public void run() {
+            dequeue(this);
+            if (request.finished) {
+                request.releaseWindow();
+                return;
+            }
+            try {
+                sendMessage(request.pdu, request.target, request.transport, request);
+            } catch (IOException ex) {
+                logger.error("Failed to send queued SNMP message to " +
+                        request.target + ": " + ex.getMessage());
+                request.discard();
+                request.releaseWindow();
+                List followers = request.detachFollowers();
+                request.notifyListener(null, null, ex);
+                request.notifyFollowers(followers, null, null, ex);
+            }
+        }
+    }
+
+    /**
+     * Identifies queued requests by their request PDU (identity) and response
+     * listener, as {@link #cancel(PDU request, ResponseListener listener)}
+     * does.
+     */
+    static class QueueKey {
+
+        private final PDU pdu;
+        private final ResponseListener listener;
+
+        QueueKey(PDU pdu, ResponseListener listener) {
+            this.pdu = pdu;
             this.listener = listener;
         }
 
-        /**
-         * Indicates whether some other object is "equal to" this one.
-         *
-         * @param obj the reference object with which to compare.
-         * @return <code>true</code> if this object is the same as the obj argument;
-         * <code>false</code> otherwise.
-         */
         public boolean equals(Object obj) {
-            if (obj instanceof AsyncRequestKey) {
-                AsyncRequestKey other = (AsyncRequestKey) obj;
-                return (request.equals(other.request) && listener.equals(other.listener));
+            if (!(obj instanceof QueueKey)) {
+                return false;
             }
-            return false;
+            QueueKey other = (QueueKey) obj;
+            return (pdu == other.pdu) &&
+                    ((listener == null) ? (other.listener == null) :
+                            listener.equals(other.listener));
         }
 
         public int hashCode() {
-            return request.hashCode();
+            return System.identityHashCode(pdu) * 31 +
+                    ((listener == null) ? 0 : listener.hashCode());
         }
     }
 
@@ -1449,6 +2206,38 @@ public class Snmp implements Session, CommandResponder {
 
     }
 
+    /**
+     * The <code>ResponseFuture</code> is the response listener of requests sent
+     * by {@link #sendAsync(PDU pdu, Target target, TransportMapping transport)}.
+     * It is completed by the thread that dispatches the response (or
+     * processes the timeout) and removes the pending request on completion.
+     * Cancelling the future cancels the pending request.
+     */
+    class ResponseFuture extends CompletableFuture<ResponseEvent>
+            implements ResponseListener {
+
+        private PDU request;
+
+        ResponseFuture(PDU request) {
+            this.request = request;
+        }
+
+        public void onResponse(ResponseEvent event) {
+            Snmp.this.cancel(request, this);
+            if (event.getError() instanceof IOException) {
+                // the request could not be sent, as if sendAsync had failed
+                completeExceptionally(event.getError());
+            } else {
+                complete(event);
+            }
+        }
+
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            Snmp.this.cancel(request, this);
+            return super.cancel(mayInterruptIfRunning);
+        }
+    }
+
     /**
      * The <code>NotificationDispatcher</code> dispatches traps, notifications,
      * and to registered listeners.
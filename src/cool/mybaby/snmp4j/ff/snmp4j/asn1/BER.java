@@ -832,6 +832,10 @@ public class BER {
         }
     }
 
+    static boolean isCheckValueLengthEnabled() {
+        return checkValueLength;
+    }
+
     public boolean isCheckValueLength() {
         return checkValueLength;
     }
@@ -0,0 +1,470 @@
+/*_############################################################################
+  _##
+  _##  SNMP4J - BERCursor.java
+  _##
+  _##  Copyright 2003-2007  Frank Fock and Jochen Katz (SNMP4J.org)
+  _##
+  _##  Licensed under the Apache License, Version 2.0 (the "License");
+  _##  you may not use this file except in compliance with the License.
+  _##  You may obtain a copy of the License at
+  _##
+  _##      http://www.apache.org/licenses/LICENSE-2.0
+  _##
+  _##  Unless required by applicable law or agreed to in writing, software
+  _##  distributed under the License is distributed on an "AS IS" BASIS,
+  _##  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  _##  See the License for the specific language governing permissions and
+  _##  limitations under the License.
+  _##
+  _##########################################################################*/
+
+package cool.mybaby.snmp4j.ff.snmp4j.asn1;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The <code>BERCursor</code> decodes BER encoded data by walking a
+ * <code>ByteBuffer</code> with an index. In contrast to the decode methods
+ * of {@link BER} it neither reads through an <code>InputStream</code> nor
+ * returns types in {@link BER.MutableByte} instances: the decode methods
+ * return primitive values and leave the type of the last decoded object in
+ * the cursor, see {@link #getType()}. Object identifiers are decoded into a
+ * scratch array of the cursor.
+ * <p>
+ * Positions are absolute positions in the underlying buffer, whose own
+ * position and limit are not changed by the cursor. A cursor can be reused
+ * for any number of buffers by calling {@link #reset(ByteBuffer)}. It is not
+ * thread safe.
+ *
+ * @version 1.9
+ * @since 1.9
+ */
+public final class BERCursor {
+
+    private ByteBuffer buffer;
+    private byte[] array;
+    private int arrayOffset;
+    private int position;
+    private int limit;
+    private byte type;
+    private int[] subIDs = new int[BER.MAX_OID_LENGTH + 1];
+
+    /**
+     * Creates a cursor without a buffer. {@link #reset(ByteBuffer)} has to be
+     * called before decoding.
+     */
+    public BERCursor() {
+    }
+
+    /**
+     * Creates a cursor over the remaining bytes of a buffer.
+     *
+     * @param buffer a <code>ByteBuffer</code>.
+     */
+    public BERCursor(ByteBuffer buffer) {
+        reset(buffer);
+    }
+
+    /**
+     * Positions this cursor at the position of the supplied buffer.
+     *
+     * @param buffer the buffer to decode from its position up to its limit.
+     */
+    public void reset(ByteBuffer buffer) {
+        this.buffer = buffer;
+        if (buffer.hasArray()) {
+            array = buffer.array();
+            arrayOffset = buffer.arrayOffset();
+        } else {
+            array = null;
+            arrayOffset = 0;
+        }
+        position = buffer.position();
+        limit = buffer.limit();
+        type = 0;
+    }
+
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    public void setPosition(int position) {
+        if ((position < 0) || (position > limit)) {
+            throw new IllegalArgumentException("Position " + position +
+                    " is outside of 0.." + limit);
+        }
+        this.position = position;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Returns the number of bytes between the cursor and the limit.
+     *
+     * @return the number of bytes left to decode.
+     */
+    public int remaining() {
+        return limit - position;
+    }
+
+    /**
+     * Returns the type (tag) of the object decoded last.
+     *
+     * @return the BER type.
+     */
+    public byte getType() {
+        return type;
+    }
+
+    /**
+     * Returns the type of the object at the cursor without moving the
+     * cursor.
+     *
+     * @return the BER type as unsigned value.
+     * @throws IOException if there are no bytes left.
+     */
+    public int peekType() throws IOException {
+        if (position >= limit) {
+            throw endOfInput();
+        }
+        return get(position);
+    }
+
+    /**
+     * Skips the supplied number of bytes.
+     *
+     * @param length the number of bytes to skip.
+     * @throws IOException if less than <code>length</code> bytes are left.
+     */
+    public void skip(int length) throws IOException {
+        checkLength(length);
+        position += length;
+    }
+
+    /**
+     * Returns a buffer over the bytes left to decode. It shares the content
+     * of this cursor's buffer and can be used to decode objects that do not
+     * support cursors through a {@link BERInputStream}. Afterwards, the
+     * cursor has to be set to the position of the returned buffer.
+     *
+     * @return a <code>ByteBuffer</code> whose position is the cursor position.
+     */
+    public ByteBuffer getRemaining() {
+        ByteBuffer remaining = buffer.duplicate();
+        remaining.limit(limit);
+        remaining.position(position);
+        return remaining;
+    }
+
+    private int get(int index) {
+        if (array != null) {
+            return array[arrayOffset + index] & 0xFF;
+        }
+        return buffer.get(index) & 0xFF;
+    }
+
+    private int read() throws IOException {
+        if (position >= limit) {
+            throw endOfInput();
+        }
+        return get(position++);
+    }
+
+    private IOException endOfInput() {
+        return new IOException("Unexpected end of input at position " + position);
+    }
+
+    private String getPositionMessage() {
+        return " at position " + position;
+    }
+
+    private void checkLength(int length) throws IOException {
+        if ((length < 0) || (length > limit - position)) {
+            throw new IOException("The encoded length " + length +
+                    " exceeds the number of bytes left in input" +
+                    getPositionMessage() + " which actually is " +
+                    (limit - position));
+        }
+    }
+
+    /**
+     * Decodes an ASN.1 length.
+     *
+     * @param checkLength if <code>true</code> the length must not exceed the
+     *                    number of bytes left.
+     * @return the decoded length.
+     * @throws IOException if the length is invalid.
+     */
+    public int decodeLength(boolean checkLength) throws IOException {
+        int length;
+        int lengthbyte = read();
+        if ((lengthbyte & 0x80) != 0) {
+            lengthbyte &= 0x7F;
+            if (lengthbyte == 0) {
+                throw new IOException("Indefinite lengths are not supported");
+            }
+            if (lengthbyte > 4) {
+                throw new IOException("Data length > 4 bytes are not supported!");
+            }
+            length = 0;
+            for (int i = 0; i < lengthbyte; i++) {
+                length = (length << 8) | read();
+            }
+            if (length < 0) {
+                throw new IOException("SNMP does not support data lengths > 2^31");
+            }
+        } else {
+            length = lengthbyte;
+        }
+        if (checkLength && BER.isCheckValueLengthEnabled()) {
+            checkLength(length);
+        }
+        return length;
+    }
+
+    /**
+     * Decodes an ASN.1 header. The type is available from {@link #getType()}
+     * afterwards.
+     *
+     * @param checkLength if <code>true</code> the length must not exceed the
+     *                    number of bytes left.
+     * @return the length of the object's content.
+     * @throws IOException if the header is invalid.
+     */
+    public int decodeHeader(boolean checkLength) throws IOException {
+        int t = read();
+        if ((t & BER.ASN_EXTENSION_ID) == BER.ASN_EXTENSION_ID) {
+            throw new IOException("Cannot process extension IDs" +
+                    getPositionMessage());
+        }
+        type = (byte) t;
+        return decodeLength(checkLength);
+    }
+
+    public int decodeHeader() throws IOException {
+        return decodeHeader(true);
+    }
+
+    /**
+     * Decodes a signed 32bit integer of the types INTEGER, Counter32 or
+     * TimeTicks.
+     *
+     * @return the decoded value.
+     * @throws IOException if the object at the cursor is not such an integer.
+     */
+    public int decodeInteger() throws IOException {
+        type = (byte) read();
+        if ((type != 0x02) && (type != 0x43) && (type != 0x41)) {
+            throw new IOException("Wrong ASN.1 type. Not an integer: " + type +
+                    getPositionMessage());
+        }
+        int length = decodeLength(true);
+        if (length > 4) {
+            throw new IOException("Length greater than 32bit are not supported " +
+                    " for integers: " + getPositionMessage());
+        }
+        if (length == 0) {
+            throw new IOException("Invalid integer encoding, length is zero" +
+                    getPositionMessage());
+        }
+        int b = read();
+        int value = ((b & 0x80) != 0) ? -1 : 0;
+        value = (value << 8) | b;
+        while (--length > 0) {
+            value = (value << 8) | read();
+        }
+        return value;
+    }
+
+    /**
+     * Decodes an unsigned 32bit integer.
+     *
+     * @return the decoded value.
+     * @throws IOException if the object at the cursor is not an unsigned
+     *                     integer of at most 32 bit.
+     */
+    public long decodeUnsignedInteger() throws IOException {
+        type = (byte) read();
+        if ((type != 0x02) && (type != 0x43) && (type != 0x41) &&
+                (type != 0x42) && (type != 0x47)) {
+            throw new IOException("Wrong ASN.1 type. Not an unsigned integer: " +
+                    type + getPositionMessage());
+        }
+        int length = decodeLength(true);
+        if (length == 0) {
+            throw new IOException("Invalid integer encoding, length is zero" +
+                    getPositionMessage());
+        }
+        int b = get(position);
+        if ((length > 5) || ((length > 4) && (b != 0x00))) {
+            throw new IOException("Only 32bit unsigned integers are supported" +
+                    getPositionMessage());
+        }
+        long value = 0;
+        while (length-- > 0) {
+            value = (value << 8) | read();
+        }
+        return value;
+    }
+
+    /**
+     * Decodes an unsigned 64bit integer.
+     *
+     * @return the decoded value.
+     * @throws IOException if the object at the cursor is not an unsigned
+     *                     integer of at most 64 bit.
+     */
+    public long decodeUnsignedInt64() throws IOException {
+        type = (byte) read();
+        if ((type != 0x02) && (type != 0x46)) {
+            throw new IOException("Wrong type. Not an integer 64: " + type +
+                    getPositionMessage());
+        }
+        int length = decodeLength(true);
+        if (length > 9) {
+            throw new IOException("Invalid 64bit unsigned integer length: " +
+                    length + getPositionMessage());
+        }
+        long value = 0;
+        while (length-- > 0) {
+            value = (value << 8) | read();
+        }
+        return value;
+    }
+
+    /**
+     * Decodes the header of a string and leaves the cursor at its content.
+     *
+     * @return the length of the string.
+     * @throws IOException if the object at the cursor is not a string.
+     */
+    public int decodeStringHeader() throws IOException {
+        type = (byte) read();
+        if ((type != BER.OCTETSTRING) && (type != 0x24) &&
+                (type != BER.IPADDRESS) && (type != BER.OPAQUE) &&
+                (type != BER.BITSTRING) && (type != 0x45)) {
+            throw new IOException("Wrong ASN.1 type. Not a string: " + type +
+                    getPositionMessage());
+        }
+        return decodeLength(true);
+    }
+
+    /**
+     * Copies the next bytes into a byte array.
+     *
+     * @param dest   the destination array.
+     * @param offset the offset in <code>dest</code>.
+     * @param length the number of bytes to copy.
+     * @throws IOException if less than <code>length</code> bytes are left.
+     */
+    public void read(byte[] dest, int offset, int length) throws IOException {
+        checkLength(length);
+        if (array != null) {
+            System.arraycopy(array, arrayOffset + position, dest, offset, length);
+        } else {
+            for (int i = 0; i < length; i++) {
+                dest[offset + i] = buffer.get(position + i);
+            }
+        }
+        position += length;
+    }
+
+    /**
+     * Decodes a string.
+     *
+     * @return the content of the string.
+     * @throws IOException if the object at the cursor is not a string.
+     */
+    public byte[] decodeString() throws IOException {
+        int length = decodeStringHeader();
+        byte[] value = new byte[length];
+        read(value, 0, length);
+        return value;
+    }
+
+    /**
+     * Decodes an object identifier into the scratch array of this cursor,
+     * see {@link #getSubIDs()}.
+     *
+     * @return the number of sub-identifiers decoded.
+     * @throws IOException if the object at the cursor is not an OID.
+     */
+    public int decodeOID() throws IOException {
+        type = (byte) read();
+        if (type != 0x06) {
+            throw new IOException("Wrong type. Not an OID: " + type +
+                    getPositionMessage());
+        }
+        int length = decodeLength(false);
+        checkLength(length);
+        if (length == 0) {
+            // handle invalid object identifier encodings of the form 06 00
+            subIDs[0] = 0;
+            subIDs[1] = 0;
+            return 2;
+        }
+        if (length + 1 > subIDs.length) {
+            subIDs = new int[length + 1];
+        }
+        int[] oid = subIDs;
+        int end = position + length;
+        int n = 1;
+        while (position < end) {
+            int subidentifier = 0;
+            int b;
+            do {
+                b = get(position++);
+                subidentifier = (subidentifier << 7) + (b & 0x7F);
+            } while ((position < end) && ((b & 0x80) != 0));
+            oid[n++] = subidentifier;
+        }
+        // the first two subidentifiers are encoded as (X * 40) + Y
+        int first = oid[1];
+        if (first == 0x2B) {
+            oid[0] = 1;
+            oid[1] = 3;
+        } else {
+            oid[1] = first % 40;
+            oid[0] = (first - oid[1]) / 40;
+        }
+        return n;
+    }
+
+    /**
+     * Returns the sub-identifiers decoded by the last call of
+     * {@link #decodeOID()}. The array is reused by the next call.
+     *
+     * @return the scratch array, which is at least as long as the number of
+     * sub-identifiers decoded.
+     */
+    public int[] getSubIDs() {
+        return subIDs;
+    }
+
+    /**
+     * Decodes a NULL or one of the exception values noSuchObject,
+     * noSuchInstance and endOfMibView.
+     *
+     * @throws IOException if the object at the cursor is none of these.
+     */
+    public void decodeNull() throws IOException {
+        type = (byte) read();
+        if ((type != (byte) 0x05) && (type != (byte) 0x80) &&
+                (type != (byte) 0x81) && (type != (byte) 0x82)) {
+            throw new IOException("Wrong ASN.1 type. Is not null: " + type +
+                    getPositionMessage());
+        }
+        int length = decodeLength(true);
+        if (length != 0) {
+            throw new IOException("Invalid Null encoding, length is not zero: " +
+                    length + getPositionMessage());
+        }
+    }
+}
@@ -0,0 +1,359 @@
+/*_############################################################################
+  _##
+  _##  SNMP4J - BERReverseEncoder.java
+  _##
+  _##  Copyright 2003-2007  Frank Fock and Jochen Katz (SNMP4J.org)
+  _##
+  _##  Licensed under the Apache License, Version 2.0 (the "License");
+  _##  you may not use this file except in compliance with the License.
+  _##  You may obtain a copy of the License at
+  _##
+  _##      http://www.apache.org/licenses/LICENSE-2.0
+  _##
+  _##  Unless required by applicable law or agreed to in writing, software
+  _##  distributed under the License is distributed on an "AS IS" BASIS,
+  _##  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  _##  See the License for the specific language governing permissions and
+  _##  limitations under the License.
+  _##
+  _##########################################################################*/
+
+package cool.mybaby.snmp4j.ff.snmp4j.asn1;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * The <code>BERReverseEncoder</code> encodes BER data back to front into a
+ * byte array. Because the content of a constructed object is written before
+ * its header, the length of the content is known when the header is
+ * encoded: it is the number of bytes written since the encoding of the
+ * content started. Thus, an object and its sub-objects are visited exactly
+ * once and their BER lengths do not have to be computed in advance.
+ * <p>
+ * A sequence is encoded by remembering {@link #length()}, encoding its
+ * elements in reverse order, and then calling
+ * {@link #encodeHeader(int type, int length)} with the number of bytes
+ * written since. The output is byte-identical to the encoding produced by
+ * the <code>encode</code> methods of {@link BER}.
+ * <p>
+ * An encoder grows its array as needed and can be reused after
+ * {@link #reset()}. It is not thread safe, see {@link #getThreadEncoder()}
+ * for a pooled instance per thread.
+ *
+ * @version 1.9
+ * @since 1.9
+ */
+public final class BERReverseEncoder {
+
+    /**
+     * The initial capacity of an encoder, which fits a message of the
+     * minimum maximum message size of SNMP.
+     */
+    public static final int DEFAULT_CAPACITY = 484;
+
+    /**
+     * Pooled encoders whose array grew larger than this are shrunk to
+     * {@link #DEFAULT_CAPACITY} when they are fetched again.
+     */
+    public static final int MAX_POOLED_CAPACITY = 65536;
+
+    private static final ThreadLocal threadEncoder = new ThreadLocal();
+
+    private byte[] buffer;
+    private int position;
+
+    public BERReverseEncoder() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an encoder with the supplied initial capacity.
+     *
+     * @param capacity the initial size of the array in bytes.
+     */
+    public BERReverseEncoder(int capacity) {
+        buffer = new byte[Math.max(capacity, 16)];
+        position = buffer.length;
+    }
+
+    /**
+     * Returns the encoder of the calling thread after resetting it. The
+     * encoded bytes have to be copied by {@link #toByteArray()} before the
+     * thread's encoder is fetched again.
+     *
+     * @return an empty encoder that is owned by the current thread.
+     */
+    public static BERReverseEncoder getThreadEncoder() {
+        BERReverseEncoder encoder = (BERReverseEncoder) threadEncoder.get();
+        if ((encoder == null) || (encoder.buffer.length > MAX_POOLED_CAPACITY)) {
+            encoder = new BERReverseEncoder();
+            threadEncoder.set(encoder);
+        } else {
+            encoder.reset();
+        }
+        return encoder;
+    }
+
+    /**
+     * Discards the encoded bytes.
+     */
+    public void reset() {
+        position = buffer.length;
+    }
+
+    /**
+     * Returns the number of bytes encoded so far.
+     *
+     * @return the length of the encoding.
+     */
+    public int length() {
+        return buffer.length - position;
+    }
+
+    /**
+     * Returns a copy of the encoded bytes.
+     *
+     * @return a new array of {@link #length()} bytes.
+     */
+    public byte[] toByteArray() {
+        byte[] encoded = new byte[buffer.length - position];
+        System.arraycopy(buffer, position, encoded, 0, encoded.length);
+        return encoded;
+    }
+
+    private void ensureCapacity(int count) {
+        if (count > position) {
+            int length = buffer.length - position;
+            int capacity = buffer.length << 1;
+            while (capacity - length < count) {
+                capacity <<= 1;
+            }
+            byte[] b = new byte[capacity];
+            System.arraycopy(buffer, position, b, capacity - length, length);
+            buffer = b;
+            position = capacity - length;
+        }
+    }
+
+    /**
+     * Prepends a byte.
+     *
+     * @param b the byte to write (the upper 24 bits are ignored).
+     */
+    public void write(int b) {
+        if (position == 0) {
+            ensureCapacity(1);
+        }
+        buffer[--position] = (byte) b;
+    }
+
+    /**
+     * Prepends a part of an array.
+     *
+     * @param b      the source array.
+     * @param offset the offset in <code>b</code>.
+     * @param length the number of bytes to write.
+     */
+    public void write(byte[] b, int offset, int length) {
+        ensureCapacity(length);
+        position -= length;
+        System.arraycopy(b, offset, buffer, position, length);
+    }
+
+    public void write(byte[] b) {
+        write(b, 0, b.length);
+    }
+
+    /**
+     * Prepends the BER encoding of an object by encoding it forwards through
+     * its {@link BERSerializable#encodeBER(java.io.OutputStream)} method.
+     * This is the fallback for objects that cannot encode themselves
+     * backwards.
+     *
+     * @param object a <code>BERSerializable</code>.
+     * @throws IOException if the object could not be encoded.
+     */
+    public void write(BERSerializable object) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream(object.getBERLength());
+        object.encodeBER(os);
+        write(os.toByteArray());
+    }
+
+    /**
+     * Prepends the length of an ASN.1 object as {@link BER#encodeLength}
+     * does.
+     *
+     * @param length the length of the object.
+     */
+    public void encodeLength(int length) {
+        ensureCapacity(5);
+        byte[] b = buffer;
+        int p = position;
+        if (length < 0) {
+            b[--p] = (byte) length;
+            b[--p] = (byte) (length >> 8);
+            b[--p] = (byte) (length >> 16);
+            b[--p] = (byte) (length >> 24);
+            b[--p] = (byte) (0x04 | BER.ASN_LONG_LEN);
+        } else if (length < 0x80) {
+            b[--p] = (byte) length;
+        } else if (length <= 0xFF) {
+            b[--p] = (byte) length;
+            b[--p] = (byte) (0x01 | BER.ASN_LONG_LEN);
+        } else if (length <= 0xFFFF) {
+            b[--p] = (byte) length;
+            b[--p] = (byte) (length >> 8);
+            b[--p] = (byte) (0x02 | BER.ASN_LONG_LEN);
+        } else if (length <= 0xFFFFFF) {
+            b[--p] = (byte) length;
+            b[--p] = (byte) (length >> 8);
+            b[--p] = (byte) (length >> 16);
+            b[--p] = (byte) (0x03 | BER.ASN_LONG_LEN);
+        } else {
+            b[--p] = (byte) length;
+            b[--p] = (byte) (length >> 8);
+            b[--p] = (byte) (length >> 16);
+            b[--p] = (byte) (length >> 24);
+            b[--p] = (byte) (0x04 | BER.ASN_LONG_LEN);
+        }
+        position = p;
+    }
+
+    /**
+     * Prepends an ASN.1 header. For a constructed object, this has to be
+     * called after its content has been encoded.
+     *
+     * @param type   the type of the ASN.1 object.
+     * @param length the length of the object's content.
+     */
+    public void encodeHeader(int type, int length) {
+        encodeLength(length);
+        write(type);
+    }
+
+    /**
+     * Prepends a signed integer as {@link BER#encodeInteger} does.
+     *
+     * @param type  the tag type for the integer (typically 0x02)
+     * @param value the integer value to encode.
+     */
+    public void encodeInteger(byte type, int value) {
+        int mask = 0x1FF << ((8 * 3) - 1);
+        int intsize = 4;
+        int integer = value;
+        while ((((integer & mask) == 0) || ((integer & mask) == mask))
+                && intsize > 1) {
+            intsize--;
+            integer <<= 8;
+        }
+        ensureCapacity(intsize);
+        for (int i = 0; i < intsize; i++) {
+            buffer[--position] = (byte) (value >> (8 * i));
+        }
+        encodeHeader(type, intsize);
+    }
+
+    /**
+     * Prepends an unsigned integer as {@link BER#encodeUnsignedInteger} does.
+     *
+     * @param type  the tag type for the integer.
+     * @param value the integer value to encode.
+     */
+    public void encodeUnsignedInteger(byte type, long value) {
+        int len = 1;
+        if (((value >> 24) & 0xFF) != 0) {
+            len = 4;
+        } else if (((value >> 16) & 0xFF) != 0) {
+            len = 3;
+        } else if (((value >> 8) & 0xFF) != 0) {
+            len = 2;
+        }
+        if (((value >> (8 * (len - 1))) & 0x080) != 0) {
+            len++;
+        }
+        ensureCapacity(len);
+        for (int i = 0; i < Math.min(len, 4); i++) {
+            buffer[--position] = (byte) (value >> (8 * i));
+        }
+        if (len == 5) {
+            buffer[--position] = 0;
+        }
+        encodeHeader(type, len);
+    }
+
+    /**
+     * Prepends an unsigned 64bit integer as {@link BER#encodeUnsignedInt64}
+     * does.
+     *
+     * @param type  the tag type for the integer.
+     * @param value the integer value to encode.
+     */
+    public void encodeUnsignedInt64(byte type, long value) {
+        int len;
+        for (len = 8; len > 1; len--) {
+            if (((value >> (8 * (len - 1))) & 0xFF) != 0) {
+                break;
+            }
+        }
+        if (((value >> (8 * (len - 1))) & 0x080) != 0) {
+            len++;
+        }
+        ensureCapacity(len);
+        for (int i = 0; i < Math.min(len, 8); i++) {
+            buffer[--position] = (byte) (value >> (8 * i));
+        }
+        if (len == 9) {
+            buffer[--position] = 0;
+        }
+        encodeHeader(type, len);
+    }
+
+    /**
+     * Prepends an octet string.
+     *
+     * @param type   the tag type of the string (typically 0x04).
+     * @param string the string value.
+     */
+    public void encodeString(byte type, byte[] string) {
+        write(string, 0, string.length);
+        encodeHeader(type, string.length);
+    }
+
+    /**
+     * Prepends an object identifier as {@link BER#encodeOID} does.
+     *
+     * @param type the tag type for the OID (typically 0x06).
+     * @param oid  the sub-identifiers.
+     */
+    public void encodeOID(byte type, int[] oid) {
+        int end = length();
+        if (oid.length < 2) {
+            write(0);
+        } else {
+            ensureCapacity(5 * (oid.length - 2) + 1);
+            byte[] b = buffer;
+            int p = position;
+            for (int i = oid.length - 1; i >= 2; i--) {
+                int subid = oid[i];
+                b[--p] = (byte) (subid & 0x7F);
+                while ((subid >>>= 7) != 0) {
+                    b[--p] = (byte) ((subid & 0x7F) | BER.ASN_BIT8);
+                }
+            }
+            b[--p] = (byte) (oid[1] + (oid[0] * 40));
+            position = p;
+        }
+        encodeHeader(type, length() - end);
+    }
+
+    /**
+     * Prepends a NULL value or one of the exceptions noSuchObject,
+     * noSuchInstance and endOfMibView.
+     *
+     * @param type the tag type.
+     */
+    public void encodeNull(byte type) {
+        encodeHeader(type, 0);
+    }
+}
@@ -26,6 +26,7 @@ import cool.mybaby.snmp4j.ff.snmp4j.asn1.BER;
 import cool.mybaby.snmp4j.ff.snmp4j.asn1.BER.MutableByte;
 import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERInputStream;
 import cool.mybaby.snmp4j.ff.snmp4j.asn1.BEROutputStream;
+import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERReverseEncoder;
 import cool.mybaby.snmp4j.ff.snmp4j.log.LogAdapter;
 import cool.mybaby.snmp4j.ff.snmp4j.log.LogFactory;
 import cool.mybaby.snmp4j.ff.snmp4j.security.SecurityLevel;
@@ -87,22 +88,15 @@ public class MPv1 implements MessageProcessingModel {
 
         OctetString community = new OctetString(securityName);
         Integer32 version = new Integer32(messageProcessingModel);
-        // compute total length
-        int length = pdu.getBERLength();
-        length += community.getBERLength();
-        length += version.getBERLength();
+        // encode the message backwards, the lengths are known while unwinding
+        BERReverseEncoder encoder = BERReverseEncoder.getThreadEncoder();
+        pdu.encodeBER(encoder);
+        community.encodeBER(encoder);
+        version.encodeBER(encoder);
+        encoder.encodeHeader(BER.SEQUENCE, encoder.length());
 
-        ByteBuffer buf = ByteBuffer.allocate(length +
-                BER.getBERLengthOfLength(length) + 1);
         // set the buffer of the outgoing message
-        outgoingMessage.setBuffer(buf);
-
-        // encode the message
-        BER.encodeHeader(outgoingMessage, BER.SEQUENCE, length);
-        version.encodeBER(outgoingMessage);
-
-        community.encodeBER(outgoingMessage);
-        pdu.encodeBER(outgoingMessage);
+        outgoingMessage.setFilledBuffer(ByteBuffer.wrap(encoder.toByteArray()));
 
         return SnmpConstants.SNMP_MP_OK;
     }
@@ -24,6 +24,7 @@ import cool.mybaby.snmp4j.ff.snmp4j.*;
 import cool.mybaby.snmp4j.ff.snmp4j.asn1.BER;
 import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERInputStream;
 import cool.mybaby.snmp4j.ff.snmp4j.asn1.BEROutputStream;
+import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERReverseEncoder;
 import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERSerializable;
 import cool.mybaby.snmp4j.ff.snmp4j.event.CounterEvent;
 import cool.mybaby.snmp4j.ff.snmp4j.event.SnmpEngineEvent;
@@ -612,12 +613,11 @@ public class MPv3
             }
         }
 
-        // get length of scoped PDU
-        int scopedPDULength = pdu.getBERLength();
-        BEROutputStream scopedPdu =
-                new BEROutputStream(ByteBuffer.allocate(scopedPDULength));
-
-        scopedPDU.encodeBER(scopedPdu);
+        // encode the scoped PDU backwards in a single pass
+        BERReverseEncoder encoder = BERReverseEncoder.getThreadEncoder();
+        scopedPDU.encodeBER(encoder);
+        BEROutputStream scopedPdu = new BEROutputStream();
+        scopedPdu.setFilledBuffer(ByteBuffer.wrap(encoder.toByteArray()));
 
         HeaderData headerData = new HeaderData();
         int flags = 0;
@@ -709,24 +709,21 @@ public class MPv3
             return SnmpConstants.SNMP_MP_UNKNOWN_MSGID;
         }
 
-        // get length of scoped PDU
-        // get length of scoped PDU
-        int scopedPDULength = pdu.getBERLength();
-        BEROutputStream scopedPDU;
+        // encode the scoped PDU backwards in a single pass
+        BERReverseEncoder encoder = BERReverseEncoder.getThreadEncoder();
+        pdu.encodeBER(encoder);
         // check length
-        if (scopedPDULength > maxSizeResponseScopedPDU) {
+        if (encoder.length() > maxSizeResponseScopedPDU) {
             PDU tooBigPDU = new ScopedPDU((ScopedPDU) pdu);
             tooBigPDU.clear();
             tooBigPDU.setRequestID(pdu.getRequestID());
             tooBigPDU.setErrorStatus(SnmpConstants.SNMP_ERROR_TOO_BIG);
             tooBigPDU.setErrorIndex(0);
-            scopedPDULength = tooBigPDU.getBERLength();
-            scopedPDU = new BEROutputStream(ByteBuffer.allocate(scopedPDULength));
-            tooBigPDU.encodeBER(scopedPDU);
-        } else {
-            scopedPDU = new BEROutputStream(ByteBuffer.allocate(scopedPDULength));
-            pdu.encodeBER(scopedPDU);
+            encoder.reset();
+            tooBigPDU.encodeBER(encoder);
         }
+        BEROutputStream scopedPDU = new BEROutputStream();
+        scopedPDU.setFilledBuffer(ByteBuffer.wrap(encoder.toByteArray()));
 
         HeaderData headerData = new HeaderData();
         int flags = 0;
@@ -23,7 +23,9 @@ package cool.mybaby.snmp4j.ff.snmp4j.smi;
 import cool.mybaby.snmp4j.ff.snmp4j.PDU;
 import cool.mybaby.snmp4j.ff.snmp4j.SNMP4JSettings;
 import cool.mybaby.snmp4j.ff.snmp4j.asn1.BER;
+import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERCursor;
 import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERInputStream;
+import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERReverseEncoder;
 import cool.mybaby.snmp4j.ff.snmp4j.log.LogAdapter;
 import cool.mybaby.snmp4j.ff.snmp4j.log.LogFactory;
 
@@ -31,6 +33,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.Properties;
@@ -119,6 +122,23 @@ public abstract class AbstractVariable implements Variable, Serializable {
      */
     public abstract void decodeBER(BERInputStream inputStream) throws IOException;
 
+    /**
+     * Decodes a <code>Variable</code> from a <code>BERCursor</code>. The
+     * default implementation decodes the variable through a
+     * {@link BERInputStream} over the remaining bytes of the cursor.
+     * Subclasses override this method to decode without allocating
+     * intermediate objects.
+     *
+     * @param cursor a <code>BERCursor</code> positioned at the variable.
+     * @throws IOException if the variable could not be decoded by using BER rules.
+     * @since 1.9
+     */
+    public void decodeBER(BERCursor cursor) throws IOException {
+        ByteBuffer remaining = cursor.getRemaining();
+        decodeBER(new BERInputStream(remaining));
+        cursor.setPosition(remaining.position());
+    }
+
     /**
      * Encodes a <code>Variable</code> to an <code>OutputStream</code>.
      *
@@ -127,6 +147,20 @@ public abstract class AbstractVariable implements Variable, Serializable {
      */
     public abstract void encodeBER(OutputStream outputStream) throws IOException;
 
+    /**
+     * Encodes a <code>Variable</code> backwards with a
+     * <code>BERReverseEncoder</code>. The default implementation encodes the
+     * variable through {@link #encodeBER(OutputStream)}; subclasses override
+     * this method to write directly into the encoder.
+     *
+     * @param encoder a <code>BERReverseEncoder</code>.
+     * @throws IOException if the variable could not be encoded.
+     * @since 1.9
+     */
+    public void encodeBER(BERReverseEncoder encoder) throws IOException {
+        encoder.write(this);
+    }
+
     /**
      * Creates a <code>Variable</code> from a BER encoded <code>InputStream</code>.
      * Subclasses of <code>Variable</code> are registered using the properties file
@@ -143,37 +177,61 @@ public abstract class AbstractVariable implements Variable, Serializable {
             throw new IOException(
                     "InputStream for decoding a Variable must support marks");
         }
-        if (SNMP4JSettings.isExtensibilityEnabled() &&
-                (registeredSyntaxes == null)) {
-            registerSyntaxes();
-        }
         inputStream.mark(2);
         int type = inputStream.read();
-        Variable variable;
-        if (SNMP4JSettings.isExtensibilityEnabled()) {
-            Class c = (Class) registeredSyntaxes.get(new Integer(type));
-            if (c == null) {
-                throw new IOException("Encountered unsupported variable syntax: " +
-                        type);
-            }
-            try {
-                variable = (Variable) c.newInstance();
-            } catch (IllegalAccessException aex) {
-                throw new IOException("Could not access variable syntax class for: " +
-                        c.getName());
-            } catch (InstantiationException iex) {
-                throw new IOException(
-                        "Could not instantiate variable syntax class for: " +
-                                c.getName());
-            }
-        } else {
-            variable = createVariable(type);
-        }
+        Variable variable = createFromBERType(type);
         inputStream.reset();
         variable.decodeBER(inputStream);
         return variable;
     }
 
+    /**
+     * Creates a <code>Variable</code> from the BER encoded data at the
+     * position of a <code>BERCursor</code>. The variable is instantiated as
+     * by {@link #createFromBER(BERInputStream)} and decoded by
+     * {@link #decodeBER(BERCursor)} if it is an <code>AbstractVariable</code>.
+     *
+     * @param cursor a <code>BERCursor</code> positioned at the variable.
+     * @return an instance of a subclass of <code>Variable</code>.
+     * @throws IOException if the variable could not be decoded.
+     * @since 1.9
+     */
+    public static Variable createFromBER(BERCursor cursor) throws IOException {
+        Variable variable = createFromBERType(cursor.peekType());
+        if (variable instanceof AbstractVariable) {
+            ((AbstractVariable) variable).decodeBER(cursor);
+        } else {
+            ByteBuffer remaining = cursor.getRemaining();
+            variable.decodeBER(new BERInputStream(remaining));
+            cursor.setPosition(remaining.position());
+        }
+        return variable;
+    }
+
+    private static Variable createFromBERType(int type) throws IOException {
+        if (!SNMP4JSettings.isExtensibilityEnabled()) {
+            return createVariable(type);
+        }
+        if (registeredSyntaxes == null) {
+            registerSyntaxes();
+        }
+        Class c = (Class) registeredSyntaxes.get(new Integer(type));
+        if (c == null) {
+            throw new IOException("Encountered unsupported variable syntax: " +
+                    type);
+        }
+        try {
+            return (Variable) c.newInstance();
+        } catch (IllegalAccessException aex) {
+            throw new IOException("Could not access variable syntax class for: " +
+                    c.getName());
+        } catch (InstantiationException iex) {
+            throw new IOException(
+                    "Could not instantiate variable syntax class for: " +
+                            c.getName());
+        }
+    }
+
     private static Variable createVariable(int smiSyntax) {
         switch (smiSyntax) {
             case SMIConstants.SYNTAX_OBJECT_IDENTIFIER: {
@@ -21,7 +21,9 @@
 package cool.mybaby.snmp4j.ff.snmp4j.smi;
 
 import cool.mybaby.snmp4j.ff.snmp4j.asn1.BER;
+import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERCursor;
 import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERInputStream;
+import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERReverseEncoder;
 
 import java.io.IOException;
 import java.io.OutputStream;
@@ -59,6 +61,10 @@ public class BitString extends OctetString {
         BER.encodeString(outputStream, BER.BITSTRING, getValue());
     }
 
+    public void encodeBER(BERReverseEncoder encoder) {
+        encoder.encodeString(BER.BITSTRING, getValue());
+    }
+
     public void decodeBER(BERInputStream inputStream) throws java.io.IOException {
         BER.MutableByte type = new BER.MutableByte();
         byte[] v = BER.decodeString(inputStream, type);
@@ -69,6 +75,10 @@ public class BitString extends OctetString {
         setValue(v);
     }
 
+    public void decodeBER(BERCursor cursor) throws java.io.IOException {
+        decodeBER(cursor, BER.BITSTRING, "BitString");
+    }
+
     public Object clone() {
         BitString clone = new BitString();
         clone.setValue(super.getValue());
@@ -22,7 +22,9 @@
 package cool.mybaby.snmp4j.ff.snmp4j.smi;
 
 import cool.mybaby.snmp4j.ff.snmp4j.asn1.BER;
+import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERCursor;
 import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERInputStream;
+import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERReverseEncoder;
 
 import java.io.IOException;
 import java.io.OutputStream;
@@ -62,6 +64,10 @@ public class Counter32 extends UnsignedInteger32 {
         BER.encodeUnsignedInteger(outputStream, BER.COUNTER32, getValue());
     }
 
+    public void encodeBER(BERReverseEncoder encoder) {
+        encoder.encodeUnsignedInteger(BER.COUNTER32, getValue());
+    }
+
     public void decodeBER(BERInputStream inputStream) throws IOException {
         BER.MutableByte type = new BER.MutableByte();
         long newValue = BER.decodeUnsignedInteger(inputStream, type);
@@ -72,6 +78,15 @@ public class Counter32 extends UnsignedInteger32 {
         setValue(newValue);
     }
 
+    public void decodeBER(BERCursor cursor) throws IOException {
+        long newValue = cursor.decodeUnsignedInteger();
+        if (cursor.getType() != BER.COUNTER32) {
+            throw new IOException("Wrong type encountered when decoding Counter: " +
+                    cursor.getType());
+        }
+        setValue(newValue);
+    }
+
     public Object clone() {
         return new Counter32(value);
     }
@@ -22,7 +22,9 @@
 package cool.mybaby.snmp4j.ff.snmp4j.smi;
 
 import cool.mybaby.snmp4j.ff.snmp4j.asn1.BER;
+import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERCursor;
 import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERInputStream;
+import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERReverseEncoder;
 
 import java.io.IOException;
 import java.io.OutputStream;
@@ -57,6 +59,10 @@ public class Counter64 extends AbstractVariable
         BER.encodeUnsignedInt64(outputStream, BER.COUNTER64, value);
     }
 
+    public void encodeBER(BERReverseEncoder encoder) {
+        encoder.encodeUnsignedInt64(BER.COUNTER64, value);
+    }
+
     public void decodeBER(BERInputStream inputStream) throws java.io.IOException {
         BER.MutableByte type = new BER.MutableByte();
         long newValue = BER.decodeUnsignedInt64(inputStream, type);
@@ -67,6 +73,15 @@ public class Counter64 extends AbstractVariable
         setValue(newValue);
     }
 
+    public void decodeBER(BERCursor cursor) throws IOException {
+        long newValue = cursor.decodeUnsignedInt64();
+        if (cursor.getType() != BER.COUNTER64) {
+            throw new IOException("Wrong type encountered when decoding Counter64: " +
+                    cursor.getType());
+        }
+        setValue(newValue);
+    }
+
     public int getSyntax() {
         return SMIConstants.SYNTAX_COUNTER64;
     }
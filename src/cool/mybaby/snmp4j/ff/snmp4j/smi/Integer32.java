@@ -21,7 +21,9 @@
 package cool.mybaby.snmp4j.ff.snmp4j.smi;
 
 import cool.mybaby.snmp4j.ff.snmp4j.asn1.BER;
+import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERCursor;
 import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERInputStream;
+import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERReverseEncoder;
 
 import java.io.IOException;
 import java.io.OutputStream;
@@ -58,6 +60,10 @@ public class Integer32 extends AbstractVariable
         BER.encodeInteger(outputStream, BER.INTEGER, value);
     }
 
+    public void encodeBER(BERReverseEncoder encoder) {
+        encoder.encodeInteger(BER.INTEGER, value);
+    }
+
     public void decodeBER(BERInputStream inputStream) throws java.io.IOException {
         BER.MutableByte type = new BER.MutableByte();
         int newValue = BER.decodeInteger(inputStream, type);
@@ -67,6 +73,14 @@ public class Integer32 extends AbstractVariable
         setValue(newValue);
     }
 
+    public void decodeBER(BERCursor cursor) throws IOException {
+        int newValue = cursor.decodeInteger();
+        if (cursor.getType() != BER.INTEGER) {
+            throw new IOException("Wrong type encountered when decoding Counter: " + cursor.getType());
+        }
+        setValue(newValue);
+    }
+
     public int getSyntax() {
         return SMIConstants.SYNTAX_INTEGER;
     }
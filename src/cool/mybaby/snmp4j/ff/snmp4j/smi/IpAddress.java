@@ -22,6 +22,7 @@ package cool.mybaby.snmp4j.ff.snmp4j.smi;
 
 import cool.mybaby.snmp4j.ff.snmp4j.asn1.BER;
 import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERInputStream;
+import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERReverseEncoder;
 import cool.mybaby.snmp4j.ff.snmp4j.log.LogAdapter;
 import cool.mybaby.snmp4j.ff.snmp4j.log.LogFactory;
 
@@ -136,10 +137,16 @@ public class IpAddress extends SMIAddress {
     }
 
     public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
         if (!(o instanceof IpAddress)) {
             return false;
         }
-        return (compareTo(o) == 0);
+        // same as comparing the raw addresses, but without copying them
+        InetAddress other = ((IpAddress) o).inetAddress;
+        return (inetAddress == other) ||
+                ((inetAddress != null) && inetAddress.equals(other));
     }
 
     public void decodeBER(BERInputStream inputStream) throws java.io.IOException {
@@ -162,6 +169,10 @@ public class IpAddress extends SMIAddress {
         BER.encodeString(outputStream, BER.IPADDRESS, inetAddress.getAddress());
     }
 
+    public void encodeBER(BERReverseEncoder encoder) {
+        encoder.encodeString(BER.IPADDRESS, inetAddress.getAddress());
+    }
+
     public int getBERLength() {
         return 6;
     }
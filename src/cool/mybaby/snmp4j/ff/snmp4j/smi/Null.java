@@ -22,7 +22,9 @@ package cool.mybaby.snmp4j.ff.snmp4j.smi;
 
 import cool.mybaby.snmp4j.ff.snmp4j.asn1.BER;
 import cool.mybaby.snmp4j.ff.snmp4j.asn1.BER.MutableByte;
+import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERCursor;
 import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERInputStream;
+import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERReverseEncoder;
 
 import java.io.OutputStream;
 
@@ -61,6 +63,11 @@ public class Null extends AbstractVariable {
         this.syntax = type.getValue() & 0xFF;
     }
 
+    public void decodeBER(BERCursor cursor) throws java.io.IOException {
+        cursor.decodeNull();
+        this.syntax = cursor.getType() & 0xFF;
+    }
+
     public int getSyntax() {
         return syntax;
     }
@@ -100,6 +107,10 @@ public class Null extends AbstractVariable {
         BER.encodeHeader(outputStream, (byte) getSyntax(), 0);
     }
 
+    public void encodeBER(BERReverseEncoder encoder) {
+        encoder.encodeNull((byte) getSyntax());
+    }
+
     public void setSyntax(int syntax) {
         if ((syntax != SMIConstants.SYNTAX_NULL) && (!isExceptionSyntax(syntax))) {
             throw new IllegalArgumentException("Syntax " + syntax +
@@ -22,7 +22,9 @@
 package cool.mybaby.snmp4j.ff.snmp4j.smi;
 
 import cool.mybaby.snmp4j.ff.snmp4j.asn1.BER;
+import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERCursor;
 import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERInputStream;
+import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERReverseEncoder;
 
 import java.io.IOException;
 import java.io.OutputStream;
@@ -226,6 +228,10 @@ public class OID extends AbstractVariable implements AssignableFromString {
         BER.encodeOID(outputStream, BER.OID, value);
     }
 
+    public void encodeBER(BERReverseEncoder encoder) {
+        encoder.encodeOID(BER.OID, value);
+    }
+
     public int getBERLength() {
         int length = 1; // for first 2 subids
 
@@ -257,6 +263,25 @@ public class OID extends AbstractVariable implements AssignableFromString {
         setValue(v);
     }
 
+    /**
+     * Decodes the OID from a cursor. The value array is newly allocated,
+     * because the previous one may be shared by {@link #getValue()}.
+     *
+     * @param cursor a <code>BERCursor</code> positioned at an OBJECT IDENTIFIER.
+     * @throws IOException if the object at the cursor is not an OID.
+     * @since 1.9
+     */
+    public void decodeBER(BERCursor cursor) throws IOException {
+        int n = cursor.decodeOID();
+        if (cursor.getType() != BER.OID) {
+            throw new IOException("Wrong type encountered when decoding OID: " +
+                    cursor.getType());
+        }
+        int[] v = new int[n];
+        System.arraycopy(cursor.getSubIDs(), 0, v, 0, n);
+        value = v;
+    }
+
     public void setValue(String value) {
         this.value = parseDottedString(value);
     }
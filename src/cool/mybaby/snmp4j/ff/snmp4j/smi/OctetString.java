@@ -21,7 +21,9 @@
 package cool.mybaby.snmp4j.ff.snmp4j.smi;
 
 import cool.mybaby.snmp4j.ff.snmp4j.asn1.BER;
+import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERCursor;
 import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERInputStream;
+import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERReverseEncoder;
 
 import java.io.IOException;
 import java.io.OutputStream;
@@ -144,6 +146,10 @@ public class OctetString extends AbstractVariable
         BER.encodeString(outputStream, BER.OCTETSTRING, getValue());
     }
 
+    public void encodeBER(BERReverseEncoder encoder) {
+        encoder.encodeString(BER.OCTETSTRING, getValue());
+    }
+
     public void decodeBER(BERInputStream inputStream) throws java.io.IOException {
         BER.MutableByte type = new BER.MutableByte();
         byte[] v = BER.decodeString(inputStream, type);
@@ -154,6 +160,30 @@ public class OctetString extends AbstractVariable
         setValue(v);
     }
 
+    /**
+     * Decodes the string from a cursor. The value array is newly allocated,
+     * because the previous one may be shared by {@link #getValue()}.
+     *
+     * @param cursor a <code>BERCursor</code> positioned at an OCTET STRING.
+     * @throws IOException if the object at the cursor is not an OCTET STRING.
+     * @since 1.9
+     */
+    public void decodeBER(BERCursor cursor) throws IOException {
+        decodeBER(cursor, BER.OCTETSTRING, "OctetString");
+    }
+
+    void decodeBER(BERCursor cursor, byte expectedType, String syntax)
+            throws IOException {
+        int length = cursor.decodeStringHeader();
+        if (cursor.getType() != expectedType) {
+            throw new IOException("Wrong type encountered when decoding " + syntax +
+                    ": " + cursor.getType());
+        }
+        byte[] v = new byte[length];
+        cursor.read(v, 0, length);
+        value = v;
+    }
+
     public int getBERLength() {
         return value.length + BER.getBERLengthOfLength(value.length) + 1;
     }
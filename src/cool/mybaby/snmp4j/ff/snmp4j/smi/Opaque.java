@@ -22,7 +22,9 @@
 package cool.mybaby.snmp4j.ff.snmp4j.smi;
 
 import cool.mybaby.snmp4j.ff.snmp4j.asn1.BER;
+import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERCursor;
 import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERInputStream;
+import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERReverseEncoder;
 
 import java.io.IOException;
 import java.io.OutputStream;
@@ -54,6 +56,10 @@ public class Opaque extends OctetString {
         BER.encodeString(outputStream, BER.OPAQUE, getValue());
     }
 
+    public void encodeBER(BERReverseEncoder encoder) {
+        encoder.encodeString(BER.OPAQUE, getValue());
+    }
+
     public void decodeBER(BERInputStream inputStream) throws IOException {
         BER.MutableByte type = new BER.MutableByte();
         byte[] v = BER.decodeString(inputStream, type);
@@ -64,6 +70,10 @@ public class Opaque extends OctetString {
         setValue(v);
     }
 
+    public void decodeBER(BERCursor cursor) throws IOException {
+        decodeBER(cursor, BER.OPAQUE, "OctetString");
+    }
+
     public void setValue(OctetString value) {
         this.setValue(new byte[0]);
         append(value);
@@ -22,7 +22,9 @@
 package cool.mybaby.snmp4j.ff.snmp4j.smi;
 
 import cool.mybaby.snmp4j.ff.snmp4j.asn1.BER;
+import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERCursor;
 import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERInputStream;
+import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERReverseEncoder;
 
 import java.io.IOException;
 import java.io.OutputStream;
@@ -73,6 +75,10 @@ public class TimeTicks extends UnsignedInteger32 {
         BER.encodeUnsignedInteger(os, BER.TIMETICKS, super.getValue());
     }
 
+    public void encodeBER(BERReverseEncoder encoder) {
+        encoder.encodeUnsignedInteger(BER.TIMETICKS, super.getValue());
+    }
+
     public void decodeBER(BERInputStream inputStream) throws IOException {
         BER.MutableByte type = new BER.MutableByte();
         long newValue = BER.decodeUnsignedInteger(inputStream, type);
@@ -82,6 +88,14 @@ public class TimeTicks extends UnsignedInteger32 {
         setValue(newValue);
     }
 
+    public void decodeBER(BERCursor cursor) throws IOException {
+        long newValue = cursor.decodeUnsignedInteger();
+        if (cursor.getType() != BER.TIMETICKS) {
+            throw new IOException("Wrong type encountered when decoding TimeTicks: " + cursor.getType());
+        }
+        setValue(newValue);
+    }
+
     /**
      * Returns string with the value of this <code>TimeTicks</code> object as
      * "[days,]hh:mm:ss.hh".
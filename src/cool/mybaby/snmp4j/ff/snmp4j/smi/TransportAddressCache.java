@@ -0,0 +1,157 @@
+/*_############################################################################
+  _##
+  _##  SNMP4J - TransportAddressCache.java
+  _##
+  _##  Copyright 2003-2007  Frank Fock and Jochen Katz (SNMP4J.org)
+  _##
+  _##  Licensed under the Apache License, Version 2.0 (the "License");
+  _##  you may not use this file except in compliance with the License.
+  _##  You may obtain a copy of the License at
+  _##
+  _##      http://www.apache.org/licenses/LICENSE-2.0
+  _##
+  _##  Unless required by applicable law or agreed to in writing, software
+  _##  distributed under the License is distributed on an "AS IS" BASIS,
+  _##  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  _##  See the License for the specific language governing permissions and
+  _##  limitations under the License.
+  _##
+  _##########################################################################*/
+
+package cool.mybaby.snmp4j.ff.snmp4j.smi;
+
+import java.net.InetAddress;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The <code>TransportAddressCache</code> interns the source addresses of
+ * received messages. A message from a known peer is then associated with
+ * the same {@link UdpAddress} or {@link TcpAddress} instance as the previous
+ * messages of that peer, instead of a new one.
+ * <p>
+ * Interned addresses cannot be modified (their setters throw an
+ * <code>UnsupportedOperationException</code>) and have a precomputed hash
+ * code. Lookups in tables keyed by them, like the engine ID cache of
+ * <code>MPv3</code>, succeed on the identity check in most cases.
+ * <p>
+ * The cache is bounded and direct mapped: each address has exactly one slot
+ * and replaces the address occupying it. Lookups are lock free.
+ *
+ * @version 1.9
+ * @since 1.9
+ */
+public class TransportAddressCache {
+
+    /**
+     * The default number of slots.
+     */
+    public static final int DEFAULT_SIZE = 4096;
+
+    private static final TransportAddressCache defaultCache =
+            new TransportAddressCache(DEFAULT_SIZE);
+
+    private final AtomicReferenceArray slots;
+    private final int mask;
+
+    /**
+     * Creates an address cache.
+     *
+     * @param size the number of slots, which is rounded up to a power of two.
+     */
+    public TransportAddressCache(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Size must be > 0");
+        }
+        int capacity = 1;
+        while (capacity < size) {
+            capacity <<= 1;
+        }
+        this.slots = new AtomicReferenceArray(capacity);
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Returns the cache shared by the transport mappings.
+     *
+     * @return the default <code>TransportAddressCache</code>.
+     */
+    public static TransportAddressCache getDefault() {
+        return defaultCache;
+    }
+
+    /**
+     * Returns the interned UDP address for the supplied IP address and port.
+     *
+     * @param inetAddress an IP address.
+     * @param port        a port.
+     * @return an immutable <code>UdpAddress</code>.
+     */
+    public UdpAddress getUdpAddress(InetAddress inetAddress, int port) {
+        UdpAddress address =
+                (UdpAddress) lookup(UdpAddress.class, inetAddress, port);
+        if (address == null) {
+            address = new UdpAddress(inetAddress, port);
+            store(address);
+        }
+        return address;
+    }
+
+    /**
+     * Returns the interned TCP address for the supplied IP address and port.
+     *
+     * @param inetAddress an IP address.
+     * @param port        a port.
+     * @return an immutable <code>TcpAddress</code>.
+     */
+    public TcpAddress getTcpAddress(InetAddress inetAddress, int port) {
+        TcpAddress address =
+                (TcpAddress) lookup(TcpAddress.class, inetAddress, port);
+        if (address == null) {
+            address = new TcpAddress(inetAddress, port);
+            store(address);
+        }
+        return address;
+    }
+
+    public int getSize() {
+        return slots.length();
+    }
+
+    /**
+     * Removes all addresses from this cache.
+     */
+    public void clear() {
+        for (int i = 0; i < slots.length(); i++) {
+            slots.set(i, null);
+        }
+    }
+
+    private TransportIpAddress lookup(Class addressClass,
+                                      InetAddress inetAddress, int port) {
+        TransportIpAddress address = (TransportIpAddress)
+                slots.get(slot(addressClass, inetAddress, port));
+        if ((address != null) && (address.getPort() == port) &&
+                (address.getClass() == addressClass) &&
+                inetAddress.equals(address.getInetAddress())) {
+            return address;
+        }
+        return null;
+    }
+
+    private void store(TransportIpAddress address) {
+        address.intern();
+        slots.set(slot(address.getClass(), address.getInetAddress(),
+                address.getPort()), address);
+    }
+
+    private int slot(Class addressClass, InetAddress inetAddress, int port) {
+        int h = inetAddress.hashCode() * 31 + port;
+        if (addressClass == TcpAddress.class) {
+            h = ~h;
+        }
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b;
+        h ^= (h >>> 13);
+        return h & mask;
+    }
+}
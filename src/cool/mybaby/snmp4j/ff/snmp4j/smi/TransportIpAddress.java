@@ -21,7 +21,9 @@
 
 package cool.mybaby.snmp4j.ff.snmp4j.smi;
 
+import cool.mybaby.snmp4j.ff.snmp4j.asn1.BER;
 import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERInputStream;
+import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERReverseEncoder;
 import cool.mybaby.snmp4j.ff.snmp4j.log.LogAdapter;
 import cool.mybaby.snmp4j.ff.snmp4j.log.LogFactory;
 
@@ -47,11 +49,49 @@ public abstract class TransportIpAddress extends IpAddress {
 
     protected int port = 0;
 
+    // interned addresses are immutable and have a precomputed hash code
+    private transient boolean interned = false;
+    private transient int hashCode;
+
     public int getPort() {
         return port;
     }
 
+    /**
+     * Returns whether this address is an immutable address obtained from a
+     * {@link TransportAddressCache}.
+     *
+     * @return <code>true</code> if this address cannot be modified.
+     * @since 1.9
+     */
+    public boolean isInterned() {
+        return interned;
+    }
+
+    final void intern() {
+        hashCode = super.hashCode() ^ 2 + port;
+        interned = true;
+    }
+
+    private void checkMutable() {
+        if (interned) {
+            throw new UnsupportedOperationException(
+                    "Interned address " + this + " cannot be modified");
+        }
+    }
+
+    public void setInetAddress(InetAddress inetAddress) {
+        checkMutable();
+        super.setInetAddress(inetAddress);
+    }
+
+    public void setAddress(byte[] rawValue) throws UnknownHostException {
+        checkMutable();
+        super.setAddress(rawValue);
+    }
+
     public void setPort(int port) {
+        checkMutable();
         if ((port < 0) || (port > 65535)) {
             throw new IllegalArgumentException("Illegal port specified: " + port);
         }
@@ -71,13 +111,22 @@ public abstract class TransportIpAddress extends IpAddress {
     }
 
     public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
         if (o instanceof TransportIpAddress) {
-            return (super.equals(o) && ((TransportIpAddress) o).getPort() == port);
+            TransportIpAddress other = (TransportIpAddress) o;
+            if ((other.port != port) ||
+                    (interned && other.interned && (hashCode != other.hashCode))) {
+                return false;
+            }
+            return super.equals(o);
         }
         return false;
     }
 
     public boolean parseAddress(String address) {
+        checkMutable();
         try {
             StringTokenizer st = new StringTokenizer(address, "/");
             String addr = st.nextToken();
@@ -108,6 +157,9 @@ public abstract class TransportIpAddress extends IpAddress {
     }
 
     public int hashCode() {
+        if (interned) {
+            return hashCode;
+        }
         return super.hashCode() ^ 2 + port;
     }
 
@@ -121,6 +173,7 @@ public abstract class TransportIpAddress extends IpAddress {
      */
     public void setTransportAddress(OctetString transportAddress) throws
             UnknownHostException {
+        checkMutable();
         OctetString inetAddr =
                 transportAddress.substring(0, transportAddress.length() - 2);
         setInetAddress(InetAddress.getByAddress(inetAddr.getValue()));
@@ -161,12 +214,17 @@ public abstract class TransportIpAddress extends IpAddress {
         os.encodeBER(outputStream);
     }
 
+    public void encodeBER(BERReverseEncoder encoder) {
+        encoder.encodeString(BER.OCTETSTRING, getValue());
+    }
+
     public int getBERLength() {
-        return getInetAddress().getAddress().length + 2;
+        int length = getBERPayloadLength();
+        return length + BER.getBERLengthOfLength(length) + 1;
     }
 
     public int getBERPayloadLength() {
-        return getBERLength();
+        return getInetAddress().getAddress().length + 2;
     }
 
     public int getSyntax() {
@@ -21,7 +21,9 @@
 package cool.mybaby.snmp4j.ff.snmp4j.smi;
 
 import cool.mybaby.snmp4j.ff.snmp4j.asn1.BER;
+import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERCursor;
 import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERInputStream;
+import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERReverseEncoder;
 
 import java.io.IOException;
 import java.io.OutputStream;
@@ -80,6 +82,10 @@ public class UnsignedInteger32 extends AbstractVariable
         BER.encodeUnsignedInteger(outputStream, BER.GAUGE, value);
     }
 
+    public void encodeBER(BERReverseEncoder encoder) {
+        encoder.encodeUnsignedInteger(BER.GAUGE, value);
+    }
+
     public void decodeBER(BERInputStream inputStream) throws java.io.IOException {
         BER.MutableByte type = new BER.MutableByte();
         long newValue = BER.decodeUnsignedInteger(inputStream, type);
@@ -90,6 +96,15 @@ public class UnsignedInteger32 extends AbstractVariable
         setValue(newValue);
     }
 
+    public void decodeBER(BERCursor cursor) throws IOException {
+        long newValue = cursor.decodeUnsignedInteger();
+        if (cursor.getType() != BER.GAUGE) {
+            throw new IOException("Wrong type encountered when decoding Gauge: " +
+                    cursor.getType());
+        }
+        setValue(newValue);
+    }
+
     public int getSyntax() {
         return SMIConstants.SYNTAX_UNSIGNED_INTEGER32;
     }
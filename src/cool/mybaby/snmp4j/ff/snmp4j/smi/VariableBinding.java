@@ -21,7 +21,9 @@
 package cool.mybaby.snmp4j.ff.snmp4j.smi;
 
 import cool.mybaby.snmp4j.ff.snmp4j.asn1.BER;
+import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERCursor;
 import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERInputStream;
+import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERReverseEncoder;
 import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERSerializable;
 
 import java.io.IOException;
@@ -170,6 +172,35 @@ public class VariableBinding
         }
     }
 
+    /**
+     * Decodes this variable binding from a <code>BERCursor</code>. The OID is
+     * decoded in place. The current variable is decoded in place too if it
+     * has the syntax found at the cursor, otherwise a new variable is
+     * created by {@link AbstractVariable#createFromBER(BERCursor)}.
+     *
+     * @param cursor a <code>BERCursor</code> positioned at the variable binding.
+     * @throws IOException if the variable binding could not be decoded.
+     * @since 1.9
+     */
+    public final void decodeBER(BERCursor cursor) throws IOException {
+        int length = cursor.decodeHeader();
+        int startPos = cursor.getPosition();
+        if (cursor.getType() != BER.SEQUENCE) {
+            throw new IOException("Invalid sequence encoding: " + cursor.getType());
+        }
+        oid.decodeBER(cursor);
+        if (!(variable instanceof AbstractVariable) ||
+                (variable instanceof Null) ||
+                (variable.getSyntax() != cursor.peekType())) {
+            variable = AbstractVariable.createFromBER(cursor);
+        } else {
+            ((AbstractVariable) variable).decodeBER(cursor);
+        }
+        if (BER.isCheckSequenceLength()) {
+            BER.checkSequenceLength(length, cursor.getPosition() - startPos, this);
+        }
+    }
+
     public final void encodeBER(OutputStream outputStream) throws IOException {
         int length = getBERPayloadLength();
         BER.encodeHeader(outputStream, BER.SEQUENCE,
@@ -178,6 +209,25 @@ public class VariableBinding
         variable.encodeBER(outputStream);
     }
 
+    /**
+     * Encodes this variable binding backwards with a
+     * <code>BERReverseEncoder</code>.
+     *
+     * @param encoder a <code>BERReverseEncoder</code>.
+     * @throws IOException if the variable could not be encoded.
+     * @since 1.9
+     */
+    public final void encodeBER(BERReverseEncoder encoder) throws IOException {
+        int end = encoder.length();
+        if (variable instanceof AbstractVariable) {
+            ((AbstractVariable) variable).encodeBER(encoder);
+        } else {
+            encoder.write(variable);
+        }
+        oid.encodeBER(encoder);
+        encoder.encodeHeader(BER.SEQUENCE, encoder.length() - end);
+    }
+
     /**
      * Gets a string representation of this variable binding.
      *
@@ -0,0 +1,142 @@
+/*_############################################################################
+  _##
+  _##  SNMP4J - DecodeBenchmark.java
+  _##
+  _##  Copyright 2003-2007  Frank Fock and Jochen Katz (SNMP4J.org)
+  _##
+  _##  Licensed under the Apache License, Version 2.0 (the "License");
+  _##  you may not use this file except in compliance with the License.
+  _##  You may obtain a copy of the License at
+  _##
+  _##      http://www.apache.org/licenses/LICENSE-2.0
+  _##
+  _##  Unless required by applicable law or agreed to in writing, software
+  _##  distributed under the License is distributed on an "AS IS" BASIS,
+  _##  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  _##  See the License for the specific language governing permissions and
+  _##  limitations under the License.
+  _##
+  _##########################################################################*/
+
+package cool.mybaby.snmp4j.ff.snmp4j.test;
+
+import cool.mybaby.snmp4j.ff.snmp4j.PDU;
+import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERCursor;
+import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERInputStream;
+import cool.mybaby.snmp4j.ff.snmp4j.asn1.BEROutputStream;
+import cool.mybaby.snmp4j.ff.snmp4j.smi.*;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Compares the decoding of a response PDU through
+ * {@link PDU#decodeBER(BERInputStream)}, through a {@link BERCursor} into a
+ * new <code>PDU</code>, and through a reused cursor into a reused
+ * <code>PDU</code>. For each path the time and the bytes allocated per
+ * decoded PDU are printed.
+ * <p>
+ * Usage: <code>DecodeBenchmark [variableBindings [iterations]]</code>
+ */
+public class DecodeBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    private byte[] encoded;
+    private int iterations;
+
+    public DecodeBenchmark(int variableBindings, int iterations)
+            throws IOException {
+        this.iterations = iterations;
+        PDU pdu = new PDU();
+        pdu.setType(PDU.RESPONSE);
+        pdu.setRequestID(new Integer32(123456));
+        for (int i = 0; i < variableBindings; i++) {
+            OID oid = new OID("1.3.6.1.2.1.2.2.1.10." + (i + 1));
+            switch (i % 6) {
+                case 0:
+                    pdu.add(new VariableBinding(oid, new Integer32(-i * 1000)));
+                    break;
+                case 1:
+                    pdu.add(new VariableBinding(oid, new Counter32(4000000000L - i)));
+                    break;
+                case 2:
+                    pdu.add(new VariableBinding(oid, new OctetString("eth" + i)));
+                    break;
+                case 3:
+                    pdu.add(new VariableBinding(oid, new Counter64(Long.MAX_VALUE - i)));
+                    break;
+                case 4:
+                    pdu.add(new VariableBinding(oid, new TimeTicks(1234567L * i)));
+                    break;
+                default:
+                    pdu.add(new VariableBinding(oid, new OID("1.3.6.1.4.1.9." + i)));
+            }
+        }
+        encoded = encode(pdu);
+    }
+
+    private static byte[] encode(PDU pdu) throws IOException {
+        BEROutputStream os =
+                new BEROutputStream(ByteBuffer.allocate(pdu.getBERLength()));
+        pdu.encodeBER(os);
+        return os.getBuffer().array();
+    }
+
+    private void run(String name, int path) throws IOException {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean allocation =
+                (threads instanceof com.sun.management.ThreadMXBean) ?
+                        (com.sun.management.ThreadMXBean) threads : null;
+        long threadID = Thread.currentThread().getId();
+        ByteBuffer buffer = ByteBuffer.wrap(encoded);
+        BERCursor cursor = new BERCursor();
+        PDU reused = new PDU();
+        PDU decoded = null;
+        for (int r = 0; r < ROUNDS; r++) {
+            long allocated = (allocation == null) ?
+                    0 : allocation.getThreadAllocatedBytes(threadID);
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                buffer.clear();
+                switch (path) {
+                    case 0:
+                        decoded = new PDU();
+                        decoded.decodeBER(new BERInputStream(buffer));
+                        break;
+                    case 1:
+                        decoded = new PDU();
+                        decoded.decodeBER(new BERCursor(buffer));
+                        break;
+                    default:
+                        cursor.reset(buffer);
+                        reused.decodeBER(cursor);
+                        decoded = reused;
+                }
+            }
+            long time = System.nanoTime() - start;
+            String bytes = (allocation == null) ? "n/a" :
+                    Long.toString((allocation.getThreadAllocatedBytes(threadID) -
+                            allocated) / iterations);
+            System.out.println(name + " round " + (r + 1) + ": " +
+                    (time / iterations) + " ns/PDU, " + bytes + " bytes/PDU");
+        }
+        if (!Arrays.equals(encode(decoded), encoded)) {
+            throw new IOException(name + " decoded a different PDU: " + decoded);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int variableBindings = (args.length > 0) ? Integer.parseInt(args[0]) : 50;
+        int iterations = (args.length > 1) ? Integer.parseInt(args[1]) : 200000;
+        DecodeBenchmark benchmark = new DecodeBenchmark(variableBindings, iterations);
+        System.out.println("Decoding a " + benchmark.encoded.length + " byte PDU with " +
+                variableBindings + " variable bindings");
+        benchmark.run("PDU.decodeBER(BERInputStream)", 0);
+        benchmark.run("PDU.decodeBER(BERCursor)", 1);
+        benchmark.run("PDU.decodeBER(BERCursor) reused", 2);
+    }
+}
@@ -0,0 +1,303 @@
+/*_############################################################################
+  _##
+  _##  SNMP4J - ReverseEncoderCheck.java
+  _##
+  _##  Copyright 2003-2007  Frank Fock and Jochen Katz (SNMP4J.org)
+  _##
+  _##  Licensed under the Apache License, Version 2.0 (the "License");
+  _##  you may not use this file except in compliance with the License.
+  _##  You may obtain a copy of the License at
+  _##
+  _##      http://www.apache.org/licenses/LICENSE-2.0
+  _##
+  _##  Unless required by applicable law or agreed to in writing, software
+  _##  distributed under the License is distributed on an "AS IS" BASIS,
+  _##  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  _##  See the License for the specific language governing permissions and
+  _##  limitations under the License.
+  _##
+  _##########################################################################*/
+
+package cool.mybaby.snmp4j.ff.snmp4j.test;
+
+import cool.mybaby.snmp4j.ff.snmp4j.PDU;
+import cool.mybaby.snmp4j.ff.snmp4j.PDUv1;
+import cool.mybaby.snmp4j.ff.snmp4j.ScopedPDU;
+import cool.mybaby.snmp4j.ff.snmp4j.asn1.BER;
+import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERInputStream;
+import cool.mybaby.snmp4j.ff.snmp4j.asn1.BEROutputStream;
+import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERReverseEncoder;
+import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERSerializable;
+import cool.mybaby.snmp4j.ff.snmp4j.mp.MPv1;
+import cool.mybaby.snmp4j.ff.snmp4j.mp.MPv2c;
+import cool.mybaby.snmp4j.ff.snmp4j.mp.MessageProcessingModel;
+import cool.mybaby.snmp4j.ff.snmp4j.mp.SnmpConstants;
+import cool.mybaby.snmp4j.ff.snmp4j.smi.*;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Checks that {@link BERReverseEncoder} produces the same bytes as the
+ * forward encoding through {@link BEROutputStream} for randomly generated
+ * PDUs, and that the reverse encoding of a decoded PDU equals the bytes it
+ * was decoded from. The values are biased towards the boundaries of the
+ * BER length and integer encodings. Then the messages prepared by
+ * {@link MPv1} and {@link MPv2c} are compared with a forward encoding of
+ * the same message.
+ * <p>
+ * Usage: <code>ReverseEncoderCheck [pdus [seed]]</code>
+ */
+public class ReverseEncoderCheck {
+
+    private static final long[] UNSIGNED_EDGES = {
+            0, 1, 0x7F, 0x80, 0xFF, 0x100, 0x7FFF, 0x8000, 0xFFFF, 0x7FFFFF,
+            0x800000, 0xFFFFFF, 0x7FFFFFFFL, 0x80000000L, 0xFFFFFFFFL
+    };
+    private static final int[] SIGNED_EDGES = {
+            0, 1, -1, 127, 128, -128, -129, 255, 256, 32767, 32768, -32768, -32769,
+            0x7FFFFF, 0x800000, -0x800000, -0x800001,
+            Integer.MAX_VALUE, Integer.MIN_VALUE
+    };
+    private static final long[] LONG_EDGES = {
+            0, 1, 0x7F, 0x80, 0xFF, 0x7FFFFFFFFFFFFFFFL, 0x8000000000000000L, -1L,
+            0xFFFFFFFFFFL, 0x80000000000L
+    };
+    private static final int[] STRING_LENGTHS = {
+            0, 1, 127, 128, 255, 256, 65535, 65536, 70000
+    };
+    private static final int[] PDU_TYPES = {
+            PDU.GET, PDU.GETNEXT, PDU.GETBULK, PDU.RESPONSE, PDU.SET, PDU.REPORT,
+            PDU.TRAP, PDU.INFORM
+    };
+
+    private Random random;
+    private int checked = 0;
+
+    public ReverseEncoderCheck(long seed) {
+        this.random = new Random(seed);
+    }
+
+    private Variable createVariable() throws IOException {
+        switch (random.nextInt(14)) {
+            case 0:
+                return new Integer32(random.nextBoolean() ?
+                        SIGNED_EDGES[random.nextInt(SIGNED_EDGES.length)] :
+                        random.nextInt());
+            case 1:
+                return new Counter32(random.nextBoolean() ?
+                        UNSIGNED_EDGES[random.nextInt(UNSIGNED_EDGES.length)] :
+                        random.nextInt() & 0xFFFFFFFFL);
+            case 2:
+                return new Gauge32(UNSIGNED_EDGES[random.nextInt(UNSIGNED_EDGES.length)]);
+            case 3:
+                return new TimeTicks(random.nextInt() & 0xFFFFFFFFL);
+            case 4:
+                return new Counter64(random.nextBoolean() ?
+                        LONG_EDGES[random.nextInt(LONG_EDGES.length)] :
+                        random.nextLong() >>> random.nextInt(64));
+            case 5: {
+                byte[] value = new byte[(random.nextInt(10) == 0) ?
+                        STRING_LENGTHS[random.nextInt(STRING_LENGTHS.length)] :
+                        random.nextInt(40)];
+                random.nextBytes(value);
+                return new OctetString(value);
+            }
+            case 6:
+                return createOID();
+            case 7:
+                return new IpAddress("10." + random.nextInt(256) + "." +
+                        random.nextInt(256) + ".1");
+            case 8: {
+                byte[] value = new byte[random.nextInt(20)];
+                random.nextBytes(value);
+                return new Opaque(value);
+            }
+            case 9:
+                return new Null();
+            case 10:
+                return random.nextBoolean() ? Null.endOfMibView : Null.noSuchInstance;
+            case 11:
+                return new UdpAddress(createInetAddress(), random.nextInt(65536));
+            case 12:
+                return new TcpAddress(createInetAddress(), random.nextInt(65536));
+            default:
+                return new UnsignedInteger32(
+                        UNSIGNED_EDGES[random.nextInt(UNSIGNED_EDGES.length)]);
+        }
+    }
+
+    private InetAddress createInetAddress() throws IOException {
+        byte[] address = new byte[random.nextBoolean() ? 4 : 16];
+        random.nextBytes(address);
+        return InetAddress.getByAddress(address);
+    }
+
+    private OID createOID() {
+        int[] value = new int[(random.nextInt(8) == 0) ?
+                random.nextInt(3) : 2 + random.nextInt(30)];
+        for (int i = 0; i < value.length; i++) {
+            switch (random.nextInt(5)) {
+                case 0:
+                    value[i] = random.nextInt();
+                    break;
+                case 1:
+                    value[i] = (int) UNSIGNED_EDGES[random.nextInt(UNSIGNED_EDGES.length)];
+                    break;
+                case 2:
+                    value[i] = 1 << random.nextInt(32);
+                    break;
+                default:
+                    value[i] = random.nextInt(200);
+            }
+        }
+        if (value.length > 0) {
+            value[0] = random.nextInt(3);
+        }
+        if (value.length > 1) {
+            value[1] = random.nextInt(40);
+        }
+        return new OID(value);
+    }
+
+    private static PDU createPDU(int kind) {
+        switch (kind) {
+            case 0:
+                return new PDU();
+            case 1:
+                return new ScopedPDU();
+            default:
+                return new PDUv1();
+        }
+    }
+
+    private static byte[] encodeForwards(BERSerializable object) throws IOException {
+        BEROutputStream os =
+                new BEROutputStream(ByteBuffer.allocate(object.getBERLength()));
+        object.encodeBER(os);
+        return os.getBuffer().array();
+    }
+
+    private static byte[] encodeBackwards(PDU pdu) throws IOException {
+        BERReverseEncoder encoder = BERReverseEncoder.getThreadEncoder();
+        pdu.encodeBER(encoder);
+        return encoder.toByteArray();
+    }
+
+    /**
+     * Compares the encodings of a random PDU and decodes the reverse encoding
+     * again.
+     */
+    private void checkPDU(int n) throws IOException {
+        int kind = random.nextInt(3);
+        PDU pdu = createPDU(kind);
+        if (kind == 2) {
+            PDUv1 pduV1 = (PDUv1) pdu;
+            pduV1.setType((random.nextInt(4) == 0) ? PDU.V1TRAP : PDU.RESPONSE);
+            if (pduV1.getType() == PDU.V1TRAP) {
+                pduV1.setEnterprise(new OID("1.3.6.1.4.1." + random.nextInt(99999)));
+                pduV1.setTimestamp(random.nextInt() & 0xFFFFFFFFL);
+                pduV1.setSpecificTrap(random.nextInt());
+                pduV1.setAgentAddress(new IpAddress("192.168.1." + random.nextInt(256)));
+            }
+        } else {
+            pdu.setType(PDU_TYPES[random.nextInt(PDU_TYPES.length)]);
+        }
+        if (kind == 1) {
+            byte[] contextEngineID = new byte[random.nextInt(33)];
+            random.nextBytes(contextEngineID);
+            ((ScopedPDU) pdu).setContextEngineID(new OctetString(contextEngineID));
+            ((ScopedPDU) pdu).setContextName(
+                    new OctetString("context" + random.nextInt(1000)));
+        }
+        pdu.setRequestID(new Integer32(random.nextInt()));
+        pdu.setErrorStatus(random.nextInt(19));
+        pdu.setErrorIndex(random.nextInt(300));
+        int size = (random.nextInt(20) == 0) ?
+                500 + random.nextInt(1500) : random.nextInt(60);
+        for (int i = 0; i < size; i++) {
+            Variable variable = createVariable();
+            if ((kind == 2) && (variable instanceof Counter64)) {
+                // SNMPv1 has no Counter64
+                variable = new Counter32(((Counter64) variable).getValue() & 0xFFFFFFFFL);
+            }
+            pdu.add(new VariableBinding(createOID(), variable));
+        }
+        byte[] expected = encodeForwards(pdu);
+        byte[] encoded = encodeBackwards(pdu);
+        if (!Arrays.equals(expected, encoded)) {
+            throw new IOException("Encodings of PDU " + n + " differ (" +
+                    expected.length + "/" + encoded.length + " bytes): " + pdu);
+        }
+        PDU decoded = createPDU(kind);
+        decoded.decodeBER(new BERInputStream(ByteBuffer.wrap(encoded)));
+        if (!Arrays.equals(encodeBackwards(decoded), encoded)) {
+            throw new IOException("Round trip of PDU " + n + " failed: " + pdu);
+        }
+        checked++;
+    }
+
+    /**
+     * Compares a community based message prepared by a message processing
+     * model with the forward encoding of the same message.
+     */
+    private void checkMessage(int version, int n) throws IOException {
+        PDU pdu = (version == SnmpConstants.version1) ? new PDUv1() : new PDU();
+        pdu.setType(PDU.GET);
+        pdu.setRequestID(new Integer32(random.nextInt()));
+        for (int i = random.nextInt(100); i > 0; i--) {
+            pdu.add(new VariableBinding(createOID(),
+                    (version == SnmpConstants.version1) ?
+                            new Integer32(random.nextInt()) : createVariable()));
+        }
+        OctetString community = new OctetString("public" + n);
+        Integer32 snmpVersion = new Integer32(version);
+        int length = pdu.getBERLength() + community.getBERLength() +
+                snmpVersion.getBERLength();
+        BEROutputStream expected = new BEROutputStream(ByteBuffer.allocate(
+                length + BER.getBERLengthOfLength(length) + 1));
+        BER.encodeHeader(expected, BER.SEQUENCE, length);
+        snmpVersion.encodeBER(expected);
+        community.encodeBER(expected);
+        pdu.encodeBER(expected);
+
+        MessageProcessingModel mp;
+        int securityModel;
+        if (version == SnmpConstants.version1) {
+            mp = new MPv1();
+            securityModel = 1;
+        } else {
+            mp = new MPv2c();
+            securityModel = 2;
+        }
+        BEROutputStream prepared = new BEROutputStream();
+        int status = mp.prepareOutgoingMessage(new UdpAddress("127.0.0.1/161"),
+                65535, version, securityModel, community.getValue(), 1, pdu,
+                true, null, null, prepared);
+        if ((status != SnmpConstants.SNMP_MP_OK) ||
+                !Arrays.equals(expected.getBuffer().array(),
+                        prepared.getBuffer().array())) {
+            throw new IOException("Message " + n + " of SNMP version " + version +
+                    " differs, status " + status);
+        }
+        checked++;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int pdus = (args.length > 0) ? Integer.parseInt(args[0]) : 10000;
+        long seed = (args.length > 1) ? Long.parseLong(args[1]) : 25;
+        ReverseEncoderCheck check = new ReverseEncoderCheck(seed);
+        for (int i = 0; i < pdus; i++) {
+            check.checkPDU(i);
+        }
+        for (int i = 0; i < 200; i++) {
+            check.checkMessage(SnmpConstants.version1, i);
+            check.checkMessage(SnmpConstants.version2c, i);
+        }
+        System.out.println("Checked " + check.checked + " encodings with seed " +
+                seed + ": all identical");
+    }
+}
@@ -0,0 +1,91 @@
+/*_############################################################################
+  _##
+  _##  SNMP4J - TimerBenchmark.java
+  _##
+  _##  Copyright 2003-2007  Frank Fock and Jochen Katz (SNMP4J.org)
+  _##
+  _##  Licensed under the Apache License, Version 2.0 (the "License");
+  _##  you may not use this file except in compliance with the License.
+  _##  You may obtain a copy of the License at
+  _##
+  _##      http://www.apache.org/licenses/LICENSE-2.0
+  _##
+  _##  Unless required by applicable law or agreed to in writing, software
+  _##  distributed under the License is distributed on an "AS IS" BASIS,
+  _##  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  _##  See the License for the specific language governing permissions and
+  _##  limitations under the License.
+  _##
+  _##########################################################################*/
+
+package cool.mybaby.snmp4j.ff.snmp4j.test;
+
+import cool.mybaby.snmp4j.ff.snmp4j.util.CommonTimer;
+import cool.mybaby.snmp4j.ff.snmp4j.util.HashedWheelTimer;
+import cool.mybaby.snmp4j.ff.snmp4j.util.TimeoutHandle;
+import cool.mybaby.snmp4j.ff.snmp4j.util.TimerAdapter;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Compares the <code>java.util.Timer</code> based {@link TimerAdapter} with
+ * the {@link HashedWheelTimer} for the retry pattern of <code>Snmp</code>:
+ * many outstanding timeouts of which most are cancelled (answered) and a few
+ * expire (timed out).
+ * <p>
+ * Usage: <code>TimerBenchmark [outstanding [expiringPercent]]</code>
+ */
+public class TimerBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    private int outstanding;
+    private int expiringPercent;
+
+    public TimerBenchmark(int outstanding, int expiringPercent) {
+        this.outstanding = outstanding;
+        this.expiringPercent = expiringPercent;
+    }
+
+    private void run(String name, CommonTimer timer) throws InterruptedException {
+        Random random = new Random(42);
+        for (int r = 0; r < ROUNDS; r++) {
+            TimeoutHandle[] handles = new TimeoutHandle[outstanding];
+            int expiring = outstanding * expiringPercent / 100;
+            final CountDownLatch expired = new CountDownLatch(expiring);
+            Runnable task = new Runnable() {
+                public void run() {
+                    expired.countDown();
+                }
+            };
+            long start = System.nanoTime();
+            for (int i = 0; i < outstanding; i++) {
+                handles[i] = timer.schedule(task, 500 + random.nextInt(1000));
+            }
+            long scheduled = System.nanoTime();
+            for (int i = expiring; i < outstanding; i++) {
+                handles[i].cancel();
+            }
+            long cancelled = System.nanoTime();
+            expired.await();
+            long done = System.nanoTime();
+            timer.purge();
+            System.out.println(name + " round " + (r + 1) +
+                    ": schedule " + ((scheduled - start) / outstanding) + " ns/op" +
+                    ", cancel " + ((cancelled - scheduled) /
+                    Math.max(1, outstanding - expiring)) + " ns/op" +
+                    ", all " + expiring + " expired after " +
+                    ((done - start) / 1000000) + " ms");
+        }
+        timer.cancel();
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int outstanding = (args.length > 0) ? Integer.parseInt(args[0]) : 100000;
+        int expiringPercent = (args.length > 1) ? Integer.parseInt(args[1]) : 5;
+        TimerBenchmark benchmark = new TimerBenchmark(outstanding, expiringPercent);
+        benchmark.run("java.util.Timer", new TimerAdapter());
+        benchmark.run("HashedWheelTimer", new HashedWheelTimer());
+    }
+}
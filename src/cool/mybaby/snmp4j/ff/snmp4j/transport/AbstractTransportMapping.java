@@ -85,6 +85,39 @@ public abstract class AbstractTransportMapping implements TransportMapping {
         }
     }
 
+    /**
+     * Passes a received message in a reference counted buffer to the
+     * transport listeners. {@link ReceiveBufferListener}s get their own
+     * reference to a duplicate of the buffer, so each of them may decode the
+     * message concurrently. Other listeners get a copy of the message if
+     * asynchronous message processing is supported. The buffer itself is
+     * never handed out. The caller keeps its reference and has to release it
+     * after this method returns.
+     *
+     * @param address the source address of the message.
+     * @param buf     the received message.
+     * @since 1.9
+     */
+    protected void fireProcessMessage(Address address, ReceiveBuffer buf) {
+        if (transportListener != null) {
+            for (int i = 0; i < transportListener.size(); i++) {
+                TransportListener l;
+                synchronized (this) {
+                    l = (TransportListener) transportListener.get(i);
+                }
+                if (l instanceof ReceiveBufferListener) {
+                    ((ReceiveBufferListener) l).processMessage(this, address,
+                            buf.duplicate().retain());
+                } else if (isAsyncMsgProcessingSupported()) {
+                    l.processMessage(this, address, buf.copy());
+                } else {
+                    l.processMessage(this, address,
+                            buf.duplicate().getByteBuffer());
+                }
+            }
+        }
+    }
+
 
     public abstract void close() throws IOException;
 
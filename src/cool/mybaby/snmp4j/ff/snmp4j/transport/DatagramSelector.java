@@ -0,0 +1,367 @@
+/*_############################################################################
+  _##
+  _##  SNMP4J - DatagramSelector.java
+  _##
+  _##  Copyright 2003-2007  Frank Fock and Jochen Katz (SNMP4J.org)
+  _##
+  _##  Licensed under the Apache License, Version 2.0 (the "License");
+  _##  you may not use this file except in compliance with the License.
+  _##  You may obtain a copy of the License at
+  _##
+  _##      http://www.apache.org/licenses/LICENSE-2.0
+  _##
+  _##  Unless required by applicable law or agreed to in writing, software
+  _##  distributed under the License is distributed on an "AS IS" BASIS,
+  _##  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  _##  See the License for the specific language governing permissions and
+  _##  limitations under the License.
+  _##
+  _##########################################################################*/
+
+package cool.mybaby.snmp4j.ff.snmp4j.transport;
+
+import cool.mybaby.snmp4j.ff.snmp4j.log.LogAdapter;
+import cool.mybaby.snmp4j.ff.snmp4j.log.LogFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * The <code>DatagramSelector</code> serves the non-blocking datagram channels
+ * of any number of {@link NioUdpTransportMapping} instances (and the connected
+ * channels of {@link DefaultUdpTransportMapping}) with a single I/O thread and
+ * a single <code>Selector</code>.
+ * <p>
+ * The thread is started when the first channel registers and stops
+ * when the last one deregisters. If the thread terminates because of an
+ * error, its channels are registered with a new thread. Incoming datagrams are read into a direct
+ * buffer owned by the I/O thread, which is reused for every datagram.
+ *
+ * @version 1.9
+ * @since 1.9
+ */
+public class DatagramSelector {
+
+    private static final LogAdapter logger =
+            LogFactory.getLogger(DatagramSelector.class);
+
+    /**
+     * The maximum size of a UDP datagram.
+     */
+    public static final int MAX_DATAGRAM_SIZE = (1 << 16) - 1;
+
+    // maximum time a sender waits for a writable channel before it checks
+    // whether it has been interrupted
+    private static final long WRITE_WAIT_MILLIS = 100;
+
+    private static DatagramSelector defaultSelector;
+
+    private final String name;
+    private Worker worker;
+    private int registrations;
+
+    /**
+     * Creates a datagram selector.
+     *
+     * @param name the name of the I/O thread.
+     */
+    public DatagramSelector(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns the datagram selector shared by all transport mappings that do
+     * not specify their own.
+     *
+     * @return the default <code>DatagramSelector</code>.
+     */
+    public static synchronized DatagramSelector getDefault() {
+        if (defaultSelector == null) {
+            defaultSelector = new DatagramSelector("SNMP4J-UDP-Selector");
+        }
+        return defaultSelector;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the number of registered transport mappings.
+     *
+     * @return the number of transport mappings served by this selector.
+     */
+    public synchronized int getRegistrations() {
+        return registrations;
+    }
+
+    /**
+     * Registers a channel for reading.
+     *
+     * @param channel  a non-blocking datagram channel.
+     * @param receiver the receiver that reads the channel when it is readable.
+     * @return the registration of the channel, which is needed to deregister
+     * it.
+     * @throws IOException if the selector could not be opened.
+     */
+    synchronized Object register(DatagramChannel channel, Receiver receiver)
+            throws IOException {
+        Registration registration = new Registration(channel, receiver);
+        getWorker().add(registration);
+        registrations++;
+        return registration;
+    }
+
+    /**
+     * Deregisters a channel.
+     *
+     * @param channel  a registered channel.
+     * @param servedBy the object returned by {@link #register}.
+     */
+    synchronized void deregister(final DatagramChannel channel,
+                                 Object servedBy) {
+        Registration registration = (Registration) servedBy;
+        final Worker w = registration.worker;
+        if ((w == null) || !w.registered.remove(registration)) {
+            // already deregistered or closed after a failure of the selector
+            return;
+        }
+        registration.worker = null;
+        w.changes.add(new Runnable() {
+            public void run() {
+                SelectionKey key = channel.keyFor(w.selector);
+                if (key != null) {
+                    key.cancel();
+                }
+            }
+        });
+        registrations--;
+        if ((registrations == 0) && (w == worker)) {
+            w.stop = true;
+            worker = null;
+        }
+        w.selector.wakeup();
+    }
+
+    private Worker getWorker() throws IOException {
+        if (worker == null) {
+            worker = new Worker(Selector.open());
+            worker.start();
+        }
+        return worker;
+    }
+
+    /**
+     * Moves the channels of a worker thread that terminated because of an
+     * error to a new worker thread. If no new worker can be started, the
+     * channels are closed, so their transport mappings fail instead of
+     * waiting for datagrams that are never read.
+     *
+     * @param failed the terminated worker.
+     */
+    private void workerFailed(Worker failed) {
+        List moved;
+        synchronized (this) {
+            if (worker == failed) {
+                worker = null;
+            }
+            moved = new ArrayList(failed.registered);
+            failed.registered.clear();
+            if (moved.isEmpty()) {
+                return;
+            }
+            try {
+                Worker next = getWorker();
+                for (int i = 0; i < moved.size(); i++) {
+                    next.add((Registration) moved.get(i));
+                }
+                logger.warn("Restarted datagram selector " + name + " for " +
+                        moved.size() + " channels");
+                return;
+            } catch (IOException iox) {
+                logger.error("Datagram selector " + name + " could not be restarted: " +
+                        iox.getMessage(), iox);
+                registrations -= moved.size();
+                for (int i = 0; i < moved.size(); i++) {
+                    ((Registration) moved.get(i)).worker = null;
+                }
+            }
+        }
+        for (int i = 0; i < moved.size(); i++) {
+            try {
+                ((Registration) moved.get(i)).channel.close();
+            } catch (IOException iox) {
+                logger.warn(iox);
+            }
+        }
+    }
+
+    /**
+     * Sends a datagram through a non-blocking channel. While the socket send
+     * buffer is full a non-blocking channel sends nothing, thus the calling
+     * thread then waits on a temporary selector until the channel is
+     * writable, as a blocking channel would do.
+     *
+     * @param channel  a non-blocking datagram channel.
+     * @param datagram the datagram to send.
+     * @param target   the destination of the datagram or <code>null</code> if
+     *                 the channel is connected.
+     * @throws IOException if the datagram could not be sent or the calling
+     *                     thread has been interrupted while waiting.
+     */
+    static void send(DatagramChannel channel, ByteBuffer datagram,
+                     SocketAddress target) throws IOException {
+        if (write(channel, datagram, target)) {
+            return;
+        }
+        Selector selector = Selector.open();
+        try {
+            channel.register(selector, SelectionKey.OP_WRITE);
+            while (!write(channel, datagram, target)) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException(
+                            "Interrupted while waiting for send buffer space");
+                }
+                selector.select(WRITE_WAIT_MILLIS);
+                selector.selectedKeys().clear();
+            }
+        } finally {
+            // deregisters the channel
+            selector.close();
+        }
+    }
+
+    private static boolean write(DatagramChannel channel, ByteBuffer datagram,
+                                 SocketAddress target) throws IOException {
+        // a non-blocking channel sends all or nothing
+        if (target == null) {
+            return channel.write(datagram) > 0;
+        }
+        return channel.send(datagram, target) > 0;
+    }
+
+    /**
+     * A <code>Receiver</code> reads the datagrams of a readable channel.
+     */
+    interface Receiver {
+
+        /**
+         * Reads the available datagrams from the supplied channel. Called by
+         * the I/O thread.
+         *
+         * @param channel the readable channel.
+         * @param buffer  the (direct) receive buffer of the I/O thread.
+         */
+        void receive(DatagramChannel channel, ByteBuffer buffer);
+    }
+
+    /**
+     * The registration of a channel with the worker currently serving it.
+     */
+    static class Registration {
+
+        private final DatagramChannel channel;
+        private final Receiver receiver;
+        // guarded by the DatagramSelector
+        private Worker worker;
+
+        Registration(DatagramChannel channel, Receiver receiver) {
+            this.channel = channel;
+            this.receiver = receiver;
+        }
+    }
+
+    class Worker extends Thread {
+
+        private final Selector selector;
+        private final ConcurrentLinkedQueue changes = new ConcurrentLinkedQueue();
+        // registrations served by this worker, guarded by the DatagramSelector
+        private final Set registered = new HashSet();
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(MAX_DATAGRAM_SIZE);
+        private volatile boolean stop;
+
+        Worker(Selector selector) {
+            super(name);
+            this.selector = selector;
+            setDaemon(true);
+        }
+
+        /**
+         * Registers a channel with the selector of this worker the next time
+         * the worker wakes up. Called with the DatagramSelector locked.
+         */
+        void add(final Registration registration) {
+            registration.worker = this;
+            registered.add(registration);
+            changes.add(new Runnable() {
+                public void run() {
+                    try {
+                        registration.channel.register(selector, SelectionKey.OP_READ,
+                                registration.receiver);
+                    } catch (ClosedChannelException ccex) {
+                        logger.warn("Channel " + registration.channel +
+                                " closed before registration");
+                    }
+                }
+            });
+            selector.wakeup();
+        }
+
+        public void run() {
+            boolean failed = true;
+            try {
+                while (!stop) {
+                    Runnable change;
+                    while ((change = (Runnable) changes.poll()) != null) {
+                        change.run();
+                    }
+                    if (stop) {
+                        break;
+                    }
+                    selector.select();
+                    for (Iterator it = selector.selectedKeys().iterator(); it.hasNext(); ) {
+                        SelectionKey key = (SelectionKey) it.next();
+                        it.remove();
+                        if (key.isValid() && key.isReadable()) {
+                            ((Receiver) key.attachment()).receive(
+                                    (DatagramChannel) key.channel(), buffer);
+                        }
+                    }
+                }
+                failed = false;
+            } catch (IOException iox) {
+                logger.error("Datagram selector " + getName() + " failed: " +
+                        iox.getMessage(), iox);
+            } catch (RuntimeException rex) {
+                logger.error("Datagram selector " + getName() + " failed: " +
+                        rex.getMessage(), rex);
+                throw rex;
+            } finally {
+                Runnable change;
+                while ((change = (Runnable) changes.poll()) != null) {
+                    change.run();
+                }
+                try {
+                    selector.close();
+                } catch (IOException iox) {
+                    logger.warn(iox);
+                }
+                if (failed) {
+                    workerFailed(this);
+                }
+            }
+        }
+    }
+}
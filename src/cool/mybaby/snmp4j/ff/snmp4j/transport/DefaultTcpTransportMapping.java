@@ -29,6 +29,7 @@ import cool.mybaby.snmp4j.ff.snmp4j.log.LogFactory;
 import cool.mybaby.snmp4j.ff.snmp4j.smi.Address;
 import cool.mybaby.snmp4j.ff.snmp4j.smi.OctetString;
 import cool.mybaby.snmp4j.ff.snmp4j.smi.TcpAddress;
+import cool.mybaby.snmp4j.ff.snmp4j.smi.TransportAddressCache;
 
 import java.io.IOException;
 import java.net.*;
@@ -38,32 +39,63 @@ import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The <code>DefaultTcpTransportMapping</code> implements a TCP transport
  * mapping with the Java 1.4 new IO API.
  * <p>
- * It uses a single thread for processing incoming and outgoing messages.
- * The thread is started when the <code>listen</code> method is called, or
- * when an outgoing request is sent using the <code>sendMessage</code> method.
+ * By default it uses a single thread for processing incoming and outgoing
+ * messages. The thread is started when the <code>listen</code> method is
+ * called, or when an outgoing request is sent using the
+ * <code>sendMessage</code> method.
+ * <p>
+ * With {@link #setSelectorThreadCount(int)} the mapping runs one thread
+ * that only accepts incoming connections and the given number of selector
+ * threads that do the I/O of the connections. Each connection is assigned to
+ * one selector thread, either round robin or by the hash code of its peer
+ * address.
  *
  * @author Frank Fock
- * @version 1.7.4a
+ * @version 1.9
  */
 public class DefaultTcpTransportMapping extends TcpTransportMapping {
 
     private static final LogAdapter logger =
             LogFactory.getLogger(DefaultTcpTransportMapping.class);
 
-    private Map sockets = new Hashtable();
-    private ServerThread server;
+    /**
+     * Assigns connections to the selector threads in turn.
+     */
+    public static final int ASSIGN_ROUND_ROBIN = 0;
+    /**
+     * Assigns connections to the selector threads by the hash code of the
+     * peer address, so all connections to a peer share one selector thread.
+     */
+    public static final int ASSIGN_BY_ADDRESS = 1;
+
+    /**
+     * The default number of pooled read buffers per server thread.
+     */
+    public static final int DEFAULT_RECEIVE_BUFFER_POOL_SIZE = 16;
 
-    private Timer socketCleaner;
     // 1 minute default timeout
-    private long connectionTimeout = 60000;
+    private TcpConnectionPool sockets = new TcpConnectionPool(60000);
+    private ServerThread server;
+    private ServerThread[] selectorThreads;
+    private int selectorThreadCount = 0;
+    private int connectionAssignment = ASSIGN_ROUND_ROBIN;
+    private AtomicInteger nextSelectorThread = new AtomicInteger();
+    private int receiveBufferPoolSize = DEFAULT_RECEIVE_BUFFER_POOL_SIZE;
+
     private boolean serverEnabled = false;
 
     private static final int MIN_SNMP_HEADER_LENGTH = 6;
+    /**
+     * The maximum number of queued messages written with one gathering write.
+     */
+    private static final int MAX_GATHERED_MESSAGES = 256;
     private MessageLengthDecoder messageLengthDecoder =
             new SnmpMesssageLengthDecoder();
 
@@ -105,12 +137,136 @@ public class DefaultTcpTransportMapping extends TcpTransportMapping {
         if (server != null) {
             throw new SocketException("Port already listening");
         }
-        server = new ServerThread();
-        if (connectionTimeout > 0) {
-            socketCleaner = new Timer(true); // run as daemon
+        String name = "DefaultTCPTransportMapping_" + getAddress();
+        if (selectorThreadCount > 0) {
+            ServerThread[] threads = new ServerThread[selectorThreadCount];
+            for (int i = 0; i < threads.length; i++) {
+                threads[i] = new ServerThread(name + "_IO" + i, false);
+            }
+            selectorThreads = threads;
+            // without a server socket the first selector thread is the
+            // server thread
+            server = (serverEnabled) ?
+                    new ServerThread(name, true) : threads[0];
+        } else {
+            server = new ServerThread(name, serverEnabled);
+        }
+        sockets.start();
+        ServerThread[] threads = getThreads();
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+    }
+
+    /**
+     * Returns the server thread and the selector threads of this mapping.
+     */
+    private synchronized ServerThread[] getThreads() {
+        if (server == null) {
+            return new ServerThread[0];
+        }
+        if ((selectorThreads == null) || (selectorThreads[0] == server)) {
+            return (selectorThreads == null) ?
+                    new ServerThread[]{server} : selectorThreads;
+        }
+        ServerThread[] threads = new ServerThread[selectorThreads.length + 1];
+        threads[0] = server;
+        System.arraycopy(selectorThreads, 0, threads, 1, selectorThreads.length);
+        return threads;
+    }
+
+    /**
+     * Returns the thread that does the I/O of a new connection to or from the
+     * supplied peer.
+     */
+    private ServerThread getSelectorThread(TcpAddress peerAddress) {
+        ServerThread[] threads = selectorThreads;
+        if (threads == null) {
+            return server;
+        }
+        int i;
+        if (connectionAssignment == ASSIGN_BY_ADDRESS) {
+            i = peerAddress.hashCode();
+        } else {
+            i = nextSelectorThread.getAndIncrement();
+        }
+        return threads[(i & Integer.MAX_VALUE) % threads.length];
+    }
+
+    public int getReceiveBufferPoolSize() {
+        return receiveBufferPoolSize;
+    }
+
+    /**
+     * Sets the number of read buffers pooled by each server and selector
+     * thread. A connection only holds a read buffer while a message has been
+     * partially received or while its messages are being processed
+     * asynchronously. This method has to be called before {@link #listen()}
+     * to be effective.
+     *
+     * @param receiveBufferPoolSize a value > 0.
+     * @since 1.9
+     */
+    public void setReceiveBufferPoolSize(int receiveBufferPoolSize) {
+        if (receiveBufferPoolSize <= 0) {
+            throw new IllegalArgumentException("Receive buffer pool size must be > 0");
         }
-        server.setDaemon(true);
-        server.start();
+        this.receiveBufferPoolSize = receiveBufferPoolSize;
+    }
+
+    /**
+     * Gets the number of selector threads doing the I/O of the connections.
+     *
+     * @return the number of selector threads or zero if the server thread
+     * does all I/O.
+     * @since 1.9
+     */
+    public int getSelectorThreadCount() {
+        return selectorThreadCount;
+    }
+
+    /**
+     * Sets the number of selector threads doing the I/O of the connections.
+     * If greater than zero, the server thread only accepts incoming
+     * connections. Setting this value has no effect until {@link #listen()}
+     * is called.
+     *
+     * @param selectorThreadCount the number of selector threads, zero (the
+     *                            default) lets the server thread do all I/O.
+     * @since 1.9
+     */
+    public void setSelectorThreadCount(int selectorThreadCount) {
+        if (selectorThreadCount < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.selectorThreadCount = selectorThreadCount;
+    }
+
+    /**
+     * Gets how connections are assigned to the selector threads.
+     *
+     * @return {@link #ASSIGN_ROUND_ROBIN} or {@link #ASSIGN_BY_ADDRESS}.
+     * @since 1.9
+     */
+    public int getConnectionAssignment() {
+        return connectionAssignment;
+    }
+
+    /**
+     * Sets how connections are assigned to the selector threads.
+     *
+     * @param connectionAssignment {@link #ASSIGN_ROUND_ROBIN} (the default) or
+     *                             {@link #ASSIGN_BY_ADDRESS}.
+     * @since 1.9
+     */
+    public void setConnectionAssignment(int connectionAssignment) {
+        if ((connectionAssignment != ASSIGN_ROUND_ROBIN) &&
+                (connectionAssignment != ASSIGN_BY_ADDRESS)) {
+            throw new IllegalArgumentException("Unknown connection assignment: " +
+                    connectionAssignment);
+        }
+        this.connectionAssignment = connectionAssignment;
     }
 
     /**
@@ -123,9 +279,9 @@ public class DefaultTcpTransportMapping extends TcpTransportMapping {
      * @since 1.2.2
      */
     public void setPriority(int newPriority) {
-        ServerThread st = server;
-        if (st != null) {
-            st.setPriority(newPriority);
+        ServerThread[] threads = getThreads();
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].setPriority(newPriority);
         }
     }
 
@@ -148,7 +304,8 @@ public class DefaultTcpTransportMapping extends TcpTransportMapping {
     /**
      * Sets the name of the listen thread for this UDP transport mapping.
      * This method has no effect, if called before {@link #listen()} has been
-     * called for this transport mapping.
+     * called for this transport mapping. Selector threads are named after
+     * the listen thread with an "_IO" and their index appended.
      *
      * @param name the new thread name.
      * @since 1.6
@@ -158,6 +315,14 @@ public class DefaultTcpTransportMapping extends TcpTransportMapping {
         if (st != null) {
             st.setName(name);
         }
+        ServerThread[] threads = selectorThreads;
+        if (threads != null) {
+            for (int i = 0; i < threads.length; i++) {
+                if (threads[i] != st) {
+                    threads[i].setName(name + "_IO" + i);
+                }
+            }
+        }
     }
 
     /**
@@ -180,31 +345,33 @@ public class DefaultTcpTransportMapping extends TcpTransportMapping {
      * processes messages.
      */
     public void close() {
-        ServerThread st = server;
-        if (st != null) {
-            st.close();
-            try {
-                st.join();
-            } catch (InterruptedException ex) {
-                logger.warn(ex);
+        ServerThread[] threads = getThreads();
+        if (threads.length > 0) {
+            for (int i = 0; i < threads.length; i++) {
+                threads[i].close();
             }
-            server = null;
-            for (Iterator it = sockets.values().iterator(); it.hasNext(); ) {
+            for (int i = 0; i < threads.length; i++) {
+                try {
+                    threads[i].join();
+                } catch (InterruptedException ex) {
+                    logger.warn(ex);
+                }
+            }
+            synchronized (this) {
+                server = null;
+                selectorThreads = null;
+            }
+            for (Iterator it = sockets.removeAll().iterator(); it.hasNext(); ) {
                 SocketEntry entry = (SocketEntry) it.next();
                 try {
-                    synchronized (entry) {
-                        entry.getSocket().close();
-                    }
+                    entry.close();
                     logger.debug("Socket to " + entry.getPeerAddress() + " closed");
                 } catch (IOException iox) {
                     // ingore
                     logger.debug(iox);
                 }
             }
-            if (socketCleaner != null) {
-                socketCleaner.cancel();
-            }
-            socketCleaner = null;
+            sockets.stop();
         }
     }
 
@@ -223,15 +390,13 @@ public class DefaultTcpTransportMapping extends TcpTransportMapping {
         if (logger.isDebugEnabled()) {
             logger.debug("Closing socket for peer address " + remoteAddress);
         }
-        SocketEntry entry = (SocketEntry) sockets.remove(remoteAddress);
-        if (entry != null) {
-            synchronized (entry) {
-                entry.getSocket().close();
-            }
-            logger.info("Socket to " + entry.getPeerAddress() + " closed");
-            return true;
+        sockets.setPersistent(remoteAddress, false);
+        SocketEntry[] entries = sockets.remove(remoteAddress);
+        for (int i = 0; i < entries.length; i++) {
+            entries[i].close();
+            logger.info("Socket to " + entries[i].getPeerAddress() + " closed");
         }
-        return false;
+        return (entries.length > 0);
     }
 
     /**
@@ -248,7 +413,98 @@ public class DefaultTcpTransportMapping extends TcpTransportMapping {
         if (server == null) {
             listen();
         }
-        server.sendMessage(address, message);
+        SocketEntry entry;
+        do {
+            entry = sockets.get(address);
+            if (logger.isDebugEnabled()) {
+                logger.debug("Looking up connection for destination '" + address +
+                        "' returned: " + entry);
+            }
+            if (entry != null) {
+                if (!entry.addMessage(message)) {
+                    // the selector thread is already writing the queued messages
+                    return;
+                }
+            } else {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("No usable connection for address '" + address +
+                            "', opening one...");
+                }
+                // null if concurrent senders opened the last allowed connection
+                entry = openConnection((TcpAddress) address, message);
+            }
+        } while (entry == null);
+        entry.getSelectorThread().register(entry);
+    }
+
+    /**
+     * Opens connections to the supplied peer until
+     * {@link #getMaxConnectionsPerAddress()} connections are open, so that
+     * requests sent later neither wait for connection establishment nor
+     * open further connections. The connections to the peer are kept open
+     * while idle until {@link #close(Address)} is called for the peer.
+     *
+     * @param address the <code>TcpAddress</code> of an agent.
+     * @return the number of connections opened.
+     * @throws IOException if a connection cannot be opened.
+     * @since 1.9
+     */
+    public synchronized int prewarm(Address address) throws IOException {
+        if (server == null) {
+            listen();
+        }
+        sockets.setPersistent(address, true);
+        int count = 0;
+        SocketEntry[] entries = sockets.getAll(address);
+        for (int i = 0; i < entries.length; i++) {
+            if (!entries[i].getSocket().isClosed()) {
+                count++;
+            }
+        }
+        int opened = 0;
+        for (; count < getMaxConnectionsPerAddress(); count++, opened++) {
+            SocketEntry entry = openConnection((TcpAddress) address, null);
+            if (entry == null) {
+                break;
+            }
+            entry.getSelectorThread().register(entry);
+        }
+        return opened;
+    }
+
+    private SocketEntry openConnection(TcpAddress address, byte[] message)
+            throws IOException {
+        SocketChannel sc = null;
+        SocketEntry entry = null;
+        try {
+            // Open the channel and set it to non-blocking
+            sc = SocketChannel.open();
+            sc.configureBlocking(false);
+            entry = new SocketEntry(address, sc.socket());
+            entry.setSelectorThread(getSelectorThread(address));
+            if (message != null) {
+                entry.addMessage(message);
+            }
+            // reserve the pool slot before initiating the connect
+            if (!sockets.add(entry)) {
+                // another sender opened the last allowed connection meanwhile
+                sc.close();
+                return null;
+            }
+            logger.debug("Trying to connect to " + address);
+            sc.connect(new InetSocketAddress(address.getInetAddress(),
+                    address.getPort()));
+            return entry;
+        } catch (IOException iox) {
+            logger.error(iox);
+            if (entry != null) {
+                sockets.remove(entry);
+                entry.close();
+            } else if (sc != null) {
+                sc.close();
+            }
+            throw iox;
+        }
     }
 
     /**
@@ -259,7 +515,7 @@ public class DefaultTcpTransportMapping extends TcpTransportMapping {
      * the idle timeout in milliseconds.
      */
     public long getConnectionTimeout() {
-        return connectionTimeout;
+        return sockets.getIdleTimeout();
     }
 
     /**
@@ -271,7 +527,40 @@ public class DefaultTcpTransportMapping extends TcpTransportMapping {
      *                          opened until they are explicitly closed.
      */
     public void setConnectionTimeout(long connectionTimeout) {
-        this.connectionTimeout = connectionTimeout;
+        sockets.setIdleTimeout(connectionTimeout);
+    }
+
+    /**
+     * Gets the maximum number of connections opened to the same peer.
+     *
+     * @return the maximum number of connections per peer address.
+     * @since 1.9
+     */
+    public int getMaxConnectionsPerAddress() {
+        return sockets.getMaxConnectionsPerAddress();
+    }
+
+    /**
+     * Sets the maximum number of connections opened to the same peer. An
+     * additional connection is opened only when all open connections to the
+     * peer have messages waiting to be sent.
+     *
+     * @param maxConnectionsPerAddress a value > 0, the default is 1.
+     * @since 1.9
+     */
+    public void setMaxConnectionsPerAddress(int maxConnectionsPerAddress) {
+        sockets.setMaxConnectionsPerAddress(maxConnectionsPerAddress);
+    }
+
+    /**
+     * Returns the pool of open connections, which provides the connection
+     * statistics.
+     *
+     * @return the <code>TcpConnectionPool</code> of this transport mapping.
+     * @since 1.9
+     */
+    public TcpConnectionPool getConnectionPool() {
+        return sockets;
     }
 
     /**
@@ -338,22 +627,28 @@ public class DefaultTcpTransportMapping extends TcpTransportMapping {
     }
 
 
-    private synchronized void timeoutSocket(SocketEntry entry) {
-        if (connectionTimeout > 0) {
-            socketCleaner.schedule(new SocketTimeout(entry), connectionTimeout);
-        }
-    }
-
     public boolean isListening() {
         return (server != null);
     }
 
-    class SocketEntry {
+    static class SocketEntry {
         private Socket socket;
         private TcpAddress peerAddress;
         private long lastUse;
         private LinkedList message = new LinkedList();
-        private ByteBuffer readBuffer = null;
+        private ByteBuffer[] writeBuffers;
+        private boolean writeScheduled;
+        private int outstanding;
+        // number of messages queued in total, and that number at the time of
+        // the last outstanding message expiry
+        private long queued;
+        private long expiryMark;
+        private long expiryMarkTime = System.currentTimeMillis();
+        private boolean accepted;
+        private ReceiveBuffer readBuffer = null;
+        private int readStart;
+        private int readEnd;
+        private ServerThread selectorThread;
 
         public SocketEntry(TcpAddress address, Socket socket) {
             this.peerAddress = address;
@@ -377,25 +672,219 @@ public class DefaultTcpTransportMapping extends TcpTransportMapping {
             return peerAddress;
         }
 
-        public synchronized void addMessage(byte[] message) {
+        /**
+         * Queues a message for sending.
+         *
+         * @param message the message to send.
+         * @return <code>true</code> if the channel has to be registered for
+         * writing, <code>false</code> if a write is already scheduled.
+         */
+        public synchronized boolean addMessage(byte[] message) {
             this.message.add(message);
+            outstanding++;
+            queued++;
+            if (writeScheduled) {
+                return false;
+            }
+            writeScheduled = true;
+            return true;
         }
 
-        public byte[] nextMessage() {
-            if (this.message.size() > 0) {
-                return (byte[]) this.message.removeFirst();
+        /**
+         * Returns the buffers to be written next: the rest of a partially
+         * written batch or the queued messages.
+         *
+         * @return an array of buffers or <code>null</code> if there is nothing
+         * to write.
+         */
+        public synchronized ByteBuffer[] nextMessages() {
+            if (writeBuffers == null) {
+                int n = Math.min(message.size(), MAX_GATHERED_MESSAGES);
+                if (n == 0) {
+                    return null;
+                }
+                writeBuffers = new ByteBuffer[n];
+                for (int i = 0; i < n; i++) {
+                    writeBuffers[i] = ByteBuffer.wrap((byte[]) message.removeFirst());
+                }
             }
-            return null;
+            return writeBuffers;
         }
 
-        public void setReadBuffer(ByteBuffer byteBuffer) {
-            this.readBuffer = byteBuffer;
+        /**
+         * Removes the written buffers returned by {@link #nextMessages()}.
+         *
+         * @return <code>true</code> if there is more to write, otherwise the
+         * write is no longer scheduled.
+         */
+        public synchronized boolean written() {
+            if (writeBuffers != null) {
+                int i = 0;
+                while ((i < writeBuffers.length) && !writeBuffers[i].hasRemaining()) {
+                    i++;
+                }
+                if (i == writeBuffers.length) {
+                    writeBuffers = null;
+                } else if (i > 0) {
+                    ByteBuffer[] rest = new ByteBuffer[writeBuffers.length - i];
+                    System.arraycopy(writeBuffers, i, rest, 0, rest.length);
+                    writeBuffers = rest;
+                }
+            }
+            if ((writeBuffers == null) && message.isEmpty()) {
+                writeScheduled = false;
+                return false;
+            }
+            return true;
         }
 
-        public ByteBuffer getReadBuffer() {
+        /**
+         * Notes that a message has been received on this connection, which
+         * is taken as the answer to the oldest outstanding message.
+         */
+        public synchronized void messageReceived() {
+            if (outstanding > 0) {
+                outstanding--;
+            }
+        }
+
+        /**
+         * Gets the number of messages sent or queued on this connection for
+         * which no message has been received yet. For connections to an
+         * agent this is the number of pipelined requests.
+         *
+         * @return the number of outstanding messages.
+         */
+        public synchronized int getOutstandingMessageCount() {
+            return outstanding;
+        }
+
+        /**
+         * Forgets the messages that are no longer expected to be answered.
+         * Only the queued messages remain outstanding.
+         */
+        public synchronized void clearOutstanding() {
+            outstanding = getQueuedMessageCount();
+        }
+
+        /**
+         * Forgets the outstanding messages that have been sent at least
+         * <code>maxAge</code> milliseconds ago, because their answers are
+         * no longer expected. The age is determined with the granularity of
+         * the intervals between the calls of this method.
+         *
+         * @param maxAge the age in milliseconds after which an unanswered message
+         *               is considered lost.
+         */
+        public synchronized void expireOutstanding(long maxAge) {
+            long now = System.currentTimeMillis();
+            if (now - expiryMarkTime < maxAge) {
+                return;
+            }
+            // answers are taken in order, thus all but the messages queued
+            // since the mark are older than the mark
+            long recent = queued - expiryMark;
+            if (outstanding > recent) {
+                outstanding = (int) Math.max(recent, getQueuedMessageCount());
+            }
+            expiryMark = queued;
+            expiryMarkTime = now;
+        }
+
+        /**
+         * Checks whether the peer opened this connection.
+         *
+         * @return <code>true</code> for accepted connections.
+         */
+        public boolean isAccepted() {
+            return accepted;
+        }
+
+        public void setAccepted(boolean accepted) {
+            this.accepted = accepted;
+        }
+
+        public synchronized int getQueuedMessageCount() {
+            return message.size() +
+                    ((writeBuffers == null) ? 0 : writeBuffers.length);
+        }
+
+        public ServerThread getSelectorThread() {
+            return selectorThread;
+        }
+
+        public void setSelectorThread(ServerThread selectorThread) {
+            this.selectorThread = selectorThread;
+        }
+
+        /**
+         * Sets the buffer receiving the message stream of this connection.
+         * The buffer holds the bytes from {@link #getReadStart()} to
+         * {@link #getReadEnd()} that have not been dispatched yet.
+         *
+         * @param readBuffer a buffer to which this entry holds one reference
+         *                   or <code>null</code>.
+         * @param readEnd    the number of received bytes in the buffer.
+         */
+        public void setReadBuffer(ReceiveBuffer readBuffer, int readEnd) {
+            this.readBuffer = readBuffer;
+            this.readStart = 0;
+            this.readEnd = readEnd;
+        }
+
+        public ReceiveBuffer getReadBuffer() {
             return readBuffer;
         }
 
+        public int getReadStart() {
+            return readStart;
+        }
+
+        public void setReadStart(int readStart) {
+            this.readStart = readStart;
+        }
+
+        public int getReadEnd() {
+            return readEnd;
+        }
+
+        public void setReadEnd(int readEnd) {
+            this.readEnd = readEnd;
+        }
+
+        /**
+         * Releases the read buffer of this entry, if any.
+         */
+        public void releaseReadBuffer() {
+            ReceiveBuffer rb = readBuffer;
+            readBuffer = null;
+            if (rb != null) {
+                rb.release();
+            }
+        }
+
+        /**
+         * Closes the socket of this entry. The read buffer is released by the
+         * selector thread serving the connection, because that thread may be
+         * reading into it.
+         *
+         * @throws IOException if the socket could not be closed.
+         */
+        public void close() throws IOException {
+            try {
+                synchronized (this) {
+                    socket.close();
+                }
+            } finally {
+                ServerThread st = selectorThread;
+                if (st == null) {
+                    releaseReadBuffer();
+                } else {
+                    st.releaseReadBuffer(this);
+                }
+            }
+        }
+
         public String toString() {
             return "SocketEntry[peerAddress=" + peerAddress +
                     ",socket=" + socket + ",lastUse=" + new Date(lastUse) + "]";
@@ -410,69 +899,36 @@ public class DefaultTcpTransportMapping extends TcpTransportMapping {
         public MessageLength getMessageLength(ByteBuffer buf) throws IOException {
             MutableByte type = new MutableByte();
             BERInputStream is = new BERInputStream(buf);
-            int ml = BER.decodeHeader(is, type);
+            // the buffer may only hold the beginning of the message
+            int ml = BER.decodeHeader(is, type, false);
             int hl = (int) is.getPosition();
             MessageLength messageLength = new MessageLength(hl, ml);
             return messageLength;
         }
     }
 
-    class SocketTimeout extends TimerTask {
-        private SocketEntry entry;
-
-        public SocketTimeout(SocketEntry entry) {
-            this.entry = entry;
-        }
-
-        /**
-         * run
-         */
-        public void run() {
-            long now = System.currentTimeMillis();
-            if ((socketCleaner == null) ||
-                    (now - entry.getLastUse() >= connectionTimeout)) {
-                if (logger.isDebugEnabled()) {
-                    logger.debug("Socket has not been used for " +
-                            (now - entry.getLastUse()) +
-                            " micro seconds, closing it");
-                }
-                sockets.remove(entry.getPeerAddress());
-                try {
-                    synchronized (entry) {
-                        entry.getSocket().close();
-                    }
-                    logger.info("Socket to " + entry.getPeerAddress() +
-                            " closed due to timeout");
-                } catch (IOException ex) {
-                    logger.error(ex);
-                }
-            } else {
-                if (logger.isDebugEnabled()) {
-                    logger.debug("Scheduling " +
-                            ((entry.getLastUse() + connectionTimeout) - now));
-                }
-                socketCleaner.schedule(new SocketTimeout(entry),
-                        (entry.getLastUse() + connectionTimeout) - now);
-            }
-        }
-    }
-
     class ServerThread extends Thread {
-        private byte[] buf;
+        private ReceiveBufferPool readBufferPool;
+        private ByteBuffer readTarget;
         private volatile boolean stop = false;
         private Throwable lastError = null;
         private ServerSocketChannel ssc;
         private Selector selector;
 
-        private LinkedList pending = new LinkedList();
+        private ConcurrentLinkedQueue pending = new ConcurrentLinkedQueue();
+        // closed entries whose read buffers have to be released
+        private ConcurrentLinkedQueue closed = new ConcurrentLinkedQueue();
+        // set under the closed queue's monitor when run() no longer drains it
+        private boolean exited = false;
 
-        public ServerThread() throws IOException {
-            setName("DefaultTCPTransportMapping_" + getAddress());
-            buf = new byte[getMaxInboundMessageSize()];
+        public ServerThread(String name, boolean acceptor) throws IOException {
+            setName(name);
+            readBufferPool = new ReceiveBufferPool(receiveBufferPoolSize,
+                    getMaxInboundMessageSize());
             // Selector for incoming requests
             selector = Selector.open();
 
-            if (serverEnabled) {
+            if (acceptor) {
                 // Create a new server socket and set to non blocking mode
                 ssc = ServerSocketChannel.open();
                 ssc.configureBlocking(false);
@@ -489,100 +945,88 @@ public class DefaultTcpTransportMapping extends TcpTransportMapping {
             }
         }
 
-        private void processPending() {
-            synchronized (pending) {
-                for (int i = 0; i < pending.size(); i++) {
-                    SocketEntry entry = (SocketEntry) pending.getFirst();
-                    try {
-                        // Register the channel with the selector, indicating
-                        // interest in connection completion and attaching the
-                        // target object so that we can get the target back
-                        // after the key is added to the selector's
-                        // selected-key set
-                        if (entry.getSocket().isConnected()) {
-                            entry.getSocket().getChannel().register(selector,
-                                    SelectionKey.OP_WRITE);
-                        } else {
-                            entry.getSocket().getChannel().register(selector,
-                                    SelectionKey.OP_CONNECT);
-                        }
+        /**
+         * Registers the channel of the supplied entry with the selector of
+         * this thread the next time the thread wakes up. May be called from
+         * any thread.
+         */
+        void register(SocketEntry entry) {
+            pending.offer(entry);
+            selector.wakeup();
+        }
 
-                    } catch (IOException iox) {
-                        logger.error(iox);
-                        // Something went wrong, so close the channel and
-                        // record the failure
-                        try {
-                            entry.getSocket().getChannel().close();
-                            TransportStateEvent e =
-                                    new TransportStateEvent(DefaultTcpTransportMapping.this,
-                                            entry.getPeerAddress(),
-                                            TransportStateEvent.STATE_CLOSED,
-                                            iox);
-                            fireConnectionStateChanged(e);
-                        } catch (IOException ex) {
-                            logger.error(ex);
-                        }
-                        lastError = iox;
-                        if (SNMP4JSettings.isFowardRuntimeExceptions()) {
-                            throw new RuntimeException(iox);
-                        }
+        /**
+         * Releases the read buffer of a closed entry served by this thread.
+         * If called by another thread, the buffer is released the next time
+         * this thread wakes up or, if this thread is no longer selecting, at
+         * once.
+         */
+        void releaseReadBuffer(SocketEntry entry) {
+            if (Thread.currentThread() != this) {
+                synchronized (closed) {
+                    if (!exited) {
+                        closed.offer(entry);
+                        selector.wakeup();
+                        return;
                     }
                 }
             }
+            entry.releaseReadBuffer();
         }
 
-        public Throwable getLastError() {
-            return lastError;
+        private void processClosed() {
+            SocketEntry entry;
+            while ((entry = (SocketEntry) closed.poll()) != null) {
+                entry.releaseReadBuffer();
+            }
         }
 
-        public void sendMessage(Address address, byte[] message)
-                throws java.io.IOException {
-            Socket s = null;
-            SocketEntry entry = (SocketEntry) sockets.get(address);
-            if (logger.isDebugEnabled()) {
-                logger.debug("Looking up connection for destination '" + address +
-                        "' returned: " + entry);
-                logger.debug(sockets.toString());
-            }
-            if (entry != null) {
-                s = entry.getSocket();
-            }
-            if ((s == null) || (s.isClosed()) || (!s.isConnected())) {
-                if (logger.isDebugEnabled()) {
-                    logger.debug("Socket for address '" + address +
-                            "' is closed, opening it...");
-                }
-                SocketChannel sc = null;
+        private void processPending() {
+            SocketEntry entry;
+            while ((entry = (SocketEntry) pending.poll()) != null) {
                 try {
-                    // Open the channel, set it to non-blocking, initiate connect
-                    sc = SocketChannel.open();
-                    sc.configureBlocking(false);
-                    sc.connect(new InetSocketAddress(((TcpAddress) address).getInetAddress(),
-                            ((TcpAddress) address).getPort()));
-                    s = sc.socket();
-                    entry = new SocketEntry((TcpAddress) address, s);
-                    entry.addMessage(message);
-                    sockets.put(address, entry);
-
-                    synchronized (pending) {
-                        pending.add(entry);
+                    // Register the channel with the selector, indicating
+                    // interest in connection completion and attaching the
+                    // target object so that we can get the target back
+                    // after the key is added to the selector's
+                    // selected-key set
+                    if (entry.getSocket().isConnected()) {
+                        entry.getSocket().getChannel().register(selector,
+                                (entry.getQueuedMessageCount() > 0) ?
+                                        SelectionKey.OP_READ | SelectionKey.OP_WRITE :
+                                        SelectionKey.OP_READ, entry);
+                    } else {
+                        entry.getSocket().getChannel().register(selector,
+                                SelectionKey.OP_CONNECT, entry);
                     }
 
-                    selector.wakeup();
-                    logger.debug("Trying to connect to " + address);
                 } catch (IOException iox) {
                     logger.error(iox);
-                    throw iox;
-                }
-            } else {
-                entry.addMessage(message);
-                synchronized (pending) {
-                    pending.add(entry);
+                    // Something went wrong, so close the channel and
+                    // record the failure
+                    sockets.remove(entry);
+                    try {
+                        entry.getSocket().getChannel().close();
+                        TransportStateEvent e =
+                                new TransportStateEvent(DefaultTcpTransportMapping.this,
+                                        entry.getPeerAddress(),
+                                        TransportStateEvent.STATE_CLOSED,
+                                        iox);
+                        fireConnectionStateChanged(e);
+                    } catch (IOException ex) {
+                        logger.error(ex);
+                    }
+                    lastError = iox;
+                    if (SNMP4JSettings.isFowardRuntimeExceptions()) {
+                        throw new RuntimeException(iox);
+                    }
                 }
-                selector.wakeup();
             }
         }
 
+        public Throwable getLastError() {
+            return lastError;
+        }
 
         public void run() {
             // Here's where everything happens. The select method will
@@ -613,14 +1057,12 @@ public class DefaultTcpTransportMapping extends TcpTransportMapping {
                                     Socket s = nextReady.accept().socket();
                                     readChannel = s.getChannel();
                                     readChannel.configureBlocking(false);
-                                    readChannel.register(selector,
-                                            SelectionKey.OP_READ);
 
-                                    incomingAddress = new TcpAddress(s.getInetAddress(),
-                                            s.getPort());
+                                    incomingAddress = TransportAddressCache.getDefault().getTcpAddress(
+                                            s.getInetAddress(), s.getPort());
                                     SocketEntry entry = new SocketEntry(incomingAddress, s);
-                                    sockets.put(incomingAddress, entry);
-                                    timeoutSocket(entry);
+                                    entry.setAccepted(true);
+                                    entry.setSelectorThread(getSelectorThread(incomingAddress));
                                     TransportStateEvent e =
                                             new TransportStateEvent(DefaultTcpTransportMapping.this,
                                                     incomingAddress,
@@ -631,29 +1073,25 @@ public class DefaultTcpTransportMapping extends TcpTransportMapping {
                                     if (e.isCancelled()) {
                                         logger.warn("Incoming connection cancelled");
                                         s.close();
-                                        sockets.remove(incomingAddress);
-                                        readChannel = null;
+                                    } else {
+                                        sockets.add(entry);
+                                        entry.getSelectorThread().register(entry);
                                     }
+                                    // reading starts when the channel is
+                                    // registered with the selector thread
+                                    readChannel = null;
                                 } else if (sk.isReadable()) {
                                     readChannel = (SocketChannel) sk.channel();
                                     incomingAddress =
-                                            new TcpAddress(readChannel.socket().getInetAddress(),
-                                                    readChannel.socket().getPort());
-                                } else if (sk.isWritable()) {
+                                            ((SocketEntry) sk.attachment()).getPeerAddress();
+                                }
+                                if (sk.isValid() && sk.isWritable()) {
+                                    // connections are writable and readable at
+                                    // the same time while a batch is sent
+                                    SocketEntry entry = (SocketEntry) sk.attachment();
+                                    incomingAddress = entry.getPeerAddress();
                                     try {
-                                        SocketChannel sc = (SocketChannel) sk.channel();
-                                        SocketEntry entry;
-                                        synchronized (pending) {
-                                            try {
-                                                entry = (SocketEntry) pending.removeFirst();
-                                            } catch (NoSuchElementException nsex) {
-                                                // ignore
-                                                entry = null;
-                                            }
-                                        }
-                                        if (entry != null) {
-                                            writeMessage(entry, sc);
-                                        }
+                                        writeMessage(entry, (SocketChannel) sk.channel());
                                     } catch (IOException iox) {
                                         if (logger.isDebugEnabled()) {
                                             iox.printStackTrace();
@@ -667,31 +1105,19 @@ public class DefaultTcpTransportMapping extends TcpTransportMapping {
                                                         iox);
                                         fireConnectionStateChanged(e);
                                         sk.cancel();
+                                        closeEntry(entry);
+                                        readChannel = null;
                                     }
-                                } else if (sk.isConnectable()) {
+                                } else if (sk.isValid() && sk.isConnectable()) {
+                                    SocketEntry entry = (SocketEntry) sk.attachment();
+                                    incomingAddress = entry.getPeerAddress();
                                     try {
-                                        SocketEntry entry;
-                                        synchronized (pending) {
-                                            try {
-                                                entry = (SocketEntry) pending.getFirst();
-                                                if (entry != null) {
-                                                    SocketChannel sc = (SocketChannel) sk.channel();
-                                                    if ((!sc.isConnected()) && (sc.finishConnect())) {
-                                                        sc.configureBlocking(false);
-                                                        logger.debug("Connected to " + entry.getPeerAddress());
-                                                        // make sure conncetion is closed if not used for timeout
-                                                        // micro seconds
-                                                        timeoutSocket(entry);
-                                                        sc.register(selector,
-                                                                SelectionKey.OP_WRITE);
-                                                    }
-                                                }
-                                            } catch (NoSuchElementException nsex) {
-                                                // ignore
-                                                entry = null;
-                                            }
-                                        }
-                                        if (entry != null) {
+                                        SocketChannel sc = (SocketChannel) sk.channel();
+                                        if ((!sc.isConnected()) && (sc.finishConnect())) {
+                                            logger.debug("Connected to " + incomingAddress);
+                                            sc.register(selector,
+                                                    SelectionKey.OP_READ |
+                                                            SelectionKey.OP_WRITE, entry);
                                             TransportStateEvent e =
                                                     new TransportStateEvent(DefaultTcpTransportMapping.this,
                                                             incomingAddress,
@@ -699,8 +1125,6 @@ public class DefaultTcpTransportMapping extends TcpTransportMapping {
                                                                     STATE_CONNECTED,
                                                             null);
                                             fireConnectionStateChanged(e);
-                                        } else {
-                                            logger.warn("Message not found on finish connection");
                                         }
                                     } catch (IOException iox) {
                                         if (logger.isDebugEnabled()) {
@@ -708,6 +1132,7 @@ public class DefaultTcpTransportMapping extends TcpTransportMapping {
                                         }
                                         logger.warn(iox);
                                         sk.cancel();
+                                        closeEntry(entry);
                                     }
                                 }
 
@@ -722,6 +1147,8 @@ public class DefaultTcpTransportMapping extends TcpTransportMapping {
                                         logger.warn(iox);
                                         sk.cancel();
                                         readChannel.close();
+                                        ((SocketEntry) sk.attachment()).releaseReadBuffer();
+                                        sockets.remove((SocketEntry) sk.attachment());
                                         TransportStateEvent e =
                                                 new TransportStateEvent(DefaultTcpTransportMapping.this,
                                                         incomingAddress,
@@ -739,6 +1166,7 @@ public class DefaultTcpTransportMapping extends TcpTransportMapping {
                         logger.warn("NullPointerException within select()?");
                     }
                     processPending();
+                    processClosed();
                 }
                 if (ssc != null) {
                     ssc.close();
@@ -749,78 +1177,55 @@ public class DefaultTcpTransportMapping extends TcpTransportMapping {
             } catch (IOException iox) {
                 logger.error(iox);
                 lastError = iox;
+            } finally {
+                synchronized (closed) {
+                    exited = true;
+                }
+                processClosed();
             }
             if (!stop) {
                 stop = true;
                 synchronized (DefaultTcpTransportMapping.this) {
-                    server = null;
+                    if (server == this) {
+                        server = null;
+                    }
                 }
             }
         }
 
+        /**
+         * Reads as many bytes as available into the read buffer of the
+         * connection and dispatches all complete messages it holds as slices
+         * of that buffer. Only the bytes of a message that has not been
+         * received completely are kept for the next read.
+         */
         private void readMessage(SelectionKey sk, SocketChannel readChannel,
                                  TcpAddress incomingAddress) throws IOException {
             // note that socket has been used
-            SocketEntry entry = (SocketEntry) sockets.get(incomingAddress);
-            if (entry != null) {
-                entry.used();
-                ByteBuffer readBuffer = entry.getReadBuffer();
-                if (readBuffer != null) {
-                    readChannel.read(readBuffer);
-                    if (readBuffer.hasRemaining()) {
-                        readChannel.register(selector,
-                                SelectionKey.OP_READ,
-                                entry);
-                    } else {
-                        dispatchMessage(incomingAddress, readBuffer, readBuffer.capacity());
-                    }
-                    return;
-                }
+            SocketEntry entry = (SocketEntry) sk.attachment();
+            entry.used();
+            ReceiveBuffer rb = entry.getReadBuffer();
+            if (rb == null) {
+                rb = readBufferPool.acquire();
+                entry.setReadBuffer(rb, 0);
+            }
+            byte[] data = rb.array();
+            if ((readTarget == null) || (readTarget.array() != data)) {
+                readTarget = ByteBuffer.wrap(data);
             }
-            ByteBuffer byteBuffer = ByteBuffer.wrap(buf);
-            byteBuffer.limit(messageLengthDecoder.getMinHeaderLength());
-            long bytesRead = readChannel.read(byteBuffer);
+            readTarget.limit(data.length);
+            readTarget.position(entry.getReadEnd());
+            int bytesRead = readChannel.read(readTarget);
             if (logger.isDebugEnabled()) {
-                logger.debug("Reading header " + bytesRead + " bytes from " +
+                logger.debug("Reading " + bytesRead + " bytes from " +
                         incomingAddress);
             }
-            MessageLength messageLength = new MessageLength(0, Integer.MIN_VALUE);
-            if (bytesRead == messageLengthDecoder.getMinHeaderLength()) {
-                messageLength =
-                        messageLengthDecoder.getMessageLength(ByteBuffer.wrap(buf));
-                if (logger.isDebugEnabled()) {
-                    logger.debug("Message length is " + messageLength);
-                }
-                if ((messageLength.getMessageLength() > getMaxInboundMessageSize()) ||
-                        (messageLength.getMessageLength() <= 0)) {
-                    logger.error("Received message length " + messageLength +
-                            " is greater than inboundBufferSize " +
-                            getMaxInboundMessageSize());
-                    synchronized (entry) {
-                        entry.getSocket().close();
-                        logger.info("Socket to " + entry.getPeerAddress() +
-                                " closed due to an error");
-                    }
-                } else {
-                    byteBuffer.limit(messageLength.getMessageLength());
-                    bytesRead += readChannel.read(byteBuffer);
-                    if (bytesRead == messageLength.getMessageLength()) {
-                        dispatchMessage(incomingAddress, byteBuffer, bytesRead);
-                    } else {
-                        byte[] message = new byte[byteBuffer.limit()];
-                        byteBuffer.flip();
-                        byteBuffer.get(message, 0,
-                                byteBuffer.limit() - byteBuffer.remaining());
-                        entry.setReadBuffer(ByteBuffer.wrap(message));
-                    }
-                    readChannel.register(selector,
-                            SelectionKey.OP_READ,
-                            entry);
-                }
-            } else if (bytesRead < 0) {
+            if (bytesRead < 0) {
                 logger.debug("Socket closed remotely");
+                entry.releaseReadBuffer();
                 sk.cancel();
                 readChannel.close();
+                sockets.remove(entry);
                 TransportStateEvent e =
                         new TransportStateEvent(DefaultTcpTransportMapping.this,
                                 incomingAddress,
@@ -828,52 +1233,107 @@ public class DefaultTcpTransportMapping extends TcpTransportMapping {
                                         STATE_DISCONNECTED_REMOTELY,
                                 null);
                 fireConnectionStateChanged(e);
+                return;
+            }
+            int start = entry.getReadStart();
+            int end = entry.getReadEnd() + bytesRead;
+            int minHeaderLength = messageLengthDecoder.getMinHeaderLength();
+            while (end - start >= minHeaderLength) {
+                MessageLength messageLength =
+                        messageLengthDecoder.getMessageLength(
+                                ByteBuffer.wrap(data, start, end - start).slice());
+                int length = messageLength.getMessageLength();
+                if ((length > getMaxInboundMessageSize()) ||
+                        (messageLength.getPayloadLength() <= 0)) {
+                    logger.error("Received message length " + messageLength +
+                            " is greater than inboundBufferSize " +
+                            getMaxInboundMessageSize());
+                    entry.releaseReadBuffer();
+                    synchronized (entry) {
+                        entry.getSocket().close();
+                        logger.info("Socket to " + entry.getPeerAddress() +
+                                " closed due to an error");
+                    }
+                    sockets.remove(entry);
+                    return;
+                }
+                if (end - start < length) {
+                    break;
+                }
+                entry.messageReceived();
+                dispatchMessage(incomingAddress, rb.slice(start, length));
+                start += length;
+            }
+            if (start == end) {
+                // nothing left, so the buffer can go back to the pool as soon
+                // as the dispatched messages have been processed
+                entry.releaseReadBuffer();
+            } else if (start > 0) {
+                // move the partially received message to the front
+                int tail = end - start;
+                if (rb.getReferenceCount() > 1) {
+                    ReceiveBuffer next = readBufferPool.acquire();
+                    System.arraycopy(data, start, next.array(), 0, tail);
+                    entry.releaseReadBuffer();
+                    entry.setReadBuffer(next, tail);
+                } else {
+                    System.arraycopy(data, start, data, 0, tail);
+                    entry.setReadStart(0);
+                    entry.setReadEnd(tail);
+                }
+            } else {
+                entry.setReadEnd(end);
             }
         }
 
         private void dispatchMessage(TcpAddress incomingAddress,
-                                     ByteBuffer byteBuffer, long bytesRead) {
-            byteBuffer.flip();
+                                     ReceiveBuffer message) {
             if (logger.isDebugEnabled()) {
                 logger.debug("Received message from " + incomingAddress +
-                        " with length " + bytesRead + ": " +
-                        new OctetString(byteBuffer.array(), 0,
-                                (int) bytesRead).toHexString());
-            }
-            ByteBuffer bis;
-            if (isAsyncMsgProcessingSupported()) {
-                byte[] bytes = new byte[(int) bytesRead];
-                System.arraycopy(byteBuffer.array(), 0, bytes, 0, (int) bytesRead);
-                bis = ByteBuffer.wrap(bytes);
-            } else {
-                bis = ByteBuffer.wrap(byteBuffer.array(),
-                        0, (int) bytesRead);
+                        " with length " + message.getLength() + ": " +
+                        new OctetString(message.array(), message.getOffset(),
+                                message.getLength()).toHexString());
             }
-            fireProcessMessage(incomingAddress, bis);
+            fireProcessMessage(incomingAddress, message);
         }
 
         private void writeMessage(SocketEntry entry, SocketChannel sc) throws
                 IOException {
-            byte[] message = entry.nextMessage();
-            if (message != null) {
-                ByteBuffer buffer = ByteBuffer.wrap(message);
-                sc.write(buffer);
+            ByteBuffer[] messages = entry.nextMessages();
+            if (messages != null) {
                 if (logger.isDebugEnabled()) {
-                    logger.debug("Send message with length " +
-                            message.length + " to " +
-                            entry.getPeerAddress() + ": " +
-                            new OctetString(message).toHexString());
+                    for (int i = 0; i < messages.length; i++) {
+                        ByteBuffer message = messages[i];
+                        logger.debug("Send message with length " +
+                                message.remaining() + " to " +
+                                entry.getPeerAddress() + ": " +
+                                new OctetString(message.array(), message.position(),
+                                        message.remaining()).toHexString());
+                    }
                 }
-                sc.register(selector, SelectionKey.OP_READ);
+                // gathering write of the whole batch, the unwritten rest
+                // stays with the entry until the channel is writable again
+                sc.write(messages);
+            }
+            entry.used();
+            // keep on writing while messages are queued
+            sc.register(selector, entry.written() ?
+                    SelectionKey.OP_READ | SelectionKey.OP_WRITE :
+                    SelectionKey.OP_READ, entry);
+        }
+
+        private void closeEntry(SocketEntry entry) {
+            sockets.remove(entry);
+            try {
+                entry.close();
+            } catch (IOException iox) {
+                logger.debug(iox);
             }
         }
 
         public void close() {
             stop = true;
-            ServerThread st = server;
-            if (st != null) {
-                st.interrupt();
-            }
+            interrupt();
         }
     }
 
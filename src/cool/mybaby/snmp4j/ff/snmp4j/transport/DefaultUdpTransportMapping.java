@@ -26,11 +26,14 @@ import cool.mybaby.snmp4j.ff.snmp4j.log.LogAdapter;
 import cool.mybaby.snmp4j.ff.snmp4j.log.LogFactory;
 import cool.mybaby.snmp4j.ff.snmp4j.smi.Address;
 import cool.mybaby.snmp4j.ff.snmp4j.smi.OctetString;
+import cool.mybaby.snmp4j.ff.snmp4j.smi.TransportAddressCache;
 import cool.mybaby.snmp4j.ff.snmp4j.smi.UdpAddress;
 
 import java.io.IOException;
 import java.net.*;
 import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Hashtable;
 import java.util.logging.Level;
 
 /**
@@ -39,18 +42,27 @@ import java.util.logging.Level;
  * listening on the inbound socket.
  *
  * @author Frank Fock
- * @version 1.7.3
+ * @version 1.9
  */
 public class DefaultUdpTransportMapping extends UdpTransportMapping {
 
     private static final LogAdapter logger =
             LogFactory.getLogger(DefaultUdpTransportMapping.class);
 
+    /**
+     * The default number of pooled receive buffers.
+     */
+    public static final int DEFAULT_RECEIVE_BUFFER_POOL_SIZE = 16;
+
     protected DatagramSocket socket = null;
     protected ListenThread listener;
     private int socketTimeout = 1000;
 
     private int receiveBufferSize = 0; // not set by default
+    private int receiveBufferPoolSize = DEFAULT_RECEIVE_BUFFER_POOL_SIZE;
+    private volatile ReceiveBufferPool receiveBufferPool;
+    private volatile UdpSendQueue sendQueue;
+    private volatile Hashtable connectedTargets = new Hashtable(4);
 
     /**
      * Creates a UDP transport with an arbitrary local port on all local
@@ -98,16 +110,34 @@ public class DefaultUdpTransportMapping extends UdpTransportMapping {
 
     public void sendMessage(Address targetAddress, byte[] message)
             throws java.io.IOException {
-        InetSocketAddress targetSocketAddress =
-                new InetSocketAddress(((UdpAddress) targetAddress).getInetAddress(),
-                        ((UdpAddress) targetAddress).getPort());
         if (logger.isDebugEnabled()) {
             logger.debug("Sending message to " + targetAddress + " with length " +
                     message.length + ": " +
                     new OctetString(message).toHexString());
         }
+        if (!connectedTargets.isEmpty()) {
+            ConnectedTarget connected =
+                    (ConnectedTarget) connectedTargets.get(targetAddress);
+            if (connected != null) {
+                connected.send(message);
+                return;
+            }
+        }
+        UdpSendQueue queue = sendQueue;
+        if (queue != null) {
+            if (!queue.offer((UdpAddress) targetAddress, message)) {
+                if (queue.isStopped()) {
+                    throw new SocketException("Transport mapping closed, message to " +
+                            targetAddress + " not sent");
+                }
+                throw new SendQueueFullException("Send queue full, message to " +
+                        targetAddress + " rejected");
+            }
+            return;
+        }
         socket.send(new DatagramPacket(message, message.length,
-                targetSocketAddress));
+                ((UdpAddress) targetAddress).getInetAddress(),
+                ((UdpAddress) targetAddress).getPort()));
     }
 
     /**
@@ -116,6 +146,11 @@ public class DefaultUdpTransportMapping extends UdpTransportMapping {
      * @throws IOException
      */
     public void close() throws IOException {
+        UdpSendQueue queue = sendQueue;
+        if (queue != null) {
+            // sends the queued messages before the socket is closed
+            queue.stop();
+        }
         ListenThread l = listener;
         if (l != null) {
             l.close();
@@ -129,6 +164,15 @@ public class DefaultUdpTransportMapping extends UdpTransportMapping {
             }
             listener = null;
         }
+        ConnectedTarget[] connected;
+        synchronized (this) {
+            connected = (ConnectedTarget[]) connectedTargets.values().toArray(
+                    new ConnectedTarget[connectedTargets.size()]);
+            connectedTargets.clear();
+        }
+        for (int i = 0; i < connected.length; i++) {
+            connected[i].close();
+        }
         if (!socket.isClosed()) {
             socket.disconnect();
             socket.close();
@@ -249,6 +293,135 @@ public class DefaultUdpTransportMapping extends UdpTransportMapping {
         this.receiveBufferSize = receiveBufferSize;
     }
 
+    public int getReceiveBufferPoolSize() {
+        return receiveBufferPoolSize;
+    }
+
+    /**
+     * Sets the number of pooled buffers that receive messages while they are
+     * processed asynchronously, for example by a
+     * <code>MultiThreadedMessageDispatcher</code>. If all pooled buffers are
+     * in use, a message is received into a buffer that is not pooled. This
+     * method has to be called before {@link #listen()} to be effective.
+     *
+     * @param receiveBufferPoolSize a value > 0, which should not be less than the
+     *                              number of threads processing messages.
+     * @since 1.9
+     */
+    public void setReceiveBufferPoolSize(int receiveBufferPoolSize) {
+        if (receiveBufferPoolSize <= 0) {
+            throw new IllegalArgumentException("Receive buffer pool size must be > 0");
+        }
+        this.receiveBufferPoolSize = receiveBufferPoolSize;
+    }
+
+    /**
+     * Returns the pool of receive buffers of the listen thread.
+     *
+     * @return the <code>ReceiveBufferPool</code> or <code>null</code> if
+     * {@link #listen()} has not been called yet.
+     * @since 1.9
+     */
+    public ReceiveBufferPool getReceiveBufferPool() {
+        return receiveBufferPool;
+    }
+
+    /**
+     * Enables or disables asynchronous sending. With a send queue,
+     * {@link #sendMessage} only queues the message and returns. A writer thread
+     * sends the queued messages in batches. If the queue is full,
+     * {@link #sendMessage} throws a {@link SendQueueFullException} instead of
+     * blocking the caller.
+     *
+     * @param sendQueueSize the maximum number of queued messages, or <code>0</code> to
+     *                      send messages synchronously (the default).
+     * @since 1.9
+     */
+    public synchronized void setSendQueueSize(int sendQueueSize) {
+        if (sendQueueSize < 0) {
+            throw new IllegalArgumentException("Send queue size must be >= 0");
+        }
+        UdpSendQueue queue = sendQueue;
+        if ((queue != null) && (queue.getCapacity() == sendQueueSize)) {
+            return;
+        }
+        if (sendQueueSize > 0) {
+            UdpSendQueue newQueue = new UdpSendQueue(socket, sendQueueSize);
+            newQueue.start("DefaultUDPTransportMapping_Writer_" + getAddress());
+            sendQueue = newQueue;
+        } else {
+            sendQueue = null;
+        }
+        if (queue != null) {
+            queue.stop();
+        }
+    }
+
+    public int getSendQueueSize() {
+        UdpSendQueue queue = sendQueue;
+        return (queue == null) ? 0 : queue.getCapacity();
+    }
+
+    /**
+     * Returns the send queue.
+     *
+     * @return the <code>UdpSendQueue</code> or <code>null</code> if messages are
+     * sent synchronously.
+     * @since 1.9
+     */
+    public UdpSendQueue getSendQueue() {
+        return sendQueue;
+    }
+
+    /**
+     * Sends and receives the messages for the specified target through a
+     * separate UDP channel connected to the target. On a connected channel the
+     * operating system reports ICMP port unreachable messages for the target,
+     * which are fired as {@link TransportStateEvent#STATE_UNREACHABLE} events
+     * to the transport state listeners. A <code>Snmp</code> session then fails
+     * the pending requests to the target at once, instead of waiting for their
+     * timeouts.
+     * <p>
+     * The connected channels are served by the default {@link DatagramSelector}.
+     *
+     * @param target the address of the target.
+     * @throws IOException if the channel cannot be opened or connected.
+     * @since 1.9
+     */
+    public synchronized void addConnectedTarget(UdpAddress target)
+            throws IOException {
+        if (connectedTargets.containsKey(target)) {
+            return;
+        }
+        ConnectedTarget connected = new ConnectedTarget(target);
+        Hashtable targets = (Hashtable) connectedTargets.clone();
+        targets.put(target, connected);
+        connectedTargets = targets;
+    }
+
+    /**
+     * Closes the connected channel for the specified target. Messages for the
+     * target are sent through the socket of this transport mapping again.
+     *
+     * @param target the address of the target.
+     * @return <code>true</code> if a connected channel has been closed.
+     * @since 1.9
+     */
+    public synchronized boolean removeConnectedTarget(UdpAddress target) {
+        if (!connectedTargets.containsKey(target)) {
+            return false;
+        }
+        Hashtable targets = (Hashtable) connectedTargets.clone();
+        ConnectedTarget connected = (ConnectedTarget) targets.remove(target);
+        connectedTargets = targets;
+        connected.close();
+        return true;
+    }
+
+    public boolean isConnectedTarget(UdpAddress target) {
+        return connectedTargets.containsKey(target);
+    }
+
     public void setSocketTimeout(int socketTimeout) {
         this.socketTimeout = socketTimeout;
     }
@@ -259,12 +432,16 @@ public class DefaultUdpTransportMapping extends UdpTransportMapping {
 
     class ListenThread extends Thread {
 
-        private byte[] buf;
+        private ReceiveBufferPool bufferPool;
         private volatile boolean stop = false;
 
 
         public ListenThread() throws SocketException {
-            buf = new byte[getMaxInboundMessageSize()];
+            // without asynchronous processing a buffer is released before
+            // the next datagram is received
+            bufferPool = new ReceiveBufferPool(isAsyncMsgProcessingSupported() ?
+                    receiveBufferPoolSize : 1, getMaxInboundMessageSize());
+            receiveBufferPool = bufferPool;
             setName("DefaultUDPTransportMapping_" + getAddress());
         }
 
@@ -284,8 +461,10 @@ public class DefaultUdpTransportMapping extends UdpTransportMapping {
                 logger.error(ex);
                 setSocketTimeout(0);
             }
+            DatagramPacket packet = new DatagramPacket(new byte[0], 0);
             while (!stop) {
-                DatagramPacket packet = new DatagramPacket(buf, buf.length);
+                ReceiveBuffer buf = bufferPool.acquireForReceive();
+                packet.setData(buf.array());
                 try {
                     socket.receive(packet);
                     if (logger.isDebugEnabled()) {
@@ -295,32 +474,18 @@ public class DefaultUdpTransportMapping extends UdpTransportMapping {
                                 new OctetString(packet.getData(), 0,
                                         packet.getLength()).toHexString());
                     }
-                    ByteBuffer bis;
-                    // If messages are processed asynchronously (i.e. multi-threaded)
-                    // then we have to copy the buffer's content here!
-                    if (isAsyncMsgProcessingSupported()) {
-                        byte[] bytes = new byte[packet.getLength()];
-                        System.arraycopy(packet.getData(), 0, bytes, 0, bytes.length);
-                        bis = ByteBuffer.wrap(bytes);
-                    } else {
-                        bis = ByteBuffer.wrap(packet.getData());
-                    }
-                    fireProcessMessage(new UdpAddress(packet.getAddress(),
-                            packet.getPort()), bis);
+                    buf = bufferPool.received(buf, packet.getLength());
+                    fireProcessMessage(TransportAddressCache.getDefault().getUdpAddress(
+                            packet.getAddress(), packet.getPort()), buf);
                 } catch (SocketTimeoutException stex) {
                     // ignore
                 } catch (PortUnreachableException purex) {
-                    synchronized (DefaultUdpTransportMapping.this) {
-                        listener = null;
-                    }
-                    logger.error(purex);
+                    // cannot be assigned to a peer on an unconnected socket,
+                    // thus keep on listening (see addConnectedTarget)
+                    logger.warn(purex);
                     if (logger.isDebugEnabled()) {
                         purex.printStackTrace();
                     }
-                    if (SNMP4JSettings.isFowardRuntimeExceptions()) {
-                        throw new RuntimeException(purex);
-                    }
-                    break;
                 } catch (IOException iox) {
                     logger.warn(iox);
                     if (logger.isDebugEnabled()) {
@@ -329,6 +494,8 @@ public class DefaultUdpTransportMapping extends UdpTransportMapping {
                     if (SNMP4JSettings.isFowardRuntimeExceptions()) {
                         throw new RuntimeException(iox);
                     }
+                } finally {
+                    buf.release();
                 }
             }
             synchronized (DefaultUdpTransportMapping.this) {
@@ -342,4 +509,101 @@ public class DefaultUdpTransportMapping extends UdpTransportMapping {
             stop = true;
         }
     }
+
+    /**
+     * A channel connected to a single target.
+     */
+    class ConnectedTarget implements DatagramSelector.Receiver {
+
+        private UdpAddress target;
+        private DatagramChannel channel;
+        private DatagramSelector selector;
+        private Object servedBy;
+
+        ConnectedTarget(UdpAddress target) throws IOException {
+            this.target = target;
+            channel = DatagramChannel.open();
+            try {
+                channel.connect(new InetSocketAddress(target.getInetAddress(),
+                        target.getPort()));
+                channel.configureBlocking(false);
+                selector = DatagramSelector.getDefault();
+                servedBy = selector.register(channel, this);
+            } catch (IOException iox) {
+                channel.close();
+                throw iox;
+            }
+        }
+
+        void send(byte[] message) throws IOException {
+            try {
+                DatagramSelector.send(channel, ByteBuffer.wrap(message), null);
+            } catch (PortUnreachableException purex) {
+                // reported by an earlier ICMP message; the sender reports the
+                // exception, thus the target's pending requests are not failed
+                // here as well
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Connected target " + target + " is unreachable");
+                }
+                throw purex;
+            }
+        }
+
+        public void receive(DatagramChannel readChannel, ByteBuffer buffer) {
+            for (int i = 0; i < 16; i++) {
+                buffer.clear();
+                buffer.limit(Math.min(buffer.capacity(), getMaxInboundMessageSize()));
+                try {
+                    if (readChannel.read(buffer) <= 0) {
+                        return;
+                    }
+                } catch (PortUnreachableException purex) {
+                    unreachable(purex);
+                    continue;
+                } catch (IOException iox) {
+                    logger.warn(iox);
+                    return;
+                }
+                buffer.flip();
+                ByteBuffer bis;
+                // If messages are processed asynchronously (i.e. multi-threaded)
+                // then we have to copy the buffer's content here!
+                if (isAsyncMsgProcessingSupported()) {
+                    byte[] bytes = new byte[buffer.remaining()];
+                    buffer.get(bytes);
+                    bis = ByteBuffer.wrap(bytes);
+                } else {
+                    bis = buffer.slice();
+                }
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Received message from connected target " +
+                            target + " with length " + bis.remaining());
+                }
+                try {
+                    fireProcessMessage(target, bis);
+                } catch (RuntimeException rex) {
+                    logger.error("Failed to process message from " + target +
+                            ": " + rex.getMessage(), rex);
+                }
+            }
+        }
+
+        private void unreachable(PortUnreachableException purex) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Connected target " + target + " is unreachable");
+            }
+            fireConnectionStateChanged(new TransportStateEvent(
+                    DefaultUdpTransportMapping.this, target,
+                    TransportStateEvent.STATE_UNREACHABLE, purex));
+        }
+
+        void close() {
+            selector.deregister(channel, servedBy);
+            try {
+                channel.close();
+            } catch (IOException iox) {
+                logger.warn(iox);
+            }
+        }
+    }
 }
@@ -0,0 +1,316 @@
+/*_############################################################################
+  _##
+  _##  SNMP4J - MultiSocketUdpTransportMapping.java
+  _##
+  _##  Copyright 2003-2007  Frank Fock and Jochen Katz (SNMP4J.org)
+  _##
+  _##  Licensed under the Apache License, Version 2.0 (the "License");
+  _##  you may not use this file except in compliance with the License.
+  _##  You may obtain a copy of the License at
+  _##
+  _##      http://www.apache.org/licenses/LICENSE-2.0
+  _##
+  _##  Unless required by applicable law or agreed to in writing, software
+  _##  distributed under the License is distributed on an "AS IS" BASIS,
+  _##  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  _##  See the License for the specific language governing permissions and
+  _##  limitations under the License.
+  _##
+  _##########################################################################*/
+
+package cool.mybaby.snmp4j.ff.snmp4j.transport;
+
+import cool.mybaby.snmp4j.ff.snmp4j.SNMP4JSettings;
+import cool.mybaby.snmp4j.ff.snmp4j.log.LogAdapter;
+import cool.mybaby.snmp4j.ff.snmp4j.log.LogFactory;
+import cool.mybaby.snmp4j.ff.snmp4j.smi.Address;
+import cool.mybaby.snmp4j.ff.snmp4j.smi.OctetString;
+import cool.mybaby.snmp4j.ff.snmp4j.smi.TransportAddressCache;
+import cool.mybaby.snmp4j.ff.snmp4j.smi.UdpAddress;
+
+import java.io.IOException;
+import java.net.*;
+
+/**
+ * The <code>MultiSocketUdpTransportMapping</code> binds several UDP sockets
+ * to the same local address using the <code>SO_REUSEPORT</code> socket option.
+ * The operating system (for example Linux 3.9 or later) then distributes the
+ * inbound datagrams across the sockets by source address. Each socket is
+ * served by its own listen thread and all of them feed the same transport
+ * listeners, so that the reception of traps, for example on port 162, scales
+ * with the number of cores.
+ * <p>
+ * Messages are processed on the listen threads, so the message dispatcher
+ * must be thread safe, which is the case for <code>MessageDispatcherImpl</code>.
+ * Outbound messages are sent round robin over the sockets.
+ *
+ * @version 1.9
+ * @since 1.9
+ */
+public class MultiSocketUdpTransportMapping extends UdpTransportMapping {
+
+    private static final LogAdapter logger =
+            LogFactory.getLogger(MultiSocketUdpTransportMapping.class);
+
+    protected DatagramSocket[] sockets;
+    protected ListenThread[] listeners;
+    private int nextSocket;
+    private int socketTimeout = 1000;
+    private int receiveBufferSize = 0; // not set by default
+    private int receiveBufferPoolSize =
+            DefaultUdpTransportMapping.DEFAULT_RECEIVE_BUFFER_POOL_SIZE;
+
+    /**
+     * Creates a UDP transport on the specified address with one socket per
+     * available processor.
+     *
+     * @param udpAddress the local address for sending and receiving of UDP messages.
+     * @throws IOException if socket binding fails or <code>SO_REUSEPORT</code> is not
+     *                     supported.
+     */
+    public MultiSocketUdpTransportMapping(UdpAddress udpAddress)
+            throws IOException {
+        this(udpAddress, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a UDP transport on the specified address with the given number
+     * of sockets.
+     *
+     * @param udpAddress  the local address for sending and receiving of UDP messages.
+     * @param socketCount the number of sockets (and listen threads), a value > 0.
+     * @throws IOException if socket binding fails or <code>SO_REUSEPORT</code> is not
+     *                     supported.
+     */
+    public MultiSocketUdpTransportMapping(UdpAddress udpAddress,
+                                          int socketCount) throws IOException {
+        super(udpAddress);
+        if (socketCount <= 0) {
+            throw new IllegalArgumentException("Socket count must be > 0");
+        }
+        sockets = new DatagramSocket[socketCount];
+        SocketAddress addr =
+                new InetSocketAddress(udpAddress.getInetAddress(), udpAddress.getPort());
+        try {
+            for (int i = 0; i < socketCount; i++) {
+                DatagramSocket socket = new DatagramSocket(null);
+                sockets[i] = socket;
+                if (!socket.supportedOptions().contains(
+                        StandardSocketOptions.SO_REUSEPORT)) {
+                    throw new SocketException("SO_REUSEPORT is not supported");
+                }
+                socket.setOption(StandardSocketOptions.SO_REUSEPORT, Boolean.TRUE);
+                socket.bind(addr);
+                if ((i == 0) && (udpAddress.getPort() == 0)) {
+                    // all further sockets have to share the ephemeral port
+                    addr = new InetSocketAddress(udpAddress.getInetAddress(),
+                            socket.getLocalPort());
+                    this.udpAddress = new UdpAddress(udpAddress.getInetAddress(),
+                            socket.getLocalPort());
+                }
+            }
+        } catch (IOException iox) {
+            closeSockets();
+            throw iox;
+        }
+    }
+
+    /**
+     * Returns the number of sockets bound to the local address.
+     *
+     * @return the socket count.
+     */
+    public int getSocketCount() {
+        return sockets.length;
+    }
+
+    public void sendMessage(Address targetAddress, byte[] message)
+            throws java.io.IOException {
+        InetSocketAddress targetSocketAddress =
+                new InetSocketAddress(((UdpAddress) targetAddress).getInetAddress(),
+                        ((UdpAddress) targetAddress).getPort());
+        if (logger.isDebugEnabled()) {
+            logger.debug("Sending message to " + targetAddress + " with length " +
+                    message.length + ": " +
+                    new OctetString(message).toHexString());
+        }
+        // a race on the index only affects the distribution
+        int i = nextSocket;
+        nextSocket = (i + 1 < sockets.length) ? i + 1 : 0;
+        sockets[i].send(new DatagramPacket(message, message.length,
+                targetSocketAddress));
+    }
+
+    /**
+     * Closes the sockets and stops the listener threads.
+     *
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        ListenThread[] l;
+        synchronized (this) {
+            l = listeners;
+            listeners = null;
+        }
+        if (l != null) {
+            for (int i = 0; i < l.length; i++) {
+                l[i].close();
+                l[i].interrupt();
+            }
+            if (socketTimeout > 0) {
+                for (int i = 0; i < l.length; i++) {
+                    try {
+                        l[i].join();
+                    } catch (InterruptedException ex) {
+                        logger.warn(ex);
+                    }
+                }
+            }
+        }
+        closeSockets();
+    }
+
+    private void closeSockets() {
+        for (int i = 0; i < sockets.length; i++) {
+            if ((sockets[i] != null) && !sockets[i].isClosed()) {
+                sockets[i].close();
+            }
+        }
+    }
+
+    /**
+     * Starts one listener thread per socket. The threads are started in daemon
+     * mode and thus they will not block application termination.
+     *
+     * @throws IOException
+     */
+    public synchronized void listen() throws IOException {
+        if (listeners != null) {
+            throw new SocketException("Port already listening");
+        }
+        ListenThread[] l = new ListenThread[sockets.length];
+        for (int i = 0; i < l.length; i++) {
+            l[i] = new ListenThread(sockets[i], i);
+            l[i].setDaemon(true);
+        }
+        listeners = l;
+        for (int i = 0; i < l.length; i++) {
+            l[i].start();
+        }
+    }
+
+    public synchronized boolean isListening() {
+        return (listeners != null);
+    }
+
+    public void setMaxInboundMessageSize(int maxInboundMessageSize) {
+        this.maxInboundMessageSize = maxInboundMessageSize;
+    }
+
+    public int getSocketTimeout() {
+        return socketTimeout;
+    }
+
+    public void setSocketTimeout(int socketTimeout) {
+        this.socketTimeout = socketTimeout;
+    }
+
+    public int getReceiveBufferSize() {
+        return receiveBufferSize;
+    }
+
+    /**
+     * Sets the receive buffer size of each socket, which should be > the
+     * maximum inbound message size. This method has to be called before
+     * {@link #listen()} to be effective.
+     *
+     * @param receiveBufferSize an integer value >0 and > {@link #getMaxInboundMessageSize()}.
+     */
+    public void setReceiveBufferSize(int receiveBufferSize) {
+        if (receiveBufferSize <= 0) {
+            throw new IllegalArgumentException("Receive buffer size must be > 0");
+        }
+        this.receiveBufferSize = receiveBufferSize;
+    }
+
+    public int getReceiveBufferPoolSize() {
+        return receiveBufferPoolSize;
+    }
+
+    /**
+     * Sets the number of pooled receive buffers per socket.
+     *
+     * @param receiveBufferPoolSize a value > 0.
+     * @see DefaultUdpTransportMapping#setReceiveBufferPoolSize(int)
+     */
+    public void setReceiveBufferPoolSize(int receiveBufferPoolSize) {
+        if (receiveBufferPoolSize <= 0) {
+            throw new IllegalArgumentException("Receive buffer pool size must be > 0");
+        }
+        this.receiveBufferPoolSize = receiveBufferPoolSize;
+    }
+
+    class ListenThread extends Thread {
+
+        private DatagramSocket socket;
+        private ReceiveBufferPool bufferPool;
+        private volatile boolean stop = false;
+
+        public ListenThread(DatagramSocket socket, int index) {
+            this.socket = socket;
+            bufferPool = new ReceiveBufferPool(isAsyncMsgProcessingSupported() ?
+                    receiveBufferPoolSize : 1, getMaxInboundMessageSize());
+            setName("MultiSocketUDPTransportMapping_" + getAddress() + "#" + index);
+        }
+
+        public void run() {
+            try {
+                socket.setSoTimeout(getSocketTimeout());
+                if (receiveBufferSize > 0) {
+                    socket.setReceiveBufferSize(Math.max(receiveBufferSize,
+                            maxInboundMessageSize));
+                }
+            } catch (SocketException ex) {
+                logger.error(ex);
+            }
+            DatagramPacket packet = new DatagramPacket(new byte[0], 0);
+            while (!stop) {
+                ReceiveBuffer buf = bufferPool.acquireForReceive();
+                packet.setData(buf.array());
+                try {
+                    socket.receive(packet);
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("Received message on " + getName() + " from " +
+                                packet.getAddress() + "/" + packet.getPort() +
+                                " with length " + packet.getLength());
+                    }
+                    buf = bufferPool.received(buf, packet.getLength());
+                    fireProcessMessage(TransportAddressCache.getDefault().getUdpAddress(
+                            packet.getAddress(), packet.getPort()), buf);
+                } catch (SocketTimeoutException stex) {
+                    // ignore
+                } catch (PortUnreachableException purex) {
+                    // the sockets are not connected, thus ignore it
+                    logger.warn(purex);
+                } catch (IOException iox) {
+                    if (stop || socket.isClosed()) {
+                        break;
+                    }
+                    logger.warn(iox);
+                    if (logger.isDebugEnabled()) {
+                        iox.printStackTrace();
+                    }
+                    if (SNMP4JSettings.isFowardRuntimeExceptions()) {
+                        throw new RuntimeException(iox);
+                    }
+                } finally {
+                    buf.release();
+                }
+            }
+        }
+
+        public void close() {
+            stop = true;
+        }
+    }
+}
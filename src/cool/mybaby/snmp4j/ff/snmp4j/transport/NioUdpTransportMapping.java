@@ -0,0 +1,253 @@
+/*_############################################################################
+  _##
+  _##  SNMP4J - NioUdpTransportMapping.java
+  _##
+  _##  Copyright 2003-2007  Frank Fock and Jochen Katz (SNMP4J.org)
+  _##
+  _##  Licensed under the Apache License, Version 2.0 (the "License");
+  _##  you may not use this file except in compliance with the License.
+  _##  You may obtain a copy of the License at
+  _##
+  _##      http://www.apache.org/licenses/LICENSE-2.0
+  _##
+  _##  Unless required by applicable law or agreed to in writing, software
+  _##  distributed under the License is distributed on an "AS IS" BASIS,
+  _##  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  _##  See the License for the specific language governing permissions and
+  _##  limitations under the License.
+  _##
+  _##########################################################################*/
+
+package cool.mybaby.snmp4j.ff.snmp4j.transport;
+
+import cool.mybaby.snmp4j.ff.snmp4j.log.LogAdapter;
+import cool.mybaby.snmp4j.ff.snmp4j.log.LogFactory;
+import cool.mybaby.snmp4j.ff.snmp4j.smi.Address;
+import cool.mybaby.snmp4j.ff.snmp4j.smi.OctetString;
+import cool.mybaby.snmp4j.ff.snmp4j.smi.TransportAddressCache;
+import cool.mybaby.snmp4j.ff.snmp4j.smi.UdpAddress;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * The <code>NioUdpTransportMapping</code> implements a UDP transport mapping
+ * with a non-blocking <code>DatagramChannel</code>. Instead of running a
+ * listen thread of its own, the channel is served by a
+ * {@link DatagramSelector}, so a single I/O thread can serve the transport
+ * mappings of many local ports.
+ * <p>
+ * The mapping has the same constructors as {@link DefaultUdpTransportMapping}
+ * and can therefore replace it in the registration file of
+ * {@link TransportMappings} (see <code>transports-nio.properties</code>).
+ *
+ * @version 1.9
+ * @since 1.9
+ */
+public class NioUdpTransportMapping extends UdpTransportMapping
+        implements DatagramSelector.Receiver {
+
+    private static final LogAdapter logger =
+            LogFactory.getLogger(NioUdpTransportMapping.class);
+
+    // datagrams read per channel before other channels are served
+    private static final int MAX_READS_PER_SELECT = 16;
+
+    protected DatagramChannel channel;
+    private DatagramSelector selector;
+    private Object servedBy;
+
+    private int receiveBufferSize = 0; // not set by default
+
+    /**
+     * Creates a UDP transport with an arbitrary local port on all local
+     * interfaces.
+     *
+     * @throws IOException if socket binding fails.
+     */
+    public NioUdpTransportMapping() throws IOException {
+        super(new UdpAddress(InetAddress.getLocalHost(), 0));
+        channel = DatagramChannel.open();
+        channel.socket().bind(new InetSocketAddress(0));
+        udpAddress = new UdpAddress(InetAddress.getLocalHost(),
+                channel.socket().getLocalPort());
+    }
+
+    /**
+     * Creates a UDP transport with optional reusing the address if is currently
+     * in timeout state (TIME_WAIT) after the connection is closed.
+     *
+     * @param udpAddress   the local address for sending and receiving of UDP messages.
+     * @param reuseAddress if <code>true</code> addresses are reused which provides faster socket
+     *                     binding if an application is restarted for instance.
+     * @throws IOException if socket binding fails.
+     */
+    public NioUdpTransportMapping(UdpAddress udpAddress,
+                                  boolean reuseAddress) throws IOException {
+        super(udpAddress);
+        channel = DatagramChannel.open();
+        channel.socket().setReuseAddress(reuseAddress);
+        channel.socket().bind(new InetSocketAddress(udpAddress.getInetAddress(),
+                udpAddress.getPort()));
+    }
+
+    /**
+     * Creates a UDP transport on the specified address. The address will not be
+     * reused if it is currently in timeout state (TIME_WAIT).
+     *
+     * @param udpAddress the local address for sending and receiving of UDP messages.
+     * @throws IOException if socket binding fails.
+     */
+    public NioUdpTransportMapping(UdpAddress udpAddress) throws IOException {
+        this(udpAddress, false);
+    }
+
+    /**
+     * Creates a UDP transport on the specified address that is served by the
+     * supplied selector instead of the default one.
+     *
+     * @param udpAddress the local address for sending and receiving of UDP messages.
+     * @param selector   the <code>DatagramSelector</code> serving this transport.
+     * @throws IOException if socket binding fails.
+     */
+    public NioUdpTransportMapping(UdpAddress udpAddress,
+                                  DatagramSelector selector) throws IOException {
+        this(udpAddress, false);
+        this.selector = selector;
+    }
+
+    public DatagramChannel getChannel() {
+        return channel;
+    }
+
+    public void sendMessage(Address targetAddress, byte[] message)
+            throws IOException {
+        InetSocketAddress targetSocketAddress =
+                new InetSocketAddress(((UdpAddress) targetAddress).getInetAddress(),
+                        ((UdpAddress) targetAddress).getPort());
+        if (logger.isDebugEnabled()) {
+            logger.debug("Sending message to " + targetAddress + " with length " +
+                    message.length + ": " +
+                    new OctetString(message).toHexString());
+        }
+        DatagramSelector.send(channel, ByteBuffer.wrap(message),
+                targetSocketAddress);
+    }
+
+    /**
+     * Starts receiving messages by registering the channel with the
+     * datagram selector.
+     *
+     * @throws IOException if the channel cannot be registered.
+     */
+    public synchronized void listen() throws IOException {
+        if (servedBy != null) {
+            throw new SocketException("Port already listening");
+        }
+        if (receiveBufferSize > 0) {
+            channel.socket().setReceiveBufferSize(Math.max(receiveBufferSize,
+                    maxInboundMessageSize));
+        }
+        channel.configureBlocking(false);
+        if (selector == null) {
+            selector = DatagramSelector.getDefault();
+        }
+        servedBy = selector.register(channel, this);
+    }
+
+    /**
+     * Deregisters the channel from the datagram selector and closes it.
+     *
+     * @throws IOException if the channel cannot be closed.
+     */
+    public void close() throws IOException {
+        synchronized (this) {
+            if (servedBy != null) {
+                selector.deregister(channel, servedBy);
+                servedBy = null;
+            }
+        }
+        channel.close();
+    }
+
+    public synchronized boolean isListening() {
+        return (servedBy != null);
+    }
+
+    public void setMaxInboundMessageSize(int maxInboundMessageSize) {
+        this.maxInboundMessageSize = maxInboundMessageSize;
+    }
+
+    public int getReceiveBufferSize() {
+        return receiveBufferSize;
+    }
+
+    /**
+     * Sets the receive buffer size, which should be > the maximum inbound message
+     * size. This method has to be called before {@link #listen()} to be
+     * effective.
+     *
+     * @param receiveBufferSize an integer value >0 and > {@link #getMaxInboundMessageSize()}.
+     */
+    public void setReceiveBufferSize(int receiveBufferSize) {
+        if (receiveBufferSize <= 0) {
+            throw new IllegalArgumentException("Receive buffer size must be > 0");
+        }
+        this.receiveBufferSize = receiveBufferSize;
+    }
+
+    /**
+     * Reads the available datagrams from the supplied channel and dispatches
+     * them. Called by the I/O thread of the datagram selector.
+     *
+     * @param readChannel the readable channel of this mapping.
+     * @param buffer      the (direct) receive buffer of the I/O thread.
+     */
+    public void receive(DatagramChannel readChannel, ByteBuffer buffer) {
+        for (int i = 0; i < MAX_READS_PER_SELECT; i++) {
+            InetSocketAddress source;
+            buffer.clear();
+            buffer.limit(Math.min(buffer.capacity(), getMaxInboundMessageSize()));
+            try {
+                source = (InetSocketAddress) readChannel.receive(buffer);
+            } catch (IOException iox) {
+                logger.warn(iox);
+                if (logger.isDebugEnabled()) {
+                    iox.printStackTrace();
+                }
+                return;
+            }
+            if (source == null) {
+                return;
+            }
+            buffer.flip();
+            ByteBuffer bis;
+            // If messages are processed asynchronously (i.e. multi-threaded)
+            // then we have to copy the buffer's content here!
+            if (isAsyncMsgProcessingSupported()) {
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                bis = ByteBuffer.wrap(bytes);
+            } else {
+                bis = buffer.slice();
+            }
+            UdpAddress sourceAddress =
+                    TransportAddressCache.getDefault().getUdpAddress(
+                            source.getAddress(), source.getPort());
+            if (logger.isDebugEnabled()) {
+                logger.debug("Received message from " + sourceAddress +
+                        " with length " + bis.remaining());
+            }
+            try {
+                fireProcessMessage(sourceAddress, bis);
+            } catch (RuntimeException rex) {
+                logger.error("Failed to process message from " + sourceAddress +
+                        ": " + rex.getMessage(), rex);
+            }
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*_############################################################################
+  _##
+  _##  SNMP4J - ReceiveBuffer.java
+  _##
+  _##  Copyright 2003-2007  Frank Fock and Jochen Katz (SNMP4J.org)
+  _##
+  _##  Licensed under the Apache License, Version 2.0 (the "License");
+  _##  you may not use this file except in compliance with the License.
+  _##  You may obtain a copy of the License at
+  _##
+  _##      http://www.apache.org/licenses/LICENSE-2.0
+  _##
+  _##  Unless required by applicable law or agreed to in writing, software
+  _##  distributed under the License is distributed on an "AS IS" BASIS,
+  _##  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  _##  See the License for the specific language governing permissions and
+  _##  limitations under the License.
+  _##
+  _##########################################################################*/
+
+package cool.mybaby.snmp4j.ff.snmp4j.transport;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A <code>ReceiveBuffer</code> is a reference counted buffer for a received
+ * message. Buffers obtained from a {@link ReceiveBufferPool} return to the
+ * pool when their last reference is released.
+ * <p>
+ * A buffer is acquired with one reference. Each holder that keeps the buffer
+ * beyond the call that handed it over has to call {@link #retain()} and
+ * finally {@link #release()}.
+ * <p>
+ * A slice of a buffer shares the backing array and the reference count of
+ * the buffer it was created from, so a holder of a slice keeps the whole
+ * buffer from being reused.
+ *
+ * @version 1.9
+ * @since 1.9
+ */
+public class ReceiveBuffer {
+
+    private final ReceiveBufferPool pool;
+    private final ReceiveBuffer parent;
+    private final byte[] data;
+    private final ByteBuffer byteBuffer;
+    private final AtomicInteger references;
+
+    /**
+     * Creates a receive buffer that is not pooled.
+     *
+     * @param size the capacity of the buffer.
+     */
+    public ReceiveBuffer(int size) {
+        this(null, size);
+    }
+
+    ReceiveBuffer(ReceiveBufferPool pool, int size) {
+        this.pool = pool;
+        this.parent = null;
+        this.data = new byte[size];
+        this.byteBuffer = ByteBuffer.wrap(data);
+        this.references = new AtomicInteger();
+    }
+
+    private ReceiveBuffer(ReceiveBuffer parent, int offset, int length) {
+        this.pool = null;
+        this.parent = parent;
+        this.data = parent.data;
+        this.byteBuffer = ByteBuffer.wrap(data, offset, length).slice();
+        this.references = parent.references;
+    }
+
+    /**
+     * Returns the backing array of this buffer, into which a message can be
+     * received.
+     *
+     * @return the backing array.
+     */
+    public byte[] array() {
+        return data;
+    }
+
+    /**
+     * Returns the offset of this buffer's first byte within the backing
+     * array, which is non zero for slices only.
+     *
+     * @return the array offset.
+     */
+    public int getOffset() {
+        return byteBuffer.arrayOffset();
+    }
+
+    /**
+     * Creates a slice of this buffer without copying. The slice holds no
+     * reference of its own; a receiver that keeps it has to
+     * {@link #retain()} it like any other buffer.
+     *
+     * @param offset the offset of the slice within this buffer.
+     * @param length the length of the slice.
+     * @return a <code>ReceiveBuffer</code> sharing this buffer's array and
+     * reference count.
+     */
+    ReceiveBuffer slice(int offset, int length) {
+        ReceiveBuffer root = (parent == null) ? this : parent;
+        return new ReceiveBuffer(root, getOffset() + offset, length);
+    }
+
+    /**
+     * Creates a view of the message in this buffer with its own position and
+     * limit. Like a slice, the view shares the backing array and the
+     * reference count of this buffer, so it can be handed to a receiver
+     * that decodes it concurrently with other receivers.
+     *
+     * @return a <code>ReceiveBuffer</code> covering {@link #getLength()}
+     * bytes of this buffer.
+     */
+    ReceiveBuffer duplicate() {
+        return slice(0, getLength());
+    }
+
+    /**
+     * Sets the length of the received message, which limits the buffer
+     * returned by {@link #getByteBuffer()}.
+     *
+     * @param length the message length.
+     */
+    public void setLength(int length) {
+        byteBuffer.clear();
+        byteBuffer.limit(length);
+    }
+
+    public int getLength() {
+        return byteBuffer.limit();
+    }
+
+    /**
+     * Returns the received message. The returned buffer is only valid until
+     * the caller's reference has been released.
+     *
+     * @return a <code>ByteBuffer</code> backed by this buffer's array.
+     */
+    public ByteBuffer getByteBuffer() {
+        return byteBuffer;
+    }
+
+    /**
+     * Returns a copy of the received message which stays valid after the
+     * buffer has been released.
+     *
+     * @return a new <code>ByteBuffer</code>.
+     */
+    public ByteBuffer copy() {
+        byte[] bytes = new byte[getLength()];
+        System.arraycopy(data, getOffset(), bytes, 0, bytes.length);
+        return ByteBuffer.wrap(bytes);
+    }
+
+    public boolean isPooled() {
+        return (parent == null) ? (pool != null) : parent.isPooled();
+    }
+
+    public int getReferenceCount() {
+        return references.get();
+    }
+
+    /**
+     * Adds a reference to this buffer.
+     *
+     * @return this buffer.
+     */
+    public ReceiveBuffer retain() {
+        for (; ; ) {
+            int count = references.get();
+            if (count <= 0) {
+                throw new IllegalStateException("Receive buffer already released");
+            }
+            if (references.compareAndSet(count, count + 1)) {
+                return this;
+            }
+        }
+    }
+
+    /**
+     * Releases a reference to this buffer. When the last reference has been
+     * released, the buffer is returned to its pool.
+     */
+    public void release() {
+        int count = references.decrementAndGet();
+        if (count == 0) {
+            if (parent != null) {
+                if (parent.pool != null) {
+                    parent.pool.recycle(parent);
+                }
+            } else if (pool != null) {
+                pool.recycle(this);
+            }
+        } else if (count < 0) {
+            references.incrementAndGet();
+            throw new IllegalStateException("Receive buffer already released");
+        }
+    }
+
+    void acquired() {
+        references.set(1);
+        setLength(data.length);
+    }
+}
@@ -0,0 +1,47 @@
+/*_############################################################################
+  _##
+  _##  SNMP4J - ReceiveBufferListener.java
+  _##
+  _##  Copyright 2003-2007  Frank Fock and Jochen Katz (SNMP4J.org)
+  _##
+  _##  Licensed under the Apache License, Version 2.0 (the "License");
+  _##  you may not use this file except in compliance with the License.
+  _##  You may obtain a copy of the License at
+  _##
+  _##      http://www.apache.org/licenses/LICENSE-2.0
+  _##
+  _##  Unless required by applicable law or agreed to in writing, software
+  _##  distributed under the License is distributed on an "AS IS" BASIS,
+  _##  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  _##  See the License for the specific language governing permissions and
+  _##  limitations under the License.
+  _##
+  _##########################################################################*/
+
+package cool.mybaby.snmp4j.ff.snmp4j.transport;
+
+import cool.mybaby.snmp4j.ff.snmp4j.TransportMapping;
+import cool.mybaby.snmp4j.ff.snmp4j.smi.Address;
+
+/**
+ * A <code>ReceiveBufferListener</code> is a {@link TransportListener} that
+ * processes messages in pooled {@link ReceiveBuffer}s without copying them.
+ *
+ * @version 1.9
+ * @since 1.9
+ */
+public interface ReceiveBufferListener extends TransportListener {
+
+    /**
+     * Processes an incoming message. The listener owns one reference to
+     * <code>wholeMessage</code> and has to release it when the message has
+     * been decoded, also if processing fails.
+     *
+     * @param sourceTransport the <code>TransportMapping</code> that received the message.
+     * @param incomingAddress the <code>Address</code> from which the message has been received.
+     * @param wholeMessage    the buffer containing the received message.
+     */
+    void processMessage(TransportMapping sourceTransport,
+                        Address incomingAddress,
+                        ReceiveBuffer wholeMessage);
+}
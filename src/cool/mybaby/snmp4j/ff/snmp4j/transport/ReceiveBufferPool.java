@@ -0,0 +1,165 @@
+/*_############################################################################
+  _##
+  _##  SNMP4J - ReceiveBufferPool.java
+  _##
+  _##  Copyright 2003-2007  Frank Fock and Jochen Katz (SNMP4J.org)
+  _##
+  _##  Licensed under the Apache License, Version 2.0 (the "License");
+  _##  you may not use this file except in compliance with the License.
+  _##  You may obtain a copy of the License at
+  _##
+  _##      http://www.apache.org/licenses/LICENSE-2.0
+  _##
+  _##  Unless required by applicable law or agreed to in writing, software
+  _##  distributed under the License is distributed on an "AS IS" BASIS,
+  _##  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  _##  See the License for the specific language governing permissions and
+  _##  limitations under the License.
+  _##
+  _##########################################################################*/
+
+package cool.mybaby.snmp4j.ff.snmp4j.transport;
+
+/**
+ * The <code>ReceiveBufferPool</code> is a bounded pool of
+ * {@link ReceiveBuffer}s of equal size. Buffers are created on demand up to
+ * the pool size. If all pooled buffers are in use, {@link #acquire()} returns
+ * an unpooled buffer instead of blocking the receiving thread.
+ * <p>
+ * A thread receiving datagrams uses {@link #acquireForReceive()} and
+ * {@link #received(ReceiveBuffer, int)} instead. If the pool is exhausted,
+ * it receives into a scratch buffer owned by the pool, and only the
+ * received bytes are copied into an unpooled buffer of the exact length.
+ *
+ * @version 1.9
+ * @since 1.9
+ */
+public class ReceiveBufferPool {
+
+    private final int bufferSize;
+    private final ReceiveBuffer[] free;
+    private final ReceiveBuffer scratch;
+    private int freeCount;
+    private int created;
+    private long acquired;
+    private long exhausted;
+
+    /**
+     * Creates a receive buffer pool.
+     *
+     * @param poolSize   the maximum number of pooled buffers.
+     * @param bufferSize the capacity of each buffer.
+     */
+    public ReceiveBufferPool(int poolSize, int bufferSize) {
+        if (poolSize <= 0) {
+            throw new IllegalArgumentException("Pool size must be > 0");
+        }
+        this.bufferSize = bufferSize;
+        this.free = new ReceiveBuffer[poolSize];
+        this.scratch = new ReceiveBuffer(this, bufferSize);
+    }
+
+    /**
+     * Acquires a buffer with a reference count of one.
+     *
+     * @return a pooled buffer if available, otherwise an unpooled one.
+     */
+    public ReceiveBuffer acquire() {
+        ReceiveBuffer buffer;
+        synchronized (this) {
+            acquired++;
+            if (freeCount > 0) {
+                buffer = free[--freeCount];
+                free[freeCount] = null;
+            } else if (created < free.length) {
+                created++;
+                buffer = new ReceiveBuffer(this, bufferSize);
+            } else {
+                exhausted++;
+                buffer = new ReceiveBuffer(bufferSize);
+            }
+        }
+        buffer.acquired();
+        return buffer;
+    }
+
+    /**
+     * Acquires a buffer to receive a single datagram into. If the pool is
+     * exhausted, the scratch buffer of the pool is returned, which has to be
+     * passed to {@link #received} before the buffer is handed over. The
+     * scratch buffer is reused by the next call, thus only one thread may
+     * receive through a pool with this method.
+     *
+     * @return a pooled buffer if available, otherwise the scratch buffer.
+     */
+    public ReceiveBuffer acquireForReceive() {
+        ReceiveBuffer buffer;
+        synchronized (this) {
+            acquired++;
+            if (freeCount > 0) {
+                buffer = free[--freeCount];
+                free[freeCount] = null;
+            } else if (created < free.length) {
+                created++;
+                buffer = new ReceiveBuffer(this, bufferSize);
+            } else {
+                exhausted++;
+                buffer = scratch;
+            }
+        }
+        buffer.acquired();
+        return buffer;
+    }
+
+    /**
+     * Sets the length of a datagram received into a buffer obtained from
+     * {@link #acquireForReceive()}. A datagram in the scratch buffer is
+     * copied into an unpooled buffer of its length.
+     *
+     * @param buffer the buffer the datagram has been received into.
+     * @param length the length of the datagram.
+     * @return the buffer holding the datagram with one reference.
+     */
+    public ReceiveBuffer received(ReceiveBuffer buffer, int length) {
+        if (buffer != scratch) {
+            buffer.setLength(length);
+            return buffer;
+        }
+        ReceiveBuffer copy = new ReceiveBuffer(length);
+        System.arraycopy(buffer.array(), 0, copy.array(), 0, length);
+        copy.acquired();
+        buffer.release();
+        return copy;
+    }
+
+    synchronized void recycle(ReceiveBuffer buffer) {
+        if (buffer != scratch) {
+            free[freeCount++] = buffer;
+        }
+    }
+
+    public int getPoolSize() {
+        return free.length;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public synchronized int getAvailable() {
+        return freeCount + free.length - created;
+    }
+
+    public synchronized long getAcquired() {
+        return acquired;
+    }
+
+    /**
+     * Gets the number of acquisitions that could not be served from the pool.
+     *
+     * @return the number of unpooled or scratch buffers handed out.
+     */
+    public synchronized long getExhausted() {
+        return exhausted;
+    }
+}
@@ -0,0 +1,40 @@
+/*_############################################################################
+  _##
+  _##  SNMP4J - SendQueueFullException.java
+  _##
+  _##  Copyright 2003-2007  Frank Fock and Jochen Katz (SNMP4J.org)
+  _##
+  _##  Licensed under the Apache License, Version 2.0 (the "License");
+  _##  you may not use this file except in compliance with the License.
+  _##  You may obtain a copy of the License at
+  _##
+  _##      http://www.apache.org/licenses/LICENSE-2.0
+  _##
+  _##  Unless required by applicable law or agreed to in writing, software
+  _##  distributed under the License is distributed on an "AS IS" BASIS,
+  _##  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  _##  See the License for the specific language governing permissions and
+  _##  limitations under the License.
+  _##
+  _##########################################################################*/
+
+package cool.mybaby.snmp4j.ff.snmp4j.transport;
+
+import cool.mybaby.snmp4j.ff.snmp4j.MessageException;
+
+/**
+ * The <code>SendQueueFullException</code> is thrown by a transport mapping
+ * when its outbound message queue is full. The message has not been sent and
+ * the caller should slow down or retry later.
+ *
+ * @version 1.9
+ * @since 1.9
+ */
+public class SendQueueFullException extends MessageException {
+
+    private static final long serialVersionUID = -2613478124587398312L;
+
+    public SendQueueFullException(String message) {
+        super(message);
+    }
+}
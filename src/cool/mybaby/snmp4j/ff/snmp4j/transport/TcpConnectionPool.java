@@ -0,0 +1,400 @@
+/*_############################################################################
+  _##
+  _##  SNMP4J - TcpConnectionPool.java
+  _##
+  _##  Copyright 2003-2007  Frank Fock and Jochen Katz (SNMP4J.org)
+  _##
+  _##  Licensed under the Apache License, Version 2.0 (the "License");
+  _##  you may not use this file except in compliance with the License.
+  _##  You may obtain a copy of the License at
+  _##
+  _##      http://www.apache.org/licenses/LICENSE-2.0
+  _##
+  _##  Unless required by applicable law or agreed to in writing, software
+  _##  distributed under the License is distributed on an "AS IS" BASIS,
+  _##  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  _##  See the License for the specific language governing permissions and
+  _##  limitations under the License.
+  _##
+  _##########################################################################*/
+
+package cool.mybaby.snmp4j.ff.snmp4j.transport;
+
+import cool.mybaby.snmp4j.ff.snmp4j.log.LogAdapter;
+import cool.mybaby.snmp4j.ff.snmp4j.log.LogFactory;
+import cool.mybaby.snmp4j.ff.snmp4j.smi.Address;
+import cool.mybaby.snmp4j.ff.snmp4j.util.CommonTimer;
+import cool.mybaby.snmp4j.ff.snmp4j.util.HashedWheelTimer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The <code>TcpConnectionPool</code> holds the open connections of a
+ * {@link DefaultTcpTransportMapping} by peer address. Up to
+ * <code>maxConnectionsPerAddress</code> connections can be open to a peer.
+ * Requests are pipelined: a connection carries any number of outstanding
+ * requests, and messages go to the connection with the fewest outstanding
+ * requests. A new connection is only opened when all open connections to the
+ * peer have requests outstanding. No connections are opened to peers that
+ * connected to this pool's transport mapping.
+ * <p>
+ * Lookups do not lock. Connections that are idle for longer than the idle
+ * timeout are closed by a {@link HashedWheelTimer}. The idle check of a
+ * connection is scheduled once per timeout period, using a connection
+ * does not touch the timer. Connections to persistent peers are never
+ * closed because they are idle.
+ *
+ * @version 1.9
+ * @since 1.9
+ */
+public class TcpConnectionPool {
+
+    private static final LogAdapter logger =
+            LogFactory.getLogger(TcpConnectionPool.class);
+
+    private static final DefaultTcpTransportMapping.SocketEntry[] NO_ENTRIES =
+            new DefaultTcpTransportMapping.SocketEntry[0];
+
+    private final ConcurrentHashMap connections = new ConcurrentHashMap();
+    private final ConcurrentHashMap persistent = new ConcurrentHashMap();
+    private volatile int maxConnectionsPerAddress = 1;
+    private volatile long idleTimeout;
+    private CommonTimer timer;
+
+    private final AtomicLong opened = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+
+    /**
+     * Creates a connection pool.
+     *
+     * @param idleTimeout the time in milliseconds a connection may be idle before it is
+     *                    closed, or zero to never close idle connections.
+     */
+    public TcpConnectionPool(long idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    public int getMaxConnectionsPerAddress() {
+        return maxConnectionsPerAddress;
+    }
+
+    /**
+     * Sets the maximum number of connections opened to the same peer address.
+     *
+     * @param maxConnectionsPerAddress a value > 0, the default is 1.
+     */
+    public void setMaxConnectionsPerAddress(int maxConnectionsPerAddress) {
+        if (maxConnectionsPerAddress <= 0) {
+            throw new IllegalArgumentException("Max connections per address must be > 0");
+        }
+        this.maxConnectionsPerAddress = maxConnectionsPerAddress;
+    }
+
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    /**
+     * Sets the idle timeout. The new timeout applies to connections added
+     * afterwards and to the next idle check of existing connections.
+     *
+     * @param idleTimeout the idle timeout in milliseconds, or zero to never close idle
+     *                    connections.
+     */
+    public void setIdleTimeout(long idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * Gets a connection to the specified peer for sending a message.
+     *
+     * @param address the peer address.
+     * @return the open connection with the least outstanding requests, or
+     * <code>null</code> if a new connection should be opened.
+     */
+    public DefaultTcpTransportMapping.SocketEntry get(Address address) {
+        DefaultTcpTransportMapping.SocketEntry[] entries =
+                (DefaultTcpTransportMapping.SocketEntry[]) connections.get(address);
+        if (entries == null) {
+            return null;
+        }
+        DefaultTcpTransportMapping.SocketEntry best = null;
+        int bestOutstanding = Integer.MAX_VALUE;
+        int open = 0;
+        boolean inbound = false;
+        for (int i = 0; i < entries.length; i++) {
+            if (entries[i].getSocket().isClosed()) {
+                remove(entries[i]);
+                continue;
+            }
+            open++;
+            inbound |= entries[i].isAccepted();
+            int outstanding = entries[i].getOutstandingMessageCount();
+            if (outstanding < bestOutstanding) {
+                best = entries[i];
+                bestOutstanding = outstanding;
+            }
+        }
+        if ((best == null) ||
+                (!inbound && (bestOutstanding > 0) &&
+                        (open < maxConnectionsPerAddress))) {
+            return null;
+        }
+        reused.incrementAndGet();
+        return best;
+    }
+
+    /**
+     * Returns the open connections to a peer.
+     *
+     * @param address the peer address.
+     * @return the connections, which may be an empty array.
+     */
+    public DefaultTcpTransportMapping.SocketEntry[] getAll(Address address) {
+        DefaultTcpTransportMapping.SocketEntry[] entries =
+                (DefaultTcpTransportMapping.SocketEntry[]) connections.get(address);
+        return (entries == null) ? NO_ENTRIES : entries;
+    }
+
+    /**
+     * Adds a new connection and schedules its idle check. A connection opened
+     * to a peer is only added while less than
+     * <code>maxConnectionsPerAddress</code> connections to the peer are open,
+     * so concurrent senders that all found no usable connection cannot
+     * exceed the maximum. Connections are added before they are connected,
+     * so a rejected connection has not been initiated. Accepted connections
+     * are always added.
+     *
+     * @param entry a new connection.
+     * @return <code>false</code> if the maximum number of connections to the
+     * peer is open and <code>entry</code> has not been added.
+     */
+    public boolean add(DefaultTcpTransportMapping.SocketEntry entry) {
+        synchronized (this) {
+            DefaultTcpTransportMapping.SocketEntry[] entries =
+                    getAll(entry.getPeerAddress());
+            if (!entry.isAccepted()) {
+                int open = 0;
+                for (int i = 0; i < entries.length; i++) {
+                    if (!entries[i].getSocket().isClosed()) {
+                        open++;
+                    }
+                }
+                if (open >= maxConnectionsPerAddress) {
+                    return false;
+                }
+            }
+            DefaultTcpTransportMapping.SocketEntry[] newEntries =
+                    new DefaultTcpTransportMapping.SocketEntry[entries.length + 1];
+            System.arraycopy(entries, 0, newEntries, 0, entries.length);
+            newEntries[entries.length] = entry;
+            connections.put(entry.getPeerAddress(), newEntries);
+        }
+        opened.incrementAndGet();
+        scheduleIdleCheck(entry, idleTimeout);
+        return true;
+    }
+
+    /**
+     * Removes a connection without closing it.
+     *
+     * @param entry a connection.
+     * @return <code>true</code> if the connection has been removed.
+     */
+    public synchronized boolean remove(DefaultTcpTransportMapping.SocketEntry entry) {
+        DefaultTcpTransportMapping.SocketEntry[] entries =
+                (DefaultTcpTransportMapping.SocketEntry[])
+                        connections.get(entry.getPeerAddress());
+        if (entries == null) {
+            return false;
+        }
+        for (int i = 0; i < entries.length; i++) {
+            if (entries[i] == entry) {
+                if (entries.length == 1) {
+                    connections.remove(entry.getPeerAddress());
+                } else {
+                    DefaultTcpTransportMapping.SocketEntry[] newEntries =
+                            new DefaultTcpTransportMapping.SocketEntry[entries.length - 1];
+                    System.arraycopy(entries, 0, newEntries, 0, i);
+                    System.arraycopy(entries, i + 1, newEntries, i,
+                            newEntries.length - i);
+                    connections.put(entry.getPeerAddress(), newEntries);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes the connections to a peer without closing them.
+     *
+     * @param address the peer address.
+     * @return the removed connections, which may be an empty array.
+     */
+    public synchronized DefaultTcpTransportMapping.SocketEntry[] remove(Address address) {
+        DefaultTcpTransportMapping.SocketEntry[] entries =
+                (DefaultTcpTransportMapping.SocketEntry[]) connections.remove(address);
+        return (entries == null) ? NO_ENTRIES : entries;
+    }
+
+    /**
+     * Removes all connections without closing them.
+     *
+     * @return the removed connections.
+     */
+    public synchronized List removeAll() {
+        List all = new ArrayList();
+        for (Iterator it = connections.values().iterator(); it.hasNext(); ) {
+            DefaultTcpTransportMapping.SocketEntry[] entries =
+                    (DefaultTcpTransportMapping.SocketEntry[]) it.next();
+            for (int i = 0; i < entries.length; i++) {
+                all.add(entries[i]);
+            }
+        }
+        connections.clear();
+        return all;
+    }
+
+    /**
+     * Sets whether the connections to a peer are kept open while idle.
+     *
+     * @param address    the peer address.
+     * @param persistent <code>true</code> to exempt the connections to
+     *                   <code>address</code> from the idle timeout.
+     */
+    public void setPersistent(Address address, boolean persistent) {
+        if (persistent) {
+            this.persistent.put(address, Boolean.TRUE);
+        } else {
+            this.persistent.remove(address);
+        }
+    }
+
+    public boolean isPersistent(Address address) {
+        return persistent.containsKey(address);
+    }
+
+    /**
+     * Gets the number of open connections.
+     *
+     * @return the number of connections in the pool.
+     */
+    public int size() {
+        int size = 0;
+        for (Iterator it = connections.values().iterator(); it.hasNext(); ) {
+            size += ((DefaultTcpTransportMapping.SocketEntry[]) it.next()).length;
+        }
+        return size;
+    }
+
+    /**
+     * Starts the idle timer of this pool.
+     */
+    public synchronized void start() {
+        if (timer == null) {
+            timer = new HashedWheelTimer("SNMP4J-TCP-IdleTimer", 100, 512);
+        }
+    }
+
+    /**
+     * Stops the idle timer of this pool.
+     */
+    public synchronized void stop() {
+        if (timer != null) {
+            timer.cancel();
+            timer = null;
+        }
+    }
+
+    /**
+     * Gets the number of connections that have been added to the pool.
+     *
+     * @return the number of opened or accepted connections.
+     */
+    public long getOpenedConnections() {
+        return opened.get();
+    }
+
+    /**
+     * Gets the number of times an open connection has been returned by
+     * {@link #get(Address)}.
+     *
+     * @return the number of connection reuses.
+     */
+    public long getReusedConnections() {
+        return reused.get();
+    }
+
+    /**
+     * Gets the number of connections closed because they were idle.
+     *
+     * @return the number of evicted connections.
+     */
+    public long getEvictedConnections() {
+        return evicted.get();
+    }
+
+    private void scheduleIdleCheck(DefaultTcpTransportMapping.SocketEntry entry,
+                                   long delay) {
+        CommonTimer t;
+        synchronized (this) {
+            t = timer;
+        }
+        if ((t != null) && (idleTimeout > 0)) {
+            try {
+                t.schedule(new IdleCheck(entry), delay);
+            } catch (IllegalStateException isex) {
+                // pool stopped meanwhile
+            }
+        }
+    }
+
+    class IdleCheck implements Runnable {
+        private DefaultTcpTransportMapping.SocketEntry entry;
+
+        IdleCheck(DefaultTcpTransportMapping.SocketEntry entry) {
+            this.entry = entry;
+        }
+
+        public void run() {
+            long timeout = idleTimeout;
+            if (timeout <= 0) {
+                return;
+            }
+            long idle = System.currentTimeMillis() - entry.getLastUse();
+            if (entry.getSocket().isClosed()) {
+                remove(entry);
+                return;
+            }
+            // requests without response for that long have timed out
+            if (idle >= timeout) {
+                entry.clearOutstanding();
+            } else {
+                entry.expireOutstanding(timeout);
+            }
+            if (isPersistent(entry.getPeerAddress())) {
+                scheduleIdleCheck(entry, timeout);
+            } else if ((idle >= timeout) && (entry.getQueuedMessageCount() == 0)) {
+                if (remove(entry)) {
+                    evicted.incrementAndGet();
+                    try {
+                        entry.close();
+                        logger.info("Socket to " + entry.getPeerAddress() +
+                                " closed due to timeout");
+                    } catch (IOException ex) {
+                        logger.error(ex);
+                    }
+                }
+            } else {
+                scheduleIdleCheck(entry, Math.max(timeout - idle, 1));
+            }
+        }
+    }
+}
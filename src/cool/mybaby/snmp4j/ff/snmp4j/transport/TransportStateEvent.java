@@ -43,6 +43,13 @@ public class TransportStateEvent extends EventObject {
     public static final int STATE_DISCONNECTED_REMOTELY = 2;
     public static final int STATE_DISCONNECTED_TIMEOUT = 3;
     public static final int STATE_CLOSED = 4;
+    /**
+     * The peer is not reachable, for example because an ICMP port unreachable
+     * message has been received for it.
+     *
+     * @since 1.9
+     */
+    public static final int STATE_UNREACHABLE = 5;
 
     private int newState;
     private Address peerAddress;
@@ -0,0 +1,230 @@
+/*_############################################################################
+  _##
+  _##  SNMP4J - UdpSendQueue.java
+  _##
+  _##  Copyright 2003-2007  Frank Fock and Jochen Katz (SNMP4J.org)
+  _##
+  _##  Licensed under the Apache License, Version 2.0 (the "License");
+  _##  you may not use this file except in compliance with the License.
+  _##  You may obtain a copy of the License at
+  _##
+  _##      http://www.apache.org/licenses/LICENSE-2.0
+  _##
+  _##  Unless required by applicable law or agreed to in writing, software
+  _##  distributed under the License is distributed on an "AS IS" BASIS,
+  _##  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  _##  See the License for the specific language governing permissions and
+  _##  limitations under the License.
+  _##
+  _##########################################################################*/
+
+package cool.mybaby.snmp4j.ff.snmp4j.transport;
+
+import cool.mybaby.snmp4j.ff.snmp4j.log.LogAdapter;
+import cool.mybaby.snmp4j.ff.snmp4j.log.LogFactory;
+import cool.mybaby.snmp4j.ff.snmp4j.smi.UdpAddress;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+
+/**
+ * The <code>UdpSendQueue</code> decouples the senders of UDP messages from
+ * the socket. Messages are put into a bounded ring buffer by any number of
+ * threads and are sent by a single writer thread, which takes all queued
+ * messages at once and sends them back-to-back with a reused
+ * <code>DatagramPacket</code>.
+ * <p>
+ * If the queue is full, a message is rejected instead of blocking the caller.
+ * Send failures of the writer thread are logged only, because the caller has
+ * already returned. They show up as request timeouts.
+ *
+ * @version 1.9
+ * @since 1.9
+ */
+public class UdpSendQueue implements Runnable {
+
+    private static final LogAdapter logger =
+            LogFactory.getLogger(UdpSendQueue.class);
+
+    private final DatagramSocket socket;
+    private final UdpAddress[] targets;
+    private final byte[][] messages;
+    private int head;
+    private int count;
+    private boolean writerWaiting;
+    private volatile boolean stop;
+    private Thread writer;
+
+    private long sent;
+    private long rejected;
+    private long batches;
+
+    /**
+     * Creates a send queue for a socket.
+     *
+     * @param socket   the socket to send the messages with.
+     * @param capacity the maximum number of queued messages.
+     */
+    public UdpSendQueue(DatagramSocket socket, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be > 0");
+        }
+        this.socket = socket;
+        this.targets = new UdpAddress[capacity];
+        this.messages = new byte[capacity][];
+    }
+
+    /**
+     * Starts the writer thread in daemon mode.
+     *
+     * @param name the name of the writer thread.
+     */
+    public synchronized void start(String name) {
+        if (writer != null) {
+            throw new IllegalStateException("Send queue already started");
+        }
+        stop = false;
+        writer = new Thread(this, name);
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Stops the writer thread after the queued messages have been sent.
+     */
+    public void stop() {
+        Thread w;
+        synchronized (this) {
+            w = writer;
+            writer = null;
+            stop = true;
+            notify();
+        }
+        if ((w != null) && (w != Thread.currentThread())) {
+            try {
+                w.join();
+            } catch (InterruptedException ex) {
+                logger.warn(ex);
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Puts a message into the queue.
+     *
+     * @param target  the destination of the message.
+     * @param message the message, which must not be modified afterwards.
+     * @return <code>false</code> if the queue is full or stopped and the message
+     * has been rejected.
+     */
+    public synchronized boolean offer(UdpAddress target, byte[] message) {
+        if (stop || (count == messages.length)) {
+            rejected++;
+            return false;
+        }
+        int tail = head + count;
+        if (tail >= messages.length) {
+            tail -= messages.length;
+        }
+        targets[tail] = target;
+        messages[tail] = message;
+        count++;
+        if (writerWaiting) {
+            writerWaiting = false;
+            notify();
+        }
+        return true;
+    }
+
+    public void run() {
+        UdpAddress[] batchTargets = new UdpAddress[targets.length];
+        byte[][] batchMessages = new byte[messages.length][];
+        DatagramPacket packet = new DatagramPacket(new byte[0], 0);
+        while (true) {
+            int n;
+            synchronized (this) {
+                while ((count == 0) && !stop) {
+                    writerWaiting = true;
+                    try {
+                        wait();
+                    } catch (InterruptedException ex) {
+                        writerWaiting = false;
+                        stop = true;
+                    }
+                }
+                n = count;
+                if (n == 0) {
+                    break;
+                }
+                for (int i = 0; i < n; i++) {
+                    int index = head + i;
+                    if (index >= messages.length) {
+                        index -= messages.length;
+                    }
+                    batchTargets[i] = targets[index];
+                    batchMessages[i] = messages[index];
+                    targets[index] = null;
+                    messages[index] = null;
+                }
+                head = (head + n) % messages.length;
+                count = 0;
+                batches++;
+            }
+            int ok = 0;
+            for (int i = 0; i < n; i++) {
+                packet.setData(batchMessages[i]);
+                packet.setAddress(batchTargets[i].getInetAddress());
+                packet.setPort(batchTargets[i].getPort());
+                try {
+                    socket.send(packet);
+                    ok++;
+                } catch (IOException iox) {
+                    logger.warn("Failed to send message to " + batchTargets[i] +
+                            ": " + iox.getMessage());
+                }
+                batchTargets[i] = null;
+                batchMessages[i] = null;
+            }
+            synchronized (this) {
+                sent += ok;
+            }
+        }
+    }
+
+    /**
+     * Checks whether the queue has been stopped and thus rejects all messages.
+     *
+     * @return <code>true</code> if {@link #stop()} has been called.
+     */
+    public boolean isStopped() {
+        return stop;
+    }
+
+    public int getCapacity() {
+        return messages.length;
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    public synchronized long getSent() {
+        return sent;
+    }
+
+    public synchronized long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * Gets the number of times the writer thread took messages from the queue.
+     * Compared with {@link #getSent()} this shows the average batch size.
+     *
+     * @return the number of batches.
+     */
+    public synchronized long getBatches() {
+        return batches;
+    }
+}
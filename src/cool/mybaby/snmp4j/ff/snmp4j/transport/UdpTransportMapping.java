@@ -21,10 +21,13 @@
 
 package cool.mybaby.snmp4j.ff.snmp4j.transport;
 
+import cool.mybaby.snmp4j.ff.snmp4j.log.LogAdapter;
+import cool.mybaby.snmp4j.ff.snmp4j.log.LogFactory;
 import cool.mybaby.snmp4j.ff.snmp4j.smi.Address;
 import cool.mybaby.snmp4j.ff.snmp4j.smi.UdpAddress;
 
 import java.io.IOException;
+import java.util.Vector;
 
 /**
  * The <code>UdpTransportMapping</code> is the abstract base class for
@@ -36,7 +39,11 @@ import java.io.IOException;
 
 public abstract class UdpTransportMapping extends AbstractTransportMapping {
 
+    private static final LogAdapter logger =
+            LogFactory.getLogger(UdpTransportMapping.class);
+
     protected UdpAddress udpAddress;
+    private transient Vector transportStateListeners;
 
 
     public UdpTransportMapping(UdpAddress udpAddress) {
@@ -69,4 +76,50 @@ public abstract class UdpTransportMapping extends AbstractTransportMapping {
     public abstract void sendMessage(Address address, byte[] message)
             throws IOException;
 
+    /**
+     * Adds a listener for state changes of peers, for example
+     * {@link TransportStateEvent#STATE_UNREACHABLE}.
+     *
+     * @param l a TransportStateListener.
+     * @since 1.9
+     */
+    public synchronized void addTransportStateListener(TransportStateListener l) {
+        Vector v = (transportStateListeners == null) ?
+                new Vector(2) : (Vector) transportStateListeners.clone();
+        if (!v.contains(l)) {
+            v.addElement(l);
+            transportStateListeners = v;
+        }
+    }
+
+    /**
+     * Removes a transport state listener.
+     *
+     * @param l a TransportStateListener.
+     * @since 1.9
+     */
+    public synchronized void removeTransportStateListener(TransportStateListener
+                                                                  l) {
+        if ((transportStateListeners != null) &&
+                transportStateListeners.contains(l)) {
+            Vector v = (Vector) transportStateListeners.clone();
+            v.removeElement(l);
+            transportStateListeners = v;
+        }
+    }
+
+    protected void fireConnectionStateChanged(TransportStateEvent change) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("Firing transport state event: " + change);
+        }
+        Vector listeners = transportStateListeners;
+        if (listeners != null) {
+            int count = listeners.size();
+            for (int i = 0; i < count; i++) {
+                ((TransportStateListener)
+                        listeners.get(i)).connectionStateChanged(change);
+            }
+        }
+    }
+
 }
@@ -0,0 +1,558 @@
+/*_############################################################################
+  _##
+  _##  SNMP4J - CachingSession.java
+  _##
+  _##  Copyright 2003-2007  Frank Fock and Jochen Katz (SNMP4J.org)
+  _##
+  _##  Licensed under the Apache License, Version 2.0 (the "License");
+  _##  you may not use this file except in compliance with the License.
+  _##  You may obtain a copy of the License at
+  _##
+  _##      http://www.apache.org/licenses/LICENSE-2.0
+  _##
+  _##  Unless required by applicable law or agreed to in writing, software
+  _##  distributed under the License is distributed on an "AS IS" BASIS,
+  _##  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  _##  See the License for the specific language governing permissions and
+  _##  limitations under the License.
+  _##
+  _##########################################################################*/
+
+package cool.mybaby.snmp4j.ff.snmp4j.util;
+
+import cool.mybaby.snmp4j.ff.snmp4j.*;
+import cool.mybaby.snmp4j.ff.snmp4j.event.ResponseEvent;
+import cool.mybaby.snmp4j.ff.snmp4j.event.ResponseListener;
+import cool.mybaby.snmp4j.ff.snmp4j.log.LogAdapter;
+import cool.mybaby.snmp4j.ff.snmp4j.log.LogFactory;
+import cool.mybaby.snmp4j.ff.snmp4j.smi.Address;
+import cool.mybaby.snmp4j.ff.snmp4j.smi.Integer32;
+import cool.mybaby.snmp4j.ff.snmp4j.smi.OID;
+import cool.mybaby.snmp4j.ff.snmp4j.smi.OctetString;
+import cool.mybaby.snmp4j.ff.snmp4j.smi.VariableBinding;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * The <code>CachingSession</code> is a read-through cache for GET requests
+ * in front of a <code>Session</code>.
+ * <p>
+ * The variable bindings of successful GET responses are cached by target
+ * address, SNMP version, security name, model and level (the community for
+ * a <code>CommunityTarget</code>), context engine ID and context name of a
+ * <code>ScopedPDU</code>, and object identifier. Thus, a value is only
+ * served to requests with the same access rights as the request that
+ * fetched it. How long a value is cached is determined by
+ * the longest OID prefix configured with {@link #setTimeToLive(OID, long)}
+ * or by the default time to live. A request that can be fully answered from
+ * the cache is answered immediately; for a partially cached request only
+ * the missing variable bindings are sent to the agent.
+ * <p>
+ * The cache holds at most <code>maxEntries</code> variable bindings and
+ * evicts the least recently used one first. Exception values like
+ * <code>noSuchObject</code> and responses with an error status are not
+ * cached. All other PDU types are passed to the underlying session
+ * unchanged.
+ *
+ * @version 1.9
+ * @since 1.9
+ */
+public class CachingSession implements Session {
+
+    private static final LogAdapter logger =
+            LogFactory.getLogger(CachingSession.class);
+
+    private final Session session;
+    private final int maxEntries;
+    private long defaultTimeToLive;
+
+    // TimeToLive rules sorted by descending prefix length
+    private final List timeToLives = new ArrayList();
+
+    private final LinkedHashMap cache;
+    // pending partial misses by request PDU (identity)
+    private final Map pending = new IdentityHashMap();
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Creates a caching session.
+     *
+     * @param session           the session used to send requests not answered by the cache.
+     * @param maxEntries        the maximum number of cached variable bindings.
+     * @param defaultTimeToLive the time in milliseconds a value is cached if no OID prefix rule
+     *                          applies; zero disables caching for such values.
+     */
+    public CachingSession(Session session, final int maxEntries,
+                          long defaultTimeToLive) {
+        if ((maxEntries <= 0) || (defaultTimeToLive < 0)) {
+            throw new IllegalArgumentException("Invalid cache size or time to live");
+        }
+        this.session = session;
+        this.maxEntries = maxEntries;
+        this.defaultTimeToLive = defaultTimeToLive;
+        this.cache = new LinkedHashMap(Math.min(maxEntries, 1024), 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry eldest) {
+                if (size() > maxEntries) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public Session getSession() {
+        return session;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public synchronized long getDefaultTimeToLive() {
+        return defaultTimeToLive;
+    }
+
+    public synchronized void setDefaultTimeToLive(long defaultTimeToLive) {
+        this.defaultTimeToLive = defaultTimeToLive;
+    }
+
+    /**
+     * Sets the time to live of values whose OID starts with the supplied
+     * prefix. The rule of the longest matching prefix applies.
+     *
+     * @param prefix     an OID prefix.
+     * @param timeToLive the time in milliseconds a matching value is cached; zero disables
+     *                   caching of matching values.
+     */
+    public synchronized void setTimeToLive(OID prefix, long timeToLive) {
+        removeTimeToLive(prefix);
+        TimeToLive rule = new TimeToLive((OID) prefix.clone(), timeToLive);
+        int i = 0;
+        while ((i < timeToLives.size()) &&
+                (((TimeToLive) timeToLives.get(i)).prefix.size() >= prefix.size())) {
+            i++;
+        }
+        timeToLives.add(i, rule);
+    }
+
+    /**
+     * Removes the time to live rule for the supplied prefix.
+     *
+     * @param prefix an OID prefix.
+     */
+    public synchronized void removeTimeToLive(OID prefix) {
+        for (Iterator it = timeToLives.iterator(); it.hasNext(); ) {
+            if (((TimeToLive) it.next()).prefix.equals(prefix)) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Gets the time to live for values with the supplied OID.
+     *
+     * @param oid an OID.
+     * @return the time to live in milliseconds.
+     */
+    public synchronized long getTimeToLive(OID oid) {
+        for (int i = 0; i < timeToLives.size(); i++) {
+            TimeToLive rule = (TimeToLive) timeToLives.get(i);
+            if (oid.startsWith(rule.prefix)) {
+                return rule.timeToLive;
+            }
+        }
+        return defaultTimeToLive;
+    }
+
+    /**
+     * Removes all cached values.
+     */
+    public synchronized void clear() {
+        cache.clear();
+    }
+
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    /**
+     * Gets the number of requested variable bindings answered from the cache.
+     *
+     * @return the number of cache hits.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets the number of requested variable bindings that had to be sent to
+     * an agent.
+     *
+     * @return the number of cache misses.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Gets the number of cached values evicted because the cache was full.
+     *
+     * @return the number of evictions.
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized String toString() {
+        return "CachingSession[size=" + cache.size() + ",maxEntries=" + maxEntries +
+                ",hits=" + hits + ",misses=" + misses + ",evictions=" + evictions + "]";
+    }
+
+    public void close() throws IOException {
+        session.close();
+    }
+
+    public ResponseEvent send(PDU pdu, Target target) throws IOException {
+        return send(pdu, target, (TransportMapping) null);
+    }
+
+    public ResponseEvent send(PDU pdu, Target target,
+                              TransportMapping transport) throws IOException {
+        if (pdu.getType() != PDU.GET) {
+            return session.send(pdu, target, transport);
+        }
+        try {
+            return sendAsync(pdu, target, transport).toCompletableFuture().get();
+        } catch (InterruptedException iex) {
+            logger.warn(iex);
+            return null;
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw new IOException(ex.getCause().getMessage());
+        }
+    }
+
+    public void send(PDU pdu, Target target, Object userHandle,
+                     ResponseListener listener) throws IOException {
+        send(pdu, target, null, userHandle, listener);
+    }
+
+    public void send(PDU pdu, Target target, TransportMapping transport,
+                     Object userHandle, ResponseListener listener)
+            throws IOException {
+        if (pdu.getType() != PDU.GET) {
+            session.send(pdu, target, transport, userHandle, listener);
+            return;
+        }
+        Lookup lookup = lookup(pdu, target, transport, userHandle, listener);
+        if (lookup.request == null) {
+            listener.onResponse(lookup.createEvent(null));
+        } else {
+            synchronized (this) {
+                pending.put(pdu, lookup);
+            }
+            try {
+                session.send(lookup.request, target, transport, userHandle, lookup);
+            } catch (IOException ex) {
+                synchronized (this) {
+                    pending.remove(pdu);
+                }
+                throw ex;
+            }
+        }
+    }
+
+    public CompletionStage<ResponseEvent> sendAsync(PDU pdu, Target target) {
+        return sendAsync(pdu, target, null);
+    }
+
+    public CompletionStage<ResponseEvent> sendAsync(PDU pdu, Target target,
+                                                    TransportMapping transport) {
+        if (pdu.getType() != PDU.GET) {
+            return session.sendAsync(pdu, target, transport);
+        }
+        ResponseFuture future = new ResponseFuture(pdu);
+        try {
+            send(pdu, target, transport, target, future);
+        } catch (IOException ex) {
+            future.completeExceptionally(ex);
+        }
+        return future;
+    }
+
+    public void cancel(PDU request, ResponseListener listener) {
+        Lookup lookup;
+        synchronized (this) {
+            lookup = (Lookup) pending.get(request);
+            if ((lookup == null) || !lookup.listener.equals(listener)) {
+                lookup = null;
+            } else {
+                pending.remove(request);
+            }
+        }
+        if (lookup != null) {
+            session.cancel(lookup.request, lookup);
+        } else {
+            session.cancel(request, listener);
+        }
+    }
+
+    private Lookup lookup(PDU pdu, Target target, TransportMapping transport,
+                          Object userHandle, ResponseListener listener) {
+        Lookup lookup = new Lookup(pdu, target, userHandle, listener);
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            for (int i = 0; i < pdu.size(); i++) {
+                CacheKey key = new CacheKey(pdu, target, pdu.get(i).getOid());
+                lookup.keys[i] = key;
+                CacheEntry entry = (CacheEntry) cache.get(key);
+                if ((entry != null) && (entry.expires <= now)) {
+                    cache.remove(key);
+                    entry = null;
+                }
+                if (entry != null) {
+                    lookup.cached[i] = entry.vb;
+                    hits++;
+                } else {
+                    if (lookup.request == null) {
+                        lookup.request = (PDU) pdu.clone();
+                        lookup.request.clear();
+                        lookup.request.setRequestID(new Integer32(0));
+                    }
+                    lookup.request.add(pdu.get(i));
+                    misses++;
+                }
+            }
+        }
+        return lookup;
+    }
+
+    private void store(CacheKey key, VariableBinding vb, long now) {
+        long timeToLive = getTimeToLive(key.oid);
+        if ((timeToLive > 0) && !vb.isException()) {
+            cache.put(key, new CacheEntry((VariableBinding) vb.clone(),
+                    now + timeToLive));
+        }
+    }
+
+    static class TimeToLive {
+        private final OID prefix;
+        private final long timeToLive;
+
+        TimeToLive(OID prefix, long timeToLive) {
+            this.prefix = prefix;
+            this.timeToLive = timeToLive;
+        }
+    }
+
+    static class CacheEntry {
+        private final VariableBinding vb;
+        private final long expires;
+
+        CacheEntry(VariableBinding vb, long expires) {
+            this.vb = vb;
+            this.expires = expires;
+        }
+    }
+
+    static class CacheKey {
+        private final Address address;
+        private final int version;
+        private final OctetString security;
+        private final int securityModel;
+        private final int securityLevel;
+        private final OctetString contextEngineID;
+        private final OctetString contextName;
+        private final OID oid;
+        private final int hashCode;
+
+        CacheKey(PDU pdu, Target target, OID oid) {
+            this.address = target.getAddress();
+            this.version = target.getVersion();
+            if (target instanceof SecureTarget) {
+                SecureTarget secureTarget = (SecureTarget) target;
+                this.security = secureTarget.getSecurityName();
+                this.securityModel = secureTarget.getSecurityModel();
+                this.securityLevel = secureTarget.getSecurityLevel();
+            } else if (target instanceof CommunityTarget) {
+                this.security = ((CommunityTarget) target).getCommunity();
+                this.securityModel = 0;
+                this.securityLevel = 0;
+            } else {
+                this.security = null;
+                this.securityModel = 0;
+                this.securityLevel = 0;
+            }
+            if (pdu instanceof ScopedPDU) {
+                this.contextEngineID = ((ScopedPDU) pdu).getContextEngineID();
+                this.contextName = ((ScopedPDU) pdu).getContextName();
+            } else {
+                this.contextEngineID = null;
+                this.contextName = null;
+            }
+            // the key may be stored in the cache, thus it must not share
+            // the OID of the caller's variable binding
+            this.oid = (OID) oid.clone();
+            this.hashCode = oid.hashCode() * 31 + ((address == null) ? 0 : address.hashCode());
+        }
+
+        private static boolean equal(Object a, Object b) {
+            return (a == null) ? (b == null) : a.equals(b);
+        }
+
+        public boolean equals(Object obj) {
+            if (!(obj instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) obj;
+            return (hashCode == other.hashCode) &&
+                    (version == other.version) &&
+                    (securityModel == other.securityModel) &&
+                    (securityLevel == other.securityLevel) &&
+                    oid.equals(other.oid) &&
+                    equal(address, other.address) &&
+                    equal(security, other.security) &&
+                    equal(contextEngineID, other.contextEngineID) &&
+                    equal(contextName, other.contextName);
+        }
+
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /**
+     * The result of a cache lookup for a request and the listener of the
+     * request sent for the missing variable bindings.
+     */
+    class Lookup implements ResponseListener {
+
+        private final PDU pdu;
+        private final Target target;
+        private final Object userHandle;
+        private final ResponseListener listener;
+        private final CacheKey[] keys;
+        private final VariableBinding[] cached;
+        // request for the missing variable bindings or null on a full hit
+        private PDU request;
+
+        Lookup(PDU pdu, Target target, Object userHandle, ResponseListener listener) {
+            this.pdu = pdu;
+            this.target = target;
+            this.userHandle = userHandle;
+            this.listener = listener;
+            this.keys = new CacheKey[pdu.size()];
+            this.cached = new VariableBinding[pdu.size()];
+        }
+
+        public void onResponse(ResponseEvent event) {
+            session.cancel(event.getRequest(), this);
+            synchronized (CachingSession.this) {
+                if (pending.get(pdu) != this) {
+                    // cancelled
+                    return;
+                }
+                pending.remove(pdu);
+            }
+            listener.onResponse(createEvent(event));
+        }
+
+        /**
+         * Creates the response event for the original request from the cached
+         * variable bindings and the response to the missing ones.
+         */
+        ResponseEvent createEvent(ResponseEvent event) {
+            if (event == null) {
+                PDU response = (PDU) pdu.clone();
+                response.setType(PDU.RESPONSE);
+                response.clear();
+                for (int i = 0; i < cached.length; i++) {
+                    response.add((VariableBinding) cached[i].clone());
+                }
+                return new ResponseEvent(CachingSession.this, target.getAddress(),
+                        pdu, response, userHandle);
+            }
+            PDU fetched = event.getResponse();
+            if (fetched == null) {
+                return new ResponseEvent(event.getSource(), event.getPeerAddress(),
+                        pdu, null, userHandle, event.getError());
+            }
+            PDU response = (PDU) fetched.clone();
+            response.clear();
+            if ((fetched.getType() != PDU.RESPONSE) ||
+                    (fetched.getErrorStatus() != PDU.noError) ||
+                    (fetched.size() != request.size())) {
+                // map the error index back to the original request
+                int errorIndex = fetched.getErrorIndex();
+                for (int i = 0, j = 0; i < cached.length; i++) {
+                    if (cached[i] == null) {
+                        if (++j == fetched.getErrorIndex()) {
+                            errorIndex = i + 1;
+                        }
+                    }
+                    response.add((VariableBinding) pdu.get(i).clone());
+                }
+                if ((fetched.getType() == PDU.RESPONSE) &&
+                        (fetched.getErrorStatus() == PDU.noError)) {
+                    // the agent did not answer all requested variable bindings
+                    response.setErrorStatus(PDU.genErr);
+                    errorIndex = 0;
+                }
+                response.setErrorIndex(errorIndex);
+                return new ResponseEvent(event.getSource(), event.getPeerAddress(),
+                        pdu, response, userHandle);
+            }
+            long now = System.currentTimeMillis();
+            synchronized (CachingSession.this) {
+                for (int i = 0, j = 0; i < cached.length; i++) {
+                    if (cached[i] != null) {
+                        response.add((VariableBinding) cached[i].clone());
+                    } else {
+                        VariableBinding vb = fetched.get(j++);
+                        store(keys[i], vb, now);
+                        response.add(vb);
+                    }
+                }
+            }
+            return new ResponseEvent(event.getSource(), event.getPeerAddress(),
+                    pdu, response, userHandle);
+        }
+    }
+
+    /**
+     * The listener of requests sent by {@link #sendAsync}.
+     */
+    class ResponseFuture extends CompletableFuture<ResponseEvent>
+            implements ResponseListener {
+
+        private PDU request;
+
+        ResponseFuture(PDU request) {
+            this.request = request;
+        }
+
+        public void onResponse(ResponseEvent event) {
+            if (event.getError() instanceof IOException) {
+                // the request could not be sent, as if sendAsync had failed
+                completeExceptionally(event.getError());
+            } else {
+                complete(event);
+            }
+        }
+
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            CachingSession.this.cancel(request, this);
+            return super.cancel(mayInterruptIfRunning);
+        }
+    }
+}
@@ -0,0 +1,605 @@
+/*_############################################################################
+  _##
+  _##  SNMP4J - CoalescingSession.java
+  _##
+  _##  Copyright 2003-2007  Frank Fock and Jochen Katz (SNMP4J.org)
+  _##
+  _##  Licensed under the Apache License, Version 2.0 (the "License");
+  _##  you may not use this file except in compliance with the License.
+  _##  You may obtain a copy of the License at
+  _##
+  _##      http://www.apache.org/licenses/LICENSE-2.0
+  _##
+  _##  Unless required by applicable law or agreed to in writing, software
+  _##  distributed under the License is distributed on an "AS IS" BASIS,
+  _##  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  _##  See the License for the specific language governing permissions and
+  _##  limitations under the License.
+  _##
+  _##########################################################################*/
+
+package cool.mybaby.snmp4j.ff.snmp4j.util;
+
+import cool.mybaby.snmp4j.ff.snmp4j.*;
+import cool.mybaby.snmp4j.ff.snmp4j.event.ResponseEvent;
+import cool.mybaby.snmp4j.ff.snmp4j.event.ResponseListener;
+import cool.mybaby.snmp4j.ff.snmp4j.log.LogAdapter;
+import cool.mybaby.snmp4j.ff.snmp4j.log.LogFactory;
+import cool.mybaby.snmp4j.ff.snmp4j.smi.Address;
+import cool.mybaby.snmp4j.ff.snmp4j.smi.Integer32;
+import cool.mybaby.snmp4j.ff.snmp4j.smi.OctetString;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The <code>CoalescingSession</code> is a <code>Session</code> decorator that
+ * merges GET requests, which are sent concurrently to the same target, into
+ * a single request PDU.
+ * <p>
+ * GET requests with equal target address, SNMP version, security parameters
+ * (community or security name, model, and level), context, timeout, retries,
+ * and transport mapping are collected for a configurable window of a few
+ * milliseconds. Then their variable bindings are sent in one PDU, as long as
+ * that PDU does not exceed {@link Target#getMaxSizeRequestPDU()}. The
+ * variable bindings of the response are handed back to each original
+ * requester in a response PDU of its own. If the agent returns an error for
+ * the merged request, each original request is resent on its own, so every
+ * requester receives the error status for its own variable bindings.
+ * <p>
+ * Because a coalesced GET request is sent when its window elapsed, errors
+ * sending it are not thrown by
+ * {@link #send(PDU, Target, TransportMapping, Object, ResponseListener)}.
+ * They are delivered to the listener as a <code>ResponseEvent</code> whose
+ * {@link ResponseEvent#getError()} returns the <code>IOException</code>, or
+ * complete the stage returned by <code>sendAsync</code> exceptionally.
+ * <p>
+ * The windows are timed by a timer created by the
+ * {@link SNMP4JSettings#getTimerFactory()}, so a window is rounded up to
+ * the granularity of that timer. The timer is created when a batch is
+ * opened and released when no batch has been opened for
+ * {@link #TIMER_IDLE_TIMEOUT} milliseconds.
+ * <p>
+ * All other PDU types are passed to the underlying session unchanged.
+ *
+ * @version 1.9
+ * @since 1.9
+ */
+public class CoalescingSession implements Session {
+
+    private static final LogAdapter logger =
+            LogFactory.getLogger(CoalescingSession.class);
+
+    /**
+     * The default coalescing window in milliseconds.
+     */
+    public static final long DEFAULT_WINDOW = 5;
+
+    /**
+     * The time in milliseconds the timer is kept after the last batch has
+     * been opened.
+     */
+    public static final long TIMER_IDLE_TIMEOUT = 10000;
+
+    private final Session session;
+    private final long window;
+    // created while batches are opened, guarded by this
+    private CommonTimer timer;
+    private long lastBatchOpened;
+    private boolean closed;
+
+    // open batches by BatchKey
+    private final Map batches = new HashMap();
+    // coalesced requests not yet answered by request PDU (identity)
+    private final Map callers = new IdentityHashMap();
+
+    private final AtomicLong coalescedRequests = new AtomicLong();
+    private final AtomicLong sentRequests = new AtomicLong();
+
+    /**
+     * Creates a coalescing session with the {@link #DEFAULT_WINDOW}.
+     *
+     * @param session the session used to send the (merged) requests.
+     */
+    public CoalescingSession(Session session) {
+        this(session, DEFAULT_WINDOW);
+    }
+
+    /**
+     * Creates a coalescing session.
+     *
+     * @param session the session used to send the (merged) requests.
+     * @param window  the time in milliseconds a GET request waits for other GET requests to
+     *                the same target before the collected requests are sent.
+     */
+    public CoalescingSession(Session session, long window) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("Coalescing window must be positive");
+        }
+        this.session = session;
+        this.window = window;
+    }
+
+    public Session getSession() {
+        return session;
+    }
+
+    public long getWindow() {
+        return window;
+    }
+
+    /**
+     * Gets the number of GET requests that went through the coalescing layer.
+     *
+     * @return the number of coalesced GET requests.
+     */
+    public long getCoalescedRequests() {
+        return coalescedRequests.get();
+    }
+
+    /**
+     * Gets the number of requests sent by the coalescing layer for the
+     * coalesced GET requests (including resent single requests).
+     *
+     * @return the number of sent requests.
+     */
+    public long getSentRequests() {
+        return sentRequests.get();
+    }
+
+    /**
+     * Sends all open batches, then closes the underlying session.
+     *
+     * @throws IOException if the underlying session could not be closed.
+     */
+    public void close() throws IOException {
+        List open;
+        synchronized (this) {
+            closed = true;
+            open = new ArrayList(batches.values());
+            batches.clear();
+            if (timer != null) {
+                timer.cancel();
+                timer = null;
+            }
+        }
+        for (Iterator it = open.iterator(); it.hasNext(); ) {
+            Batch batch = (Batch) it.next();
+            batch.timeout.cancel();
+            batch.flush();
+        }
+        session.close();
+    }
+
+    public ResponseEvent send(PDU pdu, Target target) throws IOException {
+        return send(pdu, target, (TransportMapping) null);
+    }
+
+    public ResponseEvent send(PDU pdu, Target target,
+                              TransportMapping transport) throws IOException {
+        if (!isCoalescable(pdu)) {
+            return session.send(pdu, target, transport);
+        }
+        try {
+            return sendAsync(pdu, target, transport).toCompletableFuture().get();
+        } catch (InterruptedException iex) {
+            logger.warn(iex);
+            return null;
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw new IOException(ex.getCause().getMessage());
+        }
+    }
+
+    public void send(PDU pdu, Target target, Object userHandle,
+                     ResponseListener listener) throws IOException {
+        send(pdu, target, null, userHandle, listener);
+    }
+
+    public void send(PDU pdu, Target target, TransportMapping transport,
+                     Object userHandle, ResponseListener listener)
+            throws IOException {
+        if (!isCoalescable(pdu)) {
+            session.send(pdu, target, transport, userHandle, listener);
+            return;
+        }
+        if (!enqueue(new Caller(pdu, target, transport, userHandle, listener))) {
+            throw new IOException("CoalescingSession is closed");
+        }
+    }
+
+    public CompletionStage<ResponseEvent> sendAsync(PDU pdu, Target target) {
+        return sendAsync(pdu, target, null);
+    }
+
+    public CompletionStage<ResponseEvent> sendAsync(PDU pdu, Target target,
+                                                    TransportMapping transport) {
+        if (!isCoalescable(pdu)) {
+            return session.sendAsync(pdu, target, transport);
+        }
+        ResponseFuture future = new ResponseFuture(pdu);
+        if (!enqueue(new Caller(pdu, target, transport, null, future))) {
+            future.completeExceptionally(
+                    new IOException("CoalescingSession is closed"));
+        }
+        return future;
+    }
+
+    public void cancel(PDU request, ResponseListener listener) {
+        synchronized (this) {
+            Caller caller = (Caller) callers.get(request);
+            if ((caller != null) && caller.listener.equals(listener)) {
+                callers.remove(request);
+                caller.cancelled = true;
+                return;
+            }
+        }
+        session.cancel(request, listener);
+    }
+
+    protected boolean isCoalescable(PDU pdu) {
+        return (pdu.getType() == PDU.GET) && (pdu.size() > 0);
+    }
+
+    /**
+     * Adds a caller to the open batch of its key or opens a new batch.
+     *
+     * @return <code>false</code> if this session has been closed.
+     */
+    private boolean enqueue(Caller caller) {
+        BatchKey key = new BatchKey(caller.pdu, caller.target, caller.transport);
+        Batch full = null;
+        synchronized (this) {
+            if (closed) {
+                return false;
+            }
+            coalescedRequests.incrementAndGet();
+            callers.put(caller.pdu, caller);
+            Batch batch = (Batch) batches.get(key);
+            if ((batch != null) && !batch.add(caller)) {
+                batches.remove(key);
+                full = batch;
+                batch = null;
+            }
+            if (batch == null) {
+                batch = new Batch(key, caller);
+                batches.put(key, batch);
+                if (timer == null) {
+                    timer = SNMP4JSettings.getTimerFactory().createTimer();
+                    timer.schedule(new TimerRelease(), TIMER_IDLE_TIMEOUT);
+                }
+                lastBatchOpened = System.currentTimeMillis();
+                batch.timeout = timer.schedule(batch, window);
+            }
+        }
+        if (full != null) {
+            full.timeout.cancel();
+            full.flush();
+        }
+        return true;
+    }
+
+    /**
+     * Cancels the timer when no batch has been opened for
+     * {@link #TIMER_IDLE_TIMEOUT} milliseconds, so an idle session does not
+     * keep a timer thread running.
+     */
+    class TimerRelease implements Runnable {
+
+        public void run() {
+            synchronized (CoalescingSession.this) {
+                if (timer == null) {
+                    return;
+                }
+                long idle = System.currentTimeMillis() - lastBatchOpened;
+                if (batches.isEmpty() && (idle >= TIMER_IDLE_TIMEOUT)) {
+                    timer.cancel();
+                    timer = null;
+                } else {
+                    timer.schedule(this, Math.max(TIMER_IDLE_TIMEOUT - idle, window));
+                }
+            }
+        }
+    }
+
+    private void deliver(Caller caller, ResponseEvent event) {
+        synchronized (this) {
+            if (callers.get(caller.pdu) == caller) {
+                callers.remove(caller.pdu);
+            }
+            if (caller.cancelled) {
+                return;
+            }
+        }
+        caller.listener.onResponse(event);
+    }
+
+    private void fail(Caller caller, IOException ex) {
+        synchronized (this) {
+            if (callers.get(caller.pdu) == caller) {
+                callers.remove(caller.pdu);
+            }
+            if (caller.cancelled) {
+                return;
+            }
+        }
+        if (caller.listener instanceof ResponseFuture) {
+            ((ResponseFuture) caller.listener).completeExceptionally(ex);
+        } else {
+            caller.listener.onResponse(new ResponseEvent(session, null, caller.pdu,
+                    null, caller.userHandle, ex));
+        }
+    }
+
+    /**
+     * Sends the request of a single caller unchanged.
+     */
+    private void sendSingle(final Caller caller) {
+        try {
+            sentRequests.incrementAndGet();
+            session.send(caller.pdu, caller.target, caller.transport,
+                    caller.userHandle, new ResponseListener() {
+                        public void onResponse(ResponseEvent event) {
+                            session.cancel(event.getRequest(), this);
+                            deliver(caller, event);
+                        }
+                    });
+        } catch (IOException ex) {
+            fail(caller, ex);
+        }
+    }
+
+    static class Caller {
+        private final PDU pdu;
+        private final Target target;
+        private final TransportMapping transport;
+        private final Object userHandle;
+        private final ResponseListener listener;
+        private volatile boolean cancelled;
+
+        Caller(PDU pdu, Target target, TransportMapping transport,
+               Object userHandle, ResponseListener listener) {
+            this.pdu = pdu;
+            this.target = target;
+            this.transport = transport;
+            this.userHandle = userHandle;
+            this.listener = listener;
+        }
+    }
+
+    /**
+     * A batch collects the callers of one <code>BatchKey</code> until the
+     * coalescing window elapsed or the merged PDU is full.
+     */
+    class Batch implements Runnable, ResponseListener {
+
+        private final BatchKey key;
+        private final List members = new ArrayList();
+        private final PDU sizing;
+        private TimeoutHandle timeout;
+        private PDU merged;
+        private int[] offsets;
+
+        Batch(BatchKey key, Caller first) {
+            this.key = key;
+            this.sizing = (PDU) first.pdu.clone();
+            members.add(first);
+        }
+
+        /**
+         * Adds a caller if the merged PDU does not exceed the maximum request
+         * size of the target.
+         */
+        boolean add(Caller caller) {
+            int size = sizing.size();
+            for (int i = 0; i < caller.pdu.size(); i++) {
+                sizing.add(caller.pdu.get(i));
+            }
+            if (sizing.getBERLength() > caller.target.getMaxSizeRequestPDU()) {
+                while (sizing.size() > size) {
+                    sizing.remove(sizing.size() - 1);
+                }
+                return false;
+            }
+            members.add(caller);
+            return true;
+        }
+
+        public void run() {
+            synchronized (CoalescingSession.this) {
+                if (batches.get(key) != this) {
+                    return;
+                }
+                batches.remove(key);
+            }
+            flush();
+        }
+
+        void flush() {
+            List live = new ArrayList(members.size());
+            for (Iterator it = members.iterator(); it.hasNext(); ) {
+                Caller caller = (Caller) it.next();
+                if (!caller.cancelled) {
+                    live.add(caller);
+                }
+            }
+            members.clear();
+            members.addAll(live);
+            if (live.isEmpty()) {
+                return;
+            }
+            if (live.size() == 1) {
+                sendSingle((Caller) live.get(0));
+                return;
+            }
+            Caller first = (Caller) live.get(0);
+            merged = (PDU) first.pdu.clone();
+            merged.clear();
+            merged.setRequestID(new Integer32(0));
+            offsets = new int[live.size() + 1];
+            for (int i = 0; i < live.size(); i++) {
+                PDU pdu = ((Caller) live.get(i)).pdu;
+                offsets[i] = merged.size();
+                for (int j = 0; j < pdu.size(); j++) {
+                    merged.add(pdu.get(j));
+                }
+            }
+            offsets[live.size()] = merged.size();
+            if (logger.isDebugEnabled()) {
+                logger.debug("Sending " + live.size() + " coalesced GET requests to " +
+                        first.target.getAddress() + " with " + merged.size() +
+                        " variable bindings");
+            }
+            try {
+                sentRequests.incrementAndGet();
+                session.send(merged, first.target, first.transport, null, this);
+            } catch (IOException ex) {
+                for (int i = 0; i < live.size(); i++) {
+                    fail((Caller) live.get(i), ex);
+                }
+            }
+        }
+
+        public void onResponse(ResponseEvent event) {
+            session.cancel(event.getRequest(), this);
+            PDU response = event.getResponse();
+            if (response == null) {
+                for (int i = 0; i < members.size(); i++) {
+                    Caller caller = (Caller) members.get(i);
+                    deliver(caller, new ResponseEvent(event.getSource(),
+                            event.getPeerAddress(), caller.pdu, null, caller.userHandle,
+                            event.getError()));
+                }
+            } else if ((response.getType() != PDU.RESPONSE) ||
+                    (response.getErrorStatus() != PDU.noError) ||
+                    (response.size() != merged.size())) {
+                // let each request get its own error status and index
+                for (int i = 0; i < members.size(); i++) {
+                    sendSingle((Caller) members.get(i));
+                }
+            } else {
+                for (int i = 0; i < members.size(); i++) {
+                    Caller caller = (Caller) members.get(i);
+                    PDU part = (PDU) response.clone();
+                    part.clear();
+                    for (int j = offsets[i]; j < offsets[i + 1]; j++) {
+                        part.add(response.get(j));
+                    }
+                    deliver(caller, new ResponseEvent(event.getSource(),
+                            event.getPeerAddress(), caller.pdu, part, caller.userHandle));
+                }
+            }
+        }
+    }
+
+    /**
+     * Identifies requests that can share a PDU.
+     */
+    static class BatchKey {
+
+        private final Address address;
+        private final int version;
+        private final OctetString security;
+        private final int securityModel;
+        private final int securityLevel;
+        private final long timeout;
+        private final int retries;
+        private final TransportMapping transport;
+        private final Class pduClass;
+        private final OctetString contextEngineID;
+        private final OctetString contextName;
+        private final int hashCode;
+
+        BatchKey(PDU pdu, Target target, TransportMapping transport) {
+            this.address = target.getAddress();
+            this.version = target.getVersion();
+            if (target instanceof SecureTarget) {
+                SecureTarget secureTarget = (SecureTarget) target;
+                this.security = secureTarget.getSecurityName();
+                this.securityModel = secureTarget.getSecurityModel();
+                this.securityLevel = secureTarget.getSecurityLevel();
+            } else if (target instanceof CommunityTarget) {
+                this.security = ((CommunityTarget) target).getCommunity();
+                this.securityModel = 0;
+                this.securityLevel = 0;
+            } else {
+                this.security = null;
+                this.securityModel = 0;
+                this.securityLevel = 0;
+            }
+            this.timeout = target.getTimeout();
+            this.retries = target.getRetries();
+            this.transport = transport;
+            this.pduClass = pdu.getClass();
+            if (pdu instanceof ScopedPDU) {
+                this.contextEngineID = ((ScopedPDU) pdu).getContextEngineID();
+                this.contextName = ((ScopedPDU) pdu).getContextName();
+            } else {
+                this.contextEngineID = null;
+                this.contextName = null;
+            }
+            this.hashCode = ((address == null) ? 0 : address.hashCode()) * 31 +
+                    ((security == null) ? 0 : security.hashCode());
+        }
+
+        private static boolean equal(Object a, Object b) {
+            return (a == null) ? (b == null) : a.equals(b);
+        }
+
+        public boolean equals(Object obj) {
+            if (!(obj instanceof BatchKey)) {
+                return false;
+            }
+            BatchKey other = (BatchKey) obj;
+            return (hashCode == other.hashCode) &&
+                    (version == other.version) &&
+                    (securityModel == other.securityModel) &&
+                    (securityLevel == other.securityLevel) &&
+                    (timeout == other.timeout) &&
+                    (retries == other.retries) &&
+                    (transport == other.transport) &&
+                    (pduClass == other.pduClass) &&
+                    equal(address, other.address) &&
+                    equal(security, other.security) &&
+                    equal(contextEngineID, other.contextEngineID) &&
+                    equal(contextName, other.contextName);
+        }
+
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /**
+     * The listener of requests sent by {@link #sendAsync}.
+     */
+    class ResponseFuture extends CompletableFuture<ResponseEvent>
+            implements ResponseListener {
+
+        private PDU request;
+
+        ResponseFuture(PDU request) {
+            this.request = request;
+        }
+
+        public void onResponse(ResponseEvent event) {
+            if (event.getError() instanceof IOException) {
+                // the request could not be sent, as if sendAsync had failed
+                completeExceptionally(event.getError());
+            } else {
+                complete(event);
+            }
+        }
+
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            CoalescingSession.this.cancel(request, this);
+            return super.cancel(mayInterruptIfRunning);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*_############################################################################
+  _##
+  _##  SNMP4J - CommonTimer.java
+  _##
+  _##  Copyright 2003-2007  Frank Fock and Jochen Katz (SNMP4J.org)
+  _##
+  _##  Licensed under the Apache License, Version 2.0 (the "License");
+  _##  you may not use this file except in compliance with the License.
+  _##  You may obtain a copy of the License at
+  _##
+  _##      http://www.apache.org/licenses/LICENSE-2.0
+  _##
+  _##  Unless required by applicable law or agreed to in writing, software
+  _##  distributed under the License is distributed on an "AS IS" BASIS,
+  _##  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  _##  See the License for the specific language governing permissions and
+  _##  limitations under the License.
+  _##
+  _##########################################################################*/
+
+package cool.mybaby.snmp4j.ff.snmp4j.util;
+
+/**
+ * The <code>CommonTimer</code> interface defines the operations SNMP4J needs
+ * from a timer to schedule request retries and timeouts. Implementations are
+ * created by the {@link TimerFactory} configured in
+ * {@link cool.mybaby.snmp4j.ff.snmp4j.SNMP4JSettings}.
+ *
+ * @version 1.9
+ * @since 1.9
+ */
+public interface CommonTimer {
+
+    /**
+     * Schedules the specified task for execution after the specified delay.
+     *
+     * @param task  a <code>Runnable</code> to be executed once.
+     * @param delay the delay in milliseconds before the task is to be executed.
+     * @return a <code>TimeoutHandle</code> that can be used to cancel the
+     * scheduled execution of <code>task</code>.
+     * @throws IllegalStateException if the timer has been cancelled already.
+     */
+    TimeoutHandle schedule(Runnable task, long delay);
+
+    /**
+     * Terminates this timer, discarding any currently scheduled tasks.
+     * A task currently being executed is not interfered with. Once a timer has
+     * been terminated, no more tasks may be scheduled on it.
+     */
+    void cancel();
+
+    /**
+     * Removes all cancelled tasks from this timer's task queue.
+     *
+     * @return the number of tasks removed from the queue.
+     */
+    int purge();
+
+}
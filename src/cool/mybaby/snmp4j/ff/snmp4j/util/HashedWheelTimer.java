@@ -0,0 +1,355 @@
+/*_############################################################################
+  _##
+  _##  SNMP4J - HashedWheelTimer.java
+  _##
+  _##  Copyright 2003-2007  Frank Fock and Jochen Katz (SNMP4J.org)
+  _##
+  _##  Licensed under the Apache License, Version 2.0 (the "License");
+  _##  you may not use this file except in compliance with the License.
+  _##  You may obtain a copy of the License at
+  _##
+  _##      http://www.apache.org/licenses/LICENSE-2.0
+  _##
+  _##  Unless required by applicable law or agreed to in writing, software
+  _##  distributed under the License is distributed on an "AS IS" BASIS,
+  _##  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  _##  See the License for the specific language governing permissions and
+  _##  limitations under the License.
+  _##
+  _##########################################################################*/
+
+package cool.mybaby.snmp4j.ff.snmp4j.util;
+
+import cool.mybaby.snmp4j.ff.snmp4j.SNMP4JSettings;
+import cool.mybaby.snmp4j.ff.snmp4j.log.LogAdapter;
+import cool.mybaby.snmp4j.ff.snmp4j.log.LogFactory;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The <code>HashedWheelTimer</code> is a <code>CommonTimer</code> optimized
+ * for a large number of short lived timeouts, like SNMP request retries,
+ * that are cancelled far more often than they expire.
+ * <p>
+ * Scheduled tasks are hashed into the buckets of a circular wheel by their
+ * deadline. A single daemon thread advances the wheel every
+ * <code>tickDuration</code> milliseconds (measured with
+ * <code>System.nanoTime()</code>) and runs all tasks of the current bucket
+ * that are due in one batch. Scheduling and cancelling are lock-free and take
+ * constant time; cancelled tasks are unlinked from their bucket with the next
+ * tick. Tasks are executed at most one tick late.
+ *
+ * @version 1.9
+ * @since 1.9
+ */
+public class HashedWheelTimer implements CommonTimer, Runnable {
+
+    private static final LogAdapter logger =
+            LogFactory.getLogger(HashedWheelTimer.class);
+
+    /**
+     * The default tick duration in milliseconds.
+     */
+    public static final long DEFAULT_TICK_DURATION = 10;
+    /**
+     * The default number of buckets in the wheel.
+     */
+    public static final int DEFAULT_TICKS_PER_WHEEL = 512;
+
+    private static final int MAX_TRANSFERS_PER_TICK = 100000;
+
+    private final long tickDuration;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final long startTime;
+
+    private final ConcurrentLinkedQueue newEntries = new ConcurrentLinkedQueue();
+    private final ConcurrentLinkedQueue cancelledEntries =
+            new ConcurrentLinkedQueue();
+    private final AtomicInteger purgedEntries = new AtomicInteger();
+
+    private final Thread workerThread;
+    private volatile boolean stop = false;
+    // accessed by the worker thread only
+    private long tick;
+
+    /**
+     * Creates a hashed wheel timer with the default tick duration and wheel
+     * size.
+     */
+    public HashedWheelTimer() {
+        this("SNMP4J-Timer", DEFAULT_TICK_DURATION, DEFAULT_TICKS_PER_WHEEL);
+    }
+
+    /**
+     * Creates a hashed wheel timer and starts its (daemon) worker thread.
+     *
+     * @param name          the name of the worker thread.
+     * @param tickDuration  the duration between two ticks in milliseconds. This is the
+     *                      granularity of the timer.
+     * @param ticksPerWheel the number of buckets in the wheel. The value is rounded up to the
+     *                      next power of two.
+     */
+    public HashedWheelTimer(String name, long tickDuration, int ticksPerWheel) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("Tick duration must be positive: " +
+                    tickDuration);
+        }
+        if ((ticksPerWheel <= 0) || (ticksPerWheel > (1 << 30))) {
+            throw new IllegalArgumentException("Ticks per wheel out of range: " +
+                    ticksPerWheel);
+        }
+        int size = 1;
+        while (size < ticksPerWheel) {
+            size <<= 1;
+        }
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.tickDuration = tickDuration * 1000000L;
+        this.startTime = System.nanoTime();
+        this.workerThread = new Thread(this, name);
+        workerThread.setDaemon(true);
+        workerThread.start();
+    }
+
+    public TimeoutHandle schedule(Runnable task, long delay) {
+        if (task == null) {
+            throw new NullPointerException();
+        }
+        if (delay < 0) {
+            throw new IllegalArgumentException("Negative delay.");
+        }
+        if (stop) {
+            throw new IllegalStateException("Timer already cancelled.");
+        }
+        long deadline = System.nanoTime() - startTime + delay * 1000000L;
+        Entry entry = new Entry(task, deadline);
+        newEntries.add(entry);
+        return entry;
+    }
+
+    public void cancel() {
+        stop = true;
+        if (Thread.currentThread() != workerThread) {
+            workerThread.interrupt();
+        }
+    }
+
+    /**
+     * Returns the number of cancelled tasks that have been removed from the
+     * wheel since the last call of this method. Cancelled tasks are removed
+     * automatically with the next tick, thus calling this method is never
+     * necessary to free memory.
+     *
+     * @return the number of removed cancelled tasks.
+     */
+    public int purge() {
+        return purgedEntries.getAndSet(0);
+    }
+
+    /**
+     * Runs the worker loop of this timer. This method is called by the timer's
+     * internal thread and must not be called by applications.
+     */
+    public void run() {
+        while (!stop) {
+            long deadline = waitForNextTick();
+            if (deadline > 0) {
+                removeCancelledEntries();
+                transferNewEntries();
+                wheel[(int) (tick & mask)].expireEntries(deadline);
+                tick++;
+            }
+        }
+        newEntries.clear();
+        cancelledEntries.clear();
+        for (int i = 0; i < wheel.length; i++) {
+            wheel[i].clear();
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Timer " + workerThread.getName() + " stopped.");
+        }
+    }
+
+    private long waitForNextTick() {
+        long deadline = tickDuration * (tick + 1);
+        while (true) {
+            long currentTime = System.nanoTime() - startTime;
+            long sleepTime = (deadline - currentTime + 999999) / 1000000;
+            if (sleepTime <= 0) {
+                return (currentTime == 0) ? 1 : currentTime;
+            }
+            try {
+                Thread.sleep(sleepTime);
+            } catch (InterruptedException ex) {
+                if (stop) {
+                    return -1;
+                }
+            }
+        }
+    }
+
+    private void removeCancelledEntries() {
+        Entry entry;
+        while ((entry = (Entry) cancelledEntries.poll()) != null) {
+            if (entry.bucket != null) {
+                entry.bucket.remove(entry);
+                purgedEntries.incrementAndGet();
+            }
+        }
+    }
+
+    private void transferNewEntries() {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            Entry entry = (Entry) newEntries.poll();
+            if (entry == null) {
+                break;
+            }
+            if (entry.state.get() == Entry.ST_CANCELLED) {
+                continue;
+            }
+            long calculated = entry.deadline / tickDuration;
+            entry.remainingRounds = (calculated - tick) / wheel.length;
+            // schedule overdue entries for the current tick
+            long ticks = Math.max(calculated, tick);
+            wheel[(int) (ticks & mask)].add(entry);
+        }
+    }
+
+    final class Entry implements TimeoutHandle {
+
+        static final int ST_INIT = 0;
+        static final int ST_CANCELLED = 1;
+        static final int ST_EXPIRED = 2;
+
+        private final Runnable task;
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(ST_INIT);
+        private Bucket bucket;
+        private long remainingRounds;
+        private Entry next;
+        private Entry prev;
+
+        Entry(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        public boolean cancel() {
+            if (state.compareAndSet(ST_INIT, ST_CANCELLED)) {
+                cancelledEntries.add(this);
+                return true;
+            }
+            return false;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == ST_CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state.get() == ST_EXPIRED;
+        }
+
+        void expire() {
+            if (!state.compareAndSet(ST_INIT, ST_EXPIRED)) {
+                return;
+            }
+            try {
+                task.run();
+            } catch (RuntimeException ex) {
+                logger.error("Timer task " + task + " failed: " + ex.getMessage(), ex);
+                if (SNMP4JSettings.isFowardRuntimeExceptions()) {
+                    throw ex;
+                }
+            }
+        }
+
+        public String toString() {
+            return "HashedWheelTimer.Entry[task=" + task + ",state=" + state + "]";
+        }
+    }
+
+    /**
+     * A bucket is a doubly linked list of entries that is only accessed by
+     * the worker thread.
+     */
+    final class Bucket {
+
+        private Entry head;
+        private Entry tail;
+
+        void add(Entry entry) {
+            entry.bucket = this;
+            if (head == null) {
+                head = tail = entry;
+            } else {
+                tail.next = entry;
+                entry.prev = tail;
+                tail = entry;
+            }
+        }
+
+        Entry remove(Entry entry) {
+            Entry next = entry.next;
+            if (entry.prev != null) {
+                entry.prev.next = next;
+            }
+            if (entry.next != null) {
+                entry.next.prev = entry.prev;
+            }
+            if (entry == head) {
+                if (entry == tail) {
+                    tail = null;
+                    head = null;
+                } else {
+                    head = next;
+                }
+            } else if (entry == tail) {
+                tail = entry.prev;
+            }
+            entry.prev = null;
+            entry.next = null;
+            entry.bucket = null;
+            return next;
+        }
+
+        void expireEntries(long deadline) {
+            Entry entry = head;
+            Entry due = null;
+            // unlink all due entries first, then run them as a batch
+            while (entry != null) {
+                Entry next;
+                if (entry.isCancelled()) {
+                    next = remove(entry);
+                } else if ((entry.remainingRounds <= 0) &&
+                        (entry.deadline <= deadline)) {
+                    next = remove(entry);
+                    entry.next = due;
+                    due = entry;
+                } else {
+                    if (entry.remainingRounds > 0) {
+                        entry.remainingRounds--;
+                    }
+                    next = entry.next;
+                }
+                entry = next;
+            }
+            while (due != null) {
+                Entry next = due.next;
+                due.next = null;
+                due.expire();
+                due = next;
+            }
+        }
+
+        void clear() {
+            head = null;
+            tail = null;
+        }
+    }
+}
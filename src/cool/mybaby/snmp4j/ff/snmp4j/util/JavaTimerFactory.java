@@ -0,0 +1,40 @@
+/*_############################################################################
+  _##
+  _##  SNMP4J - JavaTimerFactory.java
+  _##
+  _##  Copyright 2003-2007  Frank Fock and Jochen Katz (SNMP4J.org)
+  _##
+  _##  Licensed under the Apache License, Version 2.0 (the "License");
+  _##  you may not use this file except in compliance with the License.
+  _##  You may obtain a copy of the License at
+  _##
+  _##      http://www.apache.org/licenses/LICENSE-2.0
+  _##
+  _##  Unless required by applicable law or agreed to in writing, software
+  _##  distributed under the License is distributed on an "AS IS" BASIS,
+  _##  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  _##  See the License for the specific language governing permissions and
+  _##  limitations under the License.
+  _##
+  _##########################################################################*/
+
+package cool.mybaby.snmp4j.ff.snmp4j.util;
+
+/**
+ * The <code>JavaTimerFactory</code> creates {@link TimerAdapter} instances
+ * backed by a daemon <code>java.util.Timer</code>. This is how SNMP4J
+ * scheduled retries before version 1.9.
+ *
+ * @version 1.9
+ * @since 1.9
+ */
+public class JavaTimerFactory implements TimerFactory {
+
+    public JavaTimerFactory() {
+    }
+
+    public CommonTimer createTimer() {
+        return new TimerAdapter();
+    }
+
+}
@@ -25,6 +25,8 @@ import cool.mybaby.snmp4j.ff.snmp4j.*;
 import cool.mybaby.snmp4j.ff.snmp4j.asn1.BERInputStream;
 import cool.mybaby.snmp4j.ff.snmp4j.mp.*;
 import cool.mybaby.snmp4j.ff.snmp4j.smi.Address;
+import cool.mybaby.snmp4j.ff.snmp4j.transport.ReceiveBuffer;
+import cool.mybaby.snmp4j.ff.snmp4j.transport.ReceiveBufferListener;
 
 import java.nio.ByteBuffer;
 import java.util.Collection;
@@ -39,7 +41,8 @@ import java.util.Collection;
  * @version 1.8
  * @since 1.0.2
  */
-public class MultiThreadedMessageDispatcher implements MessageDispatcher {
+public class MultiThreadedMessageDispatcher implements MessageDispatcher,
+        ReceiveBufferListener {
 
     private MessageDispatcher dispatcher;
     private ThreadPool threadPool;
@@ -168,6 +171,27 @@ public class MultiThreadedMessageDispatcher implements MessageDispatcher {
                 new BERInputStream(wholeMessage));
     }
 
+    /**
+     * Processes a message in a pooled receive buffer with the thread pool.
+     * The buffer is released when the decorated dispatcher has processed it.
+     *
+     * @param sourceTransport the <code>TransportMapping</code> that received the message.
+     * @param incomingAddress the <code>Address</code> from which the message has been received.
+     * @param wholeMessage    the buffer containing the received message.
+     * @since 1.9
+     */
+    public void processMessage(TransportMapping sourceTransport,
+                               Address incomingAddress,
+                               ReceiveBuffer wholeMessage) {
+        try {
+            threadPool.execute(new BufferTask(sourceTransport, incomingAddress,
+                    wholeMessage));
+        } catch (RuntimeException rex) {
+            wholeMessage.release();
+            throw rex;
+        }
+    }
+
     public void releaseStateReference(int messageProcessingModel,
                                       PduHandle pduHandle) {
         dispatcher.releaseStateReference(messageProcessingModel, pduHandle);
@@ -195,4 +219,33 @@ public class MultiThreadedMessageDispatcher implements MessageDispatcher {
         }
 
     }
+
+    class BufferTask implements Runnable {
+        private TransportMapping sourceTransport;
+        private Address incomingAddress;
+        private ReceiveBuffer wholeMessage;
+
+        public BufferTask(TransportMapping sourceTransport,
+                          Address incomingAddress,
+                          ReceiveBuffer wholeMessage) {
+            this.sourceTransport = sourceTransport;
+            this.incomingAddress = incomingAddress;
+            this.wholeMessage = wholeMessage;
+        }
+
+        public void run() {
+            if (dispatcher instanceof ReceiveBufferListener) {
+                ((ReceiveBufferListener) dispatcher).processMessage(sourceTransport,
+                        incomingAddress, wholeMessage);
+            } else {
+                try {
+                    dispatcher.processMessage(sourceTransport, incomingAddress,
+                            wholeMessage.getByteBuffer());
+                } finally {
+                    wholeMessage.release();
+                }
+            }
+        }
+
+    }
 }
@@ -0,0 +1,180 @@
+/*_############################################################################
+  _##
+  _##  SNMP4J - PollEvent.java
+  _##
+  _##  Copyright 2003-2007  Frank Fock and Jochen Katz (SNMP4J.org)
+  _##
+  _##  Licensed under the Apache License, Version 2.0 (the "License");
+  _##  you may not use this file except in compliance with the License.
+  _##  You may obtain a copy of the License at
+  _##
+  _##      http://www.apache.org/licenses/LICENSE-2.0
+  _##
+  _##  Unless required by applicable law or agreed to in writing, software
+  _##  distributed under the License is distributed on an "AS IS" BASIS,
+  _##  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  _##  See the License for the specific language governing permissions and
+  _##  limitations under the License.
+  _##
+  _##########################################################################*/
+
+package cool.mybaby.snmp4j.ff.snmp4j.util;
+
+import cool.mybaby.snmp4j.ff.snmp4j.PDU;
+import cool.mybaby.snmp4j.ff.snmp4j.Target;
+import cool.mybaby.snmp4j.ff.snmp4j.smi.VariableBinding;
+
+import java.util.Arrays;
+
+/**
+ * The <code>PollEvent</code> class reports the result of one poll cycle of a
+ * {@link Poller.Poll}.
+ *
+ * @version 1.9
+ * @see Poller
+ * @since 1.9
+ */
+public class PollEvent extends RetrievalEvent {
+
+    private static final long serialVersionUID = -2785113206571394517L;
+
+    private Poller.Poll poll;
+    private long scheduledTime;
+    private long lag;
+    private int skippedCycles;
+
+    protected PollEvent(Object source, Poller.Poll poll) {
+        super(source, poll.getUserObject());
+        this.poll = poll;
+    }
+
+    /**
+     * Creates a poll event with a status.
+     *
+     * @param source the source of the event.
+     * @param poll   the poll whose cycle has been completed.
+     * @param status one of the status constants defined for this object or the error status
+     *               of the response PDU.
+     */
+    public PollEvent(Object source, Poller.Poll poll, int status) {
+        this(source, poll);
+        this.status = status;
+    }
+
+    /**
+     * Creates a poll event with an exception.
+     *
+     * @param source    the source of the event.
+     * @param poll      the poll whose cycle has been completed.
+     * @param exception an exception instance.
+     */
+    public PollEvent(Object source, Poller.Poll poll, Exception exception) {
+        this(source, poll);
+        this.exception = exception;
+        this.status = STATUS_EXCEPTION;
+    }
+
+    /**
+     * Creates a poll event with a report PDU.
+     *
+     * @param source the source of the event.
+     * @param poll   the poll whose cycle has been completed.
+     * @param report a PDU of type {@link PDU#REPORT}.
+     */
+    public PollEvent(Object source, Poller.Poll poll, PDU report) {
+        this(source, poll);
+        this.reportPDU = report;
+        this.status = STATUS_REPORT;
+    }
+
+    /**
+     * Creates a poll event with the polled values.
+     *
+     * @param source           the source of the event.
+     * @param poll             the poll whose cycle has been completed.
+     * @param variableBindings the variable bindings of the response.
+     */
+    public PollEvent(Object source, Poller.Poll poll,
+                     VariableBinding[] variableBindings) {
+        this(source, poll);
+        this.vbs = variableBindings;
+    }
+
+    /**
+     * Gets the poll whose cycle has been completed.
+     *
+     * @return a <code>Poller.Poll</code> instance.
+     */
+    public Poller.Poll getPoll() {
+        return poll;
+    }
+
+    /**
+     * Gets the polled target.
+     *
+     * @return the target of the poll.
+     */
+    public Target getTarget() {
+        return poll.getTarget();
+    }
+
+    /**
+     * Gets the polled values.
+     *
+     * @return the variable bindings of the response or <code>null</code> if
+     * the poll failed.
+     */
+    public VariableBinding[] getVariableBindings() {
+        return vbs;
+    }
+
+    /**
+     * Gets the time this poll cycle was scheduled for.
+     *
+     * @return the scheduled start time in milliseconds since 1970.
+     */
+    public long getScheduledTime() {
+        return scheduledTime;
+    }
+
+    protected void setScheduledTime(long scheduledTime) {
+        this.scheduledTime = scheduledTime;
+    }
+
+    /**
+     * Gets the time between the scheduled and the actual start of this poll
+     * cycle.
+     *
+     * @return the lag in milliseconds.
+     */
+    public long getLag() {
+        return lag;
+    }
+
+    protected void setLag(long lag) {
+        this.lag = lag;
+    }
+
+    /**
+     * Gets the number of cycles skipped since the previous event of the poll,
+     * because the previous cycle was still running (overrun) or the poller
+     * could not keep up with the schedule.
+     *
+     * @return the number of skipped cycles.
+     */
+    public int getSkippedCycles() {
+        return skippedCycles;
+    }
+
+    protected void setSkippedCycles(int skippedCycles) {
+        this.skippedCycles = skippedCycles;
+    }
+
+    public String toString() {
+        return getClass().getName() + "[target=" + poll.getTarget().getAddress() +
+                ",status=" + status + ",lag=" + lag +
+                ",skippedCycles=" + skippedCycles +
+                ",vbs=" + ((vbs == null) ? null : Arrays.asList(vbs)) +
+                ",exception=" + exception + ",report=" + reportPDU + "]";
+    }
+}
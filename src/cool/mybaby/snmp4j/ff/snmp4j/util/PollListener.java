@@ -0,0 +1,45 @@
+/*_############################################################################
+  _##
+  _##  SNMP4J - PollListener.java
+  _##
+  _##  Copyright 2003-2007  Frank Fock and Jochen Katz (SNMP4J.org)
+  _##
+  _##  Licensed under the Apache License, Version 2.0 (the "License");
+  _##  you may not use this file except in compliance with the License.
+  _##  You may obtain a copy of the License at
+  _##
+  _##      http://www.apache.org/licenses/LICENSE-2.0
+  _##
+  _##  Unless required by applicable law or agreed to in writing, software
+  _##  distributed under the License is distributed on an "AS IS" BASIS,
+  _##  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  _##  See the License for the specific language governing permissions and
+  _##  limitations under the License.
+  _##
+  _##########################################################################*/
+
+package cool.mybaby.snmp4j.ff.snmp4j.util;
+
+import java.util.EventListener;
+
+/**
+ * The <code>PollListener</code> interface is implemented by objects that
+ * receive the results of the polls run by a {@link Poller}.
+ *
+ * @version 1.9
+ * @see Poller
+ * @since 1.9
+ */
+public interface PollListener extends EventListener {
+
+    /**
+     * Consumes a batch of poll results. The method is called by one thread at
+     * a time and should return quickly, because it is called either by the
+     * thread that processed the last response of the batch or by the timer
+     * thread of the poller.
+     *
+     * @param events the results of one or more polls in the order of their completion.
+     */
+    void pollCompleted(PollEvent[] events);
+
+}
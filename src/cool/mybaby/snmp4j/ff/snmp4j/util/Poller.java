@@ -0,0 +1,469 @@
+/*_############################################################################
+  _##
+  _##  SNMP4J - Poller.java
+  _##
+  _##  Copyright 2003-2007  Frank Fock and Jochen Katz (SNMP4J.org)
+  _##
+  _##  Licensed under the Apache License, Version 2.0 (the "License");
+  _##  you may not use this file except in compliance with the License.
+  _##  You may obtain a copy of the License at
+  _##
+  _##      http://www.apache.org/licenses/LICENSE-2.0
+  _##
+  _##  Unless required by applicable law or agreed to in writing, software
+  _##  distributed under the License is distributed on an "AS IS" BASIS,
+  _##  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  _##  See the License for the specific language governing permissions and
+  _##  limitations under the License.
+  _##
+  _##########################################################################*/
+
+package cool.mybaby.snmp4j.ff.snmp4j.util;
+
+import cool.mybaby.snmp4j.ff.snmp4j.PDU;
+import cool.mybaby.snmp4j.ff.snmp4j.SNMP4JSettings;
+import cool.mybaby.snmp4j.ff.snmp4j.Session;
+import cool.mybaby.snmp4j.ff.snmp4j.Target;
+import cool.mybaby.snmp4j.ff.snmp4j.event.ResponseEvent;
+import cool.mybaby.snmp4j.ff.snmp4j.event.ResponseListener;
+import cool.mybaby.snmp4j.ff.snmp4j.log.LogAdapter;
+import cool.mybaby.snmp4j.ff.snmp4j.log.LogFactory;
+import cool.mybaby.snmp4j.ff.snmp4j.smi.OID;
+import cool.mybaby.snmp4j.ff.snmp4j.smi.VariableBinding;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * The <code>Poller</code> periodically retrieves groups of OIDs from a large
+ * number of targets through a single <code>Session</code>.
+ * <p>
+ * Each {@link Poll} sends a GET request for its OIDs to its target every
+ * <code>interval</code> milliseconds. The requests are sent asynchronously
+ * from a single timer thread and the responses are processed by the
+ * session's listener thread(s), so the number of threads does not depend on
+ * the number of targets. The first cycle of each poll starts after a random
+ * delay within its interval, which spreads the requests of polls with the
+ * same interval evenly.
+ * <p>
+ * Results are collected and delivered to the {@link PollListener} in
+ * batches of up to <code>batchSize</code> events, at the latest after
+ * <code>batchInterval</code> milliseconds. A cycle that is due while the
+ * previous cycle of the same poll is still waiting for its response is
+ * skipped; skipped cycles and the lag between the scheduled and actual start
+ * of a cycle are reported by the next {@link PollEvent} of the poll and
+ * accumulated by the poller.
+ *
+ * @version 1.9
+ * @since 1.9
+ */
+public class Poller extends AbstractSnmpUtility {
+
+    private static final LogAdapter logger = LogFactory.getLogger(Poller.class);
+
+    public static final int DEFAULT_BATCH_SIZE = 100;
+    public static final long DEFAULT_BATCH_INTERVAL = 1000;
+
+    private final PollListener listener;
+    private final int batchSize;
+    private final long batchInterval;
+    private final Random random = new Random();
+
+    private final Set polls = new HashSet();
+    private CommonTimer timer;
+    private TimeoutHandle flushHandle;
+
+    private List batch;
+    private final Object deliveryLock = new Object();
+
+    private long completedCycles;
+    private long skippedCycles;
+    private long maxLag;
+    private long totalLag;
+
+    /**
+     * Creates a poller with the default batch size and interval.
+     *
+     * @param session    the session used to send the requests.
+     * @param pduFactory the factory creating the request PDUs.
+     * @param listener   the listener receiving the poll results.
+     */
+    public Poller(Session session, PDUFactory pduFactory, PollListener listener) {
+        this(session, pduFactory, listener, DEFAULT_BATCH_SIZE, DEFAULT_BATCH_INTERVAL);
+    }
+
+    /**
+     * Creates a poller.
+     *
+     * @param session       the session used to send the requests.
+     * @param pduFactory    the factory creating the request PDUs.
+     * @param listener      the listener receiving the poll results.
+     * @param batchSize     the maximum number of events delivered to <code>listener</code> at
+     *                      once.
+     * @param batchInterval the maximum time in milliseconds an event waits for its delivery.
+     */
+    public Poller(Session session, PDUFactory pduFactory, PollListener listener,
+                  int batchSize, long batchInterval) {
+        super(session, pduFactory);
+        if ((batchSize <= 0) || (batchInterval <= 0)) {
+            throw new IllegalArgumentException("Batch size and interval must be positive");
+        }
+        this.listener = listener;
+        this.batchSize = batchSize;
+        this.batchInterval = batchInterval;
+        this.batch = new ArrayList(batchSize);
+    }
+
+    /**
+     * Adds a poll. If the poller is running, the first cycle of the poll
+     * starts within <code>interval</code> milliseconds.
+     *
+     * @param target     the target to poll.
+     * @param oids       the OIDs to retrieve by a GET request.
+     * @param interval   the time in milliseconds between the starts of two cycles.
+     * @param userObject an user object returned with the events of the poll.
+     * @return the poll.
+     */
+    public Poll addPoll(Target target, OID[] oids, long interval, Object userObject) {
+        if ((oids == null) || (oids.length == 0) || (interval <= 0)) {
+            throw new IllegalArgumentException("A poll needs OIDs and a positive interval");
+        }
+        Poll poll = new Poll(target, oids, interval, userObject);
+        synchronized (this) {
+            polls.add(poll);
+            if (timer != null) {
+                poll.start(System.currentTimeMillis());
+            }
+        }
+        return poll;
+    }
+
+    /**
+     * Adds a poll for each of the supplied targets.
+     *
+     * @param targets    the targets to poll.
+     * @param oids       the OIDs to retrieve from each target.
+     * @param interval   the time in milliseconds between the starts of two cycles.
+     * @param userObject an user object returned with the events of the polls.
+     * @return the polls in the order of <code>targets</code>.
+     */
+    public Poll[] addPolls(Target[] targets, OID[] oids, long interval,
+                           Object userObject) {
+        Poll[] added = new Poll[targets.length];
+        for (int i = 0; i < targets.length; i++) {
+            added[i] = addPoll(targets[i], oids, interval, userObject);
+        }
+        return added;
+    }
+
+    /**
+     * Removes a poll. A cycle of the poll that is currently running is not
+     * reported.
+     *
+     * @param poll a poll of this poller.
+     * @return <code>true</code> if the poll has been removed.
+     */
+    public synchronized boolean removePoll(Poll poll) {
+        if (polls.remove(poll)) {
+            poll.stop();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Starts the poller.
+     */
+    public synchronized void start() {
+        if (timer != null) {
+            return;
+        }
+        timer = SNMP4JSettings.getTimerFactory().createTimer();
+        long now = System.currentTimeMillis();
+        for (Iterator it = polls.iterator(); it.hasNext(); ) {
+            ((Poll) it.next()).start(now);
+        }
+        flushHandle = timer.schedule(new FlushTask(), batchInterval);
+    }
+
+    /**
+     * Stops the poller and delivers the already collected events. Running
+     * cycles are not reported.
+     */
+    public void stop() {
+        synchronized (this) {
+            if (timer == null) {
+                return;
+            }
+            for (Iterator it = polls.iterator(); it.hasNext(); ) {
+                ((Poll) it.next()).stop();
+            }
+            timer.cancel();
+            timer = null;
+            flushHandle = null;
+        }
+        flush();
+    }
+
+    public synchronized boolean isRunning() {
+        return (timer != null);
+    }
+
+    public synchronized int getPollCount() {
+        return polls.size();
+    }
+
+    /**
+     * Gets the number of completed poll cycles.
+     *
+     * @return the number of reported poll cycles.
+     */
+    public synchronized long getCompletedCycles() {
+        return completedCycles;
+    }
+
+    /**
+     * Gets the number of skipped poll cycles.
+     *
+     * @return the number of cycles skipped because of overruns.
+     */
+    public synchronized long getSkippedCycles() {
+        return skippedCycles;
+    }
+
+    /**
+     * Gets the largest lag between the scheduled and the actual start of a
+     * cycle.
+     *
+     * @return the maximum lag in milliseconds.
+     */
+    public synchronized long getMaxLag() {
+        return maxLag;
+    }
+
+    /**
+     * Gets the average lag between the scheduled and the actual start of the
+     * completed cycles.
+     *
+     * @return the average lag in milliseconds.
+     */
+    public synchronized double getAverageLag() {
+        return (completedCycles == 0) ? 0.0d : (double) totalLag / completedCycles;
+    }
+
+    public synchronized String toString() {
+        return "Poller[polls=" + polls.size() + ",running=" + (timer != null) +
+                ",completedCycles=" + completedCycles +
+                ",skippedCycles=" + skippedCycles + ",maxLag=" + maxLag + "]";
+    }
+
+    private void collect(PollEvent event) {
+        List full = null;
+        synchronized (this) {
+            completedCycles++;
+            skippedCycles += event.getSkippedCycles();
+            totalLag += event.getLag();
+            if (event.getLag() > maxLag) {
+                maxLag = event.getLag();
+            }
+            batch.add(event);
+            if (batch.size() >= batchSize) {
+                full = batch;
+                batch = new ArrayList(batchSize);
+            }
+        }
+        if (full != null) {
+            deliver(full);
+        }
+    }
+
+    private void flush() {
+        List pending;
+        synchronized (this) {
+            if (batch.isEmpty()) {
+                return;
+            }
+            pending = batch;
+            batch = new ArrayList(batchSize);
+        }
+        deliver(pending);
+    }
+
+    private void deliver(List events) {
+        synchronized (deliveryLock) {
+            try {
+                listener.pollCompleted((PollEvent[])
+                        events.toArray(new PollEvent[events.size()]));
+            } catch (RuntimeException ex) {
+                logger.error("Poll listener failed: " + ex.getMessage(), ex);
+            }
+        }
+    }
+
+    class FlushTask implements Runnable {
+        public void run() {
+            flush();
+            synchronized (Poller.this) {
+                if ((timer != null) && (flushHandle != null)) {
+                    flushHandle = timer.schedule(this, batchInterval);
+                }
+            }
+        }
+    }
+
+    /**
+     * A <code>Poll</code> retrieves a group of OIDs from a target periodically.
+     */
+    public class Poll implements Runnable, ResponseListener {
+
+        private final Target target;
+        private final OID[] oids;
+        private final long interval;
+        private final Object userObject;
+
+        private TimeoutHandle handle;
+        private long nextTime;
+        private boolean running;
+        private boolean stopped = true;
+        // the request of the running cycle
+        private PDU request;
+        private long scheduledTime;
+        private long lag;
+        private int skipped;
+
+        Poll(Target target, OID[] oids, long interval, Object userObject) {
+            this.target = target;
+            this.oids = oids.clone();
+            this.interval = interval;
+            this.userObject = userObject;
+        }
+
+        public Target getTarget() {
+            return target;
+        }
+
+        public OID[] getOIDs() {
+            return oids.clone();
+        }
+
+        public long getInterval() {
+            return interval;
+        }
+
+        public Object getUserObject() {
+            return userObject;
+        }
+
+        synchronized void start(long now) {
+            long jitter;
+            synchronized (random) {
+                jitter = (long) (random.nextDouble() * interval);
+            }
+            stopped = false;
+            nextTime = now + jitter;
+            handle = timer.schedule(this, jitter);
+        }
+
+        synchronized void stop() {
+            stopped = true;
+            if (handle != null) {
+                handle.cancel();
+                handle = null;
+            }
+            if (running) {
+                running = false;
+                session.cancel(request, this);
+                request = null;
+            }
+        }
+
+        public void run() {
+            CommonTimer pollTimer;
+            synchronized (Poller.this) {
+                pollTimer = timer;
+            }
+            PDU pdu = null;
+            synchronized (this) {
+                if (stopped) {
+                    return;
+                }
+                long now = System.currentTimeMillis();
+                if (running) {
+                    skipped++;
+                } else {
+                    running = true;
+                    scheduledTime = nextTime;
+                    lag = Math.max(0, now - nextTime);
+                    pdu = pduFactory.createPDU(target);
+                    pdu.setType(PDU.GET);
+                    for (int i = 0; i < oids.length; i++) {
+                        pdu.add(new VariableBinding(oids[i]));
+                    }
+                    request = pdu;
+                }
+                nextTime += interval;
+                if (nextTime <= now) {
+                    // behind schedule: skip the missed cycles instead of bursting
+                    long missed = (now - nextTime) / interval + 1;
+                    skipped += (int) missed;
+                    nextTime += missed * interval;
+                }
+                if (pollTimer != null) {
+                    try {
+                        handle = pollTimer.schedule(this, nextTime - now);
+                    } catch (IllegalStateException isex) {
+                        // poller stopped meanwhile
+                        handle = null;
+                    }
+                }
+            }
+            if (pdu != null) {
+                try {
+                    session.send(pdu, target, userObject, this);
+                } catch (IOException ex) {
+                    complete(pdu, new PollEvent(Poller.this, this, ex));
+                }
+            }
+        }
+
+        public void onResponse(ResponseEvent event) {
+            session.cancel(event.getRequest(), this);
+            PollEvent pollEvent;
+            if (event.getError() != null) {
+                pollEvent = new PollEvent(Poller.this, this, event.getError());
+            } else if (event.getResponse() == null) {
+                pollEvent = new PollEvent(Poller.this, this, PollEvent.STATUS_TIMEOUT);
+            } else if (event.getResponse().getType() == PDU.REPORT) {
+                pollEvent = new PollEvent(Poller.this, this, event.getResponse());
+            } else if (event.getResponse().getErrorStatus() != PDU.noError) {
+                pollEvent = new PollEvent(Poller.this, this,
+                        event.getResponse().getErrorStatus());
+            } else {
+                pollEvent = new PollEvent(Poller.this, this,
+                        event.getResponse().toArray());
+            }
+            complete(event.getRequest(), pollEvent);
+        }
+
+        private void complete(PDU pdu, PollEvent event) {
+            synchronized (this) {
+                if (!running || (request != pdu)) {
+                    // stopped meanwhile
+                    return;
+                }
+                running = false;
+                request = null;
+                event.setScheduledTime(scheduledTime);
+                event.setLag(lag);
+                event.setSkippedCycles(skipped);
+                skipped = 0;
+            }
+            collect(event);
+        }
+
+        public String toString() {
+            return "Poll[target=" + target.getAddress() + ",oids=" +
+                    Arrays.asList(oids) + ",interval=" + interval + "]";
+        }
+    }
+}
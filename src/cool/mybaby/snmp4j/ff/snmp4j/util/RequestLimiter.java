@@ -0,0 +1,419 @@
+/*_############################################################################
+  _##
+  _##  SNMP4J - RequestLimiter.java
+  _##
+  _##  Copyright 2003-2007  Frank Fock and Jochen Katz (SNMP4J.org)
+  _##
+  _##  Licensed under the Apache License, Version 2.0 (the "License");
+  _##  you may not use this file except in compliance with the License.
+  _##  You may obtain a copy of the License at
+  _##
+  _##      http://www.apache.org/licenses/LICENSE-2.0
+  _##
+  _##  Unless required by applicable law or agreed to in writing, software
+  _##  distributed under the License is distributed on an "AS IS" BASIS,
+  _##  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  _##  See the License for the specific language governing permissions and
+  _##  limitations under the License.
+  _##
+  _##########################################################################*/
+
+package cool.mybaby.snmp4j.ff.snmp4j.util;
+
+import cool.mybaby.snmp4j.ff.snmp4j.log.LogAdapter;
+import cool.mybaby.snmp4j.ff.snmp4j.log.LogFactory;
+import cool.mybaby.snmp4j.ff.snmp4j.smi.Address;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * The <code>RequestLimiter</code> limits the number of outstanding requests
+ * globally and per target address. A request that does not fit into both
+ * windows is queued and started, in the order of arrival, as soon as a
+ * request that holds a window slot is released. Queued requests of a
+ * saturated address do not block queued requests to other addresses.
+ * <p>
+ * Requests are queued per address. Addresses whose queued requests only
+ * wait for the global window are kept ordered by the arrival of their
+ * oldest request, so releasing a slot does not scan the queued requests.
+ * Started requests are run by the releasing thread one after another; a
+ * request that releases its slot while being started, for example because
+ * it failed to be sent, does not start further requests recursively.
+ * <p>
+ * The limiter counts queued requests and the time they had to wait, so
+ * applications can monitor back pressure with {@link #getQueueDepth()},
+ * {@link #getMaxWaitTime()} and {@link #getAverageWaitTime()}.
+ *
+ * @version 1.9
+ * @since 1.9
+ */
+public class RequestLimiter {
+
+    private static final LogAdapter logger =
+            LogFactory.getLogger(RequestLimiter.class);
+
+    private final int maxRequests;
+    private final int maxRequestsPerAddress;
+
+    private int inFlight;
+    private final Map counters = new HashMap();
+    // counters with queued requests that fit into their address window
+    private final SortedSet ready = new TreeSet(new ArrivalComparator());
+    private int queueDepth;
+    private long sequence;
+
+    // tasks started by release calls of the current thread, which are run
+    // by its outermost release call
+    private final ThreadLocal startedTasks = new ThreadLocal();
+
+    private int maxQueueDepth;
+    private long queuedRequests;
+    private long dequeuedRequests;
+    private long totalWaitTime;
+    private long maxWaitTime;
+
+    /**
+     * Creates a request limiter.
+     *
+     * @param maxRequests           the maximum number of outstanding requests in total or zero for
+     *                              no global limit.
+     * @param maxRequestsPerAddress the maximum number of outstanding requests per target address or
+     *                              zero for no per address limit.
+     */
+    public RequestLimiter(int maxRequests, int maxRequestsPerAddress) {
+        if ((maxRequests < 0) || (maxRequestsPerAddress < 0)) {
+            throw new IllegalArgumentException("Request limits must not be negative");
+        }
+        this.maxRequests = maxRequests;
+        this.maxRequestsPerAddress = maxRequestsPerAddress;
+    }
+
+    /**
+     * Acquires a slot for a request to the supplied address. If no slot is
+     * available, <code>deferredRequest</code> is queued and run by the thread
+     * that releases the next suitable slot.
+     *
+     * @param address         the target address of the request.
+     * @param deferredRequest the task starting the request if it has to be queued. The task owns
+     *                        the slot when it is run and has to {@link #release(Address)} it.
+     * @return <code>true</code> if a slot has been acquired and the caller
+     * should start the request immediately, <code>false</code> if the request
+     * has been queued.
+     */
+    public synchronized boolean acquire(Address address, Runnable deferredRequest) {
+        Counter counter = (Counter) counters.get(address);
+        if (counter == null) {
+            counter = new Counter(address);
+            counters.put(address, counter);
+        }
+        // do not overtake queued requests to the same address
+        if (counter.queue.isEmpty() && hasGlobalCapacity() &&
+                hasAddressCapacity(counter)) {
+            take(counter);
+            return true;
+        }
+        boolean wasEmpty = counter.queue.isEmpty();
+        counter.queue.addLast(new QueuedRequest(deferredRequest, sequence++));
+        if (wasEmpty && hasAddressCapacity(counter)) {
+            ready.add(counter);
+        }
+        queueDepth++;
+        queuedRequests++;
+        if (queueDepth > maxQueueDepth) {
+            maxQueueDepth = queueDepth;
+        }
+        return false;
+    }
+
+    /**
+     * Releases a slot previously acquired for the supplied address and starts
+     * the queued requests that fit into the windows now.
+     *
+     * @param address the target address of the finished request.
+     */
+    public void release(Address address) {
+        List started;
+        synchronized (this) {
+            inFlight--;
+            Counter counter = (Counter) counters.get(address);
+            if (counter != null) {
+                boolean wasSaturated = !hasAddressCapacity(counter);
+                counter.value--;
+                if (wasSaturated && !counter.queue.isEmpty()) {
+                    ready.add(counter);
+                }
+                removeIfUnused(counter);
+            }
+            started = startReady();
+        }
+        run(started);
+    }
+
+    /**
+     * Removes a queued request without running it, for example because it
+     * has been cancelled.
+     *
+     * @param address         the target address of the request.
+     * @param deferredRequest the task that has been queued by {@link #acquire(Address, Runnable)}.
+     * @return <code>true</code> if the request has been removed,
+     * <code>false</code> if it is not queued (anymore).
+     */
+    public synchronized boolean remove(Address address, Runnable deferredRequest) {
+        Counter counter = (Counter) counters.get(address);
+        if (counter == null) {
+            return false;
+        }
+        for (Iterator it = counter.queue.iterator(); it.hasNext(); ) {
+            QueuedRequest request = (QueuedRequest) it.next();
+            if (request.task == deferredRequest) {
+                // the arrival order of a ready counter changes with its head
+                boolean wasReady = ready.remove(counter);
+                it.remove();
+                queueDepth--;
+                if (wasReady && !counter.queue.isEmpty()) {
+                    ready.add(counter);
+                }
+                removeIfUnused(counter);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes all queued requests without running them.
+     *
+     * @return the list of <code>Runnable</code> instances that had been
+     * queued by {@link #acquire(Address, Runnable)} in the order of arrival.
+     */
+    public synchronized List clearQueue() {
+        List requests = new ArrayList(queueDepth);
+        for (Iterator it = counters.values().iterator(); it.hasNext(); ) {
+            Counter counter = (Counter) it.next();
+            requests.addAll(counter.queue);
+            counter.queue.clear();
+            if (counter.value <= 0) {
+                it.remove();
+            }
+        }
+        ready.clear();
+        queueDepth = 0;
+        Collections.sort(requests, new Comparator() {
+            public int compare(Object o1, Object o2) {
+                return compareSequence(((QueuedRequest) o1).sequence,
+                        ((QueuedRequest) o2).sequence);
+            }
+        });
+        List tasks = new ArrayList(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            tasks.add(((QueuedRequest) requests.get(i)).task);
+        }
+        return tasks;
+    }
+
+    private List startReady() {
+        List started = null;
+        long now = System.nanoTime();
+        while (hasGlobalCapacity() && !ready.isEmpty()) {
+            Counter counter = (Counter) ready.first();
+            ready.remove(counter);
+            QueuedRequest request = (QueuedRequest) counter.queue.removeFirst();
+            queueDepth--;
+            take(counter);
+            if (!counter.queue.isEmpty() && hasAddressCapacity(counter)) {
+                ready.add(counter);
+            }
+            long waitTime = now - request.queuedSince;
+            dequeuedRequests++;
+            totalWaitTime += waitTime;
+            if (waitTime > maxWaitTime) {
+                maxWaitTime = waitTime;
+            }
+            if (started == null) {
+                started = new ArrayList(2);
+            }
+            started.add(request.task);
+        }
+        return started;
+    }
+
+    /**
+     * Runs started tasks. Tasks started by nested release calls, that is
+     * by the tasks themselves, are appended and run by the outermost call.
+     */
+    private void run(List started) {
+        if (started == null) {
+            return;
+        }
+        LinkedList tasks = (LinkedList) startedTasks.get();
+        if (tasks != null) {
+            tasks.addAll(started);
+            return;
+        }
+        tasks = new LinkedList(started);
+        startedTasks.set(tasks);
+        try {
+            while (!tasks.isEmpty()) {
+                Runnable task = (Runnable) tasks.removeFirst();
+                try {
+                    task.run();
+                } catch (RuntimeException ex) {
+                    logger.error("Failed to start queued request: " +
+                            ex.getMessage(), ex);
+                }
+            }
+        } finally {
+            startedTasks.set(null);
+        }
+    }
+
+    private boolean hasGlobalCapacity() {
+        return (maxRequests <= 0) || (inFlight < maxRequests);
+    }
+
+    private boolean hasAddressCapacity(Counter counter) {
+        return (maxRequestsPerAddress <= 0) ||
+                (counter.value < maxRequestsPerAddress);
+    }
+
+    private void removeIfUnused(Counter counter) {
+        if ((counter.value <= 0) && counter.queue.isEmpty()) {
+            counters.remove(counter.address);
+        }
+    }
+
+    private void take(Counter counter) {
+        inFlight++;
+        counter.value++;
+    }
+
+    private static int compareSequence(long s1, long s2) {
+        return (s1 < s2) ? -1 : ((s1 == s2) ? 0 : 1);
+    }
+
+    public int getMaxRequests() {
+        return maxRequests;
+    }
+
+    public int getMaxRequestsPerAddress() {
+        return maxRequestsPerAddress;
+    }
+
+    /**
+     * Gets the number of requests currently holding a slot.
+     *
+     * @return the number of outstanding requests.
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Gets the number of requests currently holding a slot for the supplied
+     * address.
+     *
+     * @param address a target address.
+     * @return the number of outstanding requests to <code>address</code>.
+     */
+    public synchronized int getInFlight(Address address) {
+        Counter counter = (Counter) counters.get(address);
+        return (counter == null) ? 0 : counter.value;
+    }
+
+    /**
+     * Gets the number of requests currently waiting for a slot.
+     *
+     * @return the current queue depth.
+     */
+    public synchronized int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * Gets the largest queue depth observed so far.
+     *
+     * @return the maximum queue depth.
+     */
+    public synchronized int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    /**
+     * Gets the total number of requests that had to be queued.
+     *
+     * @return the number of queued requests since creation.
+     */
+    public synchronized long getQueuedRequests() {
+        return queuedRequests;
+    }
+
+    /**
+     * Gets the longest time a request waited in the queue.
+     *
+     * @return the maximum wait time in milliseconds.
+     */
+    public synchronized long getMaxWaitTime() {
+        return maxWaitTime / 1000000L;
+    }
+
+    /**
+     * Gets the average time a dequeued request waited in the queue.
+     *
+     * @return the average wait time in milliseconds.
+     */
+    public synchronized double getAverageWaitTime() {
+        return (dequeuedRequests <= 0) ?
+                0.0d : (totalWaitTime / 1000000.0d) / dequeuedRequests;
+    }
+
+    public synchronized String toString() {
+        return "RequestLimiter[maxRequests=" + maxRequests +
+                ",maxRequestsPerAddress=" + maxRequestsPerAddress +
+                ",inFlight=" + inFlight +
+                ",queueDepth=" + queueDepth +
+                ",maxQueueDepth=" + maxQueueDepth +
+                ",queuedRequests=" + queuedRequests +
+                ",maxWaitTime=" + getMaxWaitTime() + "]";
+    }
+
+    static class Counter {
+        private final Address address;
+        private final LinkedList queue = new LinkedList();
+        int value;
+
+        Counter(Address address) {
+            this.address = address;
+        }
+    }
+
+    static class QueuedRequest {
+        private final Runnable task;
+        private final long sequence;
+        private final long queuedSince = System.nanoTime();
+
+        QueuedRequest(Runnable task, long sequence) {
+            this.task = task;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * Orders counters by the arrival of their oldest queued request.
+     */
+    static class ArrivalComparator implements Comparator {
+        public int compare(Object o1, Object o2) {
+            QueuedRequest r1 = (QueuedRequest) ((Counter) o1).queue.getFirst();
+            QueuedRequest r2 = (QueuedRequest) ((Counter) o2).queue.getFirst();
+            return compareSequence(r1.sequence, r2.sequence);
+        }
+    }
+}
@@ -0,0 +1,294 @@
+/*_############################################################################
+  _##
+  _##  SNMP4J - StripedIntHashMap.java
+  _##
+  _##  Copyright 2003-2007  Frank Fock and Jochen Katz (SNMP4J.org)
+  _##
+  _##  Licensed under the Apache License, Version 2.0 (the "License");
+  _##  you may not use this file except in compliance with the License.
+  _##  You may obtain a copy of the License at
+  _##
+  _##      http://www.apache.org/licenses/LICENSE-2.0
+  _##
+  _##  Unless required by applicable law or agreed to in writing, software
+  _##  distributed under the License is distributed on an "AS IS" BASIS,
+  _##  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  _##  See the License for the specific language governing permissions and
+  _##  limitations under the License.
+  _##
+  _##########################################################################*/
+
+package cool.mybaby.snmp4j.ff.snmp4j.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The <code>StripedIntHashMap</code> maps primitive <code>int</code> keys to
+ * objects without boxing the keys. The key space is split into a fixed number
+ * of stripes, each being an open addressing hash table with linear probing
+ * that is guarded by its own lock. Threads working on keys of different
+ * stripes therefore do not contend with each other.
+ * <p>
+ * <code>null</code> values are not supported.
+ *
+ * @version 1.9
+ * @since 1.9
+ */
+public class StripedIntHashMap {
+
+    /**
+     * The default number of stripes.
+     */
+    public static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    private static final int MIN_STRIPE_CAPACITY = 8;
+
+    private final Stripe[] stripes;
+    private final int stripeShift;
+
+    /**
+     * Creates a map with {@link #DEFAULT_CONCURRENCY_LEVEL} stripes.
+     *
+     * @param initialCapacity the expected number of mappings.
+     */
+    public StripedIntHashMap(int initialCapacity) {
+        this(DEFAULT_CONCURRENCY_LEVEL, initialCapacity);
+    }
+
+    /**
+     * Creates a map.
+     *
+     * @param concurrencyLevel the number of stripes, which is rounded up to the next power of two.
+     * @param initialCapacity  the expected number of mappings.
+     */
+    public StripedIntHashMap(int concurrencyLevel, int initialCapacity) {
+        if ((concurrencyLevel <= 0) || (concurrencyLevel > (1 << 16))) {
+            throw new IllegalArgumentException("Concurrency level out of range: " +
+                    concurrencyLevel);
+        }
+        int stripeBits = 0;
+        while ((1 << stripeBits) < concurrencyLevel) {
+            stripeBits++;
+        }
+        int stripeCapacity = MIN_STRIPE_CAPACITY;
+        while (stripeCapacity < (2 * initialCapacity) >> stripeBits) {
+            stripeCapacity <<= 1;
+        }
+        stripes = new Stripe[1 << stripeBits];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe(stripeCapacity);
+        }
+        // use the high bits of the mixed key to select the stripe
+        stripeShift = 32 - stripeBits;
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private Stripe stripeFor(int hash) {
+        return (stripes.length == 1) ? stripes[0] : stripes[hash >>> stripeShift];
+    }
+
+    /**
+     * Returns the value mapped to the supplied key.
+     *
+     * @param key a key.
+     * @return the mapped value or <code>null</code> if there is no mapping for
+     * <code>key</code>.
+     */
+    public Object get(int key) {
+        int hash = mix(key);
+        return stripeFor(hash).get(key, hash);
+    }
+
+    /**
+     * Maps the supplied key to the supplied value.
+     *
+     * @param key   a key.
+     * @param value a value (must not be <code>null</code>).
+     * @return the previously mapped value or <code>null</code>.
+     */
+    public Object put(int key, Object value) {
+        if (value == null) {
+            throw new NullPointerException();
+        }
+        int hash = mix(key);
+        return stripeFor(hash).put(key, hash, value);
+    }
+
+    /**
+     * Removes the mapping for the supplied key.
+     *
+     * @param key a key.
+     * @return the removed value or <code>null</code> if there was no mapping.
+     */
+    public Object remove(int key) {
+        int hash = mix(key);
+        return stripeFor(hash).remove(key, hash, null);
+    }
+
+    /**
+     * Removes the mapping for the supplied key only if it is currently mapped
+     * to the supplied value (compared by identity).
+     *
+     * @param key   a key.
+     * @param value the expected value.
+     * @return <code>true</code> if the mapping has been removed.
+     */
+    public boolean remove(int key, Object value) {
+        if (value == null) {
+            return false;
+        }
+        int hash = mix(key);
+        return stripeFor(hash).remove(key, hash, value) != null;
+    }
+
+    /**
+     * Returns the number of mappings. The result is not an atomic snapshot
+     * when the map is concurrently modified.
+     *
+     * @return the number of mappings.
+     */
+    public int size() {
+        int size = 0;
+        for (int i = 0; i < stripes.length; i++) {
+            synchronized (stripes[i]) {
+                size += stripes[i].size;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns a copy of the values in this map.
+     *
+     * @return a new <code>List</code> containing the values.
+     */
+    public List values() {
+        List values = new ArrayList();
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i].addValuesTo(values);
+        }
+        return values;
+    }
+
+    /**
+     * Removes all mappings.
+     */
+    public void clear() {
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i].clear();
+        }
+    }
+
+    static final class Stripe {
+
+        private int[] keys;
+        private Object[] values;
+        private int mask;
+        private int size;
+
+        Stripe(int capacity) {
+            keys = new int[capacity];
+            values = new Object[capacity];
+            mask = capacity - 1;
+        }
+
+        synchronized Object get(int key, int hash) {
+            for (int i = hash & mask; values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+            }
+            return null;
+        }
+
+        synchronized Object put(int key, int hash, Object value) {
+            int i = hash & mask;
+            for (; values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    Object previous = values[i];
+                    values[i] = value;
+                    return previous;
+                }
+            }
+            keys[i] = key;
+            values[i] = value;
+            if (++size > (keys.length >> 1)) {
+                rehash(keys.length << 1);
+            }
+            return null;
+        }
+
+        synchronized Object remove(int key, int hash, Object expected) {
+            int i = hash & mask;
+            for (; values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    Object previous = values[i];
+                    if ((expected != null) && (expected != previous)) {
+                        return null;
+                    }
+                    deleteSlot(i);
+                    size--;
+                    return previous;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Deletes a slot by shifting following entries of the same probe
+         * sequence backwards, so no tombstones are needed.
+         */
+        private void deleteSlot(int free) {
+            values[free] = null;
+            for (int j = (free + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+                int ideal = mix(keys[j]) & mask;
+                // move entry j to the free slot if the free slot lies cyclically
+                // between its ideal slot and j
+                if (((j - ideal) & mask) >= ((j - free) & mask)) {
+                    keys[free] = keys[j];
+                    values[free] = values[j];
+                    values[j] = null;
+                    free = j;
+                }
+            }
+        }
+
+        private void rehash(int capacity) {
+            int[] oldKeys = keys;
+            Object[] oldValues = values;
+            keys = new int[capacity];
+            values = new Object[capacity];
+            mask = capacity - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != null) {
+                    int j = mix(oldKeys[i]) & mask;
+                    while (values[j] != null) {
+                        j = (j + 1) & mask;
+                    }
+                    keys[j] = oldKeys[i];
+                    values[j] = oldValues[i];
+                }
+            }
+        }
+
+        synchronized void addValuesTo(List list) {
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] != null) {
+                    list.add(values[i]);
+                }
+            }
+        }
+
+        synchronized void clear() {
+            for (int i = 0; i < values.length; i++) {
+                values[i] = null;
+            }
+            size = 0;
+        }
+    }
+}
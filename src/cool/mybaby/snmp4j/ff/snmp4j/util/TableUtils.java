@@ -343,6 +343,8 @@ public class TableUtils extends AbstractSnmpUtility {
                 if (logger.isDebugEnabled()) {
                     ex.printStackTrace();
                 }
+                finished = true;
+                listener.finished(new TableEvent(this, userObject, ex));
                 return false;
             }
             return true;
@@ -447,7 +449,7 @@ public class TableUtils extends AbstractSnmpUtility {
                         return;
                     }
                 }
-                if (!sendNextChunk()) {
+                if (!sendNextChunk() && !finished) {
                     if (anyMatch) {
                         sent = 0;
                         sendNextChunk();
@@ -591,7 +593,7 @@ public class TableUtils extends AbstractSnmpUtility {
                         }
                     }
                 }
-                if (!sendNextChunk()) {
+                if (!sendNextChunk() && !finished) {
                     finished = true;
                     listener.finished(new TableEvent(this, userObject));
                 }
@@ -0,0 +1,56 @@
+/*_############################################################################
+  _##
+  _##  SNMP4J - TimeoutHandle.java
+  _##
+  _##  Copyright 2003-2007  Frank Fock and Jochen Katz (SNMP4J.org)
+  _##
+  _##  Licensed under the Apache License, Version 2.0 (the "License");
+  _##  you may not use this file except in compliance with the License.
+  _##  You may obtain a copy of the License at
+  _##
+  _##      http://www.apache.org/licenses/LICENSE-2.0
+  _##
+  _##  Unless required by applicable law or agreed to in writing, software
+  _##  distributed under the License is distributed on an "AS IS" BASIS,
+  _##  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  _##  See the License for the specific language governing permissions and
+  _##  limitations under the License.
+  _##
+  _##########################################################################*/
+
+package cool.mybaby.snmp4j.ff.snmp4j.util;
+
+/**
+ * A <code>TimeoutHandle</code> represents a task scheduled on a
+ * {@link CommonTimer}.
+ *
+ * @version 1.9
+ * @since 1.9
+ */
+public interface TimeoutHandle {
+
+    /**
+     * Cancels the scheduled execution of the associated task.
+     *
+     * @return <code>true</code> if the task has been prevented from running by
+     * this call, <code>false</code> if it already ran or had been cancelled
+     * before.
+     */
+    boolean cancel();
+
+    /**
+     * Checks whether the associated task has been cancelled.
+     *
+     * @return <code>true</code> if {@link #cancel()} succeeded for this handle.
+     */
+    boolean isCancelled();
+
+    /**
+     * Checks whether the associated task has been handed over for execution.
+     *
+     * @return <code>true</code> if the delay elapsed and the task has been run
+     * (or is running).
+     */
+    boolean isExpired();
+
+}
@@ -0,0 +1,100 @@
+/*_############################################################################
+  _##
+  _##  SNMP4J - TimerAdapter.java
+  _##
+  _##  Copyright 2003-2007  Frank Fock and Jochen Katz (SNMP4J.org)
+  _##
+  _##  Licensed under the Apache License, Version 2.0 (the "License");
+  _##  you may not use this file except in compliance with the License.
+  _##  You may obtain a copy of the License at
+  _##
+  _##      http://www.apache.org/licenses/LICENSE-2.0
+  _##
+  _##  Unless required by applicable law or agreed to in writing, software
+  _##  distributed under the License is distributed on an "AS IS" BASIS,
+  _##  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  _##  See the License for the specific language governing permissions and
+  _##  limitations under the License.
+  _##
+  _##########################################################################*/
+
+package cool.mybaby.snmp4j.ff.snmp4j.util;
+
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * The <code>TimerAdapter</code> implements the <code>CommonTimer</code>
+ * interface by means of a daemon <code>java.util.Timer</code>. Scheduling and
+ * cancelling a task costs <code>O(log n)</code> and cancelled tasks stay in
+ * the timer's queue until they are due or {@link #purge()} is called.
+ *
+ * @version 1.9
+ * @since 1.9
+ */
+public class TimerAdapter implements CommonTimer {
+
+    private Timer timer;
+
+    /**
+     * Creates a timer adapter with a new daemon <code>java.util.Timer</code>.
+     */
+    public TimerAdapter() {
+        this(new Timer(true));
+    }
+
+    /**
+     * Creates a timer adapter for the supplied timer.
+     *
+     * @param timer a <code>java.util.Timer</code> instance.
+     */
+    public TimerAdapter(Timer timer) {
+        this.timer = timer;
+    }
+
+    public TimeoutHandle schedule(Runnable task, long delay) {
+        TimerTaskHandle handle = new TimerTaskHandle(task);
+        timer.schedule(handle, delay);
+        return handle;
+    }
+
+    public void cancel() {
+        timer.cancel();
+    }
+
+    public int purge() {
+        return timer.purge();
+    }
+
+    static class TimerTaskHandle extends TimerTask implements TimeoutHandle {
+
+        private Runnable task;
+        private volatile boolean cancelled;
+        private volatile boolean expired;
+
+        TimerTaskHandle(Runnable task) {
+            this.task = task;
+        }
+
+        public void run() {
+            expired = true;
+            task.run();
+        }
+
+        public boolean cancel() {
+            boolean intime = super.cancel();
+            if (intime) {
+                cancelled = true;
+            }
+            return intime;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public boolean isExpired() {
+            return expired;
+        }
+    }
+}
@@ -1,20 +1,19 @@
 package cool.mybaby.snmp4j;
 
-import cool.mybaby.snmp4j.MIB.printer;
 import cool.mybaby.snmp4j.component.Supplies;
 import cool.mybaby.snmp4j.ff.snmp4j.CommunityTarget;
 import cool.mybaby.snmp4j.ff.snmp4j.PDU;
 import cool.mybaby.snmp4j.ff.snmp4j.Snmp;
-import cool.mybaby.snmp4j.ff.snmp4j.TransportMapping;
 import cool.mybaby.snmp4j.ff.snmp4j.event.ResponseEvent;
 import cool.mybaby.snmp4j.ff.snmp4j.mp.SnmpConstants;
 import cool.mybaby.snmp4j.ff.snmp4j.smi.*;
-import cool.mybaby.snmp4j.ff.snmp4j.transport.DefaultUdpTransportMapping;
 import cool.mybaby.snmp4j.ff.snmp4j.util.DefaultPDUFactory;
 import cool.mybaby.snmp4j.ff.snmp4j.util.TreeEvent;
 import cool.mybaby.snmp4j.ff.snmp4j.util.TreeUtils;
 
+import java.io.IOException;
 import java.lang.reflect.Array;
+import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -105,9 +104,7 @@ public class snmp4j {
                 CommunityTarget communityTarget = snmp4j.newCommunityTarget(this.host, this.port, this.retries,
                         this.timeout);
                 if (communityTarget != null) {
-                    TransportMapping transport = new DefaultUdpTransportMapping();
-                    Snmp snmp = new Snmp(transport);
-                    transport.listen();
+                    Snmp snmp = SnmpPool.getDefault().getSnmp();
                     PDU pdu = new PDU();
                     pdu.add(new VariableBinding(new OID(oid)));
                     for (int i = 1; i <= (isGetNext ? 2 : 1); i++) {
@@ -158,13 +155,15 @@ public class snmp4j {
         return value;
     }
 
-    @SuppressWarnings("rawtypes")
     public static LinkedHashMap<String, String> walk(String host, String tableOid) {
-        LinkedHashMap<String, String> result = new LinkedHashMap<String, String>();
+        return snmp4j.walkResult(host, tableOid).toStringMap();
+    }
+
+    @SuppressWarnings("rawtypes")
+    public static SnmpResult walkResult(String host, String tableOid) {
+        SnmpResult result = new SnmpResult();
         try {
-            TransportMapping transport = new DefaultUdpTransportMapping();
-            Snmp snmp = new Snmp(transport);
-            transport.listen();
+            Snmp snmp = SnmpPool.getDefault().getSnmp();
             TreeUtils treeUtils = new TreeUtils(snmp, new DefaultPDUFactory());
             List events = treeUtils.getSubtree(snmp4j.newCommunityTarget(host), new OID(tableOid));
             if (events != null) {
@@ -174,141 +173,69 @@ public class snmp4j {
                         if (!event.isError()) {
                             VariableBinding[] varBindings = event.getVariableBindings();
                             if (snmp4j.notNullOrZeroLength(varBindings)) {
-                                for (VariableBinding varBinding : varBindings) {
-                                    if (varBinding != null) {
-                                        result.put("." + varBinding.getOid().toString(),
-                                                varBinding.getVariable().toString());
-                                    }
-                                }
+                                result.add(varBindings);
                             }
                         }
                     }
                 }
             }
-            snmp.close();
         } catch (Exception e) {
             e.printStackTrace();
         }
         return result;
     }
 
-    @SuppressWarnings("DuplicatedCode")
-    public Supplies supplies() {
-        Supplies supplies = null;
-        if (snmp4j.notNullOrEmpty(this.host)) {
-            supplies = new Supplies();
-            for (Map.Entry<String, String> e : snmp4j.walk(this.host, printer.prtMarkerSuppliesLevel).entrySet()) {
-                if (snmp4j.notNullOrEmpty(e.getKey())) {
-                    switch (snmp4j.parseInt(e.getKey().substring(e.getKey().lastIndexOf('.') + 1))) {
-                        case 1:
-                            supplies.Key = snmp4j.parseInt(e.getValue());
-                            break;
-                        case 30:
-                            supplies.Key1 = snmp4j.parseInt(e.getValue());
-                            break;
-                        case 31:
-                            supplies.Key2 = snmp4j.parseInt(e.getValue());
-                            break;
-                        case 2:
-                            supplies.Yellow = snmp4j.parseInt(e.getValue());
-                            break;
-                        case 3:
-                            supplies.Magenta = snmp4j.parseInt(e.getValue());
-                            break;
-                        case 4:
-                            supplies.Cyan = snmp4j.parseInt(e.getValue());
-                            break;
-                        case 6:
-                            supplies.DurmKey = snmp4j.parseInt(e.getValue());
-                            break;
-                        case 7:
-                            supplies.DurmYellow = snmp4j.parseInt(e.getValue());
-                            break;
-                        case 8:
-                            supplies.DurmMagenta = snmp4j.parseInt(e.getValue());
-                            break;
-                        case 9:
-                            supplies.DurmCyan = snmp4j.parseInt(e.getValue());
-                            break;
-                    }
+    public SnmpResult get(String... oids) {
+        SnmpResult result = new SnmpResult(oids.length);
+        try {
+            CommunityTarget communityTarget = snmp4j.newCommunityTarget(this.host, this.port, this.retries,
+                    this.timeout);
+            if (communityTarget != null && oids.length > 0) {
+                PDU pdu = new PDU();
+                for (String oid : oids) {
+                    pdu.add(new VariableBinding(new OID(oid)));
                 }
-            }
-            for (Map.Entry<String, String> e : snmp4j.walk(this.host, printer.prtMarkerSuppliesMaxCapacity).entrySet()) {
-                if (snmp4j.notNullOrEmpty(e.getKey())) {
-                    switch (snmp4j.parseInt(e.getKey().substring(e.getKey().lastIndexOf('.') + 1))) {
-                        case 1:
-                            supplies.MaxKey = snmp4j.parseInt(e.getValue());
-                            break;
-                        case 30:
-                            supplies.MaxKey1 = snmp4j.parseInt(e.getValue());
-                            break;
-                        case 31:
-                            supplies.MaxKey2 = snmp4j.parseInt(e.getValue());
-                            break;
-                        case 2:
-                            supplies.MaxYellow = snmp4j.parseInt(e.getValue());
-                            break;
-                        case 3:
-                            supplies.MaxMagenta = snmp4j.parseInt(e.getValue());
-                            break;
-                        case 4:
-                            supplies.MaxCyan = snmp4j.parseInt(e.getValue());
-                            break;
-                        case 6:
-                            supplies.MaxDurmKey = snmp4j.parseInt(e.getValue());
-                            break;
-                        case 7:
-                            supplies.MaxDurmYellow = snmp4j.parseInt(e.getValue());
-                            break;
-                        case 8:
-                            supplies.MaxDurmMagenta = snmp4j.parseInt(e.getValue());
-                            break;
-                        case 9:
-                            supplies.MaxDurmCyan = snmp4j.parseInt(e.getValue());
-                            break;
+                ResponseEvent e = SnmpPool.getDefault().getSnmp().get(pdu, communityTarget);
+                if (e != null && e.getResponse() != null && e.getResponse().getErrorStatus() == PDU.noError) {
+                    for (int i = 0; i < e.getResponse().size(); i++) {
+                        VariableBinding vb = e.getResponse().get(i);
+                        if (!vb.isException()) {
+                            result.add(vb);
+                        }
                     }
                 }
             }
-            for (Map.Entry<String, String> e : snmp4j.walk(this.host, printer.prtMarkerSuppliesSupplyUnit).entrySet()) {
-                if (snmp4j.notNullOrEmpty(e.getKey())) {
-                    switch (snmp4j.parseInt(e.getKey().substring(e.getKey().lastIndexOf('.') + 1))) {
-                        case 1:
-                            supplies.KeyUnit = snmp4j.parseInt(e.getValue());
-                            break;
-                        case 30:
-                            supplies.KeyUnit1 = snmp4j.parseInt(e.getValue());
-                            break;
-                        case 31:
-                            supplies.KeyUnit2 = snmp4j.parseInt(e.getValue());
-                            break;
-                        case 2:
-                            supplies.YellowUnit = snmp4j.parseInt(e.getValue());
-                            break;
-                        case 3:
-                            supplies.MagentaUnit = snmp4j.parseInt(e.getValue());
-                            break;
-                        case 4:
-                            supplies.CyanUnit = snmp4j.parseInt(e.getValue());
-                            break;
-                        case 6:
-                            supplies.DurmKeyUnit = snmp4j.parseInt(e.getValue());
-                            break;
-                        case 7:
-                            supplies.DurmYellowUnit = snmp4j.parseInt(e.getValue());
-                            break;
-                        case 8:
-                            supplies.DurmMagentaUnit = snmp4j.parseInt(e.getValue());
-                            break;
-                        case 9:
-                            supplies.DurmCyanUnit = snmp4j.parseInt(e.getValue());
-                            break;
-                    }
-                }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return result;
+    }
+
+    public Supplies supplies() {
+        Supplies supplies = null;
+        if (snmp4j.notNullOrEmpty(this.host)) {
+            try {
+                supplies = new SuppliesCollector().collect(
+                        snmp4j.newCommunityTarget(this.host, this.port, this.retries, this.timeout));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            if (supplies == null) {
+                supplies = new Supplies();
             }
         }
         return supplies;
     }
 
+    public static Map<String, Supplies> supplies(Collection<String> hosts) {
+        try {
+            return new SuppliesCollector().collect(hosts);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return new LinkedHashMap<String, Supplies>();
+        }
+    }
+
     public static String Get(String oid) {
         return new snmp4j(snmp4j.localhost).invoke(oid, false);
     }
@@ -316,4 +243,8 @@ public class snmp4j {
     public static String GetNext(String oid) {
         return new snmp4j(snmp4j.localhost).invoke(oid, true);
     }
+
+    public static void shutdown() {
+        SnmpPool.getDefault().close();
+    }
 }